@@ -0,0 +1,351 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Group-by aggregation (GROUP BY with COUNT, SUM, AVG, MIN, MAX).
+ *
+ * At open(), all input tuples are read into a hash table on their group
+ * attribute values, keeping one running state per group and aggregate,
+ * not the tuples. Each returned tuple is the group values followed by
+ * the aggregate values, groups in the order first seen.
+ * With no group attributes, returns one tuple over all input tuples.
+ *
+ * Aggregates skip null values. SUM and AVG add values as numbers,
+ * as OrderedIndex parses them ("$12.74"), and skip values that are not;
+ * MIN and MAX compare values as NUMERIC OrderedIndex values do.
+ * Aggregates return null when no value was counted, COUNT returns 0.
+ *
+ * Created on a Relation instead of an input operator, the aggregate
+ * scans a snapshot of the relation in parallel, on fork-join threads:
+ * each thread filters and aggregates its own ranges of tuples into
+ * its own hash table, and the tables are merged at the end.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class AggregateOperator implements Operator {
+
+	/**
+	 * Aggregate functions.
+	 */
+	public enum Function {
+		COUNT,
+		SUM,
+		AVG,
+		MIN,
+		MAX
+	}
+
+	/**
+	 * Private attributes for each instance of the AggregateOperator object:
+	 *     input:          the operator to aggregate, or null;
+	 *
+	 *     relation,
+	 *     filter:         else, the relation to scan in parallel,
+	 *                     and the tuples of it to aggregate;
+	 *
+	 *     groupAttrIdxs:  the input attributes to group by;
+	 *
+	 *     functions,
+	 *     aggAttrIdxs:    each aggregate, and its input attribute,
+	 *                     -1 for COUNT(*) of all tuples;
+	 *
+	 *     attributeList:  the group attribute names, then the aggregates,
+	 *                     e.g. "COUNT(*)" or "SUM(Price)";
+	 *
+	 *     groups:         the output tuples, null unless open;
+	 *
+	 *     nextIdx:        the next of them to return.
+	 */
+	private final Operator input;
+	private final Relation relation;
+	private final Predicate <String[]> filter;
+	private final int[] groupAttrIdxs;
+	private final Function[] functions;
+	private final int[] aggAttrIdxs;
+	private final String[] attributeList;
+	private List <String[]> groups = null;
+	private int nextIdx = 0;
+
+	/**
+	 * @param newInput
+	 * @param newGroupAttrIdxs
+	 *   The input attributes to group by, possibly none.
+	 * @param newFunctions
+	 *   The aggregates to compute for each group.
+	 * @param newAggAttrIdxs
+	 *   The input attribute of each aggregate,
+	 *   -1 for COUNT to count all tuples.
+	 *
+	 * @requires newFunctions.length == newAggAttrIdxs.length
+	 *   and all attribute indexes are within newInput.getAttributeList()
+	 *   and only COUNT has attribute index -1
+	 */
+	public AggregateOperator(Operator newInput, int[] newGroupAttrIdxs,
+			Function[] newFunctions, int[] newAggAttrIdxs) {
+		this(newInput, null, null, newInput.getAttributeList(),
+				newGroupAttrIdxs, newFunctions, newAggAttrIdxs);
+	}
+
+	/**
+	 * Aggregate the tuples of a relation that pass a filter,
+	 * scanning the relation in parallel.
+	 *
+	 * @param newRelation
+	 * @param newFilter
+	 *   True for the tuples to aggregate, or null for all tuples.
+	 * @param newGroupAttrIdxs
+	 * @param newFunctions
+	 * @param newAggAttrIdxs
+	 *
+	 * @requires as for an input operator, with the relation's attributes
+	 */
+	public AggregateOperator(Relation newRelation, Predicate <String[]> newFilter,
+			int[] newGroupAttrIdxs, Function[] newFunctions, int[] newAggAttrIdxs) {
+		this(null, newRelation, (newFilter == null) ? tuple -> true : newFilter,
+				newRelation.getAttributeList(), newGroupAttrIdxs, newFunctions, newAggAttrIdxs);
+	}
+
+	private AggregateOperator(Operator newInput, Relation newRelation,
+			Predicate <String[]> newFilter, String[] inputAttributeList,
+			int[] newGroupAttrIdxs, Function[] newFunctions, int[] newAggAttrIdxs) {
+		assert newFunctions.length == newAggAttrIdxs.length;
+
+		this.input = newInput;
+		this.relation = newRelation;
+		this.filter = newFilter;
+		this.groupAttrIdxs = newGroupAttrIdxs.clone();
+		this.functions = newFunctions.clone();
+		this.aggAttrIdxs = newAggAttrIdxs.clone();
+		this.attributeList = new String[newGroupAttrIdxs.length + newFunctions.length];
+
+		for(int groupIdx = 0; groupIdx < newGroupAttrIdxs.length; groupIdx++) {
+			this.attributeList[groupIdx] = inputAttributeList[newGroupAttrIdxs[groupIdx]];
+		}
+		for(int aggIdx = 0; aggIdx < newFunctions.length; aggIdx++) {
+			int attrIdx = newAggAttrIdxs[aggIdx];
+			assert attrIdx >= 0 || newFunctions[aggIdx] == Function.COUNT;
+			this.attributeList[newGroupAttrIdxs.length + aggIdx] = newFunctions[aggIdx].name()
+					+ "(" + ((attrIdx < 0) ? "*" : inputAttributeList[attrIdx]) + ")";
+		}
+	}
+
+	@Override
+	public String[] getAttributeList() {
+		return this.attributeList;
+	}
+
+	@Override
+	public void open() {
+
+		LinkedHashMap <TupleKey, AggregateState[]> states;
+		if(this.input == null) {
+			//Partial tables of consecutive ranges are merged in order.
+			states = this.relation.parallelStream()
+					.filter(this.filter)
+					.collect(LinkedHashMap::new, this::accumulate, this::merge);
+		} else {
+			states = new LinkedHashMap <> ();
+			this.input.open();
+			try {
+				for(String[] tuple = this.input.next(); tuple != null; tuple = this.input.next()) {
+					accumulate(states, tuple);
+				}
+
+			} finally {
+				this.input.close();
+			}
+		}
+
+		//No input, no groups; but without group attributes, one total.
+		if(states.isEmpty() && this.groupAttrIdxs.length == 0) {
+			states.put(TupleKey.of(new String[0], 0), newStates());
+		}
+
+		this.groups = new ArrayList <> (states.size());
+		states.forEach((groupKey, groupStates) -> {
+			String[] group = new String[this.attributeList.length];
+			for(int groupIdx = 0; groupIdx < this.groupAttrIdxs.length; groupIdx++) {
+				group[groupIdx] = groupKey.getValue(groupIdx);
+			}
+			for(int aggIdx = 0; aggIdx < groupStates.length; aggIdx++) {
+				group[this.groupAttrIdxs.length + aggIdx] = groupStates[aggIdx].getResult();
+			}
+			this.groups.add(group);
+		});
+		this.nextIdx = 0;
+	}
+
+	@Override
+	public String[] next() {
+		assert this.groups != null;
+
+		if(this.nextIdx == this.groups.size()) {
+			return null;
+		}
+		return this.groups.get(this.nextIdx++);
+	}
+
+	@Override
+	public void close() {
+		this.groups = null;
+	}
+
+	/**
+	 * Helper method to add a tuple to the running states of its group.
+	 *
+	 * @param states
+	 * @param tuple
+	 */
+	private void accumulate(Map <TupleKey, AggregateState[]> states, String[] tuple) {
+
+		String[] groupValues = new String[this.groupAttrIdxs.length];
+		for(int groupIdx = 0; groupIdx < this.groupAttrIdxs.length; groupIdx++) {
+			groupValues[groupIdx] = tuple[this.groupAttrIdxs[groupIdx]];
+		}
+
+		TupleKey groupKey = TupleKey.probe(groupValues, groupValues.length);
+		AggregateState[] groupStates = states.get(groupKey);
+		if(groupStates == null) {
+			groupStates = newStates();
+			states.put(groupKey, groupStates);
+		}
+
+		for(int aggIdx = 0; aggIdx < groupStates.length; aggIdx++) {
+			int attrIdx = this.aggAttrIdxs[aggIdx];
+			groupStates[aggIdx].add((attrIdx < 0) ? null : tuple[attrIdx]);
+		}
+	}
+
+	/**
+	 * Helper method to merge the running states of later tuples
+	 * into those of earlier tuples, keeping groups in first seen order.
+	 *
+	 * @param states
+	 * @param laterStates
+	 */
+	private void merge(Map <TupleKey, AggregateState[]> states,
+			Map <TupleKey, AggregateState[]> laterStates) {
+
+		laterStates.forEach((groupKey, laterGroupStates) -> {
+			AggregateState[] groupStates = states.putIfAbsent(groupKey, laterGroupStates);
+			if(groupStates != null) {
+				for(int aggIdx = 0; aggIdx < groupStates.length; aggIdx++) {
+					groupStates[aggIdx].merge(laterGroupStates[aggIdx]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Helper method to create the running states of a new group.
+	 *
+	 * @return states
+	 */
+	private AggregateState[] newStates() {
+
+		AggregateState[] groupStates = new AggregateState[this.functions.length];
+		for(int aggIdx = 0; aggIdx < groupStates.length; aggIdx++) {
+			groupStates[aggIdx] = new AggregateState(this.functions[aggIdx],
+					this.aggAttrIdxs[aggIdx] < 0);
+		}
+		return groupStates;
+	}
+
+	/**
+	 * Running state of one aggregate of one group.
+	 */
+	private static final class AggregateState {
+
+		private final Function function;
+		private final boolean isCountAll;
+		private long count = 0;
+		private BigDecimal sum = null;
+		private String extreme = null;
+
+		private AggregateState(Function newFunction, boolean newIsCountAll) {
+			this.function = newFunction;
+			this.isCountAll = newIsCountAll;
+		}
+
+		private void add(String value) {
+
+			if(this.isCountAll) {
+				this.count++;
+				return;
+			}
+			if(value == null) {
+				return;
+			}
+
+			switch(this.function) {
+				case COUNT:
+					this.count++;
+					break;
+				case SUM:
+				case AVG:
+					BigDecimal number = OrderedIndex.parseNumber(value);
+					if(number != null) {
+						this.sum = (this.sum == null) ? number : this.sum.add(number);
+						this.count++;
+					}
+					break;
+				case MIN:
+					if(this.extreme == null || OrderedIndex.compareValues(
+							OrderedIndex.ValueType.NUMERIC, value, this.extreme) < 0) {
+						this.extreme = value;
+					}
+					break;
+				case MAX:
+					if(this.extreme == null || OrderedIndex.compareValues(
+							OrderedIndex.ValueType.NUMERIC, value, this.extreme) > 0) {
+						this.extreme = value;
+					}
+					break;
+				default:
+					throw new AssertionError(this.function);
+			}
+		}
+
+		private void merge(AggregateState other) {
+
+			this.count += other.count;
+			if(other.sum != null) {
+				this.sum = (this.sum == null) ? other.sum : this.sum.add(other.sum);
+			}
+			if(other.extreme != null) {
+				if(this.extreme == null) {
+					this.extreme = other.extreme;
+				} else {
+					int cmp = OrderedIndex.compareValues(OrderedIndex.ValueType.NUMERIC,
+							other.extreme, this.extreme);
+					if((this.function == Function.MIN) ? cmp < 0 : cmp > 0) {
+						this.extreme = other.extreme;
+					}
+				}
+			}
+		}
+
+		private String getResult() {
+
+			switch(this.function) {
+				case COUNT:
+					return String.valueOf(this.count);
+				case SUM:
+					return (this.sum == null) ? null : this.sum.toPlainString();
+				case AVG:
+					return (this.sum == null) ? null : this.sum.divide(
+							BigDecimal.valueOf(this.count), MathContext.DECIMAL64)
+							.stripTrailingZeros().toPlainString();
+				default:
+					return this.extreme;
+			}
+		}
+	}
+}
@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Secondary bitmap index on one low-cardinality attribute of a Relation,
+ * e.g. a genre or a public/private flag: for each distinct value,
+ * a RoaringBitmap of the IDs of the tuples holding it.
+ *
+ * Filters on indexed attributes are answered without reading tuples:
+ * an equality filter is the bitmap of its value, an IN list or a range
+ * is the or() of the bitmaps of its values, and conjunctions and
+ * disjunctions of filters are and() and or() of their bitmaps;
+ * counts are the cardinality of the result.
+ * Values are compared with equals, as Strings; null is a value too.
+ *
+ * Each distinct value costs a map entry and a bitmap, so index
+ * attributes with a handful of values, not keys or free text.
+ *
+ * Not thread-safe: the Relation writes to it under its write lock,
+ * and hands read-only snapshots to readers, in its RelationSnapshot.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class BitmapIndex {
+
+	/**
+	 * Private attributes for each instance of the BitmapIndex object:
+	 *     attrIdx:    which attribute of the relation is indexed;
+	 *
+	 *     bitmaps:    the tuple IDs of each value, no empty bitmaps;
+	 *
+	 *     isSnapshot: true for read-only snapshots.
+	 */
+	private final int attrIdx;
+	private final HashMap <String, RoaringBitmap> bitmaps;
+	private final boolean isSnapshot;
+
+	public BitmapIndex(int newAttrIdx) {
+		this.attrIdx = newAttrIdx;
+		this.bitmaps = new HashMap <> ();
+		this.isSnapshot = false;
+	}
+
+	/**
+	 * Private constructor for snapshots.
+	 */
+	private BitmapIndex(BitmapIndex source) {
+		this.attrIdx = source.attrIdx;
+		this.bitmaps = new HashMap <> (source.bitmaps.size() * 2);
+		for(Map.Entry <String, RoaringBitmap> entry : source.bitmaps.entrySet()) {
+			this.bitmaps.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		this.isSnapshot = true;
+	}
+
+	public int getAttrIdx() {
+		return this.attrIdx;
+	}
+
+	/**
+	 * Return the number of distinct values.
+	 *
+	 * @return numOfValues
+	 */
+	public int getNumOfValues() {
+		return this.bitmaps.size();
+	}
+
+	/**
+	 * Return all distinct values held by some tuple, in no particular order.
+	 *
+	 * @return values
+	 */
+	public List <String> getValues() {
+		return new ArrayList <> (this.bitmaps.keySet());
+	}
+
+	/**
+	 * Add the entry of a tuple.
+	 *
+	 * @param value
+	 *   The value of the indexed attribute of the tuple.
+	 * @param tupleId
+	 */
+	public void add(String value, int tupleId) {
+		assert !this.isSnapshot;
+		this.bitmaps.computeIfAbsent(value, tmpValue -> new RoaringBitmap()).add(tupleId);
+	}
+
+	/**
+	 * Remove the entry of a tuple.
+	 *
+	 * @param value
+	 *   The value of the indexed attribute the tuple was added with.
+	 * @param tupleId
+	 */
+	public void remove(String value, int tupleId) {
+		assert !this.isSnapshot;
+
+		RoaringBitmap bitmap = this.bitmaps.get(value);
+		if(bitmap != null && bitmap.remove(tupleId) && bitmap.isEmpty()) {
+			this.bitmaps.remove(value);
+		}
+	}
+
+	/**
+	 * Return the IDs of the tuples with the given value.
+	 *
+	 * @param value
+	 * @return tupleIds
+	 *   A read-only snapshot of the bitmap of the value.
+	 */
+	public RoaringBitmap findEqual(String value) {
+		RoaringBitmap bitmap = this.bitmaps.get(value);
+		return (bitmap == null) ? new RoaringBitmap().snapshot() : bitmap.snapshot();
+	}
+
+	/**
+	 * Return the IDs of the tuples with any of the given values,
+	 * e.g. for Genre IN ('Action', 'Drama').
+	 *
+	 * @param values
+	 * @return tupleIds
+	 */
+	public RoaringBitmap findAny(String... values) {
+
+		List <RoaringBitmap> matches = new ArrayList <> (values.length);
+		for(String value : values) {
+			RoaringBitmap bitmap = this.bitmaps.get(value);
+			if(bitmap != null) {
+				matches.add(bitmap);
+			}
+		}
+		return RoaringBitmap.orAll(matches);
+	}
+
+	/**
+	 * Return the IDs of the tuples with a value between low and high,
+	 * both included, compared as the given ValueType: the or() of the
+	 * bitmaps of the distinct values in range.
+	 *
+	 * @param valueType
+	 * @param low
+	 *   The lowest value, or null for no lower bound.
+	 * @param high
+	 *   The highest value, or null for no upper bound.
+	 * @return tupleIds
+	 */
+	public RoaringBitmap findRange(OrderedIndex.ValueType valueType, String low, String high) {
+
+		List <RoaringBitmap> matches = new ArrayList <> ();
+		for(Map.Entry <String, RoaringBitmap> entry : this.bitmaps.entrySet()) {
+			if(OrderedIndex.isInRange(valueType, entry.getKey(), low, high)) {
+				matches.add(entry.getValue());
+			}
+		}
+		return RoaringBitmap.orAll(matches);
+	}
+
+	/**
+	 * Return the number of tuples with the given value,
+	 * from the bitmap, without reading any tuple.
+	 *
+	 * @param value
+	 * @return count
+	 */
+	public int countEqual(String value) {
+		RoaringBitmap bitmap = this.bitmaps.get(value);
+		return (bitmap == null) ? 0 : bitmap.getCardinality();
+	}
+
+	/**
+	 * Return a read-only copy of the index as it is now,
+	 * which later writes to this index do not change.
+	 * Only the map of values is copied; bitmaps are snapshots,
+	 * sharing their containers until the next write to each.
+	 *
+	 * @return snapshot
+	 */
+	public BitmapIndex snapshot() {
+		return this.isSnapshot ? this : new BitmapIndex(this);
+	}
+}
@@ -0,0 +1,189 @@
+import java.util.Arrays;
+
+/**
+ * A growable int array with cheap read-only snapshots,
+ * chunked and copied on write like RowTupleStore.
+ *
+ * Not thread-safe: the owner writes under its lock,
+ * snapshots may be read from any thread.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class ChunkedIntArray {
+
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Private attributes for each instance of the ChunkedIntArray object:
+	 *     size:        number of values;
+	 *
+	 *     chunks:      value i is chunks[i >> CHUNK_SHIFT][i & CHUNK_MASK];
+	 *
+	 *     chunkEpochs,
+	 *     epoch:       a chunk may only be written in place if its epoch
+	 *                  is the current one, epoch moves on at each snapshot;
+	 *
+	 *     isSnapshot:  true for read-only snapshots.
+	 */
+	private int size = 0;
+	private int[][] chunks;
+	private int[] chunkEpochs;
+	private int epoch = 0;
+	private final boolean isSnapshot;
+
+	public ChunkedIntArray() {
+		this.chunks = new int[4][];
+		this.chunkEpochs = new int[4];
+		this.isSnapshot = false;
+	}
+
+	/**
+	 * Private constructor for snapshots.
+	 */
+	private ChunkedIntArray(ChunkedIntArray source) {
+		this.size = source.size;
+		this.chunks = Arrays.copyOf(source.chunks, (source.size + CHUNK_MASK) >> CHUNK_SHIFT);
+		this.chunkEpochs = null;
+		this.isSnapshot = true;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param idx
+	 * @return value
+	 *
+	 * @requires 0 <= idx < size()
+	 */
+	public int get(int idx) {
+		assert idx >= 0 && idx < this.size;
+		return this.chunks[idx >> CHUNK_SHIFT][idx & CHUNK_MASK];
+	}
+
+	/**
+	 * @param idx
+	 * @param value
+	 *
+	 * @requires 0 <= idx < size()
+	 */
+	public void set(int idx, int value) {
+		assert !this.isSnapshot;
+		assert idx >= 0 && idx < this.size;
+		writableChunk(idx >> CHUNK_SHIFT)[idx & CHUNK_MASK] = value;
+	}
+
+	/**
+	 * Add a value after all existing values.
+	 *
+	 * @param value
+	 */
+	public void add(int value) {
+		assert !this.isSnapshot;
+
+		lastChunk()[this.size & CHUNK_MASK] = value;
+		this.size++;
+	}
+
+	/**
+	 * Add count consecutive values, firstValue, firstValue + 1, ...,
+	 * after all existing values, a chunk at a time.
+	 *
+	 * @param firstValue
+	 * @param count
+	 *
+	 * @requires count >= 0
+	 */
+	public void addRange(int firstValue, int count) {
+		assert !this.isSnapshot;
+		assert count >= 0;
+
+		int numAdded = 0;
+		while(numAdded < count) {
+			int[] chunk = lastChunk();
+			int chunkPos = this.size & CHUNK_MASK;
+			int chunkEnd = Math.min(CHUNK_SIZE, chunkPos + count - numAdded);
+			for(; chunkPos < chunkEnd; chunkPos++) {
+				chunk[chunkPos] = firstValue + numAdded;
+				numAdded++;
+				this.size++;
+			}
+		}
+	}
+
+	/**
+	 * Remove the last value.
+	 *
+	 * @requires size() > 0
+	 */
+	public void removeLast() {
+		assert !this.isSnapshot;
+		assert this.size > 0;
+
+		this.size--;
+		//Drop a chunk once it is empty, snapshots keep their own reference.
+		if((this.size & CHUNK_MASK) == 0) {
+			this.chunks[this.size >> CHUNK_SHIFT] = null;
+		}
+	}
+
+	/**
+	 * Return a read-only copy of the array as it is now,
+	 * which later writes to this array do not change.
+	 * Snapshots of a snapshot return the snapshot itself.
+	 *
+	 * @return snapshot
+	 */
+	public ChunkedIntArray snapshot() {
+		if(this.isSnapshot) {
+			return this;
+		}
+
+		ChunkedIntArray snapshot = new ChunkedIntArray(this);
+		this.epoch++;
+		return snapshot;
+	}
+
+	/**
+	 * Helper method to return the chunk the next added value goes to,
+	 * creating it if needed, that may be written in place.
+	 *
+	 * @return chunk
+	 */
+	private int[] lastChunk() {
+
+		int chunkIdx = this.size >> CHUNK_SHIFT;
+		if(chunkIdx == this.chunks.length) {
+			this.chunks = Arrays.copyOf(this.chunks, chunkIdx * 2);
+			this.chunkEpochs = Arrays.copyOf(this.chunkEpochs, chunkIdx * 2);
+		}
+		if(this.chunks[chunkIdx] == null) {
+			this.chunks[chunkIdx] = new int[CHUNK_SIZE];
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+		return writableChunk(chunkIdx);
+	}
+
+	/**
+	 * Helper method to return a chunk that may be written in place,
+	 * copying it first if it may be shared with a snapshot.
+	 *
+	 * @param chunkIdx
+	 * @return chunk
+	 */
+	private int[] writableChunk(int chunkIdx) {
+
+		int[] chunk = this.chunks[chunkIdx];
+		if(this.chunkEpochs[chunkIdx] != this.epoch) {
+			chunk = chunk.clone();
+			this.chunks[chunkIdx] = chunk;
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+		return chunk;
+	}
+}
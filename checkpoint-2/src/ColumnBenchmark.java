@@ -0,0 +1,250 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark of the numeric column kernels against scans of String values.
+ *
+ * Fills an ANIME relation with generated data, with numeric columns
+ * on Price and Release_year, then times a price range filter at 1%,
+ * 50% and 99% selectivity three ways:
+ *     scan:     a FilterOperator.inRange over a ScanOperator, parsing
+ *               and comparing the String of each tuple;
+ *     branchy:  a loop over the numeric column that branches
+ *               on each comparison;
+ *     kernel:   NumericColumn.selectRange, branch-free.
+ * Branches are cheap when almost all or almost no tuples pass,
+ * and mispredicted half the time at 50%, which is where the
+ * branch-free kernel should gain the most over the branchy loop.
+ *
+ * Then times a conjunction with a sum (total price of the anime
+ * of one price range and a range of years) as a scan and as kernels,
+ * and the same selection vector read back by a ScanOperator.
+ *
+ * Each case runs warmup times first, so the JIT has compiled it,
+ * then prints the median of repetitions runs; each way must give
+ * the same count, else an error is printed.
+ *
+ * Run with: java -ea ColumnBenchmark [numOfTuples] [repetitions] [warmup]
+ *   e.g. java -Xmx2g ColumnBenchmark 1000000 15 10
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class ColumnBenchmark {
+
+	private static final String[] ANIME_ATTRIBUTES = {
+			"Title", "Description", "Genre", "Price", "Release_year"};
+	private static final int PRICE_IDX = 3;
+	private static final int YEAR_IDX = 4;
+	private static final int MIN_PRICE_CENTS = 500;
+	private static final int NUM_OF_PRICES = 2000;
+	private static final double[] SELECTIVITIES = {0.01, 0.5, 0.99};
+
+	public static void main(String[] args) {
+
+		int numOfTuples = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+		int repetitions = (args.length > 1) ? Integer.parseInt(args[1]) : 15;
+		int warmup = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+		Relation anime = new Relation("ANIME", ANIME_ATTRIBUTES, 1,
+				new ColumnarTupleStore(ANIME_ATTRIBUTES.length));
+		Random random = new Random(42);
+		for(int tupleIdx = 0; tupleIdx < numOfTuples; tupleIdx++) {
+			String title = "Anime " + String.valueOf(tupleIdx);
+			int priceCents = MIN_PRICE_CENTS + random.nextInt(NUM_OF_PRICES);
+			anime.insertNewTuple(new String[] {
+					title,
+					"Description of " + title + ".",
+					"Genre " + String.valueOf(random.nextInt(12)),
+					String.format("$%d.%02d", priceCents / 100, priceCents % 100),
+					String.valueOf(1960 + random.nextInt(64))});
+		}
+		anime.createNumericColumn(PRICE_IDX);
+		anime.createNumericColumn(YEAR_IDX);
+		NumericColumn prices = anime.snapshot().getNumericColumn(PRICE_IDX);
+		NumericColumn years = anime.snapshot().getNumericColumn(YEAR_IDX);
+
+		System.out.println("Column benchmark: " + String.valueOf(anime.getNumOfTuples())
+				+ " anime, median of " + String.valueOf(repetitions) + " runs after "
+				+ String.valueOf(warmup) + " warmup runs.");
+		System.out.println();
+		System.out.println("price filter\tscan ms\tbranchy ms\tkernel ms\tcount");
+
+		for(double selectivity : SELECTIVITIES) {
+			double low = MIN_PRICE_CENTS / 100.0;
+			double high = (MIN_PRICE_CENTS + (int) (NUM_OF_PRICES * selectivity) - 1) / 100.0;
+			String lowText = String.format("%.2f", low);
+			String highText = String.format("%.2f", high);
+
+			int[] counts = new int[3];
+			double scanMillis = time(repetitions, warmup, counts, 0,
+					() -> runPlan(new FilterOperator(new ScanOperator(anime),
+							FilterOperator.inRange(PRICE_IDX, OrderedIndex.ValueType.NUMERIC,
+									lowText, highText))));
+			double branchyMillis = time(repetitions, warmup, counts, 1,
+					() -> selectRangeBranchy(prices, low, high).length);
+			double kernelMillis = time(repetitions, warmup, counts, 2,
+					() -> prices.selectRange(low, high).length);
+
+			checkSameCounts("price " + lowText + " to " + highText, counts);
+			System.out.println(String.format("%.0f%%", selectivity * 100)
+					+ "\t" + String.format("%.3f", scanMillis)
+					+ "\t" + String.format("%.3f", branchyMillis)
+					+ "\t" + String.format("%.3f", kernelMillis)
+					+ "\t" + String.valueOf(counts[2]));
+		}
+
+		runConjunction(anime, prices, years, repetitions, warmup);
+	}
+
+	/**
+	 * Helper method to time the total price of the anime priced
+	 * $10.00 to $19.99 and released from 2000 on, as a scan and as
+	 * kernels, and the selection of the kernels read by a ScanOperator.
+	 *
+	 * @param anime
+	 * @param prices
+	 * @param years
+	 * @param repetitions
+	 * @param warmup
+	 */
+	private static void runConjunction(Relation anime, NumericColumn prices,
+			NumericColumn years, int repetitions, int warmup) {
+
+		double[] sums = new double[2];
+		int[] counts = new int[3];
+
+		double scanMillis = time(repetitions, warmup, counts, 0, () -> {
+			ScanOperator scan = new ScanOperator(anime);
+			scan.open();
+			int count = 0;
+			double sum = 0;
+			String[] tuple = scan.next();
+			while(tuple != null) {
+				double price = NumericColumn.toDouble(tuple[PRICE_IDX]);
+				double year = NumericColumn.toDouble(tuple[YEAR_IDX]);
+				if(price >= 10.0 && price <= 19.99 && year >= 2000) {
+					count++;
+					sum += price;
+				}
+				tuple = scan.next();
+			}
+			scan.close();
+			sums[0] = sum;
+			return count;
+		});
+
+		double kernelMillis = time(repetitions, warmup, counts, 1, () -> {
+			int[] selection = years.selectRange(2000, Double.POSITIVE_INFINITY,
+					prices.selectRange(10.0, 19.99));
+			sums[1] = prices.sum(selection);
+			return selection.length;
+		});
+
+		double operatorMillis = time(repetitions, warmup, counts, 2,
+				() -> runPlan(new ScanOperator(anime, snapshot -> snapshot.getNumericColumn(YEAR_IDX)
+						.selectRange(2000, Double.POSITIVE_INFINITY,
+								snapshot.getNumericColumn(PRICE_IDX).selectRange(10.0, 19.99)))));
+
+		checkSameCounts("price and year", counts);
+		if(Math.abs(sums[0] - sums[1]) > 1e-6 * Math.abs(sums[0])) {
+			System.out.println("Err: price and year sums differ between scan and kernels.");
+		}
+
+		System.out.println();
+		System.out.println("price and year\tscan ms\tkernel ms\tkernel + scan ms\tcount\tsum");
+		System.out.println("sum"
+				+ "\t" + String.format("%.3f", scanMillis)
+				+ "\t" + String.format("%.3f", kernelMillis)
+				+ "\t" + String.format("%.3f", operatorMillis)
+				+ "\t" + String.valueOf(counts[1])
+				+ "\t" + String.format("%.2f", sums[1]));
+	}
+
+	/**
+	 * Helper method to select a price range the branchy way,
+	 * as a baseline for the kernel.
+	 *
+	 * @param column
+	 * @param low
+	 * @param high
+	 * @return selection
+	 */
+	private static int[] selectRangeBranchy(NumericColumn column, double low, double high) {
+
+		int[] selection = new int[column.size()];
+		int numOfSelected = 0;
+		for(int tupleId = 0; tupleId < column.size(); tupleId++) {
+			double value = column.get(tupleId);
+			if(value >= low && value <= high) {
+				selection[numOfSelected] = tupleId;
+				numOfSelected++;
+			}
+		}
+		return Arrays.copyOf(selection, numOfSelected);
+	}
+
+	/**
+	 * Helper method to run a case warmup times, then repetitions times,
+	 * and return the median milliseconds of the timed runs.
+	 *
+	 * @param repetitions
+	 * @param warmup
+	 * @param counts
+	 *   Where to put the count the case returns.
+	 * @param countIdx
+	 * @param run
+	 * @return millis
+	 */
+	private static double time(int repetitions, int warmup, int[] counts, int countIdx,
+			Supplier <Integer> run) {
+
+		for(int runIdx = 0; runIdx < warmup; runIdx++) {
+			counts[countIdx] = run.get();
+		}
+
+		double[] runMillis = new double[repetitions];
+		for(int runIdx = 0; runIdx < repetitions; runIdx++) {
+			long startNanos = System.nanoTime();
+			counts[countIdx] = run.get();
+			runMillis[runIdx] = (System.nanoTime() - startNanos) / 1e6;
+		}
+		return median(runMillis);
+	}
+
+	/**
+	 * Helper method to run an operator pipeline and return
+	 * the number of tuples it outputs.
+	 *
+	 * @param plan
+	 * @return count
+	 */
+	private static int runPlan(Operator plan) {
+
+		plan.open();
+		int count = 0;
+		while(plan.next() != null) {
+			count++;
+		}
+		plan.close();
+		return count;
+	}
+
+	private static void checkSameCounts(String name, int[] counts) {
+
+		for(int count : counts) {
+			if(count != counts[0]) {
+				System.out.println("Err: " + name + " counts differ.");
+				return;
+			}
+		}
+	}
+
+	private static double median(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
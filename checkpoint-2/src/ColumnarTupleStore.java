@@ -0,0 +1,657 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Columnar layout of the tuples of a Relation:
+ * one primitive int array per attribute instead of one String array per tuple.
+ *
+ * Each column starts int-packed, storing numeric values such as years
+ * and dates directly as ints. The first value that does not print back
+ * exactly as the same int (text, leading zeros, out of int range)
+ * switches the column to dictionary encoding, where each distinct value
+ * is stored once and the column holds its int code.
+ * Low-cardinality attributes, e.g. genres or studio names, then cost
+ * one int per tuple, and full-column scans compare ints only.
+ * A dictionary costs more than the values it saves once most values are
+ * distinct, e.g. keys or descriptions: a column whose dictionary passes
+ * MAX_DICTIONARY_SIZE values, and one value per DICTIONARY_RATIO tuples,
+ * switches to holding its strings directly (plain), for good.
+ *
+ * Columns are kept in chunks of CHUNK_SIZE values, so snapshot() only
+ * copies the chunk lists; a chunk shared with a snapshot is copied
+ * on the first write to it after the snapshot (copy-on-write).
+ * Dictionaries only grow as values are added, so snapshots share them,
+ * code map included; values no tuple holds anymore are dropped
+ * by compactDictionaries(), when the relation compacts the store.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class ColumnarTupleStore implements TupleStore {
+
+	/*
+	 * Int-packed columns store null as NULL_INT,
+	 * so that one int value always switches a column to dictionary encoding.
+	 */
+	private static final int NULL_INT = Integer.MIN_VALUE;
+
+	/*
+	 * Dictionary-encoded columns store null as NULL_CODE.
+	 */
+	private static final int NULL_CODE = -1;
+
+	/*
+	 * Returned by Dictionary.lookup() for values not in the dictionary.
+	 */
+	private static final int ABSENT_CODE = -2;
+
+	/*
+	 * Returned by parsePackedInt() for values that cannot be int-packed.
+	 */
+	private static final long NOT_PACKABLE = Long.MIN_VALUE;
+
+	/*
+	 * A dictionary-encoded column switches to plain strings once its
+	 * dictionary has more than MAX_DICTIONARY_SIZE values, and more than
+	 * one value per DICTIONARY_RATIO tuples.
+	 */
+	private static final int MAX_DICTIONARY_SIZE = 4096;
+	private static final int DICTIONARY_RATIO = 8;
+
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Private attributes for each instance of the ColumnarTupleStore object:
+	 *     numOfAttributes: number of columns;
+	 *
+	 *     size:            number of tuples stored;
+	 *
+	 *     columns:         one list of int chunks per attribute, holding
+	 *                      packed ints or dictionary codes; the value of
+	 *                      tuple i is in chunk i >> CHUNK_SHIFT of each column;
+	 *                      null for plain columns;
+	 *
+	 *     plainColumns:    one list of String chunks per plain column,
+	 *                      chunked as columns; null for other columns;
+	 *
+	 *     dictionaries:    the dictionary of each column,
+	 *                      null while the column is int-packed or plain;
+	 *
+	 *     chunkEpochs,
+	 *     epoch:           chunk i of the columns may only be written in place
+	 *                      if its epoch is the current one,
+	 *                      epoch moves on at each snapshot;
+	 *
+	 *     isSnapshot:      true for read-only snapshots.
+	 */
+	private final int numOfAttributes;
+	private int size = 0;
+	private final int[][][] columns;
+	private final String[][][] plainColumns;
+	private final Dictionary[] dictionaries;
+	private int[] chunkEpochs;
+	private int epoch = 0;
+	private final boolean isSnapshot;
+
+	/**
+	 * Distinct values of one dictionary-encoded column, by code.
+	 * Values and codes are only ever appended, never changed in place,
+	 * so snapshots share both, and skip the codes added after them.
+	 */
+	private static final class Dictionary {
+
+		private String[] values;
+		private int numOfValues;
+		private final ConcurrentHashMap <String, Integer> codes;
+
+		private Dictionary() {
+			this.values = new String[16];
+			this.numOfValues = 0;
+			this.codes = new ConcurrentHashMap <> ();
+		}
+
+		/**
+		 * Private constructor for snapshots, which share the values
+		 * and codes added so far.
+		 */
+		private Dictionary(Dictionary source) {
+			this.values = source.values;
+			this.numOfValues = source.numOfValues;
+			this.codes = source.codes;
+		}
+
+		private int encode(String value) {
+			Integer code = this.codes.get(value);
+			if(code != null) {
+				return code.intValue();
+			}
+
+			if(this.numOfValues == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.numOfValues * 2);
+			}
+			this.values[this.numOfValues] = value;
+			this.codes.put(value, this.numOfValues);
+			return this.numOfValues++;
+		}
+
+		private int lookup(String value) {
+			Integer code = this.codes.get(value);
+			return (code == null || code.intValue() >= this.numOfValues)
+					? ABSENT_CODE : code.intValue();
+		}
+
+		private String decode(int code) {
+			return (code == NULL_CODE) ? null : this.values[code];
+		}
+	}
+
+	public ColumnarTupleStore(int newNumOfAttributes) {
+		assert newNumOfAttributes > 0;
+
+		this.numOfAttributes = newNumOfAttributes;
+		this.columns = new int[newNumOfAttributes][4][];
+		this.plainColumns = new String[newNumOfAttributes][][];
+		this.dictionaries = new Dictionary[newNumOfAttributes];
+		this.chunkEpochs = new int[4];
+		this.isSnapshot = false;
+	}
+
+	/**
+	 * Private constructor for snapshots.
+	 */
+	private ColumnarTupleStore(ColumnarTupleStore source) {
+
+		this.numOfAttributes = source.numOfAttributes;
+		this.size = source.size;
+		this.columns = new int[source.numOfAttributes][][];
+		this.plainColumns = new String[source.numOfAttributes][][];
+		this.dictionaries = new Dictionary[source.numOfAttributes];
+
+		int numOfChunks = (source.size + CHUNK_MASK) >> CHUNK_SHIFT;
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+			if(source.plainColumns[attrIdx] != null) {
+				this.plainColumns[attrIdx] = Arrays.copyOf(source.plainColumns[attrIdx], numOfChunks);
+				continue;
+			}
+			this.columns[attrIdx] = Arrays.copyOf(source.columns[attrIdx], numOfChunks);
+			Dictionary dict = source.dictionaries[attrIdx];
+			this.dictionaries[attrIdx] = (dict == null) ? null : new Dictionary(dict);
+		}
+		this.chunkEpochs = null;
+		this.isSnapshot = true;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public int getNumOfAttributes() {
+		return this.numOfAttributes;
+	}
+
+	/**
+	 * Return whether a column is int-packed, rather than
+	 * dictionary-encoded or plain.
+	 *
+	 * @param attrIdx
+	 * @return isIntPacked
+	 */
+	public boolean isIntPacked(int attrIdx) {
+		return this.dictionaries[attrIdx] == null && this.plainColumns[attrIdx] == null;
+	}
+
+	/**
+	 * Return whether a column holds its strings directly.
+	 *
+	 * @param attrIdx
+	 * @return isPlain
+	 */
+	public boolean isPlain(int attrIdx) {
+		return this.plainColumns[attrIdx] != null;
+	}
+
+	/**
+	 * Return the number of distinct values stored for a column,
+	 * 0 for int-packed and plain columns.
+	 *
+	 * @param attrIdx
+	 * @return dictionarySize
+	 */
+	public int getDictionarySize(int attrIdx) {
+		Dictionary dict = this.dictionaries[attrIdx];
+		return (dict == null) ? 0 : dict.numOfValues;
+	}
+
+	@Override
+	public String[] getTuple(int tupleIdx) {
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+
+		String[] tuple = new String[this.numOfAttributes];
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+			tuple[attrIdx] = decodeValue(attrIdx, tupleIdx);
+		}
+		return tuple;
+	}
+
+	@Override
+	public String getValue(int tupleIdx, int attrIdx) {
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		return decodeValue(attrIdx, tupleIdx);
+	}
+
+	@Override
+	public void addTuple(String[] newTuple) {
+		assert !this.isSnapshot;
+		assert newTuple.length == this.numOfAttributes;
+
+		int chunkIdx = this.size >> CHUNK_SHIFT;
+		if(chunkIdx == this.chunkEpochs.length) {
+			for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+				if(this.plainColumns[attrIdx] != null) {
+					this.plainColumns[attrIdx] = Arrays.copyOf(this.plainColumns[attrIdx], chunkIdx * 2);
+				} else {
+					this.columns[attrIdx] = Arrays.copyOf(this.columns[attrIdx], chunkIdx * 2);
+				}
+			}
+			this.chunkEpochs = Arrays.copyOf(this.chunkEpochs, chunkIdx * 2);
+		}
+		if((this.size & CHUNK_MASK) == 0) {
+			for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+				if(this.plainColumns[attrIdx] != null) {
+					this.plainColumns[attrIdx][chunkIdx] = new String[CHUNK_SIZE];
+				} else {
+					this.columns[attrIdx][chunkIdx] = new int[CHUNK_SIZE];
+				}
+			}
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+
+		ensureWritable(chunkIdx);
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+			encodeValue(attrIdx, this.size, newTuple[attrIdx]);
+		}
+		this.size++;
+	}
+
+	@Override
+	public void setTuple(int tupleIdx, String[] updateTuple) {
+		assert !this.isSnapshot;
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		assert updateTuple.length == this.numOfAttributes;
+
+		ensureWritable(tupleIdx >> CHUNK_SHIFT);
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+			encodeValue(attrIdx, tupleIdx, updateTuple[attrIdx]);
+		}
+	}
+
+	/**
+	 * Copy the codes of the tuple, without decoding them.
+	 */
+	@Override
+	public void moveTuple(int fromIdx, int toIdx) {
+		assert !this.isSnapshot;
+		assert fromIdx >= 0 && fromIdx < this.size;
+		assert toIdx >= 0 && toIdx < this.size;
+
+		ensureWritable(toIdx >> CHUNK_SHIFT);
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+			String[][] plainColumn = this.plainColumns[attrIdx];
+			if(plainColumn != null) {
+				plainColumn[toIdx >> CHUNK_SHIFT][toIdx & CHUNK_MASK] =
+						plainColumn[fromIdx >> CHUNK_SHIFT][fromIdx & CHUNK_MASK];
+				continue;
+			}
+			int[][] column = this.columns[attrIdx];
+			column[toIdx >> CHUNK_SHIFT][toIdx & CHUNK_MASK] =
+					column[fromIdx >> CHUNK_SHIFT][fromIdx & CHUNK_MASK];
+		}
+	}
+
+	@Override
+	public void removeTuple(int tupleIdx) {
+		assert !this.isSnapshot;
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+
+		//Shift later values down, one chunk at a time.
+		int lastIdx = this.size - 1;
+		int lastChunkIdx = lastIdx >> CHUNK_SHIFT;
+		int fromPos = tupleIdx & CHUNK_MASK;
+
+		for(int chunkIdx = tupleIdx >> CHUNK_SHIFT; chunkIdx <= lastChunkIdx; chunkIdx++) {
+			ensureWritable(chunkIdx);
+			int chunkEnd = (chunkIdx == lastChunkIdx) ? (lastIdx & CHUNK_MASK) : CHUNK_MASK;
+
+			for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+				String[][] plainColumn = this.plainColumns[attrIdx];
+				if(plainColumn != null) {
+					String[] chunk = plainColumn[chunkIdx];
+					System.arraycopy(chunk, fromPos + 1, chunk, fromPos, chunkEnd - fromPos);
+					chunk[chunkEnd] = (chunkIdx < lastChunkIdx) ? plainColumn[chunkIdx + 1][0] : null;
+					continue;
+				}
+
+				int[] chunk = this.columns[attrIdx][chunkIdx];
+				System.arraycopy(chunk, fromPos + 1, chunk, fromPos, chunkEnd - fromPos);
+
+				//Carry the first value of the next chunk into this one.
+				if(chunkIdx < lastChunkIdx) {
+					chunk[CHUNK_MASK] = this.columns[attrIdx][chunkIdx + 1][0];
+				}
+			}
+			fromPos = 0;
+		}
+		this.size--;
+	}
+
+	@Override
+	public int[] findEqual(int attrIdx, String value) {
+		assert attrIdx >= 0 && attrIdx < this.numOfAttributes;
+
+		if(this.plainColumns[attrIdx] != null) {
+			return findEqualPlain(attrIdx, value);
+		}
+
+		//Translate the value once, then the scan only compares ints.
+		int target;
+		Dictionary dict = this.dictionaries[attrIdx];
+		if(dict == null) {
+			long packed = (value == null) ? NULL_INT : parsePackedInt(value);
+			if(packed == NOT_PACKABLE) {
+				return new int[0];
+			}
+			target = (int) packed;
+		} else {
+			target = (value == null) ? NULL_CODE : dict.lookup(value);
+			if(target == ABSENT_CODE) {
+				return new int[0];
+			}
+		}
+
+		int[][] column = this.columns[attrIdx];
+		int[] tupleIdxs = new int[16];
+		int matchCount = 0;
+
+		for(int chunkStart = 0; chunkStart < this.size; chunkStart += CHUNK_SIZE) {
+			int[] chunk = column[chunkStart >> CHUNK_SHIFT];
+			int posLimit = Math.min(CHUNK_SIZE, this.size - chunkStart);
+
+			for(int pos = 0; pos < posLimit; pos++) {
+				if(chunk[pos] == target) {
+					if(matchCount == tupleIdxs.length) {
+						tupleIdxs = Arrays.copyOf(tupleIdxs, matchCount * 2);
+					}
+					tupleIdxs[matchCount++] = chunkStart + pos;
+				}
+			}
+		}
+		return Arrays.copyOf(tupleIdxs, matchCount);
+	}
+
+	@Override
+	public TupleStore snapshot() {
+		if(this.isSnapshot) {
+			return this;
+		}
+
+		ColumnarTupleStore snapshot = new ColumnarTupleStore(this);
+		this.epoch++;
+		return snapshot;
+	}
+
+	/**
+	 * Drop the dictionary values left behind by updates and deletes.
+	 */
+	@Override
+	public void compact() {
+		compactDictionaries();
+	}
+
+	/**
+	 * Rebuild every dictionary from the values tuples currently hold,
+	 * dropping values left behind by updates and deletes.
+	 * Codes change, so this is a full pass over every encoded column.
+	 */
+	public void compactDictionaries() {
+		assert !this.isSnapshot;
+
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+
+			Dictionary oldDict = this.dictionaries[attrIdx];
+			if(oldDict == null) {
+				continue;
+			}
+
+			Dictionary newDict = new Dictionary();
+			for(int tmpIdx = 0; tmpIdx < this.size; tmpIdx++) {
+				int chunkIdx = tmpIdx >> CHUNK_SHIFT;
+				if((tmpIdx & CHUNK_MASK) == 0) {
+					ensureWritable(chunkIdx);
+				}
+
+				int[] chunk = this.columns[attrIdx][chunkIdx];
+				int code = chunk[tmpIdx & CHUNK_MASK];
+				if(code != NULL_CODE) {
+					chunk[tmpIdx & CHUNK_MASK] = newDict.encode(oldDict.values[code]);
+				}
+			}
+			this.dictionaries[attrIdx] = newDict;
+		}
+	}
+
+	/**
+	 * Helper method to copy chunk chunkIdx of every column
+	 * if it may be shared with a snapshot.
+	 *
+	 * @param chunkIdx
+	 */
+	private void ensureWritable(int chunkIdx) {
+
+		if(this.chunkEpochs[chunkIdx] == this.epoch) {
+			return;
+		}
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+			if(this.plainColumns[attrIdx] != null) {
+				this.plainColumns[attrIdx][chunkIdx] = this.plainColumns[attrIdx][chunkIdx].clone();
+			} else {
+				this.columns[attrIdx][chunkIdx] = this.columns[attrIdx][chunkIdx].clone();
+			}
+		}
+		this.chunkEpochs[chunkIdx] = this.epoch;
+	}
+
+	/**
+	 * Helper method for findEqual() on a plain column.
+	 *
+	 * @param attrIdx
+	 * @param value
+	 * @return tupleIdxs
+	 */
+	private int[] findEqualPlain(int attrIdx, String value) {
+
+		String[][] plainColumn = this.plainColumns[attrIdx];
+		int[] tupleIdxs = new int[16];
+		int matchCount = 0;
+
+		for(int chunkStart = 0; chunkStart < this.size; chunkStart += CHUNK_SIZE) {
+			String[] chunk = plainColumn[chunkStart >> CHUNK_SHIFT];
+			int posLimit = Math.min(CHUNK_SIZE, this.size - chunkStart);
+
+			for(int pos = 0; pos < posLimit; pos++) {
+				if(value == null ? chunk[pos] == null : value.equals(chunk[pos])) {
+					if(matchCount == tupleIdxs.length) {
+						tupleIdxs = Arrays.copyOf(tupleIdxs, matchCount * 2);
+					}
+					tupleIdxs[matchCount++] = chunkStart + pos;
+				}
+			}
+		}
+		return Arrays.copyOf(tupleIdxs, matchCount);
+	}
+
+	/**
+	 * Helper method to store one value into a column,
+	 * switching the column to dictionary encoding if it cannot be int-packed.
+	 *
+	 * @param attrIdx
+	 * @param tupleIdx
+	 * @param value
+	 *
+	 * @requires chunk tupleIdx >> CHUNK_SHIFT is writable
+	 */
+	private void encodeValue(int attrIdx, int tupleIdx, String value) {
+
+		String[][] plainColumn = this.plainColumns[attrIdx];
+		if(plainColumn != null) {
+			plainColumn[tupleIdx >> CHUNK_SHIFT][tupleIdx & CHUNK_MASK] = value;
+			return;
+		}
+
+		int[] chunk = this.columns[attrIdx][tupleIdx >> CHUNK_SHIFT];
+		Dictionary dict = this.dictionaries[attrIdx];
+		if(dict == null) {
+			long packed = (value == null) ? NULL_INT : parsePackedInt(value);
+			if(packed != NOT_PACKABLE) {
+				chunk[tupleIdx & CHUNK_MASK] = (int) packed;
+				return;
+			}
+			dict = switchToDictionary(attrIdx);
+		}
+
+		chunk[tupleIdx & CHUNK_MASK] = (value == null) ? NULL_CODE : dict.encode(value);
+		if(dict.numOfValues > MAX_DICTIONARY_SIZE
+				&& dict.numOfValues > this.size / DICTIONARY_RATIO) {
+			switchToPlain(attrIdx);
+		}
+	}
+
+	/**
+	 * Helper method to read one value from a column.
+	 *
+	 * @param attrIdx
+	 * @param tupleIdx
+	 * @return value
+	 */
+	private String decodeValue(int attrIdx, int tupleIdx) {
+
+		String[][] plainColumn = this.plainColumns[attrIdx];
+		if(plainColumn != null) {
+			return plainColumn[tupleIdx >> CHUNK_SHIFT][tupleIdx & CHUNK_MASK];
+		}
+
+		int stored = this.columns[attrIdx][tupleIdx >> CHUNK_SHIFT][tupleIdx & CHUNK_MASK];
+		Dictionary dict = this.dictionaries[attrIdx];
+		if(dict == null) {
+			return (stored == NULL_INT) ? null : Integer.toString(stored);
+		}
+		return dict.decode(stored);
+	}
+
+	/**
+	 * Helper method to re-encode an int-packed column with a dictionary.
+	 * Every chunk is rewritten, so chunks shared with snapshots are copied.
+	 *
+	 * @param attrIdx
+	 * @return dictionary
+	 */
+	private Dictionary switchToDictionary(int attrIdx) {
+
+		Dictionary dict = new Dictionary();
+		int[][] column = this.columns[attrIdx];
+		for(int chunkStart = 0; chunkStart < this.size; chunkStart += CHUNK_SIZE) {
+			int chunkIdx = chunkStart >> CHUNK_SHIFT;
+			ensureWritable(chunkIdx);
+
+			int[] chunk = column[chunkIdx];
+			int posLimit = Math.min(CHUNK_SIZE, this.size - chunkStart);
+			for(int pos = 0; pos < posLimit; pos++) {
+				int packed = chunk[pos];
+				chunk[pos] = (packed == NULL_INT) ? NULL_CODE : dict.encode(Integer.toString(packed));
+			}
+		}
+		this.dictionaries[attrIdx] = dict;
+		return dict;
+	}
+
+	/**
+	 * Helper method to decode a dictionary-encoded column into plain strings.
+	 * New chunks are made, so snapshots keep the codes and the dictionary.
+	 * Called while a tuple is being added, so chunks up to and including
+	 * the one of tuple size() are decoded.
+	 *
+	 * @param attrIdx
+	 */
+	private void switchToPlain(int attrIdx) {
+
+		int[][] column = this.columns[attrIdx];
+		Dictionary dict = this.dictionaries[attrIdx];
+		String[][] plainColumn = new String[column.length][];
+
+		for(int chunkIdx = 0; chunkIdx < column.length && column[chunkIdx] != null; chunkIdx++) {
+			int[] chunk = column[chunkIdx];
+			String[] plainChunk = new String[CHUNK_SIZE];
+			int posLimit = Math.min(CHUNK_SIZE, this.size + 1 - (chunkIdx << CHUNK_SHIFT));
+			for(int pos = 0; pos < posLimit; pos++) {
+				plainChunk[pos] = dict.decode(chunk[pos]);
+			}
+			plainColumn[chunkIdx] = plainChunk;
+		}
+
+		this.plainColumns[attrIdx] = plainColumn;
+		this.columns[attrIdx] = null;
+		this.dictionaries[attrIdx] = null;
+	}
+
+	/**
+	 * Helper method to parse a value that prints back exactly the same
+	 * from Integer.toString(), without creating any objects.
+	 *
+	 * @param value
+	 * @return packed
+	 *   The int value, or NOT_PACKABLE.
+	 */
+	private static long parsePackedInt(String value) {
+
+		int len = value.length();
+		if(len == 0 || len > 11) {
+			return NOT_PACKABLE;
+		}
+
+		int pos = 0;
+		boolean isNegative = value.charAt(0) == '-';
+		if(isNegative) {
+			pos = 1;
+			if(len == 1) {
+				return NOT_PACKABLE;
+			}
+		}
+
+		//Leading zeros and "-0" would not print back the same.
+		if(value.charAt(pos) == '0' && (isNegative || len > 1)) {
+			return NOT_PACKABLE;
+		}
+
+		long result = 0;
+		for(; pos < len; pos++) {
+			char digit = value.charAt(pos);
+			if(digit < '0' || digit > '9') {
+				return NOT_PACKABLE;
+			}
+			result = result * 10 + (digit - '0');
+		}
+		if(isNegative) {
+			result = -result;
+		}
+
+		//NULL_INT itself is reserved for null.
+		if(result <= NULL_INT || result > Integer.MAX_VALUE) {
+			return NOT_PACKABLE;
+		}
+		return result;
+	}
+}
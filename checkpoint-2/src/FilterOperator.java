@@ -0,0 +1,79 @@
+import java.util.function.Predicate;
+
+/**
+ * Selection: returns the tuples of its input that satisfy a predicate.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class FilterOperator implements Operator {
+
+	/**
+	 * Private attributes for each instance of the FilterOperator object:
+	 *     input:     the operator to filter;
+	 *
+	 *     predicate: true for the tuples to return.
+	 */
+	private final Operator input;
+	private final Predicate <String[]> predicate;
+
+	public FilterOperator(Operator newInput, Predicate <String[]> newPredicate) {
+		this.input = newInput;
+		this.predicate = newPredicate;
+	}
+
+	/**
+	 * Return a predicate true for tuples with the given value
+	 * of one attribute, compared with equals.
+	 *
+	 * @param attrIdx
+	 * @param value
+	 * @return predicate
+	 */
+	public static Predicate <String[]> equalTo(int attrIdx, String value) {
+		return tuple -> value == null ? tuple[attrIdx] == null : value.equals(tuple[attrIdx]);
+	}
+
+	/**
+	 * Return a predicate true for tuples with a value of one attribute
+	 * between low and high, both included, as OrderedIndex compares them.
+	 *
+	 * @param attrIdx
+	 * @param valueType
+	 * @param low
+	 *   The lowest value, or null for no lower bound.
+	 * @param high
+	 *   The highest value, or null for no upper bound.
+	 * @return predicate
+	 */
+	public static Predicate <String[]> inRange(int attrIdx, OrderedIndex.ValueType valueType,
+			String low, String high) {
+		return tuple -> OrderedIndex.isInRange(valueType, tuple[attrIdx], low, high);
+	}
+
+	@Override
+	public String[] getAttributeList() {
+		return this.input.getAttributeList();
+	}
+
+	@Override
+	public void open() {
+		this.input.open();
+	}
+
+	@Override
+	public String[] next() {
+
+		String[] tuple = this.input.next();
+		while(tuple != null && !this.predicate.test(tuple)) {
+			tuple = this.input.next();
+		}
+		return tuple;
+	}
+
+	@Override
+	public void close() {
+		this.input.close();
+	}
+}
@@ -0,0 +1,202 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Memory footprint report of the in-memory tuple layouts.
+ *
+ * Fills relations shaped like CUSTOMER, ANIME and STUDIO with generated
+ * values, once per layout (row, columnar, slab), and prints the heap
+ * each takes in bytes per tuple: the tuple store alone, and the whole
+ * relation with its primary key index.
+ * Heap is measured as the used heap after garbage collection,
+ * before and after filling, so run it with nothing else going on,
+ * and with a heap large enough for the largest relation.
+ *
+ * Run with: java -Xmx1g FootprintReport [numOfTuples]
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class FootprintReport {
+
+	private static final String[] CUSTOMER_ATTRIBUTES = {
+			"Username", "Password", "First_name", "Last_name",
+			"Email", "Creation_date", "Billing_info", "DOB"};
+	private static final String[] ANIME_ATTRIBUTES = {
+			"Title", "Description", "Genre", "Price", "Release_year"};
+	private static final String[] STUDIO_ATTRIBUTES = {
+			"Name", "Description", "Website", "Address"};
+	private static final String[] LAYOUTS = {"row", "columnar", "slab"};
+
+	/**
+	 * Generator of the i-th tuple of a relation, the same on each call.
+	 */
+	private interface TupleGenerator {
+		String[] createTuple(int tupleIdx, Random random);
+	}
+
+	public static void main(String[] args) {
+
+		int numOfTuples = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+
+		System.out.println("Footprint report: " + String.valueOf(numOfTuples)
+				+ " tuples per relation, bytes per tuple.");
+		System.out.println();
+		System.out.println("relation\tlayout\tpayload\tstore\trelation");
+
+		report("CUSTOMER", CUSTOMER_ATTRIBUTES, numOfTuples, FootprintReport::createCustomer);
+		report("ANIME", ANIME_ATTRIBUTES, numOfTuples, FootprintReport::createAnime);
+		report("STUDIO", STUDIO_ATTRIBUTES, numOfTuples, FootprintReport::createStudio);
+	}
+
+	/**
+	 * Helper method to print the footprint of one relation in each layout.
+	 *
+	 * @param name
+	 * @param attributeList
+	 * @param numOfTuples
+	 * @param generator
+	 */
+	private static void report(String name, String[] attributeList, int numOfTuples,
+			TupleGenerator generator) {
+
+		double payloadBytes = measurePayload(numOfTuples, generator);
+
+		for(String layout : LAYOUTS) {
+			IntFunction <TupleStore> newStore = layoutOf(layout);
+
+			//The store alone, then the store in a relation.
+			long usedBefore = usedHeap();
+			TupleStore store = newStore.apply(attributeList.length);
+			Random random = new Random(42);
+			for(int tupleIdx = 0; tupleIdx < numOfTuples; tupleIdx++) {
+				store.addTuple(generator.createTuple(tupleIdx, random));
+			}
+			long storeBytes = usedHeap() - usedBefore;
+			assert store.size() == numOfTuples;
+			store = null;
+
+			usedBefore = usedHeap();
+			Relation relation = new Relation(name, attributeList, 1,
+					newStore.apply(attributeList.length));
+			random = new Random(42);
+			for(int tupleIdx = 0; tupleIdx < numOfTuples; tupleIdx++) {
+				relation.insertNewTuple(generator.createTuple(tupleIdx, random));
+			}
+			long relationBytes = usedHeap() - usedBefore;
+			assert relation.getNumOfTuples() == numOfTuples;
+			relation = null;
+
+			System.out.println(name + "\t" + layout
+					+ "\t" + String.format("%.1f", payloadBytes)
+					+ "\t" + String.format("%.1f", (double) storeBytes / numOfTuples)
+					+ "\t" + String.format("%.1f", (double) relationBytes / numOfTuples));
+		}
+	}
+
+	/**
+	 * Helper method to return the average UTF-8 bytes of the values
+	 * of a tuple, the least any layout could take.
+	 *
+	 * @param numOfTuples
+	 * @param generator
+	 * @return payloadBytes
+	 */
+	private static double measurePayload(int numOfTuples, TupleGenerator generator) {
+
+		long payloadBytes = 0;
+		Random random = new Random(42);
+		for(int tupleIdx = 0; tupleIdx < numOfTuples; tupleIdx++) {
+			for(String value : generator.createTuple(tupleIdx, random)) {
+				payloadBytes += value.getBytes(StandardCharsets.UTF_8).length;
+			}
+		}
+		return (double) payloadBytes / numOfTuples;
+	}
+
+	/**
+	 * Helper method to return the constructor of a layout.
+	 *
+	 * @param layout
+	 * @return newStore
+	 */
+	private static IntFunction <TupleStore> layoutOf(String layout) {
+
+		switch(layout) {
+		case "columnar":
+			return ColumnarTupleStore::new;
+		case "slab":
+			return SlabTupleStore::new;
+		default:
+			return RowTupleStore::new;
+		}
+	}
+
+	/**
+	 * Helper method to return the used heap after garbage collection.
+	 *
+	 * @return usedBytes
+	 */
+	private static long usedHeap() {
+
+		Runtime runtime = Runtime.getRuntime();
+		long usedBytes = Long.MAX_VALUE;
+
+		//Collect until the used heap stops shrinking.
+		for(int round = 0; round < 10; round++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException iE) {
+				Thread.currentThread().interrupt();
+			}
+			long tmpUsedBytes = runtime.totalMemory() - runtime.freeMemory();
+			if(tmpUsedBytes >= usedBytes) {
+				break;
+			}
+			usedBytes = tmpUsedBytes;
+		}
+		return usedBytes;
+	}
+
+	private static String[] createCustomer(int tupleIdx, Random random) {
+
+		String username = "user" + String.valueOf(tupleIdx);
+		return new String[] {
+				username,
+				Long.toHexString(random.nextLong()),
+				"First" + String.valueOf(random.nextInt(500)),
+				"Last" + String.valueOf(random.nextInt(2000)),
+				username + "@example.com",
+				"2023-0" + String.valueOf(1 + random.nextInt(9)) + "-1"
+						+ String.valueOf(random.nextInt(10)),
+				String.valueOf(4000000000000000L + random.nextInt(100000000)),
+				String.valueOf(1960 + random.nextInt(50)) + "-0"
+						+ String.valueOf(1 + random.nextInt(9)) + "-2"
+						+ String.valueOf(random.nextInt(9))};
+	}
+
+	private static String[] createAnime(int tupleIdx, Random random) {
+
+		String title = "Anime " + String.valueOf(tupleIdx);
+		int priceCents = 500 + random.nextInt(2000);
+		return new String[] {
+				title,
+				"Description of " + title + ".",
+				"Genre " + String.valueOf(random.nextInt(12)),
+				String.format("$%d.%02d", priceCents / 100, priceCents % 100),
+				String.valueOf(1960 + random.nextInt(64))};
+	}
+
+	private static String[] createStudio(int tupleIdx, Random random) {
+
+		String name = "Studio " + String.valueOf(tupleIdx);
+		return new String[] {
+				name,
+				"Studio founded in " + String.valueOf(1960 + random.nextInt(64)) + ".",
+				"https://studio" + String.valueOf(tupleIdx) + ".example.jp",
+				String.valueOf(1 + random.nextInt(999)) + " Tokyo, Japan"};
+	}
+}
@@ -0,0 +1,134 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Inner equi-join of two inputs on one attribute of each.
+ *
+ * At open(), all tuples of the build input are read into a hash table
+ * on their join attribute; the probe input is then streamed, one tuple
+ * at a time, and joined with the build tuples of equal value.
+ * Build on the smaller input. Null values never match.
+ *
+ * Each returned tuple is a probe tuple followed by a build tuple,
+ * with the attributes of both, in that order.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class HashJoinOperator implements Operator {
+
+	/**
+	 * Private attributes for each instance of the HashJoinOperator object:
+	 *     probeInput,
+	 *     buildInput:     the streamed input and the hashed input;
+	 *
+	 *     probeAttrIdx,
+	 *     buildAttrIdx:   the join attribute of each;
+	 *
+	 *     attributeList:  the probe attributes, then the build attributes;
+	 *
+	 *     buildTable:     the build tuples by join value, null unless open;
+	 *
+	 *     probeTuple,
+	 *     matches,
+	 *     nextMatch:      the current probe tuple, its matching build tuples,
+	 *                     and the next of them to join with it.
+	 */
+	private final Operator probeInput;
+	private final Operator buildInput;
+	private final int probeAttrIdx;
+	private final int buildAttrIdx;
+	private final String[] attributeList;
+	private HashMap <String, List <String[]>> buildTable = null;
+	private String[] probeTuple = null;
+	private List <String[]> matches = null;
+	private int nextMatch = 0;
+
+	/**
+	 * @param newProbeInput
+	 * @param newBuildInput
+	 * @param newProbeAttrIdx
+	 * @param newBuildAttrIdx
+	 *
+	 * @requires newProbeAttrIdx is within newProbeInput.getAttributeList()
+	 *   and newBuildAttrIdx is within newBuildInput.getAttributeList()
+	 */
+	public HashJoinOperator(Operator newProbeInput, Operator newBuildInput,
+			int newProbeAttrIdx, int newBuildAttrIdx) {
+
+		String[] probeAttributes = newProbeInput.getAttributeList();
+		String[] buildAttributes = newBuildInput.getAttributeList();
+		assert newProbeAttrIdx >= 0 && newProbeAttrIdx < probeAttributes.length;
+		assert newBuildAttrIdx >= 0 && newBuildAttrIdx < buildAttributes.length;
+
+		this.probeInput = newProbeInput;
+		this.buildInput = newBuildInput;
+		this.probeAttrIdx = newProbeAttrIdx;
+		this.buildAttrIdx = newBuildAttrIdx;
+		this.attributeList = Arrays.copyOf(probeAttributes,
+				probeAttributes.length + buildAttributes.length);
+		System.arraycopy(buildAttributes, 0, this.attributeList,
+				probeAttributes.length, buildAttributes.length);
+	}
+
+	@Override
+	public String[] getAttributeList() {
+		return this.attributeList;
+	}
+
+	@Override
+	public void open() {
+
+		this.buildTable = new HashMap <> ();
+		this.buildInput.open();
+		try {
+			for(String[] tuple = this.buildInput.next(); tuple != null;
+					tuple = this.buildInput.next()) {
+				String value = tuple[this.buildAttrIdx];
+				if(value != null) {
+					this.buildTable.computeIfAbsent(value, tmpValue -> new ArrayList <> (1)).add(tuple);
+				}
+			}
+
+		} finally {
+			this.buildInput.close();
+		}
+
+		this.probeTuple = null;
+		this.matches = null;
+		this.probeInput.open();
+	}
+
+	@Override
+	public String[] next() {
+		assert this.buildTable != null;
+
+		//Next probe tuple with matches, once the current one is used up.
+		while(this.matches == null || this.nextMatch == this.matches.size()) {
+			this.probeTuple = this.probeInput.next();
+			if(this.probeTuple == null) {
+				this.matches = null;
+				return null;
+			}
+			String value = this.probeTuple[this.probeAttrIdx];
+			this.matches = (value == null) ? null : this.buildTable.get(value);
+			this.nextMatch = 0;
+		}
+
+		String[] buildTuple = this.matches.get(this.nextMatch++);
+		String[] joined = Arrays.copyOf(this.probeTuple, this.attributeList.length);
+		System.arraycopy(buildTuple, 0, joined, this.probeTuple.length, buildTuple.length);
+		return joined;
+	}
+
+	@Override
+	public void close() {
+		this.buildTable = null;
+		this.probeTuple = null;
+		this.matches = null;
+		this.probeInput.close();
+	}
+}
@@ -0,0 +1,366 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lock manager for transactions over Relations.
+ *
+ * Locks are hierarchical, in the usual IS/IX/S/X modes: a transaction
+ * takes S or X on a whole relation, or an intention lock (IS, IX) on the
+ * relation and then S or X on single tuples of it. Two transactions
+ * conflict only where their modes are incompatible, so writers of
+ * different tuples of one relation run side by side, while a whole
+ * relation scan (S) waits for every writer of the relation (IX).
+ * Which resources nest in which is up to the caller, see Transaction;
+ * here a resource is any object with equals and hashCode.
+ *
+ * A transaction asking for a mode weaker than one it holds gets it at
+ * once; one asking for a stronger mode is upgraded in place, ahead of
+ * transactions waiting for new locks. Otherwise requests are granted in
+ * the order they come, so a stream of readers cannot starve a writer.
+ *
+ * Deadlocks are found when a transaction would wait: if following the
+ * transactions it waits for, and the ones they wait for, leads back to it,
+ * it is chosen as the victim and gets a DeadlockException, and must abort
+ * to let the others go on.
+ *
+ * All state is guarded by the manager's monitor; waiting transactions
+ * wait on it and are woken by every release and grant.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class LockManager {
+
+	/**
+	 * Lock modes, weakest first.
+	 */
+	public enum Mode {
+		IS, IX, S, X;
+
+		/*
+		 * COMPATIBLE[a][b]: one transaction may hold a while another holds b.
+		 */
+		private static final boolean[][] COMPATIBLE = {
+				{true, true, true, false},
+				{true, true, false, false},
+				{true, false, true, false},
+				{false, false, false, false}};
+
+		public boolean isCompatibleWith(Mode other) {
+			return COMPATIBLE[this.ordinal()][other.ordinal()];
+		}
+
+		/**
+		 * Return true if holding this mode allows all that other allows.
+		 *
+		 * @param other
+		 * @return covers
+		 */
+		public boolean covers(Mode other) {
+			return this == other || this == X || (other == IS && this != IS);
+		}
+
+		/**
+		 * Return the weakest mode covering both this and other,
+		 * for upgrades; there is no SIX mode, so S and IX give X.
+		 *
+		 * @param other
+		 * @return combined
+		 */
+		public Mode combine(Mode other) {
+			if(this.covers(other)) {
+				return this;
+			}
+			return other.covers(this) ? other : X;
+		}
+	}
+
+	/**
+	 * Thrown to the transaction chosen to break a deadlock.
+	 * The transaction holds all the locks it had, and must abort.
+	 */
+	public static class DeadlockException extends IllegalStateException {
+
+		private static final long serialVersionUID = 1L;
+
+		public DeadlockException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Holders and waiting requests of one resource.
+	 */
+	private static final class LockState {
+
+		private final HashMap <Transaction, Mode> holders = new HashMap <> ();
+		private final ArrayDeque <Request> waiters = new ArrayDeque <> ();
+	}
+
+	/**
+	 * A waiting request: the mode a transaction wants on a resource,
+	 * including any mode it already holds there.
+	 */
+	private static final class Request {
+
+		private final Transaction transaction;
+		private final Mode mode;
+		private final LockState state;
+		private final boolean isUpgrade;
+
+		private Request(Transaction newTransaction, Mode newMode, LockState newState,
+				boolean newIsUpgrade) {
+			this.transaction = newTransaction;
+			this.mode = newMode;
+			this.state = newState;
+			this.isUpgrade = newIsUpgrade;
+		}
+	}
+
+	/**
+	 * Private attributes for each instance of the LockManager object:
+	 *     locks:      the lock state of each resource held or waited for;
+	 *
+	 *     heldResources: the resources each transaction holds a lock on;
+	 *
+	 *     waiting:    the request each waiting transaction waits on;
+	 *
+	 *     numOfWaits,
+	 *     numOfDeadlocks: requests that had to wait, and deadlock victims,
+	 *                 since the manager was created.
+	 */
+	private final HashMap <Object, LockState> locks = new HashMap <> ();
+	private final HashMap <Transaction, List <Object>> heldResources = new HashMap <> ();
+	private final HashMap <Transaction, Request> waiting = new HashMap <> ();
+	private long numOfWaits = 0;
+	private long numOfDeadlocks = 0;
+
+	/**
+	 * Lock a resource for a transaction in the given mode,
+	 * waiting while other transactions hold conflicting locks on it.
+	 *
+	 * @param transaction
+	 * @param resource
+	 * @param mode
+	 * @throws DeadlockException
+	 *   If waiting would deadlock; the transaction must abort.
+	 */
+	public synchronized void lock(Transaction transaction, Object resource, Mode mode) {
+
+		LockState state = this.locks.get(resource);
+		if(state == null) {
+			state = new LockState();
+			this.locks.put(resource, state);
+		}
+
+		Mode heldMode = state.holders.get(transaction);
+		if(heldMode != null && heldMode.covers(mode)) {
+			return;
+		}
+		Mode wantedMode = (heldMode == null) ? mode : heldMode.combine(mode);
+
+		//Granted at once if nobody waits and no holder conflicts.
+		if(state.waiters.isEmpty() && isCompatible(state, transaction, wantedMode)) {
+			this.grant(transaction, resource, state, wantedMode, heldMode == null);
+			return;
+		}
+
+		//Upgrades wait ahead of new locks, behind earlier upgrades.
+		Request request = new Request(transaction, wantedMode, state, heldMode != null);
+		if(request.isUpgrade) {
+			List <Request> newLocks = new ArrayList <> ();
+			while(!state.waiters.isEmpty() && !state.waiters.peekLast().isUpgrade) {
+				newLocks.add(0, state.waiters.pollLast());
+			}
+			state.waiters.addLast(request);
+			state.waiters.addAll(newLocks);
+		} else {
+			state.waiters.addLast(request);
+		}
+		this.waiting.put(transaction, request);
+		this.numOfWaits++;
+
+		boolean isGranted = false;
+		try {
+			while(state.waiters.peekFirst() != request
+					|| !isCompatible(state, transaction, wantedMode)) {
+				if(this.isDeadlocked(transaction)) {
+					this.numOfDeadlocks++;
+					throw new DeadlockException("Transaction " + String.valueOf(transaction.getId())
+							+ " would deadlock waiting for " + wantedMode + " on " + resource + ".");
+				}
+				this.wait();
+			}
+			isGranted = true;
+
+		} catch (InterruptedException iE) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for a lock on " + resource + ".");
+
+		} finally {
+			state.waiters.remove(request);
+			this.waiting.remove(transaction);
+			if(isGranted) {
+				this.grant(transaction, resource, state, wantedMode, heldMode == null);
+			} else {
+				this.dropIfUnused(resource, state);
+			}
+			//The next waiter may go now.
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * Return the mode a transaction holds on a resource.
+	 *
+	 * @param transaction
+	 * @param resource
+	 * @return mode
+	 *   The mode, or null if it holds no lock on the resource.
+	 */
+	public synchronized Mode getHeldMode(Transaction transaction, Object resource) {
+		LockState state = this.locks.get(resource);
+		return (state == null) ? null : state.holders.get(transaction);
+	}
+
+	/**
+	 * Release all locks of a transaction, once it commits or aborts.
+	 *
+	 * @param transaction
+	 */
+	public synchronized void releaseAll(Transaction transaction) {
+
+		List <Object> resources = this.heldResources.remove(transaction);
+		if(resources == null) {
+			return;
+		}
+		for(Object resource : resources) {
+			LockState state = this.locks.get(resource);
+			state.holders.remove(transaction);
+			this.dropIfUnused(resource, state);
+		}
+		this.notifyAll();
+	}
+
+	/**
+	 * Return the number of lock requests that had to wait.
+	 *
+	 * @return numOfWaits
+	 */
+	public synchronized long getNumOfWaits() {
+		return this.numOfWaits;
+	}
+
+	/**
+	 * Return the number of transactions chosen to break a deadlock.
+	 *
+	 * @return numOfDeadlocks
+	 */
+	public synchronized long getNumOfDeadlocks() {
+		return this.numOfDeadlocks;
+	}
+
+	/**
+	 * Helper method to record a granted lock.
+	 */
+	private void grant(Transaction transaction, Object resource, LockState state,
+			Mode mode, boolean isNewResource) {
+
+		state.holders.put(transaction, mode);
+		if(isNewResource) {
+			List <Object> resources = this.heldResources.get(transaction);
+			if(resources == null) {
+				resources = new ArrayList <> ();
+				this.heldResources.put(transaction, resources);
+			}
+			resources.add(resource);
+		}
+	}
+
+	/**
+	 * Helper method to forget the state of a resource nobody holds or waits for.
+	 */
+	private void dropIfUnused(Object resource, LockState state) {
+		if(state.holders.isEmpty() && state.waiters.isEmpty()) {
+			this.locks.remove(resource);
+		}
+	}
+
+	/**
+	 * Helper method to check a mode is compatible with
+	 * the modes all other transactions hold on a resource.
+	 */
+	private static boolean isCompatible(LockState state, Transaction transaction, Mode mode) {
+
+		for(Map.Entry <Transaction, Mode> holder : state.holders.entrySet()) {
+			if(holder.getKey() != transaction && !holder.getValue().isCompatibleWith(mode)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Helper method to check whether a waiting transaction waits,
+	 * through other waiting transactions, for itself.
+	 *
+	 * @param transaction
+	 * @return deadlocked
+	 */
+	private boolean isDeadlocked(Transaction transaction) {
+
+		Set <Transaction> visited = new HashSet <> ();
+		ArrayDeque <Transaction> toVisit = new ArrayDeque <> ();
+		toVisit.add(transaction);
+
+		while(!toVisit.isEmpty()) {
+			Request request = this.waiting.get(toVisit.poll());
+			if(request == null) {
+				continue;
+			}
+			for(Transaction blocker : blockersOf(request)) {
+				if(blocker == transaction) {
+					return true;
+				}
+				if(visited.add(blocker)) {
+					toVisit.add(blocker);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Helper method to return the transactions a request waits for:
+	 * holders of conflicting modes, and all requests ahead of it.
+	 *
+	 * @param request
+	 * @return blockers
+	 */
+	private static List <Transaction> blockersOf(Request request) {
+
+		List <Transaction> blockers = new ArrayList <> ();
+		for(Map.Entry <Transaction, Mode> holder : request.state.holders.entrySet()) {
+			if(holder.getKey() != request.transaction
+					&& !holder.getValue().isCompatibleWith(request.mode)) {
+				blockers.add(holder.getKey());
+			}
+		}
+		Iterator <Request> ahead = request.state.waiters.iterator();
+		while(ahead.hasNext()) {
+			Request aheadRequest = ahead.next();
+			if(aheadRequest == request) {
+				break;
+			}
+			blockers.add(aheadRequest.transaction);
+		}
+		return blockers;
+	}
+}
@@ -1,12 +1,30 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 public class MainApplication {
 
+	/*
+	 * Write-ahead log of the relations kept in a data directory,
+	 * null if they are in memory only or in memory-mapped files.
+	 */
+	private static WriteAheadLog relationLog = null;
+
 	public static void main(String[] args) {
 
+		//Optional first argument: directory to keep relations in,
+		//otherwise relations are in memory only.
+		//Optional second argument "mapped": keep them in memory-mapped files,
+		//instead of in memory with a write-ahead log.
+		String dataDir = (args.length > 0) ? args[0] : null;
+		boolean isMapped = args.length > 1 && args[1].equals("mapped");
+		
 		//Declare and seed (add data to) relations.
-		Relation [] allRelations = initAllRelations();
+		Relation [] allRelations = initAllRelations(
+				isMapped ? dataDir : null, 
+				isMapped ? null : dataDir);
 		
 		//Remember to close input stream at the very end.
 		Scanner consoleIn = new Scanner(System.in);
@@ -26,6 +44,7 @@ public class MainApplication {
 			int mainMenuInsertOption = 0;
 			int mainMenuSearchOption = 1;
 			int mainMenuPrintAllOption = 2;
+			int mainMenuRangeSearchOption = 3;
 			
 			if(userSelection == mainMenuInsertOption) {
 				
@@ -54,12 +73,19 @@ public class MainApplication {
 				
 				String [] newTuple = 
 						Relation.createNewTuple(tmpR, consoleIn);
-				tmpR.insertNewTuple(newTuple);
 				
-				System.out.println("New tuple successfully added to "
-						+ tmpR.getName()
-						+ ".\n\nPrinting all existing tuples:\n");
-				tmpR.printAllTuples();
+				//Keys are unique, a duplicate tuple is not added.
+				if(tmpR.insertNewTuple(newTuple) >= 0) {
+					System.out.println("New tuple successfully added to "
+							+ tmpR.getName()
+							+ ".\n\nPrinting all existing tuples:\n");
+					tmpR.printAllTuples();
+				} else {
+					System.out.println("Unfortunately, a tuple with the same"
+							+ " key attribute values already exists in "
+							+ tmpR.getName()
+							+ ".\n");
+				}
 				
 				System.out.println("Returning to Main Menu.\n");
 				
@@ -103,44 +129,20 @@ public class MainApplication {
 					userKeyInput[tmpIdx] = consoleIn.nextLine();
 				}
 				
-				//Search and return first matching tuple using user keys.
-				String [] searchResult = null;
-				ArrayList <String[]> tmpRAllTuples = tmpR.getAllTuples();
-				
-				//markingIdx indexes which tuple of the relation.
-				int markingIdx = 0;
-				while(markingIdx < tmpRAllTuples.size()) {
-					
-					boolean matchFound = true;
-					String [] tmpTuple = tmpRAllTuples.get(markingIdx);
-					
-					//tmpIdx indexes which attribute of the tuple.
-					for(int tmpIdx = 0; tmpIdx < tmpRNumOfKeys; tmpIdx++) {
-						//Short-circuit to save time.
-						if(!userKeyInput[tmpIdx].equals(tmpTuple[tmpIdx])) {
-							matchFound = false;
-							break;
-						}
-					}
-					
-					//Only return the first match.
-					if(matchFound) {
-						searchResult = tmpTuple;
-						break;
-					}
-					
-					markingIdx++;
-				}
+				//Look up the matching tuple using user keys,
+				//keys are unique so there is at most one.
+				//markingId is the tuple ID of the match.
+				int markingId = tmpR.findTupleId(userKeyInput);
 				
 				//If a match has been found, continue to update or delete.
-				if (searchResult != null) {
+				if (markingId >= 0) {
 					
 					//Confirm tuple found and print.
 					System.out.println();
 					System.out.println("The tuple from relation "
 							+ tmpR.getName()
 							+ " that matches your search is:\n");
-					tmpR.printOneTuple(markingIdx);
+					tmpR.printOneTuple(markingId);
 					
 					//Continue to select update, delete, or return to main menu.
 					System.out.println();
@@ -163,13 +165,18 @@ public class MainApplication {
 						
 						String [] overwriteTuple = 
 								Relation.createNewTuple(tmpR, consoleIn);
-						tmpR.updateExistingTuple(overwriteTuple, markingIdx);
 						
-						System.out.println("Your selected tuple "
-								+ "has been successfully updated.");
+						if(tmpR.updateExistingTuple(overwriteTuple, markingId)) {
+							System.out.println("Your selected tuple "
+									+ "has been successfully updated.");
+						} else {
+							System.out.println("Unfortunately, another tuple already"
+									+ " has the updated key attribute values,"
+									+ " your selected tuple is unchanged.");
+						}
 						
 					} else if (userTupleDecision == 1) {
-						tmpR.deleteExistingTuple(markingIdx);
+						tmpR.deleteExistingTuple(markingId);
 						System.out.println();
 						System.out.println("Your selected tuple "
 								+ "has been successfully deleted.");
@@ -210,6 +217,57 @@ public class MainApplication {
 				
 				System.out.println("Returning to Main Menu.\n");
 				
+			} else if (userSelection == mainMenuRangeSearchOption) {
+				
+				/**
+                 * Option 3: search for tuples by a range of attribute values.
+                 * 
+                 * First,   select the relation to search from;
+                 * Second,  select the attribute and obtain the range;
+                 * Third,   search, using the attribute's index if it has one;
+                 * Fourth,  print all matching tuples;
+                 * Finally, return to main menu.
+                 */
+				
+				System.out.println();
+				System.out.println("Select Relation to Search From");
+				
+				printAllRelationNames(allRelations);
+				int userRIdx = consoleIn.nextInt();
+				consoleIn.nextLine();
+				
+				Relation tmpR = allRelations[userRIdx];
+				
+				System.out.println();
+				tmpR.printAllAttributes();
+				System.out.print("Enter the index of the attribute to search by: ");
+				int userAttrIdx = consoleIn.nextInt();
+				consoleIn.nextLine();
+				
+				//Empty input means no bound on that side.
+				System.out.print("Enter the lowest value (or nothing for no lowest value): ");
+				String userLow = consoleIn.nextLine();
+				System.out.print("Enter the highest value (or nothing for no highest value): ");
+				String userHigh = consoleIn.nextLine();
+				
+				int [] matchingIds = tmpR.findTupleIdsInRange(userAttrIdx, 
+						userLow.isEmpty() ? null : userLow, 
+						userHigh.isEmpty() ? null : userHigh);
+				
+				System.out.println();
+				System.out.println(String.valueOf(matchingIds.length)
+						+ " tuple(s) from relation "
+						+ tmpR.getName()
+						+ " match your search"
+						+ (tmpR.getOrderedIndex(userAttrIdx) != null ? " (indexed)" : "")
+						+ ":\n");
+				for(int tmpIdx = 0; tmpIdx < matchingIds.length; tmpIdx++) {
+					System.out.println("Tuple " + String.valueOf(matchingIds[tmpIdx]));
+					tmpR.printOneTuple(matchingIds[tmpIdx]);
+				}
+				
+				System.out.println("Returning to Main Menu.\n");
+				
 			} else break;
 		}
 		
@@ -218,6 +276,23 @@ public class MainApplication {
 		String exitMessage = "Thank you for using Team SHRX's Java frontend."
 				+ " Goodbye.";
 		
+		//Release relation files, persistent changes are forced to disk;
+		//a last checkpoint saves replaying the log on the next start.
+		if(relationLog != null) {
+			try {
+				relationLog.close();
+			} catch (IOException iOE) {
+				System.out.println("Err: Last checkpoint failed,"
+						+ " the log will be replayed on the next start.");
+				System.out.println(iOE.getMessage());
+			}
+		}
+		for(int tmpIdx = 0; tmpIdx < allRelations.length; tmpIdx++) {
+			if(allRelations[tmpIdx] != null) {
+				allRelations[tmpIdx].close();
+			}
+		}
+		
 		System.out.println();
 		System.out.println(exitMessage);
 		consoleIn.close();
@@ -226,13 +301,19 @@ public class MainApplication {
 
 	/**
 	 * Create an array of 14 Relation instances; and populate the first 3.
-	 * Also populate 3 tuples per each of the 3 relations
+	 * Also populate 3 tuples per each of the 3 relations,
+	 * unless they are kept in a directory and already have tuples.
 	 * 
+	 * @param mappedDir
+	 *   Directory to keep relations in memory-mapped files in, or null.
+	 * @param logDir
+	 *   Directory to keep the write-ahead log and checkpoints
+	 *   of the relations in, or null.
 	 * @return allRelations
 	 *   An size 14 array of Relation objects, 
 	 *   first 3 initialized, rest null.
 	 */
-	private static Relation[] initAllRelations() {
+	private static Relation[] initAllRelations(String mappedDir, String logDir) {
 		
 		int numOfRelations = 14;
 		Relation[] allRelations = new Relation[numOfRelations];
@@ -250,10 +331,14 @@ public class MainApplication {
 				"Billing_info", 
 				"DOB"};
 		int customerNumOfPA = 1;
+		
+		//Slab layout: short values cost their UTF-8 bytes, not a String each.
 		Relation customerRelation = new Relation (
 				"CUSTOMER", 
 				customerAttributeList, 
-				customerNumOfPA);
+				customerNumOfPA,
+				openTupleStore(mappedDir, "CUSTOMER", 
+						new SlabTupleStore(customerAttributeList.length)));
 		
 		String [] customer1AttributeList = {
 				"GreaterUsername",
@@ -283,10 +368,6 @@ public class MainApplication {
 				"SomeBankIGuess",
 				"20010214"};
 		
-		customerRelation.insertNewTuple(customer1AttributeList);
-		customerRelation.insertNewTuple(customer2AttributeList);
-		customerRelation.insertNewTuple(customer3AttributeList);
-		
 		allRelations[idxCount] = customerRelation;
 		idxCount++;
 		
@@ -298,10 +379,14 @@ public class MainApplication {
 				"Price", 
 				"Release_year"};
 		int animeNumOfPA = 1;
+		
+		//Columnar layout: genres repeat and years pack into ints.
 		Relation animeRelation = new Relation (
 				"ANIME", 
 				animeAttributeList, 
-				animeNumOfPA);
+				animeNumOfPA,
+				openTupleStore(mappedDir, "ANIME", 
+						new ColumnarTupleStore(animeAttributeList.length)));
 		
 		String [] anime1AttributeList = {
 				"Madoka Magica",
@@ -322,9 +407,12 @@ public class MainApplication {
 				"$12.85",
 				"2014"};
 		
-		animeRelation.insertNewTuple(anime1AttributeList);
-		animeRelation.insertNewTuple(anime2AttributeList);
-		animeRelation.insertNewTuple(anime3AttributeList);
+		//Ordered indexes for price and release year range searches.
+		animeRelation.createOrderedIndex(3, OrderedIndex.ValueType.NUMERIC);
+		animeRelation.createOrderedIndex(4, OrderedIndex.ValueType.NUMERIC);
+		
+		//Bitmap index for genre filters and counts, a handful of genres.
+		animeRelation.createBitmapIndex(2);
 		
 		allRelations[idxCount] = animeRelation;
 		idxCount++;
@@ -336,10 +424,14 @@ public class MainApplication {
 				"Website", 
 				"Address"};
 		int studioNumOfPA = 1;
+		
+		//Slab layout, as for CUSTOMER.
 		Relation studioRelation = new Relation (
 				"STUDIO", 
 				studioAttributeList, 
-				studioNumOfPA);
+				studioNumOfPA,
+				openTupleStore(mappedDir, "STUDIO", 
+						new SlabTupleStore(studioAttributeList.length)));
 				
 		String [] studio1AttributeList = {
 				"Shaft",
@@ -357,13 +449,32 @@ public class MainApplication {
 				"http://www.pa-works.jp/en/", 
 				"Nanto, Toyama, Japan"};
 		
-		studioRelation.insertNewTuple(studio1AttributeList);
-		studioRelation.insertNewTuple(studio2AttributeList);
-		studioRelation.insertNewTuple(studio3AttributeList);
-		
 		allRelations[idxCount] = studioRelation;
 		idxCount++;
 		
+		//Load kept tuples before seeding, so seeds are only added once.
+		if(logDir != null) {
+			relationLog = openWriteAheadLog(logDir, allRelations);
+		}
+		
+		if(customerRelation.getNumOfTuples() == 0) {
+			customerRelation.insertNewTuple(customer1AttributeList);
+			customerRelation.insertNewTuple(customer2AttributeList);
+			customerRelation.insertNewTuple(customer3AttributeList);
+		}
+		
+		if(animeRelation.getNumOfTuples() == 0) {
+			animeRelation.insertNewTuple(anime1AttributeList);
+			animeRelation.insertNewTuple(anime2AttributeList);
+			animeRelation.insertNewTuple(anime3AttributeList);
+		}
+		
+		if(studioRelation.getNumOfTuples() == 0) {
+			studioRelation.insertNewTuple(studio1AttributeList);
+			studioRelation.insertNewTuple(studio2AttributeList);
+			studioRelation.insertNewTuple(studio3AttributeList);
+		}
+		
 		//Beyond prototyping: add other relations later, pad null for now.
 		while(idxCount < numOfRelations) {
 			allRelations[idxCount] = null;
@@ -373,6 +484,72 @@ public class MainApplication {
 		return allRelations;
 	}
 
+	/**
+	 * Recover the relations kept in logDir, from the last checkpoint
+	 * and the log after it, then log all their later changes.
+	 * The program stops if the files cannot be read, rather than
+	 * go on without the kept tuples.
+	 * 
+	 * @param logDir
+	 * @param allRelations
+	 *   The relations to recover, still empty.
+	 * @return log
+	 */
+	private static WriteAheadLog openWriteAheadLog(String logDir, Relation[] allRelations) {
+		
+		//Check for a checkpoint every 10 s, take one once the log reaches 1 MB.
+		long checkpointMillis = 10000;
+		long checkpointBytes = 1 << 20;
+		
+		try {
+			return WriteAheadLog.open(Paths.get(logDir), allRelations, 
+					true, checkpointMillis, checkpointBytes);
+			
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Err: Cannot recover relations from "
+					+ logDir
+					+ ", stopping.");
+			System.out.println(e.getMessage());
+			System.exit(1);
+			return null;
+		}
+	}
+
+	/**
+	 * Open the memory-mapped store of a relation kept in dataDir,
+	 * or return the given in-memory store if there is no dataDir.
+	 * Falls back to the in-memory store if the files cannot be opened.
+	 * 
+	 * @param dataDir
+	 *   Directory to keep relations in, or null.
+	 * @param relationName
+	 *   Name of the relation, also the base name of its files.
+	 * @param inMemoryStore
+	 *   The store to use without dataDir, empty.
+	 * @return store
+	 */
+	private static TupleStore openTupleStore(String dataDir, 
+			String relationName, TupleStore inMemoryStore) {
+		
+		if(dataDir == null) {
+			return inMemoryStore;
+		}
+		
+		try {
+			Path dataPath = Paths.get(dataDir);
+			Files.createDirectories(dataPath);
+			return MappedTupleStore.open(dataPath.resolve(relationName), 
+					inMemoryStore.getNumOfAttributes());
+			
+		} catch (IOException iOE) {
+			System.out.println("Err: Cannot open the files of relation "
+					+ relationName
+					+ ", changes will not be kept.");
+			System.out.println(iOE.getMessage());
+			return inMemoryStore;
+		}
+	}
+
 	/**
 	 * Print front-end main menu options,
 	 * and prompt for user selection.
@@ -384,7 +561,8 @@ public class MainApplication {
 		System.out.println("0. Add new record.");
 		System.out.println("1. Search existing record.");
 		System.out.println("2. Print all relations and tuples.");
-		System.out.println("3. Exit.\n");
+		System.out.println("3. Search records by a range of attribute values.");
+		System.out.println("4. Exit.\n");
 		System.out.print("Enter your selection: ");
 	}
 	
@@ -0,0 +1,946 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Persistent layout of the tuples of a Relation, kept in two
+ * memory-mapped files instead of on the Java heap:
+ *     <base>.dat: the tuple records, appended one after another;
+ *     <base>.idx: the record offset of each tuple, by tuple index.
+ *
+ * Each record is a varint body length followed by, for each attribute,
+ * a varint of (UTF-8 byte length + 1), 0 for null, and the UTF-8 bytes.
+ * Opening a store only maps the files, it reads no records, so startup
+ * time does not depend on the size of the relation; record pages are
+ * loaded lazily by the OS page cache as tuples are read.
+ *
+ * The data file is mapped in segments of at most SEGMENT_SIZE bytes,
+ * records never span two segments. Updates append a new record and
+ * leave the old one behind as garbage. Removing a tuple shifts the
+ * offsets after it in the index file, as the other layouts do;
+ * clearing one stores offset CLEARED_POS, so it stays deleted on reopening.
+ * compact() copies the live records to new files once the data file has
+ * doubled since the last copy. Mapped files are never renamed or replaced
+ * (Windows does not allow it), each copy is a new generation instead:
+ *     <base>.<n>.dat/.idx: the files of generation n, <base>.dat/.idx for 0;
+ *     <base>.gen:          the current generation, replaced atomically
+ *                          once a copy is complete.
+ * open() deletes the files of other generations, left behind
+ * by a crash or by a copy whose old files were still mapped.
+ *
+ * Changes reach the files through the OS page cache;
+ * call flush() to force them to disk.
+ *
+ * Records are never changed once written, so snapshots share the mapped
+ * data file. Their record offsets are kept on the heap (8 bytes per tuple),
+ * in chunks of CHUNK_SIZE read from the index file: the store keeps the
+ * chunks it has read and shares them with its snapshots, and a write drops
+ * the chunk it changes, so the next snapshot only reads that chunk again.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class MappedTupleStore implements TupleStore {
+
+	/*
+	 * File header: magic, format version, number of attributes,
+	 * then the tuple count (index file) or the data end offset (data file).
+	 */
+	private static final int MAGIC = 0x53485258;
+	private static final int FORMAT_VERSION = 1;
+	private static final int IDX_HEADER_SIZE = 16;
+	private static final int DAT_HEADER_SIZE = 32;
+	private static final int DAT_END_POS = 16;
+	private static final int DAT_COMPACTED_POS = 24;
+
+	/*
+	 * The most bytes mapped by one MappedByteBuffer of the data file.
+	 */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private static final int INITIAL_MAPPED_SIZE = 1 << 16;
+
+	/*
+	 * Record offset of a cleared tuple.
+	 */
+	private static final long CLEARED_POS = -1L;
+
+	/*
+	 * Number of record offsets in a chunk shared with snapshots.
+	 */
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Private attributes for each instance of the MappedTupleStore object:
+	 *     numOfAttributes: tuple length;
+	 *
+	 *     basePath:        the path of the files without extension,
+	 *                      null for snapshots;
+	 *
+	 *     generation:      the generation of the files in use;
+	 *
+	 *     size:            number of tuples stored;
+	 *
+	 *     datChannel,
+	 *     segments:        the data file and its mapped segments,
+	 *                      segment i starts at byte i * SEGMENT_SIZE;
+	 *
+	 *     dataEnd:         file position the next record is appended at;
+	 *
+	 *     idxChannel,
+	 *     idxBuffer:       the index file and its mapping;
+	 *
+	 *     recordBuffer:    reused to encode records before they are copied;
+	 *
+	 *     offsetChunks:    the offset of tuple i is offsetChunks[i >> CHUNK_SHIFT]
+	 *                      [i & CHUNK_MASK]; for the store, chunks read for
+	 *                      snapshots so far, null if not read or written since,
+	 *                      never written in place as snapshots share them;
+	 *
+	 *     isSnapshot:      true for read-only snapshots.
+	 */
+	private final int numOfAttributes;
+	private final Path basePath;
+	private long generation;
+	private int size;
+	private FileChannel datChannel;
+	private final ArrayList <MappedByteBuffer> segments = new ArrayList <> ();
+	private long dataEnd;
+	private FileChannel idxChannel;
+	private MappedByteBuffer idxBuffer;
+	private ByteBuffer recordBuffer = ByteBuffer.allocate(256);
+	private long[][] offsetChunks = new long[0][];
+	private final boolean isSnapshot;
+
+	private MappedTupleStore(int newNumOfAttributes, Path newBasePath, long newGeneration,
+			FileChannel newDatChannel, FileChannel newIdxChannel) {
+
+		this.numOfAttributes = newNumOfAttributes;
+		this.basePath = newBasePath;
+		this.generation = newGeneration;
+		this.datChannel = newDatChannel;
+		this.idxChannel = newIdxChannel;
+		this.isSnapshot = false;
+	}
+
+	/**
+	 * Private constructor for snapshots.
+	 */
+	private MappedTupleStore(MappedTupleStore source) {
+
+		this.numOfAttributes = source.numOfAttributes;
+		this.basePath = null;
+		this.size = source.size;
+		this.datChannel = null;
+		this.idxChannel = null;
+		this.segments.addAll(source.segments);
+		this.dataEnd = source.dataEnd;
+		this.isSnapshot = true;
+
+		//Only read the chunks written since the last snapshot.
+		int numOfChunks = (source.size + CHUNK_MASK) >> CHUNK_SHIFT;
+		if(source.offsetChunks.length < numOfChunks) {
+			source.offsetChunks = Arrays.copyOf(source.offsetChunks,
+					Math.max(numOfChunks, 2 * source.offsetChunks.length));
+		}
+		for(int chunkIdx = 0; chunkIdx < numOfChunks; chunkIdx++) {
+			if(source.offsetChunks[chunkIdx] == null) {
+				source.offsetChunks[chunkIdx] = source.readOffsetChunk(chunkIdx);
+			}
+		}
+		this.offsetChunks = Arrays.copyOf(source.offsetChunks, numOfChunks);
+	}
+
+	/**
+	 * Open the store kept in <base>.dat and <base>.idx, or in the files
+	 * of the generation named by <base>.gen, creating empty files
+	 * if they do not exist, and deleting the files of other generations.
+	 *
+	 * @param basePath
+	 *   The path of the files, without extension.
+	 * @param numOfAttributes
+	 *   The tuple length, must match existing files.
+	 * @return store
+	 * @throws IOException
+	 *   If the files cannot be opened, or are not valid store files.
+	 *
+	 * @requires numOfAttributes > 0
+	 */
+	public static MappedTupleStore open(Path basePath, int numOfAttributes)
+			throws IOException {
+		assert numOfAttributes > 0;
+
+		long generation = readGeneration(basePath);
+		deleteOtherGenerations(basePath, generation);
+		return openGeneration(basePath, generation, numOfAttributes);
+	}
+
+	/**
+	 * Helper method to open the files of one generation of a store,
+	 * creating empty files if they do not exist.
+	 *
+	 * @param basePath
+	 * @param generation
+	 * @param numOfAttributes
+	 * @return store
+	 * @throws IOException
+	 */
+	private static MappedTupleStore openGeneration(Path basePath, long generation,
+			int numOfAttributes) throws IOException {
+
+		Path datPath = withGeneration(basePath, generation, ".dat");
+		Path idxPath = withGeneration(basePath, generation, ".idx");
+		boolean isNew = !Files.exists(datPath);
+
+		FileChannel datChannel = FileChannel.open(datPath, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		FileChannel idxChannel = null;
+		try {
+			idxChannel = FileChannel.open(idxPath, StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+			MappedTupleStore store = new MappedTupleStore(numOfAttributes, basePath, generation,
+					datChannel, idxChannel);
+			if(isNew) {
+				store.initFiles();
+			} else {
+				store.mapFiles(basePath);
+			}
+			return store;
+
+		} catch (IOException | RuntimeException e) {
+			datChannel.close();
+			if(idxChannel != null) {
+				idxChannel.close();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public int getNumOfAttributes() {
+		return this.numOfAttributes;
+	}
+
+	@Override
+	public String[] getTuple(int tupleIdx) {
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+
+		long recordPos = getRecordPos(tupleIdx);
+		assert recordPos != CLEARED_POS;
+		ByteBuffer segment = this.segments.get((int) (recordPos / SEGMENT_SIZE));
+		int pos = (int) (recordPos % SEGMENT_SIZE);
+
+		//Skip the body length, attributes follow in order.
+		pos = TupleCodec.skipVarint(segment, pos);
+
+		String[] tuple = new String[this.numOfAttributes];
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+			int lenPlusOne = TupleCodec.readVarint(segment, pos);
+			pos = TupleCodec.skipVarint(segment, pos);
+			tuple[attrIdx] = TupleCodec.decodeString(segment, pos, lenPlusOne);
+			if(lenPlusOne > 0) {
+				pos += lenPlusOne - 1;
+			}
+		}
+		return tuple;
+	}
+
+	@Override
+	public String getValue(int tupleIdx, int attrIdx) {
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		assert attrIdx >= 0 && attrIdx < this.numOfAttributes;
+
+		long recordPos = getRecordPos(tupleIdx);
+		assert recordPos != CLEARED_POS;
+		ByteBuffer segment = this.segments.get((int) (recordPos / SEGMENT_SIZE));
+		int pos = findAttribute(segment, (int) (recordPos % SEGMENT_SIZE), attrIdx);
+
+		int lenPlusOne = TupleCodec.readVarint(segment, pos);
+		return TupleCodec.decodeString(segment, TupleCodec.skipVarint(segment, pos), lenPlusOne);
+	}
+
+	@Override
+	public void addTuple(String[] newTuple) {
+		assert !this.isSnapshot;
+		assert newTuple.length == this.numOfAttributes;
+
+		appendOffset(appendRecord(newTuple));
+	}
+
+	@Override
+	public void setTuple(int tupleIdx, String[] updateTuple) {
+		assert !this.isSnapshot;
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		assert updateTuple.length == this.numOfAttributes;
+
+		long recordPos = appendRecord(updateTuple);
+		this.idxBuffer.putLong(IDX_HEADER_SIZE + 8 * tupleIdx, recordPos);
+		dropOffsetChunk(tupleIdx);
+	}
+
+	@Override
+	public void clearTuple(int tupleIdx) {
+		assert !this.isSnapshot;
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+
+		this.idxBuffer.putLong(IDX_HEADER_SIZE + 8 * tupleIdx, CLEARED_POS);
+		dropOffsetChunk(tupleIdx);
+	}
+
+	@Override
+	public boolean isCleared(int tupleIdx) {
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		return getRecordPos(tupleIdx) == CLEARED_POS;
+	}
+
+	/**
+	 * Copy the record offset, records are shared, not copied.
+	 */
+	@Override
+	public void moveTuple(int fromIdx, int toIdx) {
+		assert !this.isSnapshot;
+		assert fromIdx >= 0 && fromIdx < this.size;
+		assert toIdx >= 0 && toIdx < this.size;
+
+		this.idxBuffer.putLong(IDX_HEADER_SIZE + 8 * toIdx, getRecordPos(fromIdx));
+		dropOffsetChunk(toIdx);
+	}
+
+	@Override
+	public void removeTuple(int tupleIdx) {
+		assert !this.isSnapshot;
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+
+		//Shift later offsets down, chunk by chunk in ascending order,
+		//each chunk is read before the overlapping write.
+		long[] chunk = new long[4096];
+		int fromIdx = tupleIdx + 1;
+		while(fromIdx < this.size) {
+			int numMoved = Math.min(chunk.length, this.size - fromIdx);
+
+			ByteBuffer src = this.idxBuffer.duplicate();
+			src.position(IDX_HEADER_SIZE + 8 * fromIdx);
+			src.asLongBuffer().get(chunk, 0, numMoved);
+
+			ByteBuffer dst = this.idxBuffer.duplicate();
+			dst.position(IDX_HEADER_SIZE + 8 * (fromIdx - 1));
+			dst.asLongBuffer().put(chunk, 0, numMoved);
+
+			fromIdx += numMoved;
+		}
+		for(int chunkIdx = tupleIdx >> CHUNK_SHIFT; chunkIdx < this.offsetChunks.length; chunkIdx++) {
+			this.offsetChunks[chunkIdx] = null;
+		}
+
+		this.size--;
+		this.idxBuffer.putInt(12, this.size);
+	}
+
+	@Override
+	public int[] findEqual(int attrIdx, String value) {
+		assert attrIdx >= 0 && attrIdx < this.numOfAttributes;
+
+		//Compare encoded bytes in place, no value is decoded.
+		byte[] target = (value == null) ? null : value.getBytes(StandardCharsets.UTF_8);
+		int targetLenPlusOne = (target == null) ? 0 : target.length + 1;
+
+		int[] tupleIdxs = new int[16];
+		int matchCount = 0;
+
+		for(int tmpIdx = 0; tmpIdx < this.size; tmpIdx++) {
+			long recordPos = getRecordPos(tmpIdx);
+			if(recordPos == CLEARED_POS) {
+				continue;
+			}
+			ByteBuffer segment = this.segments.get((int) (recordPos / SEGMENT_SIZE));
+			int pos = findAttribute(segment, (int) (recordPos % SEGMENT_SIZE), attrIdx);
+
+			if(TupleCodec.readVarint(segment, pos) != targetLenPlusOne) {
+				continue;
+			}
+			pos = TupleCodec.skipVarint(segment, pos);
+
+			boolean matchFound = true;
+			for(int byteIdx = 0; byteIdx < targetLenPlusOne - 1; byteIdx++) {
+				if(segment.get(pos + byteIdx) != target[byteIdx]) {
+					matchFound = false;
+					break;
+				}
+			}
+
+			if(matchFound) {
+				if(matchCount == tupleIdxs.length) {
+					tupleIdxs = Arrays.copyOf(tupleIdxs, matchCount * 2);
+				}
+				tupleIdxs[matchCount++] = tmpIdx;
+			}
+		}
+		return Arrays.copyOf(tupleIdxs, matchCount);
+	}
+
+	@Override
+	public TupleStore snapshot() {
+		if(this.isSnapshot) {
+			return this;
+		}
+		return new MappedTupleStore(this);
+	}
+
+	/**
+	 * Scan the index file in bulk, not tuple by tuple.
+	 */
+	@Override
+	public int findNextCleared(int fromIdx) {
+		assert fromIdx >= 0 && fromIdx <= this.size;
+
+		if(this.isSnapshot) {
+			return TupleStore.super.findNextCleared(fromIdx);
+		}
+
+		long[] chunk = new long[4096];
+		int tmpIdx = fromIdx;
+		while(tmpIdx < this.size) {
+			int numRead = Math.min(chunk.length, this.size - tmpIdx);
+
+			ByteBuffer src = this.idxBuffer.duplicate();
+			src.position(IDX_HEADER_SIZE + 8 * tmpIdx);
+			src.asLongBuffer().get(chunk, 0, numRead);
+
+			for(int chunkPos = 0; chunkPos < numRead; chunkPos++) {
+				if(chunk[chunkPos] == CLEARED_POS) {
+					return tmpIdx + chunkPos;
+				}
+			}
+			tmpIdx += numRead;
+		}
+		return this.size;
+	}
+
+	/**
+	 * Copy the live records to new files, once the records take more than
+	 * twice the bytes they took after the last copy; see compactData().
+	 * Called by the relation after the write that completed a compaction
+	 * pass, so a failed copy only keeps the old files, the write stands.
+	 */
+	@Override
+	public void compact() {
+		assert !this.isSnapshot;
+
+		long compactedBytes = this.segments.get(0).getLong(DAT_COMPACTED_POS);
+		if(getDataBytes() > Math.max(2 * compactedBytes, INITIAL_MAPPED_SIZE)) {
+			try {
+				compactData();
+			} catch (UncheckedIOException uIOE) {
+				System.out.println("Err: Could not compact " + this.basePath
+						+ ", its files are kept: " + uIOE.getCause().getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Copy the records of all tuples not cleared to the files of the next
+	 * generation, in tuple order, and switch the store to them, dropping
+	 * the garbage left behind by updates and removes.
+	 * Snapshots taken before keep reading the old records.
+	 * If the copy fails, its files are deleted and the store keeps its files.
+	 *
+	 * @throws UncheckedIOException
+	 *   If the copy cannot be written.
+	 */
+	public void compactData() {
+		assert !this.isSnapshot;
+
+		long oldGeneration = this.generation;
+		long newGeneration = oldGeneration + 1;
+		MappedTupleStore copy = null;
+		try {
+			Files.deleteIfExists(withGeneration(this.basePath, newGeneration, ".dat"));
+			Files.deleteIfExists(withGeneration(this.basePath, newGeneration, ".idx"));
+			copy = openGeneration(this.basePath, newGeneration, this.numOfAttributes);
+
+			for(int tupleIdx = 0; tupleIdx < this.size; tupleIdx++) {
+				long recordPos = getRecordPos(tupleIdx);
+				if(recordPos == CLEARED_POS) {
+					copy.appendOffset(CLEARED_POS);
+					continue;
+				}
+				ByteBuffer segment = this.segments.get((int) (recordPos / SEGMENT_SIZE));
+				int pos = (int) (recordPos % SEGMENT_SIZE);
+
+				ByteBuffer body = segment.duplicate();
+				body.position(TupleCodec.skipVarint(segment, pos));
+				body.limit(body.position() + TupleCodec.readVarint(segment, pos));
+				copy.appendOffset(copy.writeRecord(body));
+			}
+			copy.segments.get(0).putLong(DAT_COMPACTED_POS, copy.getDataBytes());
+			copy.flush();
+
+			//The copy is complete once the generation file names it.
+			writeGeneration(this.basePath, newGeneration);
+
+		} catch (IOException | RuntimeException e) {
+			try {
+				if(copy != null) {
+					copy.close();
+				}
+				Files.deleteIfExists(withGeneration(this.basePath, newGeneration, ".dat"));
+				Files.deleteIfExists(withGeneration(this.basePath, newGeneration, ".idx"));
+			} catch (IOException | RuntimeException cleanupE) {
+				e.addSuppressed(cleanupE);
+			}
+			if(e instanceof IOException) {
+				throw new UncheckedIOException((IOException) e);
+			}
+			throw (RuntimeException) e;
+		}
+
+		//The copy's channels and mappings are the store's from here on.
+		FileChannel oldDatChannel = this.datChannel;
+		FileChannel oldIdxChannel = this.idxChannel;
+		this.generation = newGeneration;
+		this.datChannel = copy.datChannel;
+		this.idxChannel = copy.idxChannel;
+		this.segments.clear();
+		this.segments.addAll(copy.segments);
+		this.dataEnd = copy.dataEnd;
+		this.idxBuffer = copy.idxBuffer;
+		this.offsetChunks = new long[0][];
+
+		//The old files stay mapped until their buffers are collected,
+		//so they may not be deletable yet; open() deletes them then.
+		try {
+			oldDatChannel.close();
+			oldIdxChannel.close();
+			Files.deleteIfExists(withGeneration(this.basePath, oldGeneration, ".dat"));
+			Files.deleteIfExists(withGeneration(this.basePath, oldGeneration, ".idx"));
+		} catch (IOException iOE) {
+			//Left for open().
+		}
+	}
+
+	/**
+	 * Return the number of bytes taken by records, including garbage
+	 * left behind by updates and removes.
+	 *
+	 * @return dataBytes
+	 */
+	public long getDataBytes() {
+		return this.dataEnd - DAT_HEADER_SIZE;
+	}
+
+	/**
+	 * Force all changes to both files to disk.
+	 */
+	public void flush() {
+		if(this.isSnapshot) {
+			return;
+		}
+		for(MappedByteBuffer segment : this.segments) {
+			segment.force();
+		}
+		this.idxBuffer.force();
+	}
+
+	@Override
+	public void close() {
+		if(this.isSnapshot) {
+			return;
+		}
+		flush();
+		try {
+			this.datChannel.close();
+			this.idxChannel.close();
+		} catch (IOException iOE) {
+			throw new UncheckedIOException(iOE);
+		}
+	}
+
+	/**
+	 * Helper method to write the headers of new, empty files.
+	 *
+	 * @throws IOException
+	 */
+	private void initFiles() throws IOException {
+
+		this.idxBuffer = this.idxChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+				IDX_HEADER_SIZE + 8L * 1024);
+		this.idxBuffer.putInt(0, MAGIC);
+		this.idxBuffer.putInt(4, FORMAT_VERSION);
+		this.idxBuffer.putInt(8, this.numOfAttributes);
+		this.idxBuffer.putInt(12, 0);
+		this.size = 0;
+
+		this.segments.add(this.datChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+				INITIAL_MAPPED_SIZE));
+		MappedByteBuffer header = this.segments.get(0);
+		header.putInt(0, MAGIC);
+		header.putInt(4, FORMAT_VERSION);
+		header.putInt(8, this.numOfAttributes);
+		this.dataEnd = DAT_HEADER_SIZE;
+		header.putLong(DAT_END_POS, this.dataEnd);
+	}
+
+	/**
+	 * Helper method to map existing files and check their headers.
+	 * No record is read.
+	 *
+	 * @param basePath
+	 *   Only used in error messages.
+	 * @throws IOException
+	 */
+	private void mapFiles(Path basePath) throws IOException {
+
+		long idxFileSize = this.idxChannel.size();
+		long datFileSize = this.datChannel.size();
+		if(idxFileSize < IDX_HEADER_SIZE || datFileSize < DAT_HEADER_SIZE) {
+			throw new IOException("Truncated relation store: " + basePath);
+		}
+
+		this.idxBuffer = this.idxChannel.map(FileChannel.MapMode.READ_WRITE, 0, idxFileSize);
+		for(long segmentStart = 0; segmentStart < datFileSize; segmentStart += SEGMENT_SIZE) {
+			this.segments.add(this.datChannel.map(FileChannel.MapMode.READ_WRITE, segmentStart,
+					Math.min(SEGMENT_SIZE, datFileSize - segmentStart)));
+		}
+
+		MappedByteBuffer header = this.segments.get(0);
+		if(this.idxBuffer.getInt(0) != MAGIC || header.getInt(0) != MAGIC
+				|| this.idxBuffer.getInt(4) != FORMAT_VERSION
+				|| header.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Not a relation store: " + basePath);
+		}
+		if(this.idxBuffer.getInt(8) != this.numOfAttributes
+				|| header.getInt(8) != this.numOfAttributes) {
+			throw new IOException("Relation store has "
+					+ String.valueOf(header.getInt(8)) + " attributes, expected "
+					+ String.valueOf(this.numOfAttributes) + ": " + basePath);
+		}
+
+		this.size = this.idxBuffer.getInt(12);
+		this.dataEnd = header.getLong(DAT_END_POS);
+		if(IDX_HEADER_SIZE + 8L * this.size > idxFileSize || this.dataEnd > datFileSize) {
+			throw new IOException("Truncated relation store: " + basePath);
+		}
+	}
+
+	/**
+	 * Helper method to read the current generation of a store,
+	 * 0 if it has no generation file.
+	 *
+	 * @param basePath
+	 * @return generation
+	 * @throws IOException
+	 */
+	private static long readGeneration(Path basePath) throws IOException {
+
+		Path genPath = withSuffix(basePath, ".gen");
+		if(!Files.exists(genPath)) {
+			return 0;
+		}
+		String genText = new String(Files.readAllBytes(genPath), StandardCharsets.US_ASCII).trim();
+		try {
+			return Long.parseLong(genText);
+		} catch (NumberFormatException nFE) {
+			throw new IOException("Not a relation store generation file: " + genPath);
+		}
+	}
+
+	/**
+	 * Helper method to make a generation the current one: the generation
+	 * file is written to a temporary file, forced to disk, then renamed
+	 * over the old one. It is never mapped, so it can be replaced.
+	 *
+	 * @param basePath
+	 * @param generation
+	 * @throws IOException
+	 */
+	private static void writeGeneration(Path basePath, long generation) throws IOException {
+
+		Path tmpGenPath = withSuffix(basePath, ".gen.tmp");
+		try (FileChannel genChannel = FileChannel.open(tmpGenPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			genChannel.write(ByteBuffer.wrap(
+					String.valueOf(generation).getBytes(StandardCharsets.US_ASCII)));
+			genChannel.force(true);
+		}
+		Files.move(tmpGenPath, withSuffix(basePath, ".gen"),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Helper method to delete the files of all generations but one,
+	 * and a generation file left half written.
+	 *
+	 * @param basePath
+	 * @param generation
+	 *   The generation to keep.
+	 * @throws IOException
+	 */
+	private static void deleteOtherGenerations(Path basePath, long generation)
+			throws IOException {
+
+		Files.deleteIfExists(withSuffix(basePath, ".gen.tmp"));
+		if(generation != 0) {
+			Files.deleteIfExists(withGeneration(basePath, 0, ".dat"));
+			Files.deleteIfExists(withGeneration(basePath, 0, ".idx"));
+		}
+
+		//Files named <base>.<n>.dat or <base>.<n>.idx, n not the generation kept.
+		String prefix = basePath.getFileName() + ".";
+		String keptPrefix = prefix + String.valueOf(generation) + ".";
+		Path dirPath = basePath.toAbsolutePath().getParent();
+		try (DirectoryStream <Path> stream = Files.newDirectoryStream(dirPath, path -> {
+			String name = path.getFileName().toString();
+			if(!name.startsWith(prefix) || name.startsWith(keptPrefix)
+					|| !(name.endsWith(".dat") || name.endsWith(".idx"))) {
+				return false;
+			}
+			String genText = name.substring(prefix.length(), name.length() - 4);
+			return !genText.isEmpty() && genText.chars().allMatch(Character::isDigit);
+		})) {
+			for(Path oldPath : stream) {
+				Files.deleteIfExists(oldPath);
+			}
+		}
+	}
+
+	/**
+	 * Helper method to return the path of one of the files of a store.
+	 *
+	 * @param basePath
+	 * @param suffix
+	 * @return path
+	 */
+	private static Path withSuffix(Path basePath, String suffix) {
+		return basePath.resolveSibling(basePath.getFileName() + suffix);
+	}
+
+	/**
+	 * Helper method to return the path of one of the files
+	 * of a generation of a store.
+	 *
+	 * @param basePath
+	 * @param generation
+	 * @param suffix
+	 * @return path
+	 */
+	private static Path withGeneration(Path basePath, long generation, String suffix) {
+		if(generation == 0) {
+			return withSuffix(basePath, suffix);
+		}
+		return withSuffix(basePath, "." + String.valueOf(generation) + suffix);
+	}
+
+	/**
+	 * Helper method to add a tuple's record offset to the index file.
+	 *
+	 * @param recordPos
+	 */
+	private void appendOffset(long recordPos) {
+
+		ensureIdxCapacity(this.size + 1);
+		this.idxBuffer.putLong(IDX_HEADER_SIZE + 8 * this.size, recordPos);
+		dropOffsetChunk(this.size);
+		this.size++;
+		this.idxBuffer.putInt(12, this.size);
+	}
+
+	/**
+	 * Helper method to encode a tuple and append it to the data file.
+	 *
+	 * @param tuple
+	 * @return recordPos
+	 *   The file position of the new record.
+	 */
+	private long appendRecord(String[] tuple) {
+
+		//Encode the attributes after room for the longest body length varint.
+		ByteBuffer body = this.recordBuffer;
+		body.clear();
+		body.position(5);
+		body = TupleCodec.putTuple(body, tuple);
+		this.recordBuffer = body;
+
+		body.flip();
+		body.position(5);
+		return writeRecord(body);
+	}
+
+	/**
+	 * Helper method to append a record to the data file.
+	 *
+	 * @param body
+	 *   The encoded attributes, from its position to its limit.
+	 * @return recordPos
+	 *   The file position of the new record.
+	 */
+	private long writeRecord(ByteBuffer body) {
+
+		int bodyLen = body.remaining();
+		int lenLen = TupleCodec.varintSize(bodyLen);
+		int recordLen = lenLen + bodyLen;
+		if(recordLen > SEGMENT_SIZE) {
+			throw new IllegalArgumentException("Tuple too large to store: "
+					+ String.valueOf(recordLen) + " bytes.");
+		}
+
+		//Records never span segments, skip to the next one if needed.
+		long recordPos = this.dataEnd;
+		if(recordPos % SEGMENT_SIZE + recordLen > SEGMENT_SIZE) {
+			recordPos = (recordPos / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+		}
+		int segmentIdx = (int) (recordPos / SEGMENT_SIZE);
+		int segmentPos = (int) (recordPos % SEGMENT_SIZE);
+		MappedByteBuffer segment = ensureMapped(segmentIdx, segmentPos + recordLen);
+
+		ByteBuffer dst = segment.duplicate();
+		dst.position(segmentPos);
+		TupleCodec.writeVarint(dst, bodyLen);
+		dst.put(body);
+
+		this.dataEnd = recordPos + recordLen;
+		this.segments.get(0).putLong(DAT_END_POS, this.dataEnd);
+		return recordPos;
+	}
+
+	/**
+	 * Helper method to make sure a data segment is mapped up to a given size,
+	 * growing the file and the mapping if needed.
+	 *
+	 * @param segmentIdx
+	 * @param neededSize
+	 * @return segment
+	 */
+	private MappedByteBuffer ensureMapped(int segmentIdx, int neededSize) {
+		try {
+			//Records only ever move on to the next segment.
+			while(this.segments.size() <= segmentIdx) {
+				this.segments.add(this.datChannel.map(FileChannel.MapMode.READ_WRITE,
+						(long) this.segments.size() * SEGMENT_SIZE, INITIAL_MAPPED_SIZE));
+			}
+
+			MappedByteBuffer segment = this.segments.get(segmentIdx);
+			if(segment.capacity() < neededSize) {
+				long newSize = Math.max(neededSize,
+						Math.min((long) SEGMENT_SIZE, 2L * segment.capacity()));
+				segment = this.datChannel.map(FileChannel.MapMode.READ_WRITE,
+						(long) segmentIdx * SEGMENT_SIZE, newSize);
+				this.segments.set(segmentIdx, segment);
+			}
+			return segment;
+
+		} catch (IOException iOE) {
+			throw new UncheckedIOException(iOE);
+		}
+	}
+
+	/**
+	 * Helper method to make sure the index file has room for a number of tuples.
+	 *
+	 * @param neededSize
+	 */
+	private void ensureIdxCapacity(int neededSize) {
+
+		long neededBytes = IDX_HEADER_SIZE + 8L * neededSize;
+		if(neededBytes <= this.idxBuffer.capacity()) {
+			return;
+		}
+
+		long newBytes = Math.max(neededBytes, 2L * this.idxBuffer.capacity());
+		if(newBytes > Integer.MAX_VALUE) {
+			newBytes = neededBytes;
+		}
+		if(newBytes > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Too many tuples for one relation store.");
+		}
+
+		try {
+			this.idxBuffer = this.idxChannel.map(FileChannel.MapMode.READ_WRITE, 0, newBytes);
+		} catch (IOException iOE) {
+			throw new UncheckedIOException(iOE);
+		}
+	}
+
+	/**
+	 * Helper method to return the file position of the record of a tuple.
+	 *
+	 * @param tupleIdx
+	 * @return recordPos
+	 */
+	private long getRecordPos(int tupleIdx) {
+		if(this.isSnapshot) {
+			return this.offsetChunks[tupleIdx >> CHUNK_SHIFT][tupleIdx & CHUNK_MASK];
+		}
+		return this.idxBuffer.getLong(IDX_HEADER_SIZE + 8 * tupleIdx);
+	}
+
+	/**
+	 * Helper method to read one chunk of record offsets from the index file.
+	 *
+	 * @param chunkIdx
+	 * @return chunk
+	 */
+	private long[] readOffsetChunk(int chunkIdx) {
+
+		int firstIdx = chunkIdx << CHUNK_SHIFT;
+		long[] chunk = new long[CHUNK_SIZE];
+		ByteBuffer src = this.idxBuffer.duplicate();
+		src.position(IDX_HEADER_SIZE + 8 * firstIdx);
+		src.asLongBuffer().get(chunk, 0, Math.min(CHUNK_SIZE, this.size - firstIdx));
+		return chunk;
+	}
+
+	/**
+	 * Helper method to drop the chunk of record offsets holding a tuple,
+	 * after its offset changed; snapshots keep their copy.
+	 *
+	 * @param tupleIdx
+	 */
+	private void dropOffsetChunk(int tupleIdx) {
+
+		int chunkIdx = tupleIdx >> CHUNK_SHIFT;
+		if(chunkIdx < this.offsetChunks.length) {
+			this.offsetChunks[chunkIdx] = null;
+		}
+	}
+
+	/**
+	 * Helper method to return the position of one attribute within a record.
+	 *
+	 * @param segment
+	 * @param recordStart
+	 * @param attrIdx
+	 * @return pos
+	 *   The position of the attribute length varint.
+	 */
+	private static int findAttribute(ByteBuffer segment, int recordStart, int attrIdx) {
+
+		int pos = TupleCodec.skipVarint(segment, recordStart);
+		for(int skipIdx = 0; skipIdx < attrIdx; skipIdx++) {
+			int lenPlusOne = TupleCodec.readVarint(segment, pos);
+			pos = TupleCodec.skipVarint(segment, pos);
+			if(lenPlusOne > 0) {
+				pos += lenPlusOne - 1;
+			}
+		}
+		return pos;
+	}
+}
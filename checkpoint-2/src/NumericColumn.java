@@ -0,0 +1,317 @@
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Typed copy of one numeric attribute of a Relation, e.g. a price or
+ * a release year: a primitive double per tuple ID, NaN for deleted
+ * tuples, nulls and values that are not numbers.
+ *
+ * Filters and aggregates over the attribute then run as tight loops
+ * over double arrays (kernels), instead of parsing and comparing a
+ * String per tuple. The kernels are branch-free: the outcome of each
+ * comparison is added to a counter or selected with a conditional move,
+ * not branched on, so random data costs no branch mispredictions.
+ * NaN compares false with everything, so it never passes a filter
+ * and is skipped by aggregates without a test of its own.
+ *
+ * Filters return selection vectors: the tuple IDs that pass,
+ * in ascending order, as an int array. A selection vector can be
+ * narrowed by the next filter of a conjunction, aggregated here,
+ * or read by a ScanOperator.
+ *
+ * Values are kept by tuple ID, which Relation never changes or reuses,
+ * so compaction does not touch them. Chunks are copied on write
+ * like ChunkedIntArray, so snapshots are cheap.
+ * Not thread-safe: the owner writes under its lock,
+ * snapshots may be read from any thread.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class NumericColumn {
+
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Private attributes for each instance of the NumericColumn object:
+	 *     attrIdx:     which attribute of the relation is kept;
+	 *
+	 *     size:        one more than the highest tuple ID set;
+	 *
+	 *     chunks:      the value of tuple ID i is
+	 *                  chunks[i >> CHUNK_SHIFT][i & CHUNK_MASK];
+	 *
+	 *     chunkEpochs,
+	 *     epoch:       a chunk may only be written in place if its epoch
+	 *                  is the current one, epoch moves on at each snapshot;
+	 *
+	 *     isSnapshot:  true for read-only snapshots.
+	 */
+	private final int attrIdx;
+	private int size = 0;
+	private double[][] chunks;
+	private int[] chunkEpochs;
+	private int epoch = 0;
+	private final boolean isSnapshot;
+
+	public NumericColumn(int newAttrIdx) {
+		this.attrIdx = newAttrIdx;
+		this.chunks = new double[4][];
+		this.chunkEpochs = new int[4];
+		this.isSnapshot = false;
+	}
+
+	/**
+	 * Private constructor for snapshots.
+	 */
+	private NumericColumn(NumericColumn source) {
+		this.attrIdx = source.attrIdx;
+		this.size = source.size;
+		this.chunks = Arrays.copyOf(source.chunks, (source.size + CHUNK_MASK) >> CHUNK_SHIFT);
+		this.chunkEpochs = null;
+		this.isSnapshot = true;
+	}
+
+	public int getAttrIdx() {
+		return this.attrIdx;
+	}
+
+	/**
+	 * Return one more than the highest tuple ID with a value.
+	 *
+	 * @return size
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Return the value of a tuple as a double, as OrderedIndex parses it,
+	 * e.g. 1299.99 for "$1,299.99"; NaN if it is null or not a number.
+	 *
+	 * @param value
+	 * @return number
+	 */
+	public static double toDouble(String value) {
+		BigDecimal number = OrderedIndex.parseNumber(value);
+		return (number == null) ? Double.NaN : number.doubleValue();
+	}
+
+	/**
+	 * @param tupleId
+	 * @return value
+	 *   The value, or NaN if the tuple has none.
+	 */
+	public double get(int tupleId) {
+		if(tupleId < 0 || tupleId >= this.size) {
+			return Double.NaN;
+		}
+		return this.chunks[tupleId >> CHUNK_SHIFT][tupleId & CHUNK_MASK];
+	}
+
+	/**
+	 * Set the value of a tuple, NaN to clear it.
+	 *
+	 * @param tupleId
+	 * @param value
+	 *
+	 * @requires tupleId >= 0
+	 */
+	public void set(int tupleId, double value) {
+		assert !this.isSnapshot;
+		assert tupleId >= 0;
+
+		int chunkIdx = tupleId >> CHUNK_SHIFT;
+		if(chunkIdx >= this.chunks.length) {
+			int numOfChunks = Math.max(chunkIdx + 1, this.chunks.length * 2);
+			this.chunks = Arrays.copyOf(this.chunks, numOfChunks);
+			this.chunkEpochs = Arrays.copyOf(this.chunkEpochs, numOfChunks);
+		}
+
+		//New chunks start out all NaN, for tuple IDs never set.
+		for(int newChunkIdx = (this.size + CHUNK_MASK) >> CHUNK_SHIFT;
+				newChunkIdx <= chunkIdx; newChunkIdx++) {
+			double[] chunk = new double[CHUNK_SIZE];
+			Arrays.fill(chunk, Double.NaN);
+			this.chunks[newChunkIdx] = chunk;
+			this.chunkEpochs[newChunkIdx] = this.epoch;
+		}
+
+		writableChunk(chunkIdx)[tupleId & CHUNK_MASK] = value;
+		this.size = Math.max(this.size, tupleId + 1);
+	}
+
+	/**
+	 * Return the IDs of the tuples with a value between low and high,
+	 * both included.
+	 *
+	 * @param low
+	 *   The lowest value, or Double.NEGATIVE_INFINITY for no lower bound.
+	 * @param high
+	 *   The highest value, or Double.POSITIVE_INFINITY for no upper bound.
+	 * @return selection
+	 *   In ascending order.
+	 */
+	public int[] selectRange(double low, double high) {
+
+		int[] selection = new int[this.size];
+		int numOfSelected = 0;
+
+		int numOfChunks = (this.size + CHUNK_MASK) >> CHUNK_SHIFT;
+		for(int chunkIdx = 0; chunkIdx < numOfChunks; chunkIdx++) {
+			double[] chunk = this.chunks[chunkIdx];
+			int baseId = chunkIdx << CHUNK_SHIFT;
+			int chunkEnd = Math.min(CHUNK_SIZE, this.size - baseId);
+
+			//Write every ID, keep it by moving on only if it passes.
+			for(int chunkPos = 0; chunkPos < chunkEnd; chunkPos++) {
+				double value = chunk[chunkPos];
+				selection[numOfSelected] = baseId + chunkPos;
+				numOfSelected += (value >= low & value <= high) ? 1 : 0;
+			}
+		}
+		return Arrays.copyOf(selection, numOfSelected);
+	}
+
+	/**
+	 * Return the IDs of a selection whose tuples have a value
+	 * between low and high, both included, e.g. for the next filter
+	 * of a conjunction.
+	 *
+	 * @param low
+	 *   The lowest value, or Double.NEGATIVE_INFINITY for no lower bound.
+	 * @param high
+	 *   The highest value, or Double.POSITIVE_INFINITY for no upper bound.
+	 * @param selection
+	 *   Tuple IDs, in ascending order.
+	 * @return narrowed
+	 *   In ascending order.
+	 */
+	public int[] selectRange(double low, double high, int[] selection) {
+
+		int[] narrowed = new int[selection.length];
+		int numOfSelected = 0;
+		for(int tupleId : selection) {
+			double value = get(tupleId);
+			narrowed[numOfSelected] = tupleId;
+			numOfSelected += (value >= low & value <= high) ? 1 : 0;
+		}
+		return Arrays.copyOf(narrowed, numOfSelected);
+	}
+
+	/**
+	 * Return the number of tuples with a value between low and high,
+	 * both included, without building their selection vector.
+	 *
+	 * @param low
+	 * @param high
+	 * @return count
+	 */
+	public int countRange(double low, double high) {
+
+		int count = 0;
+		int numOfChunks = (this.size + CHUNK_MASK) >> CHUNK_SHIFT;
+		for(int chunkIdx = 0; chunkIdx < numOfChunks; chunkIdx++) {
+			double[] chunk = this.chunks[chunkIdx];
+			int chunkEnd = Math.min(CHUNK_SIZE, this.size - (chunkIdx << CHUNK_SHIFT));
+			for(int chunkPos = 0; chunkPos < chunkEnd; chunkPos++) {
+				double value = chunk[chunkPos];
+				count += (value >= low & value <= high) ? 1 : 0;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Return the sum of the values of a selection, skipping NaN.
+	 *
+	 * @param selection
+	 * @return sum
+	 *   The sum, 0 if no tuple has a value.
+	 */
+	public double sum(int[] selection) {
+
+		double sum = 0;
+		for(int tupleId : selection) {
+			double value = get(tupleId);
+			sum += (value == value) ? value : 0;
+		}
+		return sum;
+	}
+
+	/**
+	 * Return the lowest value of a selection, skipping NaN.
+	 *
+	 * @param selection
+	 * @return min
+	 *   The lowest value, or NaN if no tuple has a value.
+	 */
+	public double min(int[] selection) {
+
+		double min = Double.POSITIVE_INFINITY;
+		int numOfValues = 0;
+		for(int tupleId : selection) {
+			double value = get(tupleId);
+			min = (value < min) ? value : min;
+			numOfValues += (value == value) ? 1 : 0;
+		}
+		return (numOfValues == 0) ? Double.NaN : min;
+	}
+
+	/**
+	 * Return the highest value of a selection, skipping NaN.
+	 *
+	 * @param selection
+	 * @return max
+	 *   The highest value, or NaN if no tuple has a value.
+	 */
+	public double max(int[] selection) {
+
+		double max = Double.NEGATIVE_INFINITY;
+		int numOfValues = 0;
+		for(int tupleId : selection) {
+			double value = get(tupleId);
+			max = (value > max) ? value : max;
+			numOfValues += (value == value) ? 1 : 0;
+		}
+		return (numOfValues == 0) ? Double.NaN : max;
+	}
+
+	/**
+	 * Return a read-only copy of the column as it is now,
+	 * which later writes to this column do not change.
+	 * Snapshots of a snapshot return the snapshot itself.
+	 *
+	 * @return snapshot
+	 */
+	public NumericColumn snapshot() {
+		if(this.isSnapshot) {
+			return this;
+		}
+
+		NumericColumn snapshot = new NumericColumn(this);
+		this.epoch++;
+		return snapshot;
+	}
+
+	/**
+	 * Helper method to return a chunk that may be written in place,
+	 * copying it first if it may be shared with a snapshot.
+	 *
+	 * @param chunkIdx
+	 * @return chunk
+	 */
+	private double[] writableChunk(int chunkIdx) {
+
+		double[] chunk = this.chunks[chunkIdx];
+		if(this.chunkEpochs[chunkIdx] != this.epoch) {
+			chunk = chunk.clone();
+			this.chunks[chunkIdx] = chunk;
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+		return chunk;
+	}
+}
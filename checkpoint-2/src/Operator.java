@@ -0,0 +1,70 @@
+/**
+ * A relational operator in a query pipeline, e.g.
+ *     new SortOperator(
+ *         new AggregateOperator(
+ *             new HashJoinOperator(new ScanOperator(purchases),
+ *                 new ScanOperator(creator), 1, 0),
+ *             new int[] {4}, ...),
+ *         1, OrderedIndex.ValueType.NUMERIC, true, 1)
+ *
+ * Operators follow the iterator (Volcano) model: each call to next()
+ * pulls one tuple from the operator, which pulls from its inputs
+ * only as many tuples as it needs. Tuples stream through scans,
+ * filters, projections and the probe side of joins one at a time;
+ * only the build side of a join, sorts and aggregates hold tuples,
+ * since they cannot return anything before they have seen them all.
+ *
+ * Call open() once before next(), and close() once done.
+ * Returned tuples may be shared with the relation or other operators,
+ * they must not be changed.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public interface Operator {
+
+	/**
+	 * Return the attribute names of the returned tuples.
+	 *
+	 * @return attributeList
+	 */
+	String[] getAttributeList();
+
+	/**
+	 * Prepare to return tuples, opening the inputs.
+	 */
+	void open();
+
+	/**
+	 * Return the next tuple.
+	 *
+	 * @return tuple
+	 *   The next tuple, or null once all tuples were returned.
+	 *
+	 * @requires open() was called
+	 */
+	String[] next();
+
+	/**
+	 * Release the tuples held, closing the inputs.
+	 */
+	void close();
+
+	/**
+	 * Return the index of an attribute by its name.
+	 *
+	 * @param attrName
+	 * @return attrIdx
+	 *   The index of the first attribute with that name, or -1 if none.
+	 */
+	default int getAttrIdx(String attrName) {
+		String[] attributeList = getAttributeList();
+		for(int attrIdx = 0; attrIdx < attributeList.length; attrIdx++) {
+			if(attributeList[attrIdx].equals(attrName)) {
+				return attrIdx;
+			}
+		}
+		return -1;
+	}
+}
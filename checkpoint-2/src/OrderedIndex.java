@@ -0,0 +1,382 @@
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary ordered index on one non-key attribute of a Relation,
+ * for equality and range queries without a full scan.
+ *
+ * Entries are (attribute value, tuple ID) pairs in a skip list,
+ * sorted by value, then by tuple ID, so equal values are allowed.
+ * Tuple IDs never change, so entries only change when the value does.
+ *
+ * Values are compared by the ValueType of the index:
+ *     TEXT:    String order;
+ *     NUMERIC: numeric order, so "995" < "2011" and "$9.50" < "$12.74";
+ *              an optional leading '$' and ',' separators are ignored.
+ * Null values sort first; in NUMERIC indexes, values that are not
+ * numbers sort after all numbers, in String order. A range with one
+ * open end only covers values of the same kind as its other end,
+ * e.g. ("2000", null) covers numbers from 2000 up, but no text.
+ *
+ * The skip list may be read from any thread while the Relation
+ * writes to it under its write lock.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class OrderedIndex {
+
+	/**
+	 * How attribute values are compared.
+	 */
+	public enum ValueType {
+		TEXT,
+		NUMERIC
+	}
+
+	/*
+	 * Order of an entry within all entries of equal value:
+	 * bounds of range queries sort before or after all tuple IDs.
+	 */
+	private static final int BEFORE_ALL_IDS = -1;
+	private static final int AT_ID = 0;
+	private static final int AFTER_ALL_IDS = 1;
+
+	/*
+	 * Kinds of values, in sort order.
+	 */
+	private static final int KIND_NULL = 0;
+	private static final int KIND_NUMBER = 1;
+	private static final int KIND_TEXT = 2;
+
+	/**
+	 * Private attributes for each instance of the OrderedIndex object:
+	 *     attrIdx:   which attribute of the relation is indexed;
+	 *
+	 *     valueType: how values are compared;
+	 *
+	 *     entries:   (value, tuple ID) pairs, in order.
+	 */
+	private final int attrIdx;
+	private final ValueType valueType;
+	private final ConcurrentSkipListSet <Entry> entries;
+
+	/**
+	 * One index entry, or a bound of a range query.
+	 * The sort key of the value is computed once, when the entry is created.
+	 */
+	private static final class Entry {
+
+		private final int kind;
+		private final BigDecimal number;
+		private final String text;
+		private final int tupleId;
+		private final int idOrder;
+
+		private Entry(ValueType valueType, String value, int newTupleId, int newIdOrder) {
+
+			BigDecimal tmpNumber = (valueType == ValueType.NUMERIC) ? parseNumber(value) : null;
+			if(value == null) {
+				this.kind = KIND_NULL;
+			} else if(tmpNumber != null) {
+				this.kind = KIND_NUMBER;
+			} else {
+				this.kind = KIND_TEXT;
+			}
+			this.number = tmpNumber;
+			this.text = value;
+			this.tupleId = newTupleId;
+			this.idOrder = newIdOrder;
+		}
+	}
+
+	/*
+	 * Entry order: value kind, value, then tuple ID.
+	 */
+	private static final Comparator <Entry> ENTRY_ORDER = (left, right) -> {
+
+		int cmp = compareSortKeys(left, right);
+		if(cmp != 0) {
+			return cmp;
+		}
+		if(left.idOrder != AT_ID || right.idOrder != AT_ID) {
+			return Integer.compare(left.idOrder, right.idOrder);
+		}
+		return Integer.compare(left.tupleId, right.tupleId);
+	};
+
+	public OrderedIndex(int newAttrIdx, ValueType newValueType) {
+
+		this.attrIdx = newAttrIdx;
+		this.valueType = newValueType;
+		this.entries = new ConcurrentSkipListSet <> (ENTRY_ORDER);
+	}
+
+	public int getAttrIdx() {
+		return this.attrIdx;
+	}
+
+	public ValueType getValueType() {
+		return this.valueType;
+	}
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Add the entry of a tuple.
+	 *
+	 * @param value
+	 *   The value of the indexed attribute of the tuple.
+	 * @param tupleId
+	 */
+	public void add(String value, int tupleId) {
+		this.entries.add(new Entry(this.valueType, value, tupleId, AT_ID));
+	}
+
+	/**
+	 * Remove the entry of a tuple.
+	 *
+	 * @param value
+	 *   The value of the indexed attribute the tuple was added with.
+	 * @param tupleId
+	 */
+	public void remove(String value, int tupleId) {
+		this.entries.remove(new Entry(this.valueType, value, tupleId, AT_ID));
+	}
+
+	/**
+	 * Return the tuple IDs of all tuples with a value equal to
+	 * the given value, by the ValueType of the index.
+	 *
+	 * @param value
+	 * @return tupleIds
+	 *   In ascending order.
+	 */
+	public int[] findEqual(String value) {
+
+		if(value != null) {
+			return findRange(value, value);
+		}
+
+		int[] tupleIds = new int[16];
+		int matchCount = 0;
+		for(Entry entry : this.entries.headSet(
+				new Entry(this.valueType, null, -1, AFTER_ALL_IDS), true)) {
+			if(matchCount == tupleIds.length) {
+				tupleIds = Arrays.copyOf(tupleIds, matchCount * 2);
+			}
+			tupleIds[matchCount++] = entry.tupleId;
+		}
+		return Arrays.copyOf(tupleIds, matchCount);
+	}
+
+	/**
+	 * Return the tuple IDs of all tuples with a value
+	 * between low and high, both included.
+	 *
+	 * @param low
+	 *   The lowest value, or null for no lower bound.
+	 * @param high
+	 *   The highest value, or null for no upper bound.
+	 * @return tupleIds
+	 *   In ascending order.
+	 */
+	public int[] findRange(String low, String high) {
+
+		Entry lowEntry = (low == null) ? null : new Entry(this.valueType, low, -1, BEFORE_ALL_IDS);
+		Entry highEntry = (high == null) ? null : new Entry(this.valueType, high, -1, AFTER_ALL_IDS);
+
+		int minKind = getMinKind(lowEntry, highEntry);
+		int maxKind = getMaxKind(lowEntry, highEntry);
+
+		if(minKind > maxKind || (lowEntry != null && highEntry != null
+				&& compareSortKeys(lowEntry, highEntry) > 0)) {
+			return new int[0];
+		}
+
+		//No lower bound still skips null values.
+		NavigableSet <Entry> range = (lowEntry != null)
+				? this.entries.tailSet(lowEntry, true)
+				: this.entries.tailSet(new Entry(this.valueType, null, -1, AFTER_ALL_IDS), false);
+		if(highEntry != null) {
+			range = range.headSet(highEntry, true);
+		}
+
+		int[] tupleIds = new int[16];
+		int matchCount = 0;
+		for(Entry entry : range) {
+			if(entry.kind > maxKind) {
+				break;
+			}
+			if(entry.kind >= minKind) {
+				if(matchCount == tupleIds.length) {
+					tupleIds = Arrays.copyOf(tupleIds, matchCount * 2);
+				}
+				tupleIds[matchCount++] = entry.tupleId;
+			}
+		}
+
+		//Entries are in value order, tuple IDs are wanted in their own order.
+		Arrays.sort(tupleIds, 0, matchCount);
+		return Arrays.copyOf(tupleIds, matchCount);
+	}
+
+	/**
+	 * Return whether a value is between low and high, both included,
+	 * by the same comparison as findRange().
+	 *
+	 * @param value
+	 * @param low
+	 *   The lowest value, or null for no lower bound.
+	 * @param high
+	 *   The highest value, or null for no upper bound.
+	 * @return isInRange
+	 */
+	public boolean isInRange(String value, String low, String high) {
+		return isInRange(this.valueType, value, low, high);
+	}
+
+	/**
+	 * Return whether a value is between low and high, both included,
+	 * compared as the given ValueType; null values are never in range.
+	 *
+	 * @param valueType
+	 * @param value
+	 * @param low
+	 *   The lowest value, or null for no lower bound.
+	 * @param high
+	 *   The highest value, or null for no upper bound.
+	 * @return isInRange
+	 */
+	public static boolean isInRange(ValueType valueType, String value, String low, String high) {
+
+		if(value == null) {
+			return false;
+		}
+
+		Entry valueEntry = new Entry(valueType, value, -1, AT_ID);
+		Entry lowEntry = (low == null) ? null : new Entry(valueType, low, -1, AT_ID);
+		Entry highEntry = (high == null) ? null : new Entry(valueType, high, -1, AT_ID);
+
+		if(valueEntry.kind < getMinKind(lowEntry, highEntry)
+				|| valueEntry.kind > getMaxKind(lowEntry, highEntry)) {
+			return false;
+		}
+		if(lowEntry != null && compareSortKeys(valueEntry, lowEntry) < 0) {
+			return false;
+		}
+		return highEntry == null || compareSortKeys(valueEntry, highEntry) <= 0;
+	}
+
+	/**
+	 * Compare two values in the order of an index of the given ValueType:
+	 * null first; in NUMERIC order, numbers before other text.
+	 *
+	 * @param valueType
+	 * @param left
+	 * @param right
+	 * @return cmp
+	 *   Negative, zero or positive as left sorts before, with or after right.
+	 */
+	public static int compareValues(ValueType valueType, String left, String right) {
+		return compareSortKeys(new Entry(valueType, left, -1, AT_ID),
+				new Entry(valueType, right, -1, AT_ID));
+	}
+
+	/**
+	 * Parse a numeric attribute value, e.g. "2011", "-3.5" or "$1,299.99".
+	 *
+	 * @param value
+	 * @return number
+	 *   The number, or null if the value is null or not a number.
+	 */
+	public static BigDecimal parseNumber(String value) {
+
+		if(value == null) {
+			return null;
+		}
+
+		String tmpValue = value.trim();
+		if(tmpValue.startsWith("$")) {
+			tmpValue = tmpValue.substring(1);
+		}
+		if(tmpValue.indexOf(',') >= 0) {
+			tmpValue = tmpValue.replace(",", "");
+		}
+
+		//Cheap check first, so most text values skip the exception.
+		if(tmpValue.isEmpty()) {
+			return null;
+		}
+		char first = tmpValue.charAt(0);
+		if(!(first >= '0' && first <= '9') && first != '-' && first != '+' && first != '.') {
+			return null;
+		}
+
+		try {
+			return new BigDecimal(tmpValue);
+		} catch (NumberFormatException nFE) {
+			return null;
+		}
+	}
+
+	/**
+	 * Helper method to return the lowest kind of value in a range:
+	 * the kind of the lower bound, else of the upper bound;
+	 * never null values.
+	 *
+	 * @param lowEntry
+	 * @param highEntry
+	 * @return minKind
+	 */
+	private static int getMinKind(Entry lowEntry, Entry highEntry) {
+
+		if(lowEntry != null) {
+			return Math.max(lowEntry.kind, KIND_NUMBER);
+		}
+		return (highEntry == null) ? KIND_NUMBER : Math.max(highEntry.kind, KIND_NUMBER);
+	}
+
+	/**
+	 * Helper method to return the highest kind of value in a range:
+	 * the kind of the upper bound, else of the lower bound.
+	 *
+	 * @param lowEntry
+	 * @param highEntry
+	 * @return maxKind
+	 */
+	private static int getMaxKind(Entry lowEntry, Entry highEntry) {
+
+		if(highEntry != null) {
+			return highEntry.kind;
+		}
+		return (lowEntry == null) ? KIND_TEXT : lowEntry.kind;
+	}
+
+	/**
+	 * Helper method to compare the values of two entries, ignoring tuple IDs.
+	 *
+	 * @param left
+	 * @param right
+	 * @return cmp
+	 */
+	private static int compareSortKeys(Entry left, Entry right) {
+
+		if(left.kind != right.kind) {
+			return Integer.compare(left.kind, right.kind);
+		}
+		if(left.kind == KIND_NUMBER) {
+			return left.number.compareTo(right.number);
+		}
+		if(left.kind == KIND_TEXT) {
+			return left.text.compareTo(right.text);
+		}
+		return 0;
+	}
+}
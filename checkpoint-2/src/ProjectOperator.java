@@ -0,0 +1,71 @@
+/**
+ * Projection: returns some attributes of each tuple of its input,
+ * in a given order. Duplicate tuples are kept.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class ProjectOperator implements Operator {
+
+	/**
+	 * Private attributes for each instance of the ProjectOperator object:
+	 *     input:         the operator to project;
+	 *
+	 *     attrIdxs:      the input attribute of each output attribute;
+	 *
+	 *     attributeList: the output attribute names.
+	 */
+	private final Operator input;
+	private final int[] attrIdxs;
+	private final String[] attributeList;
+
+	/**
+	 * @param newInput
+	 * @param newAttrIdxs
+	 *   The input attribute of each output attribute.
+	 *
+	 * @requires each attribute index is within newInput.getAttributeList()
+	 */
+	public ProjectOperator(Operator newInput, int[] newAttrIdxs) {
+
+		String[] inputAttributeList = newInput.getAttributeList();
+		this.input = newInput;
+		this.attrIdxs = newAttrIdxs.clone();
+		this.attributeList = new String[newAttrIdxs.length];
+		for(int outIdx = 0; outIdx < newAttrIdxs.length; outIdx++) {
+			assert newAttrIdxs[outIdx] >= 0 && newAttrIdxs[outIdx] < inputAttributeList.length;
+			this.attributeList[outIdx] = inputAttributeList[newAttrIdxs[outIdx]];
+		}
+	}
+
+	@Override
+	public String[] getAttributeList() {
+		return this.attributeList;
+	}
+
+	@Override
+	public void open() {
+		this.input.open();
+	}
+
+	@Override
+	public String[] next() {
+
+		String[] tuple = this.input.next();
+		if(tuple == null) {
+			return null;
+		}
+
+		String[] projected = new String[this.attrIdxs.length];
+		for(int outIdx = 0; outIdx < this.attrIdxs.length; outIdx++) {
+			projected[outIdx] = tuple[this.attrIdxs[outIdx]];
+		}
+		return projected;
+	}
+
+	@Override
+	public void close() {
+		this.input.close();
+	}
+}
@@ -0,0 +1,562 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark of the relational operators against the same reports in SQLite.
+ *
+ * Fills ANIME, CREATOR and PURCHASES relations with generated data,
+ * then times each report as an operator pipeline over the relations,
+ * and as the SQL query of the report in checkpoint 4 against an
+ * in-memory SQLite database with the same rows, if the SQLite JDBC
+ * driver (org.sqlite.JDBC) is on the classpath. The value each report
+ * sorts by is checked to be the same both ways, since ties between
+ * top rows may be broken differently.
+ *
+ * Then times filters and counts on low-cardinality attributes
+ * (ANIME Genre and Release_year, PURCHASES P_date) as scans,
+ * and as and()/or() of the bitmaps of their bitmap indexes.
+ *
+ * Then times a parallel group-by and a parallel filter over PURCHASES
+ * in fork-join pools of 1, 2, 4, ... threads, up to twice the cores.
+ *
+ * Everything timed first runs WARMUP_RUNS times untimed, so the
+ * JIT-compiled code, not the interpreter, is what each run times.
+ *
+ * Run with: java -ea QueryBenchmark [numOfPurchases] [repetitions]
+ *   e.g. java -cp .:sqlite-jdbc.jar QueryBenchmark 200000 10
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class QueryBenchmark {
+
+	private static final String[] ANIME_ATTRIBUTES = {
+			"Title", "Description", "Genre", "Price", "Release_year"};
+	private static final String[] CREATOR_ATTRIBUTES = {"Anime_title", "Studio_name"};
+	private static final String[] PURCHASES_ATTRIBUTES = {"Customer", "Anime_title", "P_date"};
+	private static final int NUM_OF_GENRES = 12;
+	private static final int WARMUP_RUNS = 3;
+
+	/**
+	 * One report: its operator pipeline and its SQL query.
+	 */
+	private static final class Report {
+
+		private final String name;
+		private final Supplier <Operator> plan;
+		private final String sql;
+		private final int sortedAttrIdx;
+
+		private Report(String newName, Supplier <Operator> newPlan, String newSql,
+				int newSortedAttrIdx) {
+			this.name = newName;
+			this.plan = newPlan;
+			this.sql = newSql;
+			this.sortedAttrIdx = newSortedAttrIdx;
+		}
+	}
+
+	public static void main(String[] args)
+			throws SQLException, InterruptedException, ExecutionException {
+
+		int numOfPurchases = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+		int repetitions = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+		Relation anime = new Relation("ANIME", ANIME_ATTRIBUTES, 1,
+				new ColumnarTupleStore(ANIME_ATTRIBUTES.length));
+		Relation creator = new Relation("CREATOR", CREATOR_ATTRIBUTES, 2);
+		Relation purchases = new Relation("PURCHASES", PURCHASES_ATTRIBUTES, 2);
+		fillRelations(anime, creator, purchases, numOfPurchases);
+
+		List <Report> reports = createReports(anime, creator, purchases);
+		Connection connection = openSQLite(anime, creator, purchases);
+
+		System.out.println("Query benchmark: " + String.valueOf(anime.getNumOfTuples())
+				+ " anime, " + String.valueOf(creator.getNumOfTuples()) + " creators, "
+				+ String.valueOf(purchases.getNumOfTuples()) + " purchases, median of "
+				+ String.valueOf(repetitions) + " runs.");
+		if(connection == null) {
+			System.out.println("SQLite JDBC driver (org.sqlite.JDBC) not on the classpath,"
+					+ " timing operators only.");
+		}
+		System.out.println();
+		System.out.println("report\toperators ms\tSQLite ms\tresult");
+
+		for(Report report : reports) {
+			List <String[]> opResult = null;
+			double[] opMillis = new double[repetitions];
+			for(int run = 0; run < WARMUP_RUNS; run++) {
+				runPlan(report.plan.get());
+			}
+			for(int run = 0; run < repetitions; run++) {
+				long startNanos = System.nanoTime();
+				opResult = runPlan(report.plan.get());
+				opMillis[run] = (System.nanoTime() - startNanos) / 1e6;
+			}
+
+			String sqlMillis = "-";
+			if(connection != null) {
+				List <String[]> sqlResult = null;
+				double[] runMillis = new double[repetitions];
+				for(int run = 0; run < WARMUP_RUNS; run++) {
+					runSQL(connection, report.sql);
+				}
+				for(int run = 0; run < repetitions; run++) {
+					long startNanos = System.nanoTime();
+					sqlResult = runSQL(connection, report.sql);
+					runMillis[run] = (System.nanoTime() - startNanos) / 1e6;
+				}
+				sqlMillis = String.format("%.2f", median(runMillis));
+				checkSameResult(report, opResult, sqlResult);
+			}
+
+			System.out.println(report.name
+					+ "\t" + String.format("%.2f", median(opMillis))
+					+ "\t" + sqlMillis
+					+ "\t" + (opResult.isEmpty() ? "(none)" : String.join(", ", opResult.get(0))));
+		}
+
+		if(connection != null) {
+			connection.close();
+		}
+
+		runBitmapFilters(anime, purchases, repetitions);
+		runParallelScans(purchases, repetitions);
+	}
+
+	/**
+	 * Helper method to time filters and counts on low-cardinality
+	 * attributes, scanning the tuples, and from bitmap indexes,
+	 * and check both give the same count.
+	 *
+	 * @param anime
+	 * @param purchases
+	 * @param repetitions
+	 */
+	private static void runBitmapFilters(Relation anime, Relation purchases, int repetitions) {
+
+		anime.createBitmapIndex(2);
+		anime.createBitmapIndex(4);
+		purchases.createBitmapIndex(2);
+
+		List <String> names = new ArrayList <> ();
+		List <Supplier <Integer>> scans = new ArrayList <> ();
+		List <Supplier <Integer>> bitmaps = new ArrayList <> ();
+
+		//(Genre 1 or Genre 2) and Release_year >= 2000.
+		names.add("anime_genre_or_year");
+		scans.add(() -> runPlan(new FilterOperator(new ScanOperator(anime),
+				FilterOperator.equalTo(2, "Genre 1")
+						.or(FilterOperator.equalTo(2, "Genre 2"))
+						.and(FilterOperator.inRange(4, OrderedIndex.ValueType.NUMERIC, "2000", null))))
+				.size());
+		bitmaps.add(() -> {
+			RelationSnapshot snapshot = anime.snapshot();
+			return RoaringBitmap.andCardinality(
+					snapshot.getBitmapIndex(2).findAny("Genre 1", "Genre 2"),
+					snapshot.getBitmapIndex(4).findRange(OrderedIndex.ValueType.NUMERIC, "2000", null));
+		});
+
+		//Purchases in May: each tuple has one date, so the counts of the dates add up.
+		names.add("purchases_in_may");
+		scans.add(() -> runPlan(new FilterOperator(new ScanOperator(purchases),
+				tuple -> tuple[2].startsWith("2023-05"))).size());
+		bitmaps.add(() -> {
+			BitmapIndex dateIndex = purchases.snapshot().getBitmapIndex(2);
+			int count = 0;
+			for(String date : dateIndex.getValues()) {
+				if(date.startsWith("2023-05")) {
+					count += dateIndex.countEqual(date);
+				}
+			}
+			return count;
+		});
+
+		//Busiest purchase date: a group-by count, from bitmap sizes.
+		names.add("busiest_purchase_date");
+		scans.add(() -> Integer.valueOf(runPlan(new SortOperator(new AggregateOperator(
+				new ScanOperator(purchases), new int[] {2},
+				new AggregateOperator.Function[] {AggregateOperator.Function.COUNT},
+				new int[] {-1}), 1, OrderedIndex.ValueType.NUMERIC, true, 1)).get(0)[1]));
+		bitmaps.add(() -> {
+			BitmapIndex dateIndex = purchases.snapshot().getBitmapIndex(2);
+			int maxCount = 0;
+			for(String date : dateIndex.getValues()) {
+				maxCount = Math.max(maxCount, dateIndex.countEqual(date));
+			}
+			return maxCount;
+		});
+
+		System.out.println();
+		System.out.println("Bitmap indexes.");
+		System.out.println("filter\tscan ms\tbitmap ms\tcount");
+
+		for(int filterIdx = 0; filterIdx < names.size(); filterIdx++) {
+			double[] scanMillis = new double[repetitions];
+			double[] bitmapMillis = new double[repetitions];
+			int scanCount = 0;
+			int bitmapCount = 0;
+			for(int run = 0; run < WARMUP_RUNS; run++) {
+				scans.get(filterIdx).get();
+				bitmaps.get(filterIdx).get();
+			}
+			for(int run = 0; run < repetitions; run++) {
+				long startNanos = System.nanoTime();
+				scanCount = scans.get(filterIdx).get();
+				scanMillis[run] = (System.nanoTime() - startNanos) / 1e6;
+
+				startNanos = System.nanoTime();
+				bitmapCount = bitmaps.get(filterIdx).get();
+				bitmapMillis[run] = (System.nanoTime() - startNanos) / 1e6;
+			}
+
+			if(scanCount != bitmapCount) {
+				System.out.println("Err: " + names.get(filterIdx) + " differs between scan and bitmaps.");
+			}
+			System.out.println(names.get(filterIdx)
+					+ "\t" + String.format("%.3f", median(scanMillis))
+					+ "\t" + String.format("%.3f", median(bitmapMillis))
+					+ "\t" + String.valueOf(bitmapCount));
+		}
+	}
+
+	/**
+	 * Helper method to time a parallel group-by and a parallel filter
+	 * with more and more threads, and print their speedup over one thread.
+	 *
+	 * @param purchases
+	 * @param repetitions
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private static void runParallelScans(Relation purchases, int repetitions)
+			throws InterruptedException, ExecutionException {
+
+		int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+		System.out.println();
+		System.out.println("Parallel scans, "
+				+ String.valueOf(Runtime.getRuntime().availableProcessors()) + " cores.");
+		System.out.println("threads	group-by ms	speedup	filter ms	speedup");
+
+		double[] oneThreadMillis = null;
+		for(int numOfThreads = 1; numOfThreads <= maxThreads; numOfThreads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(numOfThreads);
+			double[] groupMillis = new double[repetitions];
+			double[] filterMillis = new double[repetitions];
+
+			//Streams run in the pool of the task that starts them.
+			//Untimed runs first, or the 1-thread baseline also times the warm-up.
+			for(int run = -WARMUP_RUNS; run < repetitions; run++) {
+				long startNanos = System.nanoTime();
+				pool.submit(() -> runPlan(new AggregateOperator(purchases, null,
+						new int[] {1},
+						new AggregateOperator.Function[] {AggregateOperator.Function.COUNT},
+						new int[] {-1}))).get();
+				double tmpGroupMillis = (System.nanoTime() - startNanos) / 1e6;
+
+				startNanos = System.nanoTime();
+				pool.submit(() -> purchases.parallelStream()
+						.filter(tuple -> tuple[2].startsWith("2023-05"))
+						.count()).get();
+				double tmpFilterMillis = (System.nanoTime() - startNanos) / 1e6;
+
+				if(run >= 0) {
+					groupMillis[run] = tmpGroupMillis;
+					filterMillis[run] = tmpFilterMillis;
+				}
+			}
+			pool.shutdown();
+
+			double[] tmpMillis = {median(groupMillis), median(filterMillis)};
+			if(oneThreadMillis == null) {
+				oneThreadMillis = tmpMillis;
+			}
+			System.out.println(String.valueOf(numOfThreads)
+					+ "	" + String.format("%.2f", tmpMillis[0])
+					+ "	" + String.format("%.2f", oneThreadMillis[0] / tmpMillis[0])
+					+ "	" + String.format("%.2f", tmpMillis[1])
+					+ "	" + String.format("%.2f", oneThreadMillis[1] / tmpMillis[1]));
+		}
+	}
+
+	/**
+	 * Helper method to create the reports, as in checkpoint 4.
+	 *
+	 * @param anime
+	 * @param creator
+	 * @param purchases
+	 * @return reports
+	 */
+	private static List <Report> createReports(Relation anime, Relation creator,
+			Relation purchases) {
+
+		List <Report> reports = new ArrayList <> ();
+
+		//Studio whose anime were purchased the most.
+		reports.add(new Report("top_studio_purchased",
+				() -> new SortOperator(
+						new AggregateOperator(
+								new HashJoinOperator(new ScanOperator(purchases),
+										new ScanOperator(creator), 1, 0),
+								new int[] {4},
+								new AggregateOperator.Function[] {AggregateOperator.Function.COUNT},
+								new int[] {-1}),
+						1, OrderedIndex.ValueType.NUMERIC, true, 1),
+				"SELECT Studio_name, COUNT(*) AS num_purchases "
+						+ "FROM PURCHASES p JOIN CREATOR c ON p.Anime_title = c.Anime_title "
+						+ "GROUP BY Studio_name ORDER BY num_purchases DESC LIMIT 1;",
+				1));
+
+		//Anime purchased the most.
+		reports.add(new Report("top_anime_purchased",
+				() -> new SortOperator(
+						new AggregateOperator(new ScanOperator(purchases),
+								new int[] {1},
+								new AggregateOperator.Function[] {AggregateOperator.Function.COUNT},
+								new int[] {-1}),
+						1, OrderedIndex.ValueType.NUMERIC, true, 1),
+				"SELECT Anime_title, COUNT(*) AS Total_Purchased FROM PURCHASES "
+						+ "GROUP BY Anime_title ORDER BY Total_Purchased DESC LIMIT 1;",
+				1));
+
+		//The same, aggregated by a parallel scan.
+		reports.add(new Report("top_anime_purchased_parallel",
+				() -> new SortOperator(
+						new AggregateOperator(purchases, null,
+								new int[] {1},
+								new AggregateOperator.Function[] {AggregateOperator.Function.COUNT},
+								new int[] {-1}),
+						1, OrderedIndex.ValueType.NUMERIC, true, 1),
+				"SELECT Anime_title, COUNT(*) AS Total_Purchased FROM PURCHASES "
+						+ "GROUP BY Anime_title ORDER BY Total_Purchased DESC LIMIT 1;",
+				1));
+
+		//Customer who purchased the most.
+		reports.add(new Report("top_customer_purchased",
+				() -> new SortOperator(
+						new AggregateOperator(new ScanOperator(purchases),
+								new int[] {0},
+								new AggregateOperator.Function[] {AggregateOperator.Function.COUNT},
+								new int[] {-1}),
+						1, OrderedIndex.ValueType.NUMERIC, true, 1),
+				"SELECT Customer, COUNT(*) AS Total FROM PURCHASES "
+						+ "GROUP BY Customer ORDER BY Total DESC LIMIT 1;",
+				1));
+
+		//Revenue of each genre from anime released since 2010, highest first.
+		reports.add(new Report("genre_revenue_since_2010",
+				() -> new SortOperator(
+						new AggregateOperator(
+								new HashJoinOperator(new ScanOperator(purchases),
+										new FilterOperator(new ScanOperator(anime),
+												FilterOperator.inRange(4,
+														OrderedIndex.ValueType.NUMERIC, "2010", null)),
+										1, 0),
+								new int[] {5},
+								new AggregateOperator.Function[] {AggregateOperator.Function.SUM},
+								new int[] {6}),
+						1, OrderedIndex.ValueType.NUMERIC, true, 0),
+				"SELECT a.Genre, SUM(a.Price) AS Revenue "
+						+ "FROM PURCHASES p JOIN ANIME a ON p.Anime_title = a.Title "
+						+ "WHERE a.Release_year >= 2010 "
+						+ "GROUP BY a.Genre ORDER BY Revenue DESC;",
+				1));
+
+		//Five cheapest anime released since 2010.
+		reports.add(new Report("cheapest_since_2010",
+				() -> new ProjectOperator(
+						new SortOperator(
+								new FilterOperator(new ScanOperator(anime),
+										FilterOperator.inRange(4,
+												OrderedIndex.ValueType.NUMERIC, "2010", null)),
+								3, OrderedIndex.ValueType.NUMERIC, false, 5),
+						new int[] {0, 3}),
+				"SELECT Title, Price FROM ANIME WHERE Release_year >= 2010 "
+						+ "ORDER BY Price LIMIT 5;",
+				1));
+
+		return reports;
+	}
+
+	/**
+	 * Helper method to fill the relations with generated data:
+	 * one anime per 50 purchases, each by one studio or, for one in five,
+	 * two; one customer per 10 purchases; a few anime sell the most.
+	 *
+	 * @param anime
+	 * @param creator
+	 * @param purchases
+	 * @param numOfPurchases
+	 */
+	private static void fillRelations(Relation anime, Relation creator, Relation purchases,
+			int numOfPurchases) {
+
+		Random random = new Random(42);
+		int numOfAnime = Math.max(100, numOfPurchases / 50);
+		int numOfStudios = Math.max(10, numOfAnime / 10);
+		int numOfCustomers = Math.max(100, numOfPurchases / 10);
+
+		for(int animeIdx = 0; animeIdx < numOfAnime; animeIdx++) {
+			String title = "Anime " + String.valueOf(animeIdx);
+			int priceCents = 500 + random.nextInt(2000);
+			anime.insertNewTuple(new String[] {
+					title,
+					"Description of " + title + ".",
+					"Genre " + String.valueOf(random.nextInt(NUM_OF_GENRES)),
+					String.format("%d.%02d", priceCents / 100, priceCents % 100),
+					String.valueOf(1960 + random.nextInt(64))});
+
+			creator.insertNewTuple(new String[] {
+					title, "Studio " + String.valueOf(random.nextInt(numOfStudios))});
+			if(random.nextInt(5) == 0) {
+				creator.insertNewTuple(new String[] {
+						title, "Studio " + String.valueOf(random.nextInt(numOfStudios))});
+			}
+		}
+
+		//Duplicate (customer, anime) pairs are not added, draw again.
+		while(purchases.getNumOfTuples() < numOfPurchases) {
+			double skew = random.nextDouble();
+			purchases.insertNewTuple(new String[] {
+					"Customer " + String.valueOf(random.nextInt(numOfCustomers)),
+					"Anime " + String.valueOf((int) (numOfAnime * skew * skew)),
+					"2023-0" + String.valueOf(1 + random.nextInt(9)) + "-1"
+							+ String.valueOf(random.nextInt(10))});
+		}
+	}
+
+	/**
+	 * Helper method to run an operator pipeline to the end.
+	 *
+	 * @param plan
+	 * @return result
+	 */
+	private static List <String[]> runPlan(Operator plan) {
+
+		List <String[]> result = new ArrayList <> ();
+		plan.open();
+		try {
+			for(String[] tuple = plan.next(); tuple != null; tuple = plan.next()) {
+				result.add(tuple);
+			}
+
+		} finally {
+			plan.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method to load the relations into an in-memory SQLite database.
+	 *
+	 * @param relations
+	 * @return connection
+	 *   The connection, or null if the SQLite JDBC driver is not available.
+	 * @throws SQLException
+	 */
+	private static Connection openSQLite(Relation... relations) throws SQLException {
+
+		try {
+			Class.forName("org.sqlite.JDBC");
+		} catch (ClassNotFoundException cNFE) {
+			return null;
+		}
+
+		Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE ANIME (Title TEXT PRIMARY KEY, Description TEXT,"
+					+ " Genre TEXT, Price REAL, Release_year INTEGER);");
+			statement.execute("CREATE TABLE CREATOR (Anime_title TEXT, Studio_name TEXT,"
+					+ " PRIMARY KEY (Anime_title, Studio_name));");
+			statement.execute("CREATE TABLE PURCHASES (Customer TEXT, Anime_title TEXT,"
+					+ " P_date TEXT, PRIMARY KEY (Customer, Anime_title));");
+		}
+
+		connection.setAutoCommit(false);
+		for(Relation relation : relations) {
+			String[] marks = new String[relation.getAttributeList().length];
+			Arrays.fill(marks, "?");
+			try (PreparedStatement insert = connection.prepareStatement("INSERT INTO "
+					+ relation.getName() + " VALUES (" + String.join(", ", marks) + ");")) {
+				for(String[] tuple : relation.getAllTuples()) {
+					for(int attrIdx = 0; attrIdx < tuple.length; attrIdx++) {
+						insert.setString(attrIdx + 1, tuple[attrIdx]);
+					}
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+		return connection;
+	}
+
+	/**
+	 * Helper method to run a query to the end.
+	 *
+	 * @param connection
+	 * @param sql
+	 * @return result
+	 * @throws SQLException
+	 */
+	private static List <String[]> runSQL(Connection connection, String sql) throws SQLException {
+
+		List <String[]> result = new ArrayList <> ();
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery(sql)) {
+			int numOfColumns = resultSet.getMetaData().getColumnCount();
+			while(resultSet.next()) {
+				String[] row = new String[numOfColumns];
+				for(int columnIdx = 0; columnIdx < numOfColumns; columnIdx++) {
+					row[columnIdx] = resultSet.getString(columnIdx + 1);
+				}
+				result.add(row);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method to check both results have the same values,
+	 * compared as numbers, in the attribute the report sorts by.
+	 * SQLite sums prices as doubles, so allow for rounding.
+	 *
+	 * @param report
+	 * @param opResult
+	 * @param sqlResult
+	 */
+	private static void checkSameResult(Report report, List <String[]> opResult,
+			List <String[]> sqlResult) {
+
+		boolean isSame = opResult.size() == sqlResult.size();
+		for(int rowIdx = 0; isSame && rowIdx < opResult.size(); rowIdx++) {
+			double opValue = OrderedIndex.parseNumber(
+					opResult.get(rowIdx)[report.sortedAttrIdx]).doubleValue();
+			double sqlValue = OrderedIndex.parseNumber(
+					sqlResult.get(rowIdx)[report.sortedAttrIdx]).doubleValue();
+			isSame = Math.abs(opValue - sqlValue) <= 1e-9 * Math.max(1, Math.abs(opValue));
+		}
+		if(!isSame) {
+			System.out.println("Err: " + report.name + " differs from SQLite.");
+		}
+	}
+
+	private static double median(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
@@ -1,41 +1,188 @@
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 /**
- * 
- * 
+ * A relation: its attributes, and its tuples in a TupleStore.
+ *
+ * Each tuple gets a tuple ID when it is inserted, which stays the same
+ * through updates and other tuples' deletes, and is never given out again,
+ * except to the same tuple, when a Transaction that deleted it aborts.
+ * Deletes only mark the tuple's slot in the store dead (a tombstone);
+ * once dead slots pass 1 / COMPACT_DEAD_RATIO of all slots, compaction
+ * moves live tuples down over them, COMPACT_STEP_SLOTS slots per write,
+ * so no single write pays for the whole pass.
+ * Tuples keep their insertion order, so slots are in tuple ID order.
+ *
+ * Relations are thread-safe. Writes (insert, update, delete) take
+ * the relation's write lock, one at a time. Reads never lock:
+ * tuples are read from an immutable snapshot of the store,
+ * published after writes, and keys are looked up in a concurrent index.
+ * A reader that comes while another thread is writing
+ * reads the last published snapshot.
+ *
+ * Writes are made durable by an attached WriteAheadLog, if any:
+ * each write is logged under the write lock, before it is applied,
+ * and waits for the log to reach disk after the lock is released,
+ * so writes to the relation can share one disk sync (group commit).
+ * Writes made in a Transaction are logged with its ID and do not wait;
+ * its commit does.
+ *
  * @author Keming He
  * @version 20230616
  *
  */
 public class Relation {
 
+	/*
+	 * Tuple ID of a dead slot, and slot of a deleted tuple ID.
+	 */
+	private static final int DEAD_SLOT = -1;
+	private static final int NO_SLOT = -1;
+	
+	/*
+	 * Compaction starts once at least COMPACT_MIN_DEAD_SLOTS slots,
+	 * and more than 1 / COMPACT_DEAD_RATIO of all slots, are dead;
+	 * each write then compacts the next COMPACT_STEP_SLOTS slots.
+	 */
+	private static final int COMPACT_MIN_DEAD_SLOTS = 64;
+	private static final int COMPACT_DEAD_RATIO = 4;
+	private static final int COMPACT_STEP_SLOTS = 1024;
+	
 	/**
 	 * Private attributes for each instance of the Relation object:
 	 *     name:       name of the relation;
-	 *     
+	 * 
 	 *	   attributes: array of all attribute names,
 	 *                 begins with prime attributes;
-	 *                 
+	 * 
 	 *     numOfPA:    keep track of the number of prime attributes;
-	 *     
-	 *     tuples:     growing list of data tuples,
-	 *                 each tuple is an array of Objects,
-	 *                 tuple array length matches attr array len.
+	 * 
+	 *     tuples:     storage of the data tuples, by slot,
+	 *                 rows (RowTupleStore) unless another layout is given,
+	 *                 tuple length matches attr array len;
+	 * 
+	 *     slotIds,
+	 *     idSlots:    the tuple ID in each slot, DEAD_SLOT for tombstones;
+	 *                 and the slot of each tuple ID, NO_SLOT once deleted;
+	 *                 the size of idSlots is the next tuple ID;
+	 * 
+	 *     numOfDeadSlots: number of tombstones in tuples;
+	 * 
+	 *     compactReadSlot,
+	 *     compactWriteSlot: while compacting, the next slot to move down
+	 *                 and where to; slots in between are all dead;
+	 *                 compactReadSlot is -1 when not compacting;
+	 * 
+	 *     pKIndex:    primary key hash index,
+	 *                 maps the key values of each tuple to its tuple ID;
+	 *                 built on first use, or in the background when
+	 *                 the relation is created over stored tuples;
+	 * 
+	 *     writeLock:  held for every change to tuples or the indexes;
+	 * 
+	 *     published,
+	 *     lastPublished: snapshot of tuples as of the last write,
+	 *                 null until a reader asks for it;
+	 *                 and the latest snapshot taken;
+	 * 
+	 *     orderedIndexes: secondary ordered index of each attribute,
+	 *                 null for attributes without one;
+	 *                 replaced, not changed, when an index is added;
+	 * 
+	 *     bitmapIndexes: secondary bitmap index of each attribute,
+	 *                 null for attributes without one; only read
+	 *                 and written under the write lock, readers get
+	 *                 snapshots of them with the snapshot of tuples;
+	 * 
+	 *     numericColumns: typed copy of each numeric attribute, null
+	 *                 for attributes without one; locked and
+	 *                 snapshot like bitmapIndexes;
+	 * 
+	 *     log:        write-ahead log of all writes, or null.
 	 * 
 	 * Private so requires getter/setters to access.
 	 */
 	private String name;
 	private String[] attributeList;
 	private int numOfPA;
-	private ArrayList <String[]> tuples = new ArrayList <> ();
+	private TupleStore tuples;
+	private final ChunkedIntArray slotIds = new ChunkedIntArray();
+	private final ChunkedIntArray idSlots = new ChunkedIntArray();
+	private int numOfDeadSlots = 0;
+	private int compactReadSlot = -1;
+	private int compactWriteSlot = 0;
+	private volatile ConcurrentHashMap <TupleKey, Integer> pKIndex = null;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile RelationSnapshot published = null;
+	private volatile RelationSnapshot lastPublished = null;
+	private volatile OrderedIndex[] orderedIndexes;
+	private final BitmapIndex[] bitmapIndexes;
+	private final NumericColumn[] numericColumns;
+	private volatile WriteAheadLog log = null;
 	
 	public Relation(String newName, String[] newAttributeList, int newNumOfPA) {
+		this(newName, newAttributeList, newNumOfPA,
+				new RowTupleStore(newAttributeList.length));
+	}
+	
+	/**
+	 * Create a relation storing its tuples in the given layout,
+	 * e.g. a ColumnarTupleStore, or an opened MappedTupleStore.
+	 * Tuples already in the store get their tuple index as tuple ID,
+	 * and are added to the primary key index by a background thread,
+	 * so creating the relation reads no tuples; a lookup before
+	 * the thread is done waits for it. Writes also wait, reads of
+	 * tuples do not.
+	 * 
+	 * @param newName
+	 * @param newAttributeList
+	 * @param newNumOfPA
+	 * @param newTuples
+	 * 
+	 * @requires newTuples.getNumOfAttributes() == newAttributeList.length
+	 *   and no two tuples in newTuples have the same key values
+	 */
+	public Relation(String newName, String[] newAttributeList, int newNumOfPA,
+			TupleStore newTuples) {
+		assert newTuples.getNumOfAttributes() == newAttributeList.length;
 		
-		this.name = newName;	
+		this.name = newName;
 		this.attributeList = newAttributeList;
 		this.numOfPA = newNumOfPA;
+		this.tuples = newTuples;
+		this.orderedIndexes = new OrderedIndex[newAttributeList.length];
+		this.bitmapIndexes = new BitmapIndex[newAttributeList.length];
+		this.numericColumns = new NumericColumn[newAttributeList.length];
+		
+		//Tuples deleted before the store was closed stay deleted.
+		int slotLimit = newTuples.size();
+		int tmpSlot = 0;
+		while(tmpSlot < slotLimit) {
+			int clearedSlot = newTuples.findNextCleared(tmpSlot);
+			this.slotIds.addRange(tmpSlot, clearedSlot - tmpSlot);
+			this.idSlots.addRange(tmpSlot, clearedSlot - tmpSlot);
+			if(clearedSlot < slotLimit) {
+				this.slotIds.add(DEAD_SLOT);
+				this.idSlots.add(NO_SLOT);
+				this.numOfDeadSlots++;
+			}
+			tmpSlot = clearedSlot + 1;
+		}
+		
+		//Publish a snapshot first, so reads go on while the index is built.
+		if(slotLimit > this.numOfDeadSlots) {
+			this.snapshot();
+			Thread builder = new Thread(this::getPKIndex, "pk-index-" + newName);
+			builder.setDaemon(true);
+			builder.start();
+		}
 	}
 	
 	public String getName () {
@@ -50,12 +197,363 @@ public class Relation {
 		return Arrays.copyOfRange(this.attributeList, 0, numOfPA);
 	}
 	
-	public String[] getOneTuple (int tupleIdx) {
-		return this.tuples.get(tupleIdx);
+	/**
+	 * Return a tuple by its tuple ID.
+	 * 
+	 * @param tupleId
+	 * @return tuple
+	 *   The tuple, or null if there is no tuple with that ID.
+	 */
+	public String[] getOneTuple (int tupleId) {
+		return this.snapshot().getTuple(tupleId);
+	}
+	
+	/**
+	 * Return a read-only list of all tuples, in tuple ID order,
+	 * as of one snapshot, so later writes do not change it.
+	 * Use insert/update/delete to change tuples,
+	 * so the indexes stay in sync.
+	 * 
+	 * @return allTuples
+	 */
+	public List <String[]> getAllTuples () {
+		RelationSnapshot tmpSnapshot = this.snapshot();
+		TupleStore tmpStore = tmpSnapshot.getStore();
+		List <String[]> allTuples = new ArrayList <> (tmpSnapshot.size());
+		
+		int slotLimit = tmpSnapshot.getNumOfSlots();
+		for(int tmpSlot = 0; tmpSlot < slotLimit; tmpSlot++) {
+			if(tmpSnapshot.getTupleId(tmpSlot) != DEAD_SLOT) {
+				allTuples.add(tmpStore.getTuple(tmpSlot));
+			}
+		}
+		return Collections.unmodifiableList(allTuples);
+	}
+	
+	public int getNumOfTuples () {
+		return this.snapshot().size();
+	}
+	
+	/**
+	 * Return an immutable snapshot of all tuples, without locking.
+	 * A new snapshot is only taken after writes, readers share it until then;
+	 * while another thread is writing, the last published one is returned.
+	 * 
+	 * @return snapshot
+	 */
+	public RelationSnapshot snapshot () {
+		
+		RelationSnapshot tmpSnapshot = this.published;
+		if(tmpSnapshot != null) {
+			return tmpSnapshot;
+		}
+		
+		//Never wait for a writer, unless there is no snapshot yet.
+		if(!this.writeLock.tryLock()) {
+			tmpSnapshot = this.lastPublished;
+			if(tmpSnapshot != null) {
+				return tmpSnapshot;
+			}
+			this.writeLock.lock();
+		}
+		
+		try {
+			tmpSnapshot = this.published;
+			if(tmpSnapshot == null) {
+				BitmapIndex [] tmpBitmapIndexes = new BitmapIndex [this.bitmapIndexes.length];
+				NumericColumn [] tmpNumericColumns = new NumericColumn [this.numericColumns.length];
+				for(int tmpAttrIdx = 0; tmpAttrIdx < tmpBitmapIndexes.length; tmpAttrIdx++) {
+					if(this.bitmapIndexes[tmpAttrIdx] != null) {
+						tmpBitmapIndexes[tmpAttrIdx] = this.bitmapIndexes[tmpAttrIdx].snapshot();
+					}
+					if(this.numericColumns[tmpAttrIdx] != null) {
+						tmpNumericColumns[tmpAttrIdx] = this.numericColumns[tmpAttrIdx].snapshot();
+					}
+				}
+				
+				tmpSnapshot = new RelationSnapshot(this.tuples.snapshot(),
+						this.slotIds.snapshot(), this.idSlots.snapshot(),
+						this.tuples.size() - this.numOfDeadSlots,
+						tmpBitmapIndexes, tmpNumericColumns);
+				this.lastPublished = tmpSnapshot;
+				this.published = tmpSnapshot;
+			}
+			return tmpSnapshot;
+			
+		} finally {
+			this.writeLock.unlock();
+		}
 	}
 	
-	public ArrayList <String[]> getAllTuples () {
-		return this.tuples;
+	/**
+	 * Return a parallel stream of all tuples, in tuple ID order,
+	 * as of one snapshot, for filters and aggregates split across
+	 * fork-join threads, e.g.
+	 *     relation.parallelStream().filter(...).count()
+	 * 
+	 * @return stream
+	 */
+	public Stream <String[]> parallelStream () {
+		return this.snapshot().parallelStream();
+	}
+	
+	/**
+	 * Find a tuple by its key attribute values, using the primary key index.
+	 * 
+	 * @param keyValues
+	 *   The key attribute values, in getPAList() order;
+	 *   a whole tuple also works, since only the keys are read.
+	 * @return tupleId
+	 *   The tuple ID of the matching tuple, or -1 if there is none.
+	 * 
+	 * @requires keyValues.length >= getPAList().length
+	 */
+	public int findTupleId (String[] keyValues) {
+		Integer tupleId = this.getPKIndex().get(TupleKey.probe(keyValues, this.numOfPA));
+		return (tupleId == null) ? -1 : tupleId.intValue();
+	}
+	
+	/**
+	 * Find a tuple by its key attribute values, without locking
+	 * unless a concurrent write changed it between the index lookup
+	 * and the snapshot read.
+	 * 
+	 * @param keyValues
+	 *   The key attribute values, in getPAList() order.
+	 * @return tuple
+	 *   The matching tuple, or null if there is none.
+	 * 
+	 * @requires keyValues.length >= getPAList().length
+	 */
+	public String[] findTuple (String[] keyValues) {
+		
+		TupleKey probeKey = TupleKey.probe(keyValues, this.numOfPA);
+		Integer tupleId = this.getPKIndex().get(probeKey);
+		if(tupleId == null) {
+			return null;
+		}
+		
+		//Check the snapshot still has the tuple, with that key.
+		String [] tmpTuple = this.snapshot().getTuple(tupleId.intValue());
+		if(tmpTuple != null && probeKey.equals(TupleKey.probe(tmpTuple, this.numOfPA))) {
+			return tmpTuple;
+		}
+		
+		this.writeLock.lock();
+		try {
+			tupleId = this.pKIndex.get(probeKey);
+			return (tupleId == null)
+					? null
+					: this.tuples.getTuple(this.idSlots.get(tupleId.intValue()));
+					
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Find all tuples with a given value for one attribute.
+	 * Uses the ordered index of the attribute if it has one,
+	 * so NUMERIC indexes match equal numbers, e.g. "12.5" and "12.50";
+	 * otherwise its bitmap index, or scans the attribute,
+	 * matching equal Strings.
+	 * 
+	 * @param attrIdx
+	 * @param value
+	 * @return tupleIds
+	 *   The tuple IDs of all matching tuples, in ascending order.
+	 * 
+	 * @requires 0 <= attrIdx < getAttributeList().length
+	 */
+	public int[] findTupleIds (int attrIdx, String value) {
+		
+		OrderedIndex tmpIndex = this.orderedIndexes[attrIdx];
+		if(tmpIndex == null) {
+			return this.snapshot().findEqual(attrIdx, value);
+		}
+		
+		int [] tmpIds = tmpIndex.findEqual(value);
+		return (value == null)
+				? this.resolveIndexIds(tmpIndex, tmpIds, null, null, true)
+				: this.resolveIndexIds(tmpIndex, tmpIds, value, value, false);
+	}
+	
+	/**
+	 * Find all tuples with a value of one attribute between low and high,
+	 * both included. Uses the ordered index of the attribute if it has one,
+	 * and its comparison; otherwise scans the attribute, comparing values
+	 * as numbers if the given bounds are numbers, else as text.
+	 * Numbers are scanned in the numeric column of the attribute if it has
+	 * one, compared as doubles. Null values are never in range.
+	 * 
+	 * @param attrIdx
+	 * @param low
+	 *   The lowest value, or null for no lower bound.
+	 * @param high
+	 *   The highest value, or null for no upper bound.
+	 * @return tupleIds
+	 *   The tuple IDs of all matching tuples, in ascending order.
+	 * 
+	 * @requires 0 <= attrIdx < getAttributeList().length
+	 */
+	public int[] findTupleIdsInRange (int attrIdx, String low, String high) {
+		
+		OrderedIndex tmpIndex = this.orderedIndexes[attrIdx];
+		if(tmpIndex != null) {
+			return this.resolveIndexIds(tmpIndex, tmpIndex.findRange(low, high),
+					low, high, false);
+		}
+		
+		boolean isNumeric = (low != null || high != null)
+				&& (low == null || OrderedIndex.parseNumber(low) != null)
+				&& (high == null || OrderedIndex.parseNumber(high) != null);
+		OrderedIndex.ValueType tmpValueType = isNumeric
+				? OrderedIndex.ValueType.NUMERIC : OrderedIndex.ValueType.TEXT;
+				
+		RelationSnapshot tmpSnapshot = this.snapshot();
+		NumericColumn tmpColumn = tmpSnapshot.getNumericColumn(attrIdx);
+		if(isNumeric && tmpColumn != null) {
+			return tmpColumn.selectRange(
+					(low == null) ? Double.NEGATIVE_INFINITY : NumericColumn.toDouble(low),
+					(high == null) ? Double.POSITIVE_INFINITY : NumericColumn.toDouble(high));
+		}
+		
+		TupleStore tmpStore = tmpSnapshot.getStore();
+		int [] tupleIds = new int [16];
+		int matchCount = 0;
+		
+		int slotLimit = tmpSnapshot.getNumOfSlots();
+		for(int tmpSlot = 0; tmpSlot < slotLimit; tmpSlot++) {
+			int tmpId = tmpSnapshot.getTupleId(tmpSlot);
+			if(tmpId != DEAD_SLOT && OrderedIndex.isInRange(tmpValueType,
+					tmpStore.getValue(tmpSlot, attrIdx), low, high)) {
+				if(matchCount == tupleIds.length) {
+					tupleIds = Arrays.copyOf(tupleIds, matchCount * 2);
+				}
+				tupleIds[matchCount++] = tmpId;
+			}
+		}
+		return Arrays.copyOf(tupleIds, matchCount);
+	}
+	
+	/**
+	 * Declare a secondary ordered index on one attribute,
+	 * used from then on by findTupleIds and findTupleIdsInRange,
+	 * and kept up to date by insert/update/delete.
+	 * Does nothing if the attribute already has an index.
+	 * 
+	 * @param attrIdx
+	 * @param valueType
+	 *   NUMERIC to compare values as numbers, TEXT otherwise.
+	 * 
+	 * @requires 0 <= attrIdx < getAttributeList().length
+	 */
+	public void createOrderedIndex (int attrIdx, OrderedIndex.ValueType valueType) {
+		
+		this.writeLock.lock();
+		try {
+			if(this.orderedIndexes[attrIdx] != null) {
+				return;
+			}
+			
+			OrderedIndex newIndex = new OrderedIndex(attrIdx, valueType);
+			int slotLimit = this.tuples.size();
+			for(int tmpSlot = 0; tmpSlot < slotLimit; tmpSlot++) {
+				int tmpId = this.slotIds.get(tmpSlot);
+				if(tmpId != DEAD_SLOT) {
+					newIndex.add(this.tuples.getValue(tmpSlot, attrIdx), tmpId);
+				}
+			}
+			
+			OrderedIndex [] newIndexes = this.orderedIndexes.clone();
+			newIndexes[attrIdx] = newIndex;
+			this.orderedIndexes = newIndexes;
+			
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Return the secondary ordered index of an attribute.
+	 * 
+	 * @param attrIdx
+	 * @return index
+	 *   The index, or null if the attribute has none.
+	 */
+	public OrderedIndex getOrderedIndex (int attrIdx) {
+		return this.orderedIndexes[attrIdx];
+	}
+	
+	/**
+	 * Declare a secondary bitmap index on one low-cardinality attribute,
+	 * kept up to date by insert/update/delete, and read through
+	 * snapshot().findBitmap() and snapshot().getBitmapIndex().
+	 * Does nothing if the attribute already has one.
+	 * 
+	 * @param attrIdx
+	 * 
+	 * @requires 0 <= attrIdx < getAttributeList().length
+	 */
+	public void createBitmapIndex (int attrIdx) {
+		
+		this.writeLock.lock();
+		try {
+			if(this.bitmapIndexes[attrIdx] != null) {
+				return;
+			}
+			
+			BitmapIndex newIndex = new BitmapIndex(attrIdx);
+			int slotLimit = this.tuples.size();
+			for(int tmpSlot = 0; tmpSlot < slotLimit; tmpSlot++) {
+				int tmpId = this.slotIds.get(tmpSlot);
+				if(tmpId != DEAD_SLOT) {
+					newIndex.add(this.tuples.getValue(tmpSlot, attrIdx), tmpId);
+				}
+			}
+			
+			this.bitmapIndexes[attrIdx] = newIndex;
+			this.published = null;
+			
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Declare a numeric column on one attribute, e.g. a price or a year:
+	 * its values parsed once into doubles, kept up to date by
+	 * insert/update/delete, and filtered and aggregated by the kernels
+	 * of snapshot().getNumericColumn(); also used by findTupleIdsInRange.
+	 * Does nothing if the attribute already has one.
+	 * 
+	 * @param attrIdx
+	 * 
+	 * @requires 0 <= attrIdx < getAttributeList().length
+	 */
+	public void createNumericColumn (int attrIdx) {
+		
+		this.writeLock.lock();
+		try {
+			if(this.numericColumns[attrIdx] != null) {
+				return;
+			}
+			
+			NumericColumn newColumn = new NumericColumn(attrIdx);
+			int slotLimit = this.tuples.size();
+			for(int tmpSlot = 0; tmpSlot < slotLimit; tmpSlot++) {
+				int tmpId = this.slotIds.get(tmpSlot);
+				if(tmpId != DEAD_SLOT) {
+					newColumn.set(tmpId, NumericColumn.toDouble(this.tuples.getValue(tmpSlot, attrIdx)));
+				}
+			}
+			
+			this.numericColumns[attrIdx] = newColumn;
+			this.published = null;
+			
+		} finally {
+			this.writeLock.unlock();
+		}
 	}
 	
 	public void printName () {
@@ -65,20 +563,20 @@ public class Relation {
 	public void printAllAttributes () {
 		
 		System.out.println(
-				"All attributes for " 
+				"All attributes for "
 				+ this.getName()
 				+ ": ");
-		
+				
 		String [] tmpAttributeList = this.getAttributeList();
 		int isKeyIdxLimit = this.getPAList().length;
 		
 		for(int tmpIdx = 0; tmpIdx < tmpAttributeList.length; tmpIdx++) {
 			System.out.print(
 					"Attr "
-					+ String.valueOf(tmpIdx) 
+					+ String.valueOf(tmpIdx)
 					+ ". "
 					+ tmpAttributeList[tmpIdx]);
-			
+					
 			if (tmpIdx < isKeyIdxLimit) {
 				System.out.print(" (key)");
 			}
@@ -86,49 +584,710 @@ public class Relation {
 		}
 		System.out.println();
 	}
+	
+	/**
+	 * Print one tuple by its tuple ID.
+	 * 
+	 * @param tupleId
+	 * 
+	 * @requires there is a tuple with that ID
+	 */
+	public void printOneTuple (int tupleId) {
+		String [] tmpTuple = this.getOneTuple(tupleId);
+		assert tmpTuple != null;
+		this.printTuple(tmpTuple);
+	}
+	
+	/**
+	 * Helper method to print the attribute values of a tuple.
+	 * 
+	 * @param tmpTuple
+	 */
+	private void printTuple (String[] tmpTuple) {
 		
-	public void printOneTuple (int tupleIdx) {
-		
-		String [] tmpTuple = this.getOneTuple(tupleIdx);
 		String [] tmpAttributeList = this.getAttributeList();
 		int isKeyIdxLimit = this.getPAList().length;
 		
 		for(int tmpIdx = 0; tmpIdx < tmpAttributeList.length; tmpIdx++) {
 			System.out.print(
 					"Attr "
-					+ String.valueOf(tmpIdx) 
+					+ String.valueOf(tmpIdx)
 					+ ". "
 					+ tmpAttributeList[tmpIdx]);
-			
+					
 			if (tmpIdx < isKeyIdxLimit) {
 				System.out.print(" (key)");
 			}
 			
 			System.out.println(
-					": \t" 
+					": \t"
 					+ tmpTuple[tmpIdx]);
 		}
 		System.out.println();
 	}
 	
 	public void printAllTuples () {
-		int idxLimit = this.getAllTuples().size();
-		for(int tmpIdx = 0; tmpIdx < idxLimit; tmpIdx++) {
-			System.out.println("Tuple " + String.valueOf(tmpIdx));
-			this.printOneTuple(tmpIdx);
+		RelationSnapshot tmpSnapshot = this.snapshot();
+		TupleStore tmpStore = tmpSnapshot.getStore();
+		int slotLimit = tmpSnapshot.getNumOfSlots();
+		for(int tmpSlot = 0; tmpSlot < slotLimit; tmpSlot++) {
+			int tmpId = tmpSnapshot.getTupleId(tmpSlot);
+			if(tmpId != DEAD_SLOT) {
+				System.out.println("Tuple " + String.valueOf(tmpId));
+				this.printTuple(tmpStore.getTuple(tmpSlot));
+			}
+		}
+	}
+	
+	/**
+	 * Add a new tuple, unless a tuple with the same key values exists.
+	 * 
+	 * @param newTuple
+	 * @return tupleId
+	 *   The tuple ID of the new tuple; or -1 if the key values
+	 *   are already taken, the tuple is not added.
+	 * 
+	 * @requires newTuple.length == getAttributeList().length
+	 */
+	public int insertNewTuple (String[] newTuple) {
+		return this.insertTuple(newTuple, -1, WriteAheadLog.NO_TRANSACTION);
+	}
+	
+	/**
+	 * Add a new tuple in a transaction, see insertNewTuple(newTuple).
+	 * 
+	 * @param newTuple
+	 * @param transactionId
+	 * @return tupleId
+	 */
+	int insertNewTuple (String[] newTuple, long transactionId) {
+		return this.insertTuple(newTuple, -1, transactionId);
+	}
+	
+	/**
+	 * Overwrite an existing tuple, unless its new key values
+	 * are taken by another tuple. The tuple keeps its tuple ID.
+	 * 
+	 * @param updateTuple
+	 * @param tupleId
+	 * @return updated
+	 *   False if there is no tuple with that ID, or the new key values
+	 *   belong to another tuple; the tuple is left unchanged.
+	 * 
+	 * @requires updateTuple.length == getAttributeList().length
+	 */
+	public boolean updateExistingTuple (String[] updateTuple, int tupleId) {
+		return this.updateExistingTuple(updateTuple, tupleId, WriteAheadLog.NO_TRANSACTION);
+	}
+	
+	/**
+	 * Overwrite an existing tuple in a transaction,
+	 * see updateExistingTuple(updateTuple, tupleId).
+	 * 
+	 * @param updateTuple
+	 * @param tupleId
+	 * @param transactionId
+	 *   The transaction, or WriteAheadLog.NO_TRANSACTION for none.
+	 * @return updated
+	 */
+	boolean updateExistingTuple (String[] updateTuple, int tupleId, long transactionId) {
+		assert updateTuple.length == this.attributeList.length;
+		
+		TupleKey newKey = TupleKey.of(updateTuple, this.numOfPA);
+		ConcurrentHashMap <TupleKey, Integer> tmpPKIndex = this.getPKIndex();
+		WriteAheadLog tmpLog;
+		long tmpLSN = 0;
+		
+		this.writeLock.lock();
+		try {
+			int tmpSlot = this.getSlot(tupleId);
+			if(tmpSlot == NO_SLOT) {
+				return false;
+			}
+			
+			String [] oldTuple = this.tuples.getTuple(tmpSlot);
+			TupleKey oldKey = TupleKey.probe(oldTuple, this.numOfPA);
+			boolean isKeyChanged = !newKey.equals(oldKey);
+			
+			if(isKeyChanged && tmpPKIndex.containsKey(newKey)) {
+				return false;
+			}
+			
+			tmpLog = this.log;
+			if(tmpLog != null) {
+				tmpLSN = tmpLog.logUpdate(transactionId, this.name, tupleId, updateTuple);
+			}
+			
+			this.tuples.setTuple(tmpSlot, updateTuple);
+			this.published = null;
+			
+			//Key values changed, re-key the index entry.
+			if(isKeyChanged) {
+				tmpPKIndex.put(newKey, tupleId);
+				tmpPKIndex.remove(oldKey);
+			}
+			
+			for(OrderedIndex tmpIndex : this.orderedIndexes) {
+				if(tmpIndex != null) {
+					int tmpAttrIdx = tmpIndex.getAttrIdx();
+					if(!Objects.equals(oldTuple[tmpAttrIdx], updateTuple[tmpAttrIdx])) {
+						tmpIndex.remove(oldTuple[tmpAttrIdx], tupleId);
+						tmpIndex.add(updateTuple[tmpAttrIdx], tupleId);
+					}
+				}
+			}
+			
+			for(BitmapIndex tmpIndex : this.bitmapIndexes) {
+				if(tmpIndex != null) {
+					int tmpAttrIdx = tmpIndex.getAttrIdx();
+					if(!Objects.equals(oldTuple[tmpAttrIdx], updateTuple[tmpAttrIdx])) {
+						tmpIndex.remove(oldTuple[tmpAttrIdx], tupleId);
+						tmpIndex.add(updateTuple[tmpAttrIdx], tupleId);
+					}
+				}
+			}
+			
+			for(NumericColumn tmpColumn : this.numericColumns) {
+				if(tmpColumn != null) {
+					tmpColumn.set(tupleId, NumericColumn.toDouble(updateTuple[tmpColumn.getAttrIdx()]));
+				}
+			}
+			
+			this.compactStep();
+			
+		} finally {
+			this.writeLock.unlock();
+		}
+		
+		awaitDurable(tmpLog, tmpLSN, transactionId);
+		return true;
+	}
+	
+	/**
+	 * Remove an existing tuple. Its slot becomes a tombstone,
+	 * other tuples keep their tuple IDs.
+	 * 
+	 * @param tupleId
+	 * @return deleted
+	 *   False if there is no tuple with that ID.
+	 */
+	public boolean deleteExistingTuple (int tupleId) {
+		return this.deleteExistingTuple(tupleId, WriteAheadLog.NO_TRANSACTION);
+	}
+	
+	/**
+	 * Remove an existing tuple in a transaction,
+	 * see deleteExistingTuple(tupleId).
+	 * 
+	 * @param tupleId
+	 * @param transactionId
+	 *   The transaction, or WriteAheadLog.NO_TRANSACTION for none.
+	 * @return deleted
+	 */
+	boolean deleteExistingTuple (int tupleId, long transactionId) {
+		
+		ConcurrentHashMap <TupleKey, Integer> tmpPKIndex = this.getPKIndex();
+		WriteAheadLog tmpLog;
+		long tmpLSN = 0;
+		
+		this.writeLock.lock();
+		try {
+			int tmpSlot = this.getSlot(tupleId);
+			if(tmpSlot == NO_SLOT) {
+				return false;
+			}
+			
+			String [] oldTuple = this.tuples.getTuple(tmpSlot);
+			TupleKey oldKey = TupleKey.probe(oldTuple, this.numOfPA);
+			
+			tmpLog = this.log;
+			if(tmpLog != null) {
+				tmpLSN = tmpLog.logDelete(transactionId, this.name, tupleId);
+			}
+			
+			this.tuples.clearTuple(tmpSlot);
+			this.slotIds.set(tmpSlot, DEAD_SLOT);
+			this.idSlots.set(tupleId, NO_SLOT);
+			this.numOfDeadSlots++;
+			this.published = null;
+			tmpPKIndex.remove(oldKey);
+			
+			for(OrderedIndex tmpIndex : this.orderedIndexes) {
+				if(tmpIndex != null) {
+					tmpIndex.remove(oldTuple[tmpIndex.getAttrIdx()], tupleId);
+				}
+			}
+			
+			for(BitmapIndex tmpIndex : this.bitmapIndexes) {
+				if(tmpIndex != null) {
+					tmpIndex.remove(oldTuple[tmpIndex.getAttrIdx()], tupleId);
+				}
+			}
+			
+			for(NumericColumn tmpColumn : this.numericColumns) {
+				if(tmpColumn != null) {
+					tmpColumn.set(tupleId, Double.NaN);
+				}
+			}
+			
+			//Enough tombstones, start a compaction pass.
+			if(this.compactReadSlot < 0
+					&& this.numOfDeadSlots >= COMPACT_MIN_DEAD_SLOTS
+					&& this.numOfDeadSlots * COMPACT_DEAD_RATIO > this.tuples.size()) {
+				this.compactReadSlot = 0;
+				this.compactWriteSlot = 0;
+			}
+			this.compactStep();
+			
+		} finally {
+			this.writeLock.unlock();
+		}
+		
+		awaitDurable(tmpLog, tmpLSN, transactionId);
+		return true;
+	}
+	
+	/**
+	 * Compact all tombstones away now, instead of a step per write.
+	 */
+	public void compact () {
+		
+		this.writeLock.lock();
+		try {
+			if(this.numOfDeadSlots == 0) {
+				return;
+			}
+			if(this.compactReadSlot < 0) {
+				this.compactReadSlot = 0;
+				this.compactWriteSlot = 0;
+			}
+			while(this.compactReadSlot >= 0) {
+				this.compactStep();
+			}
+			
+		} finally {
+			this.writeLock.unlock();
 		}
 	}
 	
-	public void insertNewTuple (String[] newTuple) {
-		this.tuples.add(newTuple);
+	/**
+	 * Log all later writes to the given write-ahead log,
+	 * or stop logging if it is null.
+	 * Called by WriteAheadLog, once the relation is recovered.
+	 * 
+	 * @param newLog
+	 */
+	void setWriteAheadLog (WriteAheadLog newLog) {
+		this.writeLock.lock();
+		try {
+			this.log = newLog;
+			
+		} finally {
+			this.writeLock.unlock();
+		}
 	}
 	
-	public void updateExistingTuple (String[] updateTuple, int tupleIdx) {
-		this.tuples.set(tupleIdx, updateTuple);
+	/**
+	 * Return the write-ahead log of the relation, or null.
+	 * 
+	 * @return log
+	 */
+	WriteAheadLog getWriteAheadLog () {
+		return this.log;
 	}
 	
-	public void deleteExistingTuple (int tupleIdx) {
-		this.tuples.remove(tupleIdx);
+	/**
+	 * Insert a tuple with the tuple ID it had before,
+	 * when recovering the relation from a WriteAheadLog.
+	 * 
+	 * @param tupleId
+	 * @param tuple
+	 * @return restored
+	 *   False if the key values are already taken,
+	 *   or a tuple has that tuple ID.
+	 */
+	boolean restoreTuple (int tupleId, String[] tuple) {
+		return this.insertTuple(tuple, tupleId, WriteAheadLog.NO_TRANSACTION) >= 0;
+	}
+	
+	/**
+	 * Bring a deleted tuple back with its tuple ID, in the slot
+	 * it had among the other tuples, when the Transaction
+	 * that deleted it aborts.
+	 * 
+	 * @param tupleId
+	 * @param tuple
+	 *   The tuple as it was deleted.
+	 * @param transactionId
+	 * @return restored
+	 *   False if the key values are taken, or a tuple has that tuple ID.
+	 * 
+	 * @requires tupleId was given out, and the tuple deleted
+	 */
+	boolean undeleteTuple (int tupleId, String[] tuple, long transactionId) {
+		return this.insertTuple(tuple, tupleId, transactionId) >= 0;
+	}
+	
+	/**
+	 * Make sure tuple IDs below the given one are not given out,
+	 * when recovering the relation from a WriteAheadLog.
+	 * 
+	 * @param nextTupleId
+	 */
+	void restoreNextTupleId (int nextTupleId) {
+		this.writeLock.lock();
+		try {
+			while(this.idSlots.size() < nextTupleId) {
+				this.idSlots.add(NO_SLOT);
+			}
+			this.published = null;
+			
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Hold off all writes to the relation until unlockWrites(),
+	 * e.g. to snapshot several relations at one point of their log.
+	 * Reads go on. Writes by the calling thread are still allowed.
+	 */
+	public void lockWrites () {
+		this.writeLock.lock();
+	}
+	
+	/**
+	 * Let writes to the relation go on, after lockWrites().
+	 */
+	public void unlockWrites () {
+		this.writeLock.unlock();
+	}
+	
+	/**
+	 * Release any files held by the tuple storage.
+	 */
+	public void close () {
+		this.writeLock.lock();
+		try {
+			this.tuples.close();
+			
+		} finally {
+			this.writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Helper method to add a tuple, unless its key is taken: in a new slot,
+	 * or for a tuple ID below the next one, in a free slot among the others.
+	 * 
+	 * @param newTuple
+	 * @param givenId
+	 *   The tuple ID to give it, or -1 for the next one.
+	 * @param transactionId
+	 *   The transaction, or WriteAheadLog.NO_TRANSACTION for none.
+	 * @return tupleId
+	 *   The tuple ID, or -1 if the key values are already taken,
+	 *   or a tuple has the given tuple ID.
+	 */
+	private int insertTuple (String[] newTuple, int givenId, long transactionId) {
+		assert newTuple.length == this.attributeList.length;
+		
+		TupleKey newKey = TupleKey.of(newTuple, this.numOfPA);
+		ConcurrentHashMap <TupleKey, Integer> tmpPKIndex = this.getPKIndex();
+		WriteAheadLog tmpLog;
+		long tmpLSN = 0;
+		int newId;
+		
+		this.writeLock.lock();
+		try {
+			if(tmpPKIndex.containsKey(newKey)
+					|| (givenId >= 0 && this.getSlot(givenId) != NO_SLOT)) {
+				return -1;
+			}
+			
+			newId = (givenId < 0) ? this.idSlots.size() : givenId;
+			
+			tmpLog = this.log;
+			if(tmpLog != null) {
+				tmpLSN = tmpLog.logInsert(transactionId, this.name, newId, newTuple);
+			}
+			
+			if(newId < this.idSlots.size()) {
+				int newSlot = this.freeSlotFor(newId, newTuple);
+				this.tuples.setTuple(newSlot, newTuple);
+				this.slotIds.set(newSlot, newId);
+				this.idSlots.set(newId, newSlot);
+				this.numOfDeadSlots--;
+			} else {
+				while(this.idSlots.size() < newId) {
+					this.idSlots.add(NO_SLOT);
+				}
+				this.tuples.addTuple(newTuple);
+				this.slotIds.add(newId);
+				this.idSlots.add(this.tuples.size() - 1);
+			}
+			this.published = null;
+			tmpPKIndex.put(newKey, newId);
+			
+			for(OrderedIndex tmpIndex : this.orderedIndexes) {
+				if(tmpIndex != null) {
+					tmpIndex.add(newTuple[tmpIndex.getAttrIdx()], newId);
+				}
+			}
+			
+			for(BitmapIndex tmpIndex : this.bitmapIndexes) {
+				if(tmpIndex != null) {
+					tmpIndex.add(newTuple[tmpIndex.getAttrIdx()], newId);
+				}
+			}
+			
+			for(NumericColumn tmpColumn : this.numericColumns) {
+				if(tmpColumn != null) {
+					tmpColumn.set(newId, NumericColumn.toDouble(newTuple[tmpColumn.getAttrIdx()]));
+				}
+			}
+			
+			this.compactStep();
+			
+		} finally {
+			this.writeLock.unlock();
+		}
+		
+		awaitDurable(tmpLog, tmpLSN, transactionId);
+		return newId;
+	}
+	
+	/**
+	 * Helper method to free a dead slot for a tuple ID below the next one,
+	 * between the slots of the tuple IDs below and above it, so slots stay
+	 * in tuple ID order: a dead slot there if there is one, else the tuples
+	 * from there up to the next dead slot, or a new one at the end,
+	 * move up a slot. A running compaction pass is finished first.
+	 * Called under the write lock.
+	 * 
+	 * @param tupleId
+	 * @param newTuple
+	 *   The tuple to go there, a placeholder for a new slot.
+	 * @return slot
+	 *   The dead slot.
+	 */
+	private int freeSlotFor (int tupleId, String[] newTuple) {
+		
+		while(this.compactReadSlot >= 0) {
+			this.compactStep();
+		}
+		
+		//First slot whose next live tuple, if any, has a higher tuple ID.
+		int lowSlot = 0;
+		int highSlot = this.tuples.size();
+		while(lowSlot < highSlot) {
+			int midSlot = (lowSlot + highSlot) >>> 1;
+			int liveSlot = midSlot;
+			while(liveSlot < highSlot && this.slotIds.get(liveSlot) == DEAD_SLOT) {
+				liveSlot++;
+			}
+			if(liveSlot == highSlot || this.slotIds.get(liveSlot) > tupleId) {
+				highSlot = midSlot;
+			} else {
+				lowSlot = liveSlot + 1;
+			}
+		}
+		
+		int freeSlot = lowSlot;
+		if(freeSlot < this.tuples.size() && this.slotIds.get(freeSlot) == DEAD_SLOT) {
+			return freeSlot;
+		}
+		
+		int deadSlot = freeSlot;
+		while(deadSlot < this.tuples.size() && this.slotIds.get(deadSlot) != DEAD_SLOT) {
+			deadSlot++;
+		}
+		if(deadSlot == this.tuples.size()) {
+			this.tuples.addTuple(newTuple);
+			this.tuples.clearTuple(deadSlot);
+			this.slotIds.add(DEAD_SLOT);
+			this.numOfDeadSlots++;
+		}
+		
+		for(int toSlot = deadSlot; toSlot > freeSlot; toSlot--) {
+			int tmpId = this.slotIds.get(toSlot - 1);
+			this.tuples.moveTuple(toSlot - 1, toSlot);
+			this.slotIds.set(toSlot, tmpId);
+			this.idSlots.set(tmpId, toSlot);
+		}
+		this.tuples.clearTuple(freeSlot);
+		this.slotIds.set(freeSlot, DEAD_SLOT);
+		return freeSlot;
+	}
+	
+	/**
+	 * Helper method to go on with a compaction pass, if one is running:
+	 * move the live tuples of the next COMPACT_STEP_SLOTS slots down
+	 * over the dead slots before them, and once all slots are done,
+	 * drop the dead slots left at the end.
+	 * Called under the write lock.
+	 */
+	private void compactStep () {
+		
+		if(this.compactReadSlot < 0) {
+			return;
+		}
+		
+		int slotLimit = Math.min(this.tuples.size(),
+				this.compactReadSlot + COMPACT_STEP_SLOTS);
+		int readSlot = this.compactReadSlot;
+		int writeSlot = this.compactWriteSlot;
+		
+		for(; readSlot < slotLimit; readSlot++) {
+			int tmpId = this.slotIds.get(readSlot);
+			if(tmpId == DEAD_SLOT) {
+				continue;
+			}
+			if(readSlot != writeSlot) {
+				this.tuples.moveTuple(readSlot, writeSlot);
+				this.tuples.clearTuple(readSlot);
+				this.slotIds.set(writeSlot, tmpId);
+				this.slotIds.set(readSlot, DEAD_SLOT);
+				this.idSlots.set(tmpId, writeSlot);
+			}
+			writeSlot++;
+		}
+		
+		//All slots from writeSlot on are dead.
+		boolean isPassDone = (readSlot == this.tuples.size());
+		if(isPassDone) {
+			while(this.tuples.size() > writeSlot) {
+				this.tuples.removeTuple(this.tuples.size() - 1);
+				this.slotIds.removeLast();
+				this.numOfDeadSlots--;
+			}
+			readSlot = -1;
+			writeSlot = 0;
+		}
+		
+		this.compactReadSlot = readSlot;
+		this.compactWriteSlot = writeSlot;
+		this.published = null;
+		
+		//The pass is over even if the store fails to compact its files.
+		if(isPassDone) {
+			this.tuples.compact();
+		}
+	}
+	
+	/**
+	 * Helper method to return the slot of a tuple ID.
+	 * Called under the write lock.
+	 * 
+	 * @param tupleId
+	 * @return slot
+	 *   The slot, or NO_SLOT if there is no tuple with that ID.
+	 */
+	private int getSlot (int tupleId) {
+		if(tupleId < 0 || tupleId >= this.idSlots.size()) {
+			return NO_SLOT;
+		}
+		return this.idSlots.get(tupleId);
+	}
+	
+	/**
+	 * Helper method to check the tuple IDs found by an ordered index
+	 * against the snapshot, without locking: each tuple still there,
+	 * holding a value in [low, high]. If a concurrent write got
+	 * in the way, the index is searched again under the lock.
+	 * 
+	 * @param tmpIndex
+	 * @param tmpIds
+	 *   In ascending order.
+	 * @param low
+	 * @param high
+	 * @param isNullMatch
+	 *   True to match null values, instead of values in [low, high].
+	 * @return tupleIds
+	 *   In ascending order.
+	 */
+	private int[] resolveIndexIds (OrderedIndex tmpIndex, int[] tmpIds,
+			String low, String high, boolean isNullMatch) {
+				
+		RelationSnapshot tmpSnapshot = this.snapshot();
+		int tmpAttrIdx = tmpIndex.getAttrIdx();
+		
+		for(int tmpId : tmpIds) {
+			boolean isMatch = tmpSnapshot.contains(tmpId);
+			if(isMatch) {
+				String tmpValue = tmpSnapshot.getValue(tmpId, tmpAttrIdx);
+				isMatch = isNullMatch
+						? tmpValue == null
+						: tmpIndex.isInRange(tmpValue, low, high);
+			}
+			
+			//A write got in the way, index and tuples agree under the lock.
+			if(!isMatch) {
+				this.writeLock.lock();
+				try {
+					return isNullMatch
+							? tmpIndex.findEqual(null)
+							: tmpIndex.findRange(low, high);
+							
+				} finally {
+					this.writeLock.unlock();
+				}
+			}
+		}
+		return tmpIds;
+	}
+	
+	/**
+	 * Helper method to wait until a logged write is on disk,
+	 * unless it was made in a transaction, whose commit waits instead.
+	 * 
+	 * @param tmpLog
+	 *   The log the write went to, or null if it was not logged.
+	 * @param tmpLSN
+	 *   The log sequence number of the write.
+	 * @param transactionId
+	 */
+	private static void awaitDurable (WriteAheadLog tmpLog, long tmpLSN, long transactionId) {
+		if(tmpLog != null && transactionId == WriteAheadLog.NO_TRANSACTION) {
+			tmpLog.awaitDurable(tmpLSN);
+		}
+	}
+	
+	/**
+	 * Helper method to return the primary key index,
+	 * building it from the stored tuples on first use.
+	 * 
+	 * @return pKIndex
+	 */
+	private ConcurrentHashMap <TupleKey, Integer> getPKIndex () {
+		
+		ConcurrentHashMap <TupleKey, Integer> tmpPKIndex = this.pKIndex;
+		if(tmpPKIndex != null) {
+			return tmpPKIndex;
+		}
+		
+		this.writeLock.lock();
+		try {
+			if(this.pKIndex == null) {
+				int slotLimit = this.tuples.size();
+				ConcurrentHashMap <TupleKey, Integer> newPKIndex = new ConcurrentHashMap <> (
+						Math.max(16, slotLimit));
+						
+				for(int tmpSlot = 0; tmpSlot < slotLimit; tmpSlot++) {
+					int tmpId = this.slotIds.get(tmpSlot);
+					if(tmpId != DEAD_SLOT) {
+						Integer oldId = newPKIndex.put(
+								TupleKey.of(this.tuples.getTuple(tmpSlot), this.numOfPA), tmpId);
+						assert oldId == null;
+					}
+				}
+				this.pKIndex = newPKIndex;
+			}
+			return this.pKIndex;
+			
+		} finally {
+			this.writeLock.unlock();
+		}
 	}
 	
 	public static String [] createNewTuple (Relation R, Scanner consoleIn) {
@@ -143,7 +1302,7 @@ public class Relation {
 			System.out.print(
 					"Enter value for attribute ("
 					+ tmpAttributeList[tmpIdx]);
-			
+					
 			if(tmpIdx < isKeyIdxLimit) {
 				System.out.print(" (key)");
 			}
@@ -0,0 +1,226 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded stress test and throughput benchmark for Relation.
+ *
+ * One writer thread keeps inserting, updating and deleting tuples while
+ * 1, 2, 4, ... reader threads look tuples up by key and scan snapshots.
+ * Every tuple carries a checksum of its other values, which readers check,
+ * so a torn or inconsistent read fails the run.
+ *
+ * Run with: java -ea RelationBenchmark [row|columnar|slab] [numOfTuples] [seconds]
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class RelationBenchmark {
+
+	private static final String[] ATTRIBUTE_LIST = {"Title", "Version", "Genre", "Checksum"};
+	private static final int NUM_OF_GENRES = 20;
+
+	public static void main(String[] args) throws InterruptedException {
+
+		String layout = (args.length > 0) ? args[0] : "row";
+		int numOfTuples = (args.length > 1) ? Integer.parseInt(args[1]) : 200000;
+		int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+		int maxReaders = Runtime.getRuntime().availableProcessors() * 2;
+
+		System.out.println("Relation stress test: " + layout + " layout, "
+				+ String.valueOf(numOfTuples) + " tuples, "
+				+ String.valueOf(seconds) + " s per run, "
+				+ String.valueOf(Runtime.getRuntime().availableProcessors()) + " cores.");
+		System.out.println();
+		System.out.println("readers\tlookups/s\tscans/s\twrites/s\tlookups/s per reader");
+
+		for(int numOfReaders = 1; numOfReaders <= maxReaders; numOfReaders *= 2) {
+			Relation relation = createRelation(layout, numOfTuples);
+			runOnce(relation, numOfTuples, numOfReaders, seconds);
+		}
+	}
+
+	/**
+	 * Create and fill the relation under test.
+	 *
+	 * @param layout
+	 *   "row", "columnar" or "slab".
+	 * @param numOfTuples
+	 * @return relation
+	 */
+	private static Relation createRelation(String layout, int numOfTuples) {
+
+		TupleStore store;
+		if(layout.equals("columnar")) {
+			store = new ColumnarTupleStore(ATTRIBUTE_LIST.length);
+		} else if(layout.equals("slab")) {
+			store = new SlabTupleStore(ATTRIBUTE_LIST.length);
+		} else {
+			store = new RowTupleStore(ATTRIBUTE_LIST.length);
+		}
+		Relation relation = new Relation("BENCH", ATTRIBUTE_LIST, 1, store);
+
+		for(int keyIdx = 0; keyIdx < numOfTuples; keyIdx++) {
+			relation.insertNewTuple(createTuple(keyIdx, 0));
+		}
+		return relation;
+	}
+
+	/**
+	 * Run one writer and numOfReaders readers for a number of seconds,
+	 * then print their throughput.
+	 *
+	 * @param relation
+	 * @param numOfKeys
+	 * @param numOfReaders
+	 * @param seconds
+	 * @throws InterruptedException
+	 */
+	private static void runOnce(final Relation relation, final int numOfKeys,
+			int numOfReaders, int seconds) throws InterruptedException {
+
+		final AtomicBoolean isRunning = new AtomicBoolean(true);
+		final AtomicBoolean hasFailed = new AtomicBoolean(false);
+		final AtomicLong lookupCount = new AtomicLong();
+		final AtomicLong scanCount = new AtomicLong();
+		final AtomicLong writeCount = new AtomicLong();
+		final CountDownLatch startLatch = new CountDownLatch(1);
+
+		Thread writer = new Thread(() -> {
+			Random random = new Random(1);
+			int nextVersion = 1;
+			long numOfWrites = 0;
+
+			awaitQuietly(startLatch);
+			while(isRunning.get()) {
+				int keyIdx = random.nextInt(numOfKeys);
+				int tupleId = relation.findTupleId(new String[] {"T" + String.valueOf(keyIdx)});
+				int operation = random.nextInt(3);
+
+				if(tupleId < 0) {
+					relation.insertNewTuple(createTuple(keyIdx, nextVersion++));
+				} else if(operation == 0) {
+					relation.deleteExistingTuple(tupleId);
+				} else {
+					relation.updateExistingTuple(createTuple(keyIdx, nextVersion++), tupleId);
+				}
+				numOfWrites++;
+			}
+			writeCount.addAndGet(numOfWrites);
+		});
+
+		Thread[] readers = new Thread[numOfReaders];
+		for(int readerIdx = 0; readerIdx < numOfReaders; readerIdx++) {
+			final long seed = 100 + readerIdx;
+			readers[readerIdx] = new Thread(() -> {
+				Random random = new Random(seed);
+				String[] keyValues = new String[1];
+				long numOfLookups = 0;
+				long numOfScans = 0;
+
+				awaitQuietly(startLatch);
+				try {
+					while(isRunning.get()) {
+						keyValues[0] = "T" + String.valueOf(random.nextInt(numOfKeys));
+						String[] tuple = relation.findTuple(keyValues);
+						if(tuple != null) {
+							checkTuple(tuple, keyValues[0]);
+						}
+						numOfLookups++;
+
+						//Every so often, scan a whole snapshot.
+						if((numOfLookups & 0x3FFF) == 0) {
+							RelationSnapshot snapshot = relation.snapshot();
+							String genre = "G" + String.valueOf(random.nextInt(NUM_OF_GENRES));
+							for(int tupleId : snapshot.findEqual(2, genre)) {
+								checkTuple(snapshot.getTuple(tupleId), null);
+							}
+							numOfScans++;
+						}
+					}
+				} catch (AssertionError | RuntimeException e) {
+					hasFailed.set(true);
+					isRunning.set(false);
+					e.printStackTrace();
+				}
+				lookupCount.addAndGet(numOfLookups);
+				scanCount.addAndGet(numOfScans);
+			});
+		}
+
+		writer.start();
+		for(Thread reader : readers) {
+			reader.start();
+		}
+
+		long startNanos = System.nanoTime();
+		startLatch.countDown();
+		Thread.sleep(seconds * 1000L);
+		isRunning.set(false);
+
+		writer.join();
+		for(Thread reader : readers) {
+			reader.join();
+		}
+		double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+		if(hasFailed.get()) {
+			System.out.println("Err: Inconsistent read with "
+					+ String.valueOf(numOfReaders) + " readers.");
+			System.exit(1);
+		}
+
+		double lookupRate = lookupCount.get() / elapsedSeconds;
+		System.out.println(String.valueOf(numOfReaders)
+				+ "\t" + String.format("%.0f", lookupRate)
+				+ "\t" + String.format("%.1f", scanCount.get() / elapsedSeconds)
+				+ "\t" + String.format("%.0f", writeCount.get() / elapsedSeconds)
+				+ "\t" + String.format("%.0f", lookupRate / numOfReaders));
+	}
+
+	/**
+	 * Helper method to create a tuple with its checksum.
+	 *
+	 * @param keyIdx
+	 * @param version
+	 * @return tuple
+	 */
+	private static String[] createTuple(int keyIdx, int version) {
+
+		String title = "T" + String.valueOf(keyIdx);
+		String versionStr = String.valueOf(version);
+		String genre = "G" + String.valueOf((keyIdx + version) % NUM_OF_GENRES);
+		return new String[] {title, versionStr, genre, checksum(title, versionStr, genre)};
+	}
+
+	/**
+	 * Helper method to check a tuple read is whole and has the expected key.
+	 *
+	 * @param tuple
+	 * @param expectedTitle
+	 *   The expected key, or null to skip that check.
+	 */
+	private static void checkTuple(String[] tuple, String expectedTitle) {
+
+		if(expectedTitle != null && !expectedTitle.equals(tuple[0])) {
+			throw new IllegalStateException("Lookup returned the wrong tuple: " + tuple[0]);
+		}
+		if(!checksum(tuple[0], tuple[1], tuple[2]).equals(tuple[3])) {
+			throw new IllegalStateException("Torn tuple read: " + String.join(",", tuple));
+		}
+	}
+
+	private static String checksum(String title, String version, String genre) {
+		return String.valueOf((title + '|' + version + '|' + genre).hashCode());
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException iE) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
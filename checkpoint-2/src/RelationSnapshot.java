@@ -0,0 +1,341 @@
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable view of the tuples of a Relation as of one point in time,
+ * read without locking from any number of threads.
+ *
+ * Tuples are found by their tuple ID, which the Relation gives each tuple
+ * when it is inserted and never changes or reuses. Internally, tuples sit
+ * in the slots of a TupleStore snapshot; deleted tuples leave dead slots
+ * until compaction. Slots are in insertion order, so in tuple ID order;
+ * scans go slot by slot, skipping dead slots (getTupleId() < 0).
+ *
+ * For parallel scans, spliterator() splits the slots into ranges
+ * that fork-join tasks, e.g. of a parallelStream(), scan on their own.
+ *
+ * The snapshot also holds the bitmap indexes and numeric columns
+ * of the relation as of the same point in time, so findBitmap() and
+ * the kernels of getNumericColumn() select tuple IDs that agree
+ * with the tuples of the snapshot.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public final class RelationSnapshot {
+
+	/*
+	 * Ranges of fewer slots are not split further for parallel scans.
+	 */
+	private static final int MIN_SPLIT_SLOTS = 4096;
+
+	/**
+	 * Private attributes for each instance of the RelationSnapshot object:
+	 *     tuples:      the tuples, by slot;
+	 *
+	 *     slotIds:     the tuple ID in each slot, or -1 for dead slots;
+	 *
+	 *     idSlots:     the slot of each tuple ID, or -1 once deleted;
+	 *                  its size is the next tuple ID to give out;
+	 *
+	 *     numOfTuples: number of live tuples;
+	 *
+	 *     bitmapIndexes,
+	 *     numericColumns: snapshot of the bitmap index and numeric column
+	 *                  of each attribute, null for attributes without one.
+	 */
+	private final TupleStore tuples;
+	private final ChunkedIntArray slotIds;
+	private final ChunkedIntArray idSlots;
+	private final int numOfTuples;
+	private final BitmapIndex[] bitmapIndexes;
+	private final NumericColumn[] numericColumns;
+
+	RelationSnapshot(TupleStore newTuples, ChunkedIntArray newSlotIds,
+			ChunkedIntArray newIdSlots, int newNumOfTuples, BitmapIndex[] newBitmapIndexes,
+			NumericColumn[] newNumericColumns) {
+		assert newTuples.size() == newSlotIds.size();
+		assert newBitmapIndexes.length == newTuples.getNumOfAttributes();
+		assert newNumericColumns.length == newTuples.getNumOfAttributes();
+
+		this.tuples = newTuples;
+		this.slotIds = newSlotIds;
+		this.idSlots = newIdSlots;
+		this.numOfTuples = newNumOfTuples;
+		this.bitmapIndexes = newBitmapIndexes;
+		this.numericColumns = newNumericColumns;
+	}
+
+	/**
+	 * Return the number of tuples, not counting dead slots.
+	 *
+	 * @return numOfTuples
+	 */
+	public int size() {
+		return this.numOfTuples;
+	}
+
+	/**
+	 * Return whether a tuple with the given ID exists.
+	 *
+	 * @param tupleId
+	 * @return contains
+	 */
+	public boolean contains(int tupleId) {
+		return getSlot(tupleId) >= 0;
+	}
+
+	/**
+	 * Return a tuple by its tuple ID.
+	 *
+	 * @param tupleId
+	 * @return tuple
+	 *   The tuple, or null if there is no tuple with that ID.
+	 */
+	public String[] getTuple(int tupleId) {
+		int slot = getSlot(tupleId);
+		return (slot < 0) ? null : this.tuples.getTuple(slot);
+	}
+
+	/**
+	 * Return one attribute value of a tuple.
+	 *
+	 * @param tupleId
+	 * @param attrIdx
+	 * @return value
+	 *
+	 * @requires contains(tupleId)
+	 */
+	public String getValue(int tupleId, int attrIdx) {
+		int slot = getSlot(tupleId);
+		assert slot >= 0;
+		return this.tuples.getValue(slot, attrIdx);
+	}
+
+	/**
+	 * Return the next tuple ID the Relation will give out;
+	 * all tuple IDs ever given out are below it.
+	 *
+	 * @return nextTupleId
+	 */
+	public int getNextTupleId() {
+		return this.idSlots.size();
+	}
+
+	/**
+	 * Return the number of slots, live and dead.
+	 *
+	 * @return numOfSlots
+	 */
+	public int getNumOfSlots() {
+		return this.slotIds.size();
+	}
+
+	/**
+	 * Return the tuple ID in a slot.
+	 *
+	 * @param slot
+	 * @return tupleId
+	 *   The tuple ID, or -1 for a dead slot.
+	 *
+	 * @requires 0 <= slot < getNumOfSlots()
+	 */
+	public int getTupleId(int slot) {
+		return this.slotIds.get(slot);
+	}
+
+	/**
+	 * Return the tuples by slot, to scan. Dead slots must be skipped.
+	 *
+	 * @return tuples
+	 */
+	public TupleStore getStore() {
+		return this.tuples;
+	}
+
+	/**
+	 * Return the bitmap index of an attribute, as of this snapshot.
+	 *
+	 * @param attrIdx
+	 * @return index
+	 *   The index, or null if the attribute has none.
+	 */
+	public BitmapIndex getBitmapIndex(int attrIdx) {
+		return this.bitmapIndexes[attrIdx];
+	}
+
+	/**
+	 * Return the numeric column of an attribute, as of this snapshot,
+	 * e.g. to select tuple IDs by a range of prices.
+	 *
+	 * @param attrIdx
+	 * @return column
+	 *   The column, or null if the attribute has none.
+	 */
+	public NumericColumn getNumericColumn(int attrIdx) {
+		return this.numericColumns[attrIdx];
+	}
+
+	/**
+	 * Return the tuples with a given attribute value, as a bitmap of their
+	 * IDs, to combine with the bitmaps of other filters by
+	 * RoaringBitmap.and() and or(). Uses the bitmap index of the attribute
+	 * if it has one, otherwise scans the attribute.
+	 *
+	 * @param attrIdx
+	 * @param value
+	 *   The value to match, compared with equals; may be null.
+	 * @return tupleIds
+	 */
+	public RoaringBitmap findBitmap(int attrIdx, String value) {
+
+		BitmapIndex tmpIndex = this.bitmapIndexes[attrIdx];
+		return (tmpIndex != null)
+				? tmpIndex.findEqual(value)
+				: RoaringBitmap.of(scanEqual(attrIdx, value));
+	}
+
+	/**
+	 * Find the tuples with a given attribute value: from the bitmap index
+	 * of the attribute if it has one, otherwise by a full-column scan.
+	 *
+	 * @param attrIdx
+	 * @param value
+	 *   The value to match, compared with equals; may be null.
+	 * @return tupleIds
+	 *   The IDs of all matching tuples, in ascending order.
+	 */
+	public int[] findEqual(int attrIdx, String value) {
+
+		BitmapIndex tmpIndex = this.bitmapIndexes[attrIdx];
+		return (tmpIndex != null)
+				? tmpIndex.findEqual(value).toArray()
+				: scanEqual(attrIdx, value);
+	}
+
+	/**
+	 * Helper method for a full-column scan for the tuples
+	 * with a given attribute value.
+	 *
+	 * @param attrIdx
+	 * @param value
+	 * @return tupleIds
+	 *   In ascending order.
+	 */
+	private int[] scanEqual(int attrIdx, String value) {
+
+		int[] slots = this.tuples.findEqual(attrIdx, value);
+		int matchCount = 0;
+		for(int slot : slots) {
+			int tupleId = this.slotIds.get(slot);
+			if(tupleId >= 0) {
+				slots[matchCount++] = tupleId;
+			}
+		}
+		return Arrays.copyOf(slots, matchCount);
+	}
+
+	/**
+	 * Return a spliterator over all tuples, in tuple ID order,
+	 * splitting the slots in halves down to MIN_SPLIT_SLOTS slots.
+	 *
+	 * @return spliterator
+	 */
+	public Spliterator<String[]> spliterator() {
+		return new SlotSpliterator(0, getNumOfSlots());
+	}
+
+	/**
+	 * Return a parallel stream of all tuples, in tuple ID order,
+	 * run by the common fork-join pool, or by the pool of the calling task.
+	 *
+	 * @return stream
+	 */
+	public Stream<String[]> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * Helper method to return the slot of a tuple ID.
+	 *
+	 * @param tupleId
+	 * @return slot
+	 *   The slot, or -1 if there is no tuple with that ID.
+	 */
+	private int getSlot(int tupleId) {
+		if(tupleId < 0 || tupleId >= this.idSlots.size()) {
+			return -1;
+		}
+		return this.idSlots.get(tupleId);
+	}
+
+	/**
+	 * Spliterator over the live tuples of a range of slots.
+	 * The number of tuples is not known up front, only of slots.
+	 */
+	private final class SlotSpliterator implements Spliterator<String[]> {
+
+		private int slot;
+		private final int slotLimit;
+
+		private SlotSpliterator(int newSlot, int newSlotLimit) {
+			this.slot = newSlot;
+			this.slotLimit = newSlotLimit;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super String[]> action) {
+
+			while(this.slot < this.slotLimit) {
+				int tmpSlot = this.slot++;
+				if(RelationSnapshot.this.slotIds.get(tmpSlot) >= 0) {
+					action.accept(RelationSnapshot.this.tuples.getTuple(tmpSlot));
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super String[]> action) {
+
+			TupleStore tmpTuples = RelationSnapshot.this.tuples;
+			ChunkedIntArray tmpSlotIds = RelationSnapshot.this.slotIds;
+			for(int tmpSlot = this.slot; tmpSlot < this.slotLimit; tmpSlot++) {
+				if(tmpSlotIds.get(tmpSlot) >= 0) {
+					action.accept(tmpTuples.getTuple(tmpSlot));
+				}
+			}
+			this.slot = this.slotLimit;
+		}
+
+		@Override
+		public Spliterator<String[]> trySplit() {
+
+			int numOfSlots = this.slotLimit - this.slot;
+			if(numOfSlots < 2 * MIN_SPLIT_SLOTS) {
+				return null;
+			}
+
+			//Hand the first half over, keep the second.
+			int splitSlot = this.slot + numOfSlots / 2;
+			SlotSpliterator prefix = new SlotSpliterator(this.slot, splitSlot);
+			this.slot = splitSlot;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.slotLimit - this.slot;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | IMMUTABLE;
+		}
+	}
+}
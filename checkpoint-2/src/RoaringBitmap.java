@@ -0,0 +1,857 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Compressed set of tuple IDs (non-negative ints), in the Roaring format:
+ * IDs are split by their high 16 bits into containers of up to 65536 IDs,
+ * and each container stores the low 16 bits of its IDs either as
+ * a sorted char array, while it holds at most ARRAY_MAX_SIZE of them,
+ * or as a bitmap of 65536 bits (1024 longs) once it holds more.
+ * So sparse sets cost 2 bytes per ID and dense sets 1 bit per ID.
+ *
+ * and(), or() and andNot() combine two sets container by container,
+ * a bitmap container 64 IDs per long, into a new set; orAll() unions
+ * many sets at once, setting the bits of all of them in one bitmap
+ * per container instead of merging them two by two.
+ * getCardinality() and andCardinality() count IDs from the container
+ * sizes and bit counts.
+ *
+ * Read-only snapshots are cheap, copied on write like RowTupleStore:
+ * a snapshot copies the container list, and shares each container
+ * until the next write to it.
+ * Not thread-safe: the owner writes under its lock,
+ * snapshots may be read from any thread.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class RoaringBitmap {
+
+	/*
+	 * Array containers hold at most ARRAY_MAX_SIZE IDs (8 KB, as much as
+	 * a bitmap container); bitmap containers turn back into arrays once
+	 * they hold at most half as many, so one ID more or less
+	 * around the limit does not convert the container each time.
+	 */
+	private static final int ARRAY_MAX_SIZE = 4096;
+	private static final int BITMAP_WORDS = 1 << 10;
+
+	/**
+	 * Private attributes for each instance of the RoaringBitmap object:
+	 *     numOfContainers: number of non-empty containers;
+	 *
+	 *     keys,
+	 *     containers:      the high 16 bits of the IDs of each container,
+	 *                      in ascending order, and the containers;
+	 *
+	 *     containerEpochs,
+	 *     epoch:           a container may only be written in place if its
+	 *                      epoch is the current one, epoch moves on
+	 *                      at each snapshot;
+	 *
+	 *     isSnapshot:      true for read-only snapshots.
+	 */
+	private int numOfContainers = 0;
+	private char[] keys;
+	private Container[] containers;
+	private int[] containerEpochs;
+	private int epoch = 0;
+	private final boolean isSnapshot;
+
+	/**
+	 * The low 16 bits of the IDs of one container:
+	 * in values while it is an array container, else in words.
+	 */
+	private static final class Container {
+
+		private int cardinality;
+		private char[] values;
+		private long[] words;
+
+		private Container(char[] newValues, int newCardinality) {
+			this.values = newValues;
+			this.cardinality = newCardinality;
+		}
+
+		private Container(long[] newWords, int newCardinality) {
+			this.words = newWords;
+			this.cardinality = newCardinality;
+		}
+
+		private Container copy() {
+			return (this.words == null)
+					? new Container(Arrays.copyOf(this.values, this.values.length), this.cardinality)
+					: new Container(this.words.clone(), this.cardinality);
+		}
+
+		private boolean contains(char low) {
+			if(this.words != null) {
+				return (this.words[low >>> 6] & (1L << low)) != 0;
+			}
+			return Arrays.binarySearch(this.values, 0, this.cardinality, low) >= 0;
+		}
+
+		/**
+		 * Add a low value, turning into a bitmap container when full.
+		 *
+		 * @param low
+		 * @return isAdded
+		 *   False if the value was already there.
+		 */
+		private boolean add(char low) {
+
+			if(this.words != null) {
+				long bit = 1L << low;
+				if((this.words[low >>> 6] & bit) != 0) {
+					return false;
+				}
+				this.words[low >>> 6] |= bit;
+				this.cardinality++;
+				return true;
+			}
+
+			int pos = Arrays.binarySearch(this.values, 0, this.cardinality, low);
+			if(pos >= 0) {
+				return false;
+			}
+			pos = -pos - 1;
+
+			if(this.cardinality == ARRAY_MAX_SIZE) {
+				this.words = toWords(this.values, this.cardinality);
+				this.values = null;
+				this.words[low >>> 6] |= 1L << low;
+				this.cardinality++;
+				return true;
+			}
+
+			if(this.cardinality == this.values.length) {
+				this.values = Arrays.copyOf(this.values,
+						Math.min(ARRAY_MAX_SIZE, this.cardinality * 2));
+			}
+			System.arraycopy(this.values, pos, this.values, pos + 1, this.cardinality - pos);
+			this.values[pos] = low;
+			this.cardinality++;
+			return true;
+		}
+
+		/**
+		 * Remove a low value, turning into an array container
+		 * once half as full as an array container may be.
+		 *
+		 * @param low
+		 * @return isRemoved
+		 *   False if the value was not there.
+		 */
+		private boolean remove(char low) {
+
+			if(this.words != null) {
+				long bit = 1L << low;
+				if((this.words[low >>> 6] & bit) == 0) {
+					return false;
+				}
+				this.words[low >>> 6] &= ~bit;
+				this.cardinality--;
+				if(this.cardinality <= ARRAY_MAX_SIZE / 2) {
+					this.values = toValues(this.words, this.cardinality);
+					this.words = null;
+				}
+				return true;
+			}
+
+			int pos = Arrays.binarySearch(this.values, 0, this.cardinality, low);
+			if(pos < 0) {
+				return false;
+			}
+			System.arraycopy(this.values, pos + 1, this.values, pos, this.cardinality - pos - 1);
+			this.cardinality--;
+			return true;
+		}
+	}
+
+	public RoaringBitmap() {
+		this.keys = new char[4];
+		this.containers = new Container[4];
+		this.containerEpochs = new int[4];
+		this.isSnapshot = false;
+	}
+
+	/**
+	 * Private constructor for snapshots.
+	 */
+	private RoaringBitmap(RoaringBitmap source) {
+		this.numOfContainers = source.numOfContainers;
+		this.keys = Arrays.copyOf(source.keys, source.numOfContainers);
+		this.containers = Arrays.copyOf(source.containers, source.numOfContainers);
+		this.containerEpochs = null;
+		this.isSnapshot = true;
+	}
+
+	/**
+	 * Return a new bitmap of the given IDs.
+	 *
+	 * @param ids
+	 * @return bitmap
+	 *
+	 * @requires each ID >= 0
+	 */
+	public static RoaringBitmap of(int... ids) {
+		RoaringBitmap bitmap = new RoaringBitmap();
+		for(int id : ids) {
+			bitmap.add(id);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Return the number of IDs.
+	 *
+	 * @return cardinality
+	 */
+	public int getCardinality() {
+		int cardinality = 0;
+		for(int containerIdx = 0; containerIdx < this.numOfContainers; containerIdx++) {
+			cardinality += this.containers[containerIdx].cardinality;
+		}
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return this.numOfContainers == 0;
+	}
+
+	/**
+	 * @param id
+	 * @return contains
+	 */
+	public boolean contains(int id) {
+		if(id < 0) {
+			return false;
+		}
+		int containerIdx = findContainer((char) (id >>> 16));
+		return containerIdx >= 0 && this.containers[containerIdx].contains((char) id);
+	}
+
+	/**
+	 * Add an ID.
+	 *
+	 * @param id
+	 * @return isAdded
+	 *   False if the ID was already there.
+	 *
+	 * @requires id >= 0
+	 */
+	public boolean add(int id) {
+		assert !this.isSnapshot;
+		assert id >= 0;
+
+		char key = (char) (id >>> 16);
+		int containerIdx = findContainer(key);
+		if(containerIdx < 0) {
+			containerIdx = -containerIdx - 1;
+			insertContainer(containerIdx, key, new Container(new char[4], 0));
+		}
+		return writableContainer(containerIdx).add((char) id);
+	}
+
+	/**
+	 * Remove an ID.
+	 *
+	 * @param id
+	 * @return isRemoved
+	 *   False if the ID was not there.
+	 */
+	public boolean remove(int id) {
+		assert !this.isSnapshot;
+
+		int containerIdx = (id < 0) ? -1 : findContainer((char) (id >>> 16));
+		if(containerIdx < 0 || !this.containers[containerIdx].contains((char) id)) {
+			return false;
+		}
+
+		Container container = writableContainer(containerIdx);
+		container.remove((char) id);
+		if(container.cardinality == 0) {
+			removeContainer(containerIdx);
+		}
+		return true;
+	}
+
+	/**
+	 * Return all IDs, in ascending order.
+	 *
+	 * @return ids
+	 */
+	public int[] toArray() {
+
+		int[] ids = new int[getCardinality()];
+		int idCount = 0;
+		for(PrimitiveIterator.OfInt idIter = iterator(); idIter.hasNext(); ) {
+			ids[idCount++] = idIter.nextInt();
+		}
+		return ids;
+	}
+
+	/**
+	 * Return an iterator over all IDs, in ascending order.
+	 * The bitmap must not change while iterating, unless it is a snapshot.
+	 *
+	 * @return iterator
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		return new IdIterator();
+	}
+
+	/**
+	 * Return a read-only copy of the bitmap as it is now,
+	 * which later writes to this bitmap do not change.
+	 * Snapshots of a snapshot return the snapshot itself.
+	 *
+	 * @return snapshot
+	 */
+	public RoaringBitmap snapshot() {
+		if(this.isSnapshot) {
+			return this;
+		}
+
+		RoaringBitmap snapshot = new RoaringBitmap(this);
+		this.epoch++;
+		return snapshot;
+	}
+
+	/**
+	 * Return a new bitmap of the IDs in both bitmaps.
+	 *
+	 * @param left
+	 * @param right
+	 * @return and
+	 */
+	public static RoaringBitmap and(RoaringBitmap left, RoaringBitmap right) {
+
+		RoaringBitmap result = new RoaringBitmap();
+		int leftIdx = 0;
+		int rightIdx = 0;
+		while(leftIdx < left.numOfContainers && rightIdx < right.numOfContainers) {
+			char leftKey = left.keys[leftIdx];
+			char rightKey = right.keys[rightIdx];
+			if(leftKey < rightKey) {
+				leftIdx++;
+			} else if(leftKey > rightKey) {
+				rightIdx++;
+			} else {
+				result.appendContainer(leftKey,
+						andContainers(left.containers[leftIdx++], right.containers[rightIdx++]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the number of IDs in both bitmaps, without building their and().
+	 *
+	 * @param left
+	 * @param right
+	 * @return cardinality
+	 */
+	public static int andCardinality(RoaringBitmap left, RoaringBitmap right) {
+
+		int cardinality = 0;
+		int leftIdx = 0;
+		int rightIdx = 0;
+		while(leftIdx < left.numOfContainers && rightIdx < right.numOfContainers) {
+			char leftKey = left.keys[leftIdx];
+			char rightKey = right.keys[rightIdx];
+			if(leftKey < rightKey) {
+				leftIdx++;
+			} else if(leftKey > rightKey) {
+				rightIdx++;
+			} else {
+				cardinality += andContainersCardinality(left.containers[leftIdx++],
+						right.containers[rightIdx++]);
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Return a new bitmap of the IDs in either bitmap.
+	 *
+	 * @param left
+	 * @param right
+	 * @return or
+	 */
+	public static RoaringBitmap or(RoaringBitmap left, RoaringBitmap right) {
+
+		RoaringBitmap result = new RoaringBitmap();
+		int leftIdx = 0;
+		int rightIdx = 0;
+		while(leftIdx < left.numOfContainers || rightIdx < right.numOfContainers) {
+			char leftKey = (leftIdx < left.numOfContainers) ? left.keys[leftIdx] : Character.MAX_VALUE;
+			char rightKey = (rightIdx < right.numOfContainers) ? right.keys[rightIdx] : Character.MAX_VALUE;
+			if(rightIdx == right.numOfContainers
+					|| (leftIdx < left.numOfContainers && leftKey < rightKey)) {
+				result.appendContainer(leftKey, left.containers[leftIdx++].copy());
+			} else if(leftIdx == left.numOfContainers || leftKey > rightKey) {
+				result.appendContainer(rightKey, right.containers[rightIdx++].copy());
+			} else {
+				result.appendContainer(leftKey,
+						orContainers(left.containers[leftIdx++], right.containers[rightIdx++]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return a new bitmap of the IDs in any of the bitmaps,
+	 * e.g. of all values of an IN list or a range.
+	 *
+	 * @param bitmaps
+	 * @return or
+	 */
+	public static RoaringBitmap orAll(Collection <RoaringBitmap> bitmaps) {
+
+		//IDs are non-negative, so keys are at most Short.MAX_VALUE.
+		int numOfKeys = 0;
+		for(RoaringBitmap bitmap : bitmaps) {
+			if(bitmap.numOfContainers > 0) {
+				numOfKeys = Math.max(numOfKeys, bitmap.keys[bitmap.numOfContainers - 1] + 1);
+			}
+		}
+
+		long[][] wordsOfKeys = new long[numOfKeys][];
+		for(RoaringBitmap bitmap : bitmaps) {
+			for(int containerIdx = 0; containerIdx < bitmap.numOfContainers; containerIdx++) {
+				char key = bitmap.keys[containerIdx];
+				Container container = bitmap.containers[containerIdx];
+				if(wordsOfKeys[key] == null) {
+					wordsOfKeys[key] = new long[BITMAP_WORDS];
+				}
+
+				long[] words = wordsOfKeys[key];
+				if(container.words != null) {
+					for(int wordIdx = 0; wordIdx < BITMAP_WORDS; wordIdx++) {
+						words[wordIdx] |= container.words[wordIdx];
+					}
+				} else {
+					for(int valueIdx = 0; valueIdx < container.cardinality; valueIdx++) {
+						char low = container.values[valueIdx];
+						words[low >>> 6] |= 1L << low;
+					}
+				}
+			}
+		}
+
+		RoaringBitmap result = new RoaringBitmap();
+		for(int key = 0; key < numOfKeys; key++) {
+			if(wordsOfKeys[key] != null) {
+				result.appendContainer((char) key,
+						toContainer(wordsOfKeys[key], countBits(wordsOfKeys[key])));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return a new bitmap of the IDs in left, but not in right.
+	 *
+	 * @param left
+	 * @param right
+	 * @return andNot
+	 */
+	public static RoaringBitmap andNot(RoaringBitmap left, RoaringBitmap right) {
+
+		RoaringBitmap result = new RoaringBitmap();
+		int rightIdx = 0;
+		for(int leftIdx = 0; leftIdx < left.numOfContainers; leftIdx++) {
+			char leftKey = left.keys[leftIdx];
+			while(rightIdx < right.numOfContainers && right.keys[rightIdx] < leftKey) {
+				rightIdx++;
+			}
+			if(rightIdx < right.numOfContainers && right.keys[rightIdx] == leftKey) {
+				result.appendContainer(leftKey,
+						andNotContainers(left.containers[leftIdx], right.containers[rightIdx]));
+			} else {
+				result.appendContainer(leftKey, left.containers[leftIdx].copy());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method to return the low values of both containers.
+	 *
+	 * @param left
+	 * @param right
+	 * @return container
+	 *   The container, or null if empty.
+	 */
+	private static Container andContainers(Container left, Container right) {
+
+		if(left.words != null && right.words != null) {
+			long[] words = new long[BITMAP_WORDS];
+			int cardinality = 0;
+			for(int wordIdx = 0; wordIdx < BITMAP_WORDS; wordIdx++) {
+				words[wordIdx] = left.words[wordIdx] & right.words[wordIdx];
+				cardinality += Long.bitCount(words[wordIdx]);
+			}
+			return toContainer(words, cardinality);
+		}
+
+		if(left.words != null || right.words != null) {
+			Container array = (left.words == null) ? left : right;
+			Container bitmap = (left.words == null) ? right : left;
+			char[] values = new char[array.cardinality];
+			int cardinality = 0;
+			for(int valueIdx = 0; valueIdx < array.cardinality; valueIdx++) {
+				char low = array.values[valueIdx];
+				if((bitmap.words[low >>> 6] & (1L << low)) != 0) {
+					values[cardinality++] = low;
+				}
+			}
+			return (cardinality == 0) ? null : new Container(values, cardinality);
+		}
+
+		char[] values = new char[Math.min(left.cardinality, right.cardinality)];
+		int cardinality = 0;
+		int leftIdx = 0;
+		int rightIdx = 0;
+		while(leftIdx < left.cardinality && rightIdx < right.cardinality) {
+			char leftLow = left.values[leftIdx];
+			char rightLow = right.values[rightIdx];
+			if(leftLow < rightLow) {
+				leftIdx++;
+			} else if(leftLow > rightLow) {
+				rightIdx++;
+			} else {
+				values[cardinality++] = leftLow;
+				leftIdx++;
+				rightIdx++;
+			}
+		}
+		return (cardinality == 0) ? null : new Container(values, cardinality);
+	}
+
+	/**
+	 * Helper method to count the low values of both containers.
+	 *
+	 * @param left
+	 * @param right
+	 * @return cardinality
+	 */
+	private static int andContainersCardinality(Container left, Container right) {
+
+		int cardinality = 0;
+		if(left.words != null && right.words != null) {
+			for(int wordIdx = 0; wordIdx < BITMAP_WORDS; wordIdx++) {
+				cardinality += Long.bitCount(left.words[wordIdx] & right.words[wordIdx]);
+			}
+			return cardinality;
+		}
+
+		if(left.words != null || right.words != null) {
+			Container array = (left.words == null) ? left : right;
+			Container bitmap = (left.words == null) ? right : left;
+			for(int valueIdx = 0; valueIdx < array.cardinality; valueIdx++) {
+				char low = array.values[valueIdx];
+				if((bitmap.words[low >>> 6] & (1L << low)) != 0) {
+					cardinality++;
+				}
+			}
+			return cardinality;
+		}
+
+		int leftIdx = 0;
+		int rightIdx = 0;
+		while(leftIdx < left.cardinality && rightIdx < right.cardinality) {
+			char leftLow = left.values[leftIdx];
+			char rightLow = right.values[rightIdx];
+			if(leftLow < rightLow) {
+				leftIdx++;
+			} else if(leftLow > rightLow) {
+				rightIdx++;
+			} else {
+				cardinality++;
+				leftIdx++;
+				rightIdx++;
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Helper method to return the low values of either container.
+	 *
+	 * @param left
+	 * @param right
+	 * @return container
+	 */
+	private static Container orContainers(Container left, Container right) {
+
+		//Two small arrays stay an array, merged.
+		if(left.words == null && right.words == null
+				&& left.cardinality + right.cardinality <= ARRAY_MAX_SIZE) {
+			char[] values = new char[left.cardinality + right.cardinality];
+			int cardinality = 0;
+			int leftIdx = 0;
+			int rightIdx = 0;
+			while(leftIdx < left.cardinality || rightIdx < right.cardinality) {
+				if(rightIdx == right.cardinality
+						|| (leftIdx < left.cardinality && left.values[leftIdx] < right.values[rightIdx])) {
+					values[cardinality++] = left.values[leftIdx++];
+				} else if(leftIdx == left.cardinality || left.values[leftIdx] > right.values[rightIdx]) {
+					values[cardinality++] = right.values[rightIdx++];
+				} else {
+					values[cardinality++] = left.values[leftIdx++];
+					rightIdx++;
+				}
+			}
+			return new Container(values, cardinality);
+		}
+
+		long[] words = (left.words != null) ? left.words.clone() : toWords(left.values, left.cardinality);
+		if(right.words != null) {
+			for(int wordIdx = 0; wordIdx < BITMAP_WORDS; wordIdx++) {
+				words[wordIdx] |= right.words[wordIdx];
+			}
+		} else {
+			for(int valueIdx = 0; valueIdx < right.cardinality; valueIdx++) {
+				char low = right.values[valueIdx];
+				words[low >>> 6] |= 1L << low;
+			}
+		}
+		return toContainer(words, countBits(words));
+	}
+
+	/**
+	 * Helper method to return the low values of left, but not of right.
+	 *
+	 * @param left
+	 * @param right
+	 * @return container
+	 *   The container, or null if empty.
+	 */
+	private static Container andNotContainers(Container left, Container right) {
+
+		if(left.words != null) {
+			long[] words = left.words.clone();
+			if(right.words != null) {
+				for(int wordIdx = 0; wordIdx < BITMAP_WORDS; wordIdx++) {
+					words[wordIdx] &= ~right.words[wordIdx];
+				}
+			} else {
+				for(int valueIdx = 0; valueIdx < right.cardinality; valueIdx++) {
+					char low = right.values[valueIdx];
+					words[low >>> 6] &= ~(1L << low);
+				}
+			}
+			return toContainer(words, countBits(words));
+		}
+
+		char[] values = new char[left.cardinality];
+		int cardinality = 0;
+		for(int valueIdx = 0; valueIdx < left.cardinality; valueIdx++) {
+			char low = left.values[valueIdx];
+			if(!right.contains(low)) {
+				values[cardinality++] = low;
+			}
+		}
+		return (cardinality == 0) ? null : new Container(values, cardinality);
+	}
+
+	/**
+	 * Helper method to return a container of the set bits of words:
+	 * an array container if they are few enough.
+	 *
+	 * @param words
+	 * @param cardinality
+	 *   The number of set bits.
+	 * @return container
+	 *   The container, or null if no bit is set.
+	 */
+	private static Container toContainer(long[] words, int cardinality) {
+		if(cardinality == 0) {
+			return null;
+		}
+		return (cardinality <= ARRAY_MAX_SIZE)
+				? new Container(toValues(words, cardinality), cardinality)
+				: new Container(words, cardinality);
+	}
+
+	private static long[] toWords(char[] values, int cardinality) {
+		long[] words = new long[BITMAP_WORDS];
+		for(int valueIdx = 0; valueIdx < cardinality; valueIdx++) {
+			char low = values[valueIdx];
+			words[low >>> 6] |= 1L << low;
+		}
+		return words;
+	}
+
+	private static char[] toValues(long[] words, int cardinality) {
+		char[] values = new char[Math.max(4, cardinality)];
+		int valueIdx = 0;
+		for(int wordIdx = 0; wordIdx < BITMAP_WORDS; wordIdx++) {
+			for(long word = words[wordIdx]; word != 0; word &= word - 1) {
+				values[valueIdx++] = (char) ((wordIdx << 6) + Long.numberOfTrailingZeros(word));
+			}
+		}
+		return values;
+	}
+
+	private static int countBits(long[] words) {
+		int cardinality = 0;
+		for(long word : words) {
+			cardinality += Long.bitCount(word);
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Helper method to return the index of the container of a key.
+	 *
+	 * @param key
+	 * @return containerIdx
+	 *   The index, or (-(insertion point) - 1) if there is none.
+	 */
+	private int findContainer(char key) {
+		return Arrays.binarySearch(this.keys, 0, this.numOfContainers, key);
+	}
+
+	private void insertContainer(int containerIdx, char key, Container container) {
+
+		if(this.numOfContainers == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, this.numOfContainers * 2);
+			this.containers = Arrays.copyOf(this.containers, this.numOfContainers * 2);
+			this.containerEpochs = Arrays.copyOf(this.containerEpochs, this.numOfContainers * 2);
+		}
+
+		int numOfMoved = this.numOfContainers - containerIdx;
+		System.arraycopy(this.keys, containerIdx, this.keys, containerIdx + 1, numOfMoved);
+		System.arraycopy(this.containers, containerIdx, this.containers, containerIdx + 1, numOfMoved);
+		System.arraycopy(this.containerEpochs, containerIdx,
+				this.containerEpochs, containerIdx + 1, numOfMoved);
+		this.keys[containerIdx] = key;
+		this.containers[containerIdx] = container;
+		this.containerEpochs[containerIdx] = this.epoch;
+		this.numOfContainers++;
+	}
+
+	private void removeContainer(int containerIdx) {
+
+		int numOfMoved = this.numOfContainers - containerIdx - 1;
+		System.arraycopy(this.keys, containerIdx + 1, this.keys, containerIdx, numOfMoved);
+		System.arraycopy(this.containers, containerIdx + 1, this.containers, containerIdx, numOfMoved);
+		System.arraycopy(this.containerEpochs, containerIdx + 1,
+				this.containerEpochs, containerIdx, numOfMoved);
+		this.numOfContainers--;
+		this.containers[this.numOfContainers] = null;
+	}
+
+	/**
+	 * Helper method to add a container after all others, unless it is null.
+	 *
+	 * @param key
+	 *   Greater than the keys of all containers.
+	 * @param container
+	 *   The container, or null if empty.
+	 */
+	private void appendContainer(char key, Container container) {
+		if(container != null) {
+			insertContainer(this.numOfContainers, key, container);
+		}
+	}
+
+	/**
+	 * Helper method to return a container that may be written in place,
+	 * copying it first if it may be shared with a snapshot.
+	 *
+	 * @param containerIdx
+	 * @return container
+	 */
+	private Container writableContainer(int containerIdx) {
+
+		Container container = this.containers[containerIdx];
+		if(this.containerEpochs[containerIdx] != this.epoch) {
+			container = container.copy();
+			this.containers[containerIdx] = container;
+			this.containerEpochs[containerIdx] = this.epoch;
+		}
+		return container;
+	}
+
+	/**
+	 * Iterator over the IDs of the containers, in order.
+	 */
+	private final class IdIterator implements PrimitiveIterator.OfInt {
+
+		private int containerIdx = -1;
+		private int high;
+		private Container container;
+
+		//Next value in an array container, or rest of a word of a bitmap.
+		private int valueIdx;
+		private int wordIdx;
+		private long word;
+
+		private IdIterator() {
+			nextContainer();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.container != null;
+		}
+
+		@Override
+		public int nextInt() {
+
+			if(this.container == null) {
+				throw new NoSuchElementException();
+			}
+
+			//Read the ID before moving on, maybe to the next container.
+			int id;
+			if(this.container.words == null) {
+				id = this.high | this.container.values[this.valueIdx++];
+				if(this.valueIdx == this.container.cardinality) {
+					nextContainer();
+				}
+			} else {
+				id = this.high | ((this.wordIdx << 6) + Long.numberOfTrailingZeros(this.word));
+				this.word &= this.word - 1;
+				nextWord();
+			}
+			return id;
+		}
+
+		private void nextContainer() {
+
+			this.containerIdx++;
+			if(this.containerIdx == RoaringBitmap.this.numOfContainers) {
+				this.container = null;
+				return;
+			}
+
+			this.container = RoaringBitmap.this.containers[this.containerIdx];
+			this.high = RoaringBitmap.this.keys[this.containerIdx] << 16;
+			this.valueIdx = 0;
+			if(this.container.words != null) {
+				this.wordIdx = 0;
+				this.word = this.container.words[0];
+				nextWord();
+			}
+		}
+
+		private void nextWord() {
+
+			while(this.word == 0) {
+				if(++this.wordIdx == BITMAP_WORDS) {
+					nextContainer();
+					return;
+				}
+				this.word = this.container.words[this.wordIdx];
+			}
+		}
+	}
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+
+/**
+ * Row layout of the tuples of a Relation, the default layout:
+ * a growing sequence of tuples, each tuple an array of attribute values.
+ *
+ * Tuples are kept in chunks of CHUNK_SIZE references, so snapshot()
+ * only copies the chunk list. Chunks are then shared with the snapshot
+ * and copied on the first write to them after it (copy-on-write).
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class RowTupleStore implements TupleStore {
+
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Private attributes for each instance of the RowTupleStore object:
+	 *     numOfAttributes: tuple array length;
+	 *
+	 *     size:            number of tuples stored;
+	 *
+	 *     chunks:          tuple i is chunks[i >> CHUNK_SHIFT][i & CHUNK_MASK],
+	 *                      stored as given, not copied;
+	 *
+	 *     chunkEpochs,
+	 *     epoch:           a chunk may only be written in place if its epoch
+	 *                      is the current one, epoch moves on at each snapshot;
+	 *
+	 *     isSnapshot:      true for read-only snapshots.
+	 */
+	private final int numOfAttributes;
+	private int size = 0;
+	private String[][][] chunks;
+	private int[] chunkEpochs;
+	private int epoch = 0;
+	private final boolean isSnapshot;
+
+	public RowTupleStore(int newNumOfAttributes) {
+
+		this.numOfAttributes = newNumOfAttributes;
+		this.chunks = new String[4][][];
+		this.chunkEpochs = new int[4];
+		this.isSnapshot = false;
+	}
+
+	/**
+	 * Private constructor for snapshots.
+	 */
+	private RowTupleStore(RowTupleStore source) {
+
+		this.numOfAttributes = source.numOfAttributes;
+		this.size = source.size;
+		this.chunks = Arrays.copyOf(source.chunks, (source.size + CHUNK_MASK) >> CHUNK_SHIFT);
+		this.chunkEpochs = null;
+		this.isSnapshot = true;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public int getNumOfAttributes() {
+		return this.numOfAttributes;
+	}
+
+	@Override
+	public String[] getTuple(int tupleIdx) {
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		return this.chunks[tupleIdx >> CHUNK_SHIFT][tupleIdx & CHUNK_MASK];
+	}
+
+	@Override
+	public String getValue(int tupleIdx, int attrIdx) {
+		return getTuple(tupleIdx)[attrIdx];
+	}
+
+	@Override
+	public void addTuple(String[] newTuple) {
+		assert !this.isSnapshot;
+		assert newTuple.length == this.numOfAttributes;
+
+		int chunkIdx = this.size >> CHUNK_SHIFT;
+		if(chunkIdx == this.chunks.length) {
+			this.chunks = Arrays.copyOf(this.chunks, chunkIdx * 2);
+			this.chunkEpochs = Arrays.copyOf(this.chunkEpochs, chunkIdx * 2);
+		}
+		if(this.chunks[chunkIdx] == null) {
+			this.chunks[chunkIdx] = new String[CHUNK_SIZE][];
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+
+		writableChunk(chunkIdx)[this.size & CHUNK_MASK] = newTuple;
+		this.size++;
+	}
+
+	@Override
+	public void setTuple(int tupleIdx, String[] updateTuple) {
+		assert !this.isSnapshot;
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		assert updateTuple.length == this.numOfAttributes;
+
+		writableChunk(tupleIdx >> CHUNK_SHIFT)[tupleIdx & CHUNK_MASK] = updateTuple;
+	}
+
+	@Override
+	public void removeTuple(int tupleIdx) {
+		assert !this.isSnapshot;
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+
+		//Shift later tuples down, one chunk at a time.
+		int lastIdx = this.size - 1;
+		int chunkIdx = tupleIdx >> CHUNK_SHIFT;
+		int fromPos = tupleIdx & CHUNK_MASK;
+		int lastChunkIdx = lastIdx >> CHUNK_SHIFT;
+
+		while(true) {
+			String[][] chunk = writableChunk(chunkIdx);
+			int chunkEnd = (chunkIdx == lastChunkIdx) ? (lastIdx & CHUNK_MASK) : CHUNK_MASK;
+			System.arraycopy(chunk, fromPos + 1, chunk, fromPos, chunkEnd - fromPos);
+
+			if(chunkIdx == lastChunkIdx) {
+				chunk[chunkEnd] = null;
+				break;
+			}
+
+			//Carry the first tuple of the next chunk into this one.
+			chunk[CHUNK_MASK] = this.chunks[chunkIdx + 1][0];
+			chunkIdx++;
+			fromPos = 0;
+		}
+		this.size--;
+	}
+
+	/**
+	 * Drop the tuple reference, so its values can be freed.
+	 */
+	@Override
+	public void clearTuple(int tupleIdx) {
+		assert !this.isSnapshot;
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+
+		writableChunk(tupleIdx >> CHUNK_SHIFT)[tupleIdx & CHUNK_MASK] = null;
+	}
+
+	@Override
+	public int[] findEqual(int attrIdx, String value) {
+		assert attrIdx >= 0 && attrIdx < this.numOfAttributes;
+
+		int[] tupleIdxs = new int[16];
+		int matchCount = 0;
+
+		for(int tmpIdx = 0; tmpIdx < this.size; tmpIdx++) {
+			String[] tmpTuple = this.chunks[tmpIdx >> CHUNK_SHIFT][tmpIdx & CHUNK_MASK];
+			if(tmpTuple == null) {
+				continue;
+			}
+			String tmpValue = tmpTuple[attrIdx];
+			if(value == null ? tmpValue == null : value.equals(tmpValue)) {
+				if(matchCount == tupleIdxs.length) {
+					tupleIdxs = Arrays.copyOf(tupleIdxs, matchCount * 2);
+				}
+				tupleIdxs[matchCount++] = tmpIdx;
+			}
+		}
+		return Arrays.copyOf(tupleIdxs, matchCount);
+	}
+
+	@Override
+	public TupleStore snapshot() {
+		if(this.isSnapshot) {
+			return this;
+		}
+
+		RowTupleStore snapshot = new RowTupleStore(this);
+		this.epoch++;
+		return snapshot;
+	}
+
+	/**
+	 * Helper method to return a chunk that may be written in place,
+	 * copying it first if it may be shared with a snapshot.
+	 *
+	 * @param chunkIdx
+	 * @return chunk
+	 */
+	private String[][] writableChunk(int chunkIdx) {
+
+		String[][] chunk = this.chunks[chunkIdx];
+		if(this.chunkEpochs[chunkIdx] != this.epoch) {
+			chunk = chunk.clone();
+			this.chunks[chunkIdx] = chunk;
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+		return chunk;
+	}
+}
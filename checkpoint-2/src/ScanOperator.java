@@ -0,0 +1,102 @@
+import java.util.function.Function;
+
+/**
+ * Full scan of a Relation, in tuple ID order.
+ *
+ * Reads one snapshot of the relation, taken at open(),
+ * so writes during the scan are not seen and never block it.
+ *
+ * Given a selection, only reads the tuples whose IDs are in the
+ * selection vector it returns for the snapshot, e.g. of the range
+ * kernels of a NumericColumn, or of an and() of findBitmap() results;
+ * other tuples are skipped without being read.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class ScanOperator implements Operator {
+
+	/**
+	 * Private attributes for each instance of the ScanOperator object:
+	 *     relation:  the relation to scan;
+	 *
+	 *     selection: the tuple IDs to read from a snapshot, null for all;
+	 *
+	 *     snapshot:  the snapshot being scanned, null unless open;
+	 *
+	 *     nextSlot,
+	 *     selectedIds: the next slot of the snapshot to read,
+	 *                or the selected tuple IDs, null to read all slots;
+	 *
+	 *     nextSelected: the next of the selected tuple IDs to read.
+	 */
+	private final Relation relation;
+	private final Function <RelationSnapshot, int[]> selection;
+	private RelationSnapshot snapshot = null;
+	private int nextSlot = 0;
+	private int[] selectedIds = null;
+	private int nextSelected = 0;
+
+	public ScanOperator(Relation newRelation) {
+		this(newRelation, null);
+	}
+
+	/**
+	 * @param newRelation
+	 * @param newSelection
+	 *   Returns the IDs of the tuples to read from a snapshot of newRelation,
+	 *   in ascending order, e.g. snapshot -> snapshot.findBitmap(2, "Drama")
+	 *   .toArray(); null for all.
+	 */
+	public ScanOperator(Relation newRelation,
+			Function <RelationSnapshot, int[]> newSelection) {
+		this.relation = newRelation;
+		this.selection = newSelection;
+	}
+
+	@Override
+	public String[] getAttributeList() {
+		return this.relation.getAttributeList();
+	}
+
+	@Override
+	public void open() {
+		this.snapshot = this.relation.snapshot();
+		this.nextSlot = 0;
+		this.selectedIds = (this.selection == null) ? null : this.selection.apply(this.snapshot);
+		this.nextSelected = 0;
+	}
+
+	@Override
+	public String[] next() {
+		assert this.snapshot != null;
+
+		//Skip selected tuple IDs that are not in the snapshot.
+		if(this.selectedIds != null) {
+			while(this.nextSelected < this.selectedIds.length) {
+				String[] tuple = this.snapshot.getTuple(this.selectedIds[this.nextSelected++]);
+				if(tuple != null) {
+					return tuple;
+				}
+			}
+			return null;
+		}
+
+		//Skip the dead slots of deleted tuples.
+		int slotLimit = this.snapshot.getNumOfSlots();
+		while(this.nextSlot < slotLimit) {
+			int slot = this.nextSlot++;
+			if(this.snapshot.getTupleId(slot) >= 0) {
+				return this.snapshot.getStore().getTuple(slot);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() {
+		this.snapshot = null;
+		this.selectedIds = null;
+	}
+}
@@ -0,0 +1,510 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact in-memory layout of the tuples of a Relation: each tuple is one
+ * record of UTF-8 bytes, packed into large shared byte arrays (slabs),
+ * instead of a String[] of separate String objects.
+ *
+ * Records are encoded as by TupleCodec: for each attribute, a varint of
+ * (UTF-8 byte length + 1), 0 for null, then the bytes. A tuple costs
+ * its encoded bytes plus an 8-byte record address, against about
+ * 40 bytes of String and byte[] headers per value in a RowTupleStore.
+ * Values are only decoded into Strings when read;
+ * findEqual() compares the encoded bytes without decoding.
+ *
+ * Records never change once written: updates append a new record and
+ * leave the old one behind as garbage, which is reclaimed by rewriting
+ * all live records into new slabs once it outgrows them.
+ * So snapshots share the slabs; they copy the slab list, and share the
+ * chunks of record addresses until the next write to each chunk
+ * (copy-on-write), as RowTupleStore does.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class SlabTupleStore implements TupleStore {
+
+	/*
+	 * Records are appended to slabs of SLAB_SIZE bytes, and never span two.
+	 * A record address is (slab index << SLAB_SHIFT) | offset.
+	 */
+	private static final int SLAB_SHIFT = 20;
+	private static final int SLAB_SIZE = 1 << SLAB_SHIFT;
+	private static final long OFFSET_MASK = SLAB_SIZE - 1;
+
+	/*
+	 * Address of a cleared tuple.
+	 */
+	private static final long CLEARED_ADDRESS = -1L;
+
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Private attributes for each instance of the SlabTupleStore object:
+	 *     numOfAttributes: number of values per record;
+	 *
+	 *     size:            number of tuples stored;
+	 *
+	 *     chunks:          the record address of tuple i is
+	 *                      chunks[i >> CHUNK_SHIFT][i & CHUNK_MASK];
+	 *
+	 *     chunkEpochs,
+	 *     epoch:           a chunk may only be written in place if its epoch
+	 *                      is the current one, epoch moves on at each snapshot;
+	 *
+	 *     slabs,
+	 *     numOfSlabs,
+	 *     currentSlab,
+	 *     slabEnd:         the slabs, how many are in use,
+	 *                      the one records are appended to,
+	 *                      and the end of the records in it;
+	 *
+	 *     dataBytes,
+	 *     liveBytes:       bytes of all records written to the slabs in use,
+	 *                      and of the records of all tuples;
+	 *
+	 *     scratch:         buffer to encode a record in before copying it;
+	 *
+	 *     isSnapshot:      true for read-only snapshots.
+	 */
+	private final int numOfAttributes;
+	private int size = 0;
+	private long[][] chunks;
+	private int[] chunkEpochs;
+	private int epoch = 0;
+	private byte[][] slabs;
+	private int numOfSlabs = 0;
+	private int currentSlab = -1;
+	private int slabEnd = SLAB_SIZE;
+	private long dataBytes = 0;
+	private long liveBytes = 0;
+	private ByteBuffer scratch;
+	private final boolean isSnapshot;
+
+	public SlabTupleStore(int newNumOfAttributes) {
+
+		this.numOfAttributes = newNumOfAttributes;
+		this.chunks = new long[4][];
+		this.chunkEpochs = new int[4];
+		this.slabs = new byte[4][];
+		this.scratch = ByteBuffer.allocate(256);
+		this.isSnapshot = false;
+	}
+
+	/**
+	 * Private constructor for snapshots.
+	 */
+	private SlabTupleStore(SlabTupleStore source) {
+
+		this.numOfAttributes = source.numOfAttributes;
+		this.size = source.size;
+		this.chunks = Arrays.copyOf(source.chunks, (source.size + CHUNK_MASK) >> CHUNK_SHIFT);
+		this.chunkEpochs = null;
+		this.slabs = Arrays.copyOf(source.slabs, source.numOfSlabs);
+		this.numOfSlabs = source.numOfSlabs;
+		this.dataBytes = source.dataBytes;
+		this.liveBytes = source.liveBytes;
+		this.scratch = null;
+		this.isSnapshot = true;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public int getNumOfAttributes() {
+		return this.numOfAttributes;
+	}
+
+	/**
+	 * Return the number of bytes of records in the slabs,
+	 * including garbage left behind by updates and deletes.
+	 *
+	 * @return dataBytes
+	 */
+	public long getDataBytes() {
+		return this.dataBytes;
+	}
+
+	/**
+	 * Return the number of bytes allocated for slabs.
+	 *
+	 * @return slabBytes
+	 */
+	public long getSlabBytes() {
+
+		long slabBytes = 0;
+		for(int slabIdx = 0; slabIdx < this.numOfSlabs; slabIdx++) {
+			slabBytes += this.slabs[slabIdx].length;
+		}
+		return slabBytes;
+	}
+
+	@Override
+	public String[] getTuple(int tupleIdx) {
+
+		long address = getAddress(tupleIdx);
+		assert address != CLEARED_ADDRESS;
+
+		byte[] slab = this.slabs[(int) (address >>> SLAB_SHIFT)];
+		int pos = (int) (address & OFFSET_MASK);
+		String[] tuple = new String[this.numOfAttributes];
+		for(int attrIdx = 0; attrIdx < this.numOfAttributes; attrIdx++) {
+			int lenPlusOne = TupleCodec.readVarint(slab, pos);
+			pos = TupleCodec.skipVarint(slab, pos);
+			if(lenPlusOne > 0) {
+				tuple[attrIdx] = new String(slab, pos, lenPlusOne - 1, StandardCharsets.UTF_8);
+				pos += lenPlusOne - 1;
+			}
+		}
+		return tuple;
+	}
+
+	@Override
+	public String getValue(int tupleIdx, int attrIdx) {
+		assert attrIdx >= 0 && attrIdx < this.numOfAttributes;
+
+		long address = getAddress(tupleIdx);
+		assert address != CLEARED_ADDRESS;
+
+		byte[] slab = this.slabs[(int) (address >>> SLAB_SHIFT)];
+		int pos = skipValues(slab, (int) (address & OFFSET_MASK), attrIdx);
+		int lenPlusOne = TupleCodec.readVarint(slab, pos);
+		if(lenPlusOne == 0) {
+			return null;
+		}
+		return new String(slab, TupleCodec.skipVarint(slab, pos), lenPlusOne - 1,
+				StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void addTuple(String[] newTuple) {
+		assert !this.isSnapshot;
+		assert newTuple.length == this.numOfAttributes;
+
+		int chunkIdx = this.size >> CHUNK_SHIFT;
+		if(chunkIdx == this.chunks.length) {
+			this.chunks = Arrays.copyOf(this.chunks, chunkIdx * 2);
+			this.chunkEpochs = Arrays.copyOf(this.chunkEpochs, chunkIdx * 2);
+		}
+		if(this.chunks[chunkIdx] == null) {
+			this.chunks[chunkIdx] = new long[CHUNK_SIZE];
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+
+		long address = appendRecord(newTuple);
+		writableChunk(chunkIdx)[this.size & CHUNK_MASK] = address;
+		this.size++;
+	}
+
+	@Override
+	public void setTuple(int tupleIdx, String[] updateTuple) {
+		assert !this.isSnapshot;
+		assert updateTuple.length == this.numOfAttributes;
+
+		this.liveBytes -= getRecordLength(getAddress(tupleIdx));
+		long address = appendRecord(updateTuple);
+		setAddress(tupleIdx, address);
+		reclaimGarbage();
+	}
+
+	@Override
+	public void removeTuple(int tupleIdx) {
+		assert !this.isSnapshot;
+
+		this.liveBytes -= getRecordLength(getAddress(tupleIdx));
+
+		//Shift later addresses down, one chunk at a time.
+		int lastIdx = this.size - 1;
+		int chunkIdx = tupleIdx >> CHUNK_SHIFT;
+		int fromPos = tupleIdx & CHUNK_MASK;
+		int lastChunkIdx = lastIdx >> CHUNK_SHIFT;
+
+		while(true) {
+			long[] chunk = writableChunk(chunkIdx);
+			int chunkEnd = (chunkIdx == lastChunkIdx) ? (lastIdx & CHUNK_MASK) : CHUNK_MASK;
+			System.arraycopy(chunk, fromPos + 1, chunk, fromPos, chunkEnd - fromPos);
+
+			if(chunkIdx == lastChunkIdx) {
+				break;
+			}
+
+			//Carry the first address of the next chunk into this one.
+			chunk[CHUNK_MASK] = this.chunks[chunkIdx + 1][0];
+			chunkIdx++;
+			fromPos = 0;
+		}
+		this.size--;
+		reclaimGarbage();
+	}
+
+	/**
+	 * Drop the record address, the record becomes garbage.
+	 */
+	@Override
+	public void clearTuple(int tupleIdx) {
+		assert !this.isSnapshot;
+
+		this.liveBytes -= getRecordLength(getAddress(tupleIdx));
+		setAddress(tupleIdx, CLEARED_ADDRESS);
+		reclaimGarbage();
+	}
+
+	@Override
+	public boolean isCleared(int tupleIdx) {
+		return getAddress(tupleIdx) == CLEARED_ADDRESS;
+	}
+
+	/**
+	 * Copy the record address, records are shared, not copied.
+	 */
+	@Override
+	public void moveTuple(int fromIdx, int toIdx) {
+		assert !this.isSnapshot;
+
+		long address = getAddress(fromIdx);
+		this.liveBytes += getRecordLength(address) - getRecordLength(getAddress(toIdx));
+		setAddress(toIdx, address);
+	}
+
+	@Override
+	public int[] findEqual(int attrIdx, String value) {
+		assert attrIdx >= 0 && attrIdx < this.numOfAttributes;
+
+		//Compare encoded bytes, so no value is decoded.
+		byte[] valueBytes = (value == null) ? null : value.getBytes(StandardCharsets.UTF_8);
+		int valueLenPlusOne = (value == null) ? 0 : valueBytes.length + 1;
+		int[] tupleIdxs = new int[16];
+		int matchCount = 0;
+
+		for(int tmpIdx = 0; tmpIdx < this.size; tmpIdx++) {
+			long address = this.chunks[tmpIdx >> CHUNK_SHIFT][tmpIdx & CHUNK_MASK];
+			if(address == CLEARED_ADDRESS) {
+				continue;
+			}
+
+			byte[] slab = this.slabs[(int) (address >>> SLAB_SHIFT)];
+			int pos = skipValues(slab, (int) (address & OFFSET_MASK), attrIdx);
+			if(TupleCodec.readVarint(slab, pos) != valueLenPlusOne) {
+				continue;
+			}
+			if(valueBytes != null && !isEqualBytes(slab, TupleCodec.skipVarint(slab, pos), valueBytes)) {
+				continue;
+			}
+
+			if(matchCount == tupleIdxs.length) {
+				tupleIdxs = Arrays.copyOf(tupleIdxs, matchCount * 2);
+			}
+			tupleIdxs[matchCount++] = tmpIdx;
+		}
+		return Arrays.copyOf(tupleIdxs, matchCount);
+	}
+
+	@Override
+	public TupleStore snapshot() {
+		if(this.isSnapshot) {
+			return this;
+		}
+
+		SlabTupleStore snapshot = new SlabTupleStore(this);
+		this.epoch++;
+		return snapshot;
+	}
+
+	/**
+	 * Helper method to encode a record and append it to the last slab,
+	 * or to a new slab if it does not fit.
+	 *
+	 * @param tuple
+	 * @return address
+	 */
+	private long appendRecord(String[] tuple) {
+
+		this.scratch.clear();
+		this.scratch = TupleCodec.putTuple(this.scratch, tuple);
+		int recordLength = this.scratch.position();
+
+		long address = allocateRecord(recordLength);
+		System.arraycopy(this.scratch.array(), 0, this.slabs[(int) (address >>> SLAB_SHIFT)],
+				(int) (address & OFFSET_MASK), recordLength);
+		return address;
+	}
+
+	/**
+	 * Helper method to rewrite the records of all tuples into new slabs,
+	 * once the garbage in the slabs outgrows both them and one slab,
+	 * so each rewrite is paid for by as many bytes of garbage.
+	 * Snapshots keep the old slabs.
+	 */
+	private void reclaimGarbage() {
+
+		long garbageBytes = this.dataBytes - this.liveBytes;
+		if(garbageBytes <= SLAB_SIZE || garbageBytes <= this.liveBytes) {
+			return;
+		}
+
+		byte[][] oldSlabs = Arrays.copyOf(this.slabs, this.numOfSlabs);
+		this.slabs = new byte[4][];
+		this.numOfSlabs = 0;
+		this.currentSlab = -1;
+		this.slabEnd = SLAB_SIZE;
+		this.dataBytes = 0;
+		this.liveBytes = 0;
+
+		//Rewrite every chunk, so none is shared with a snapshot anymore.
+		int numOfChunks = (this.size + CHUNK_MASK) >> CHUNK_SHIFT;
+		for(int chunkIdx = 0; chunkIdx < numOfChunks; chunkIdx++) {
+			long[] chunk = this.chunks[chunkIdx].clone();
+			int chunkEnd = Math.min(CHUNK_SIZE, this.size - (chunkIdx << CHUNK_SHIFT));
+			for(int chunkPos = 0; chunkPos < chunkEnd; chunkPos++) {
+				if(chunk[chunkPos] != CLEARED_ADDRESS) {
+					chunk[chunkPos] = copyRecord(oldSlabs, chunk[chunkPos]);
+				}
+			}
+			this.chunks[chunkIdx] = chunk;
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+	}
+
+	/**
+	 * Helper method to append a copy of a record of other slabs.
+	 *
+	 * @param fromSlabs
+	 * @param fromAddress
+	 * @return address
+	 */
+	private long copyRecord(byte[][] fromSlabs, long fromAddress) {
+
+		byte[] fromSlab = fromSlabs[(int) (fromAddress >>> SLAB_SHIFT)];
+		int fromPos = (int) (fromAddress & OFFSET_MASK);
+		int recordLength = skipValues(fromSlab, fromPos, this.numOfAttributes) - fromPos;
+
+		long address = allocateRecord(recordLength);
+		System.arraycopy(fromSlab, fromPos, this.slabs[(int) (address >>> SLAB_SHIFT)],
+				(int) (address & OFFSET_MASK), recordLength);
+		return address;
+	}
+
+	/**
+	 * Helper method to make room for a record at the end of the current slab,
+	 * or at the start of a new one if it does not fit.
+	 * A record larger than a slab gets a slab of its own,
+	 * and the current slab stays open for the records after it.
+	 *
+	 * @param recordLength
+	 * @return address
+	 */
+	private long allocateRecord(int recordLength) {
+
+		if(recordLength > SLAB_SIZE - this.slabEnd) {
+			if(this.numOfSlabs == this.slabs.length) {
+				this.slabs = Arrays.copyOf(this.slabs, this.numOfSlabs * 2);
+			}
+			this.slabs[this.numOfSlabs] = new byte[Math.max(SLAB_SIZE, recordLength)];
+
+			if(recordLength > SLAB_SIZE) {
+				this.dataBytes += recordLength;
+				this.liveBytes += recordLength;
+				return (long) this.numOfSlabs++ << SLAB_SHIFT;
+			}
+			this.currentSlab = this.numOfSlabs++;
+			this.slabEnd = 0;
+		}
+
+		long address = ((long) this.currentSlab << SLAB_SHIFT) | this.slabEnd;
+		this.slabEnd += recordLength;
+		this.dataBytes += recordLength;
+		this.liveBytes += recordLength;
+		return address;
+	}
+
+	/**
+	 * Helper method to return the length of a record, 0 if cleared.
+	 *
+	 * @param address
+	 * @return recordLength
+	 */
+	private int getRecordLength(long address) {
+
+		if(address == CLEARED_ADDRESS) {
+			return 0;
+		}
+		byte[] slab = this.slabs[(int) (address >>> SLAB_SHIFT)];
+		int pos = (int) (address & OFFSET_MASK);
+		return skipValues(slab, pos, this.numOfAttributes) - pos;
+	}
+
+	/**
+	 * Helper method to return the position after a number of values.
+	 *
+	 * @param slab
+	 * @param pos
+	 *   The position of the first value.
+	 * @param numOfValues
+	 * @return pos
+	 */
+	private static int skipValues(byte[] slab, int pos, int numOfValues) {
+
+		for(int valueIdx = 0; valueIdx < numOfValues; valueIdx++) {
+			int lenPlusOne = TupleCodec.readVarint(slab, pos);
+			pos = TupleCodec.skipVarint(slab, pos);
+			if(lenPlusOne > 0) {
+				pos += lenPlusOne - 1;
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Helper method to compare bytes of a slab with a value.
+	 *
+	 * @param slab
+	 * @param pos
+	 * @param valueBytes
+	 * @return isEqual
+	 */
+	private static boolean isEqualBytes(byte[] slab, int pos, byte[] valueBytes) {
+
+		for(int byteIdx = 0; byteIdx < valueBytes.length; byteIdx++) {
+			if(slab[pos + byteIdx] != valueBytes[byteIdx]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long getAddress(int tupleIdx) {
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		return this.chunks[tupleIdx >> CHUNK_SHIFT][tupleIdx & CHUNK_MASK];
+	}
+
+	private void setAddress(int tupleIdx, long address) {
+		assert tupleIdx >= 0 && tupleIdx < this.size;
+		writableChunk(tupleIdx >> CHUNK_SHIFT)[tupleIdx & CHUNK_MASK] = address;
+	}
+
+	/**
+	 * Helper method to return a chunk that may be written in place,
+	 * copying it first if it may be shared with a snapshot.
+	 *
+	 * @param chunkIdx
+	 * @return chunk
+	 */
+	private long[] writableChunk(int chunkIdx) {
+
+		long[] chunk = this.chunks[chunkIdx];
+		if(this.chunkEpochs[chunkIdx] != this.epoch) {
+			chunk = chunk.clone();
+			this.chunks[chunkIdx] = chunk;
+			this.chunkEpochs[chunkIdx] = this.epoch;
+		}
+		return chunk;
+	}
+}
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the tuples of its input by one attribute, optionally keeping
+ * only the first few (ORDER BY ... LIMIT n).
+ *
+ * Values are compared as OrderedIndex compares them, so a NUMERIC sort
+ * puts "995" before "2011". Tuples of equal value keep their input order.
+ * With a limit, only the best limit tuples seen so far are held,
+ * in a heap, instead of all of them.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class SortOperator implements Operator {
+
+	/**
+	 * Private attributes for each instance of the SortOperator object:
+	 *     input:      the operator to sort;
+	 *
+	 *     order:      the order of (input position, tuple) pairs;
+	 *
+	 *     limit:      how many tuples to return at most, 0 for all;
+	 *
+	 *     sorted,
+	 *     nextIdx:    the sorted tuples, null unless open,
+	 *                 and the next of them to return.
+	 */
+	private final Operator input;
+	private final Comparator <Ranked> order;
+	private final int limit;
+	private List <String[]> sorted = null;
+	private int nextIdx = 0;
+
+	/**
+	 * An input tuple with its position, the tie-break for equal values.
+	 */
+	private static final class Ranked {
+
+		private final long position;
+		private final String[] tuple;
+
+		private Ranked(long newPosition, String[] newTuple) {
+			this.position = newPosition;
+			this.tuple = newTuple;
+		}
+	}
+
+	/**
+	 * @param newInput
+	 * @param attrIdx
+	 *   The attribute to sort by.
+	 * @param valueType
+	 *   How to compare its values.
+	 * @param isDescending
+	 *   True for the highest values first; nulls then come last.
+	 * @param newLimit
+	 *   How many tuples to return at most, 0 for all.
+	 *
+	 * @requires attrIdx is within newInput.getAttributeList()
+	 *   and newLimit >= 0
+	 */
+	public SortOperator(Operator newInput, int attrIdx, OrderedIndex.ValueType valueType,
+			boolean isDescending, int newLimit) {
+		assert attrIdx >= 0 && attrIdx < newInput.getAttributeList().length;
+		assert newLimit >= 0;
+
+		Comparator <Ranked> valueOrder = (left, right) -> OrderedIndex.compareValues(valueType,
+				left.tuple[attrIdx], right.tuple[attrIdx]);
+		if(isDescending) {
+			valueOrder = valueOrder.reversed();
+		}
+
+		this.input = newInput;
+		this.order = valueOrder.thenComparingLong(ranked -> ranked.position);
+		this.limit = newLimit;
+	}
+
+	@Override
+	public String[] getAttributeList() {
+		return this.input.getAttributeList();
+	}
+
+	@Override
+	public void open() {
+
+		List <Ranked> ranked;
+		this.input.open();
+		try {
+			ranked = (this.limit > 0) ? readTopTuples() : readAllTuples();
+
+		} finally {
+			this.input.close();
+		}
+
+		ranked.sort(this.order);
+		this.sorted = new ArrayList <> (ranked.size());
+		for(Ranked tmpRanked : ranked) {
+			this.sorted.add(tmpRanked.tuple);
+		}
+		this.nextIdx = 0;
+	}
+
+	@Override
+	public String[] next() {
+		assert this.sorted != null;
+
+		if(this.nextIdx == this.sorted.size()) {
+			return null;
+		}
+		return this.sorted.get(this.nextIdx++);
+	}
+
+	@Override
+	public void close() {
+		this.sorted = null;
+	}
+
+	/**
+	 * Helper method to read all input tuples.
+	 *
+	 * @return ranked
+	 */
+	private List <Ranked> readAllTuples() {
+
+		List <Ranked> ranked = new ArrayList <> ();
+		long position = 0;
+		for(String[] tuple = this.input.next(); tuple != null; tuple = this.input.next()) {
+			ranked.add(new Ranked(position++, tuple));
+		}
+		return ranked;
+	}
+
+	/**
+	 * Helper method to read the input, keeping the first limit tuples
+	 * in sort order in a heap whose head is the worst of them.
+	 *
+	 * @return ranked
+	 *   The kept tuples, in no particular order.
+	 */
+	private List <Ranked> readTopTuples() {
+
+		PriorityQueue <Ranked> kept = new PriorityQueue <> (this.limit + 1,
+				Collections.reverseOrder(this.order));
+		long position = 0;
+		for(String[] tuple = this.input.next(); tuple != null; tuple = this.input.next()) {
+			Ranked tmpRanked = new Ranked(position++, tuple);
+			if(kept.size() < this.limit) {
+				kept.add(tmpRanked);
+			} else if(this.order.compare(tmpRanked, kept.peek()) < 0) {
+				kept.poll();
+				kept.add(tmpRanked);
+			}
+		}
+		return new ArrayList <> (kept);
+	}
+}
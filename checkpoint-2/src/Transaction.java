@@ -0,0 +1,380 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A transaction over one or more Relations, from TransactionManager.begin():
+ * its writes are all kept by commit(), or all undone by abort().
+ *
+ * Locking is strict two-phase, hierarchical: reads and writes of single
+ * tuples take an intention lock (IS, IX) on the relation and a shared
+ * or exclusive lock (S, X) on the key values of the tuple, so inserts
+ * of a key lock the key before the tuple exists; snapshot() takes S on
+ * the whole relation. Locks are held until commit() or abort(), so other
+ * transactions never see a write of a transaction that has not committed,
+ * and the snapshots taken by one transaction of several relations
+ * all hold either all or none of each other transaction's writes.
+ * Reads and writes made outside transactions take no locks, so all
+ * writers of the relations must use transactions to get this.
+ *
+ * Reads hold the relation's write lock for a moment, so they see
+ * the latest writes, never the last published snapshot that readers
+ * outside transactions get while the relation is being written.
+ *
+ * Each write is applied to the relation at once and recorded in an undo
+ * log; abort() undoes them, latest first, and a tuple it restores
+ * gets its tuple ID back.
+ *
+ * Writes to relations with a WriteAheadLog are logged with the ID of
+ * the transaction and do not wait for the disk; commit() logs a commit
+ * record and waits for it instead, so recovery keeps either all writes
+ * of the transaction or, if it did not commit, none.
+ *
+ * Any lock request may throw a LockManager.DeadlockException,
+ * after which the transaction must abort; TransactionManager.run()
+ * does that, and retries. A transaction is used by one thread at a time.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class Transaction {
+
+	/**
+	 * States of a transaction.
+	 */
+	public enum State {
+		ACTIVE, COMMITTED, ABORTED
+	}
+
+	/**
+	 * Kinds of undo records: which write to undo.
+	 */
+	private enum UndoKind {
+		INSERT, UPDATE, DELETE
+	}
+
+	/**
+	 * One write to undo: the tuple written, and its values before.
+	 */
+	private static final class UndoRecord {
+
+		private final UndoKind kind;
+		private final Relation relation;
+		private final int tupleId;
+		private final String[] oldTuple;
+
+		private UndoRecord(UndoKind newKind, Relation newRelation, int newTupleId,
+				String[] newOldTuple) {
+			this.kind = newKind;
+			this.relation = newRelation;
+			this.tupleId = newTupleId;
+			this.oldTuple = newOldTuple;
+		}
+	}
+
+	/**
+	 * Lock resource of the key values of a tuple of one relation.
+	 */
+	private static final class TupleResource {
+
+		private final Relation relation;
+		private final TupleKey key;
+
+		private TupleResource(Relation newRelation, TupleKey newKey) {
+			this.relation = newRelation;
+			this.key = newKey;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof TupleResource)) {
+				return false;
+			}
+			TupleResource otherResource = (TupleResource) other;
+			return this.relation == otherResource.relation && this.key.equals(otherResource.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(this.relation) + this.key.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return this.relation.getName() + " " + this.key.toString();
+		}
+	}
+
+	/**
+	 * Private attributes for each instance of the Transaction object:
+	 *     id:          number of the transaction, in order of begin();
+	 *
+	 *     lockManager: where the transaction takes its locks;
+	 *
+	 *     state:       active until commit() or abort();
+	 *
+	 *     undoLog:     the writes made so far, oldest first.
+	 */
+	private final long id;
+	private final LockManager lockManager;
+	private State state = State.ACTIVE;
+	private final List <UndoRecord> undoLog = new ArrayList <> ();
+
+	Transaction(long newId, LockManager newLockManager) {
+		this.id = newId;
+		this.lockManager = newLockManager;
+	}
+
+	public long getId() {
+		return this.id;
+	}
+
+	public State getState() {
+		return this.state;
+	}
+
+	/**
+	 * Find a tuple by its key attribute values, under a shared lock.
+	 *
+	 * @param relation
+	 * @param keyValues
+	 *   The key attribute values, in getPAList() order.
+	 * @return tuple
+	 *   The matching tuple, or null if there is none.
+	 *
+	 * @requires getState() == State.ACTIVE
+	 */
+	public String[] read(Relation relation, String[] keyValues) {
+		assert this.state == State.ACTIVE;
+
+		this.lockManager.lock(this, relation, LockManager.Mode.IS);
+		this.lockManager.lock(this, tupleResource(relation, keyValues), LockManager.Mode.S);
+
+		relation.lockWrites();
+		try {
+			return relation.findTuple(keyValues);
+
+		} finally {
+			relation.unlockWrites();
+		}
+	}
+
+	/**
+	 * Return a snapshot of a whole relation, under a shared lock on it,
+	 * so it holds no writes of transactions that have not committed.
+	 *
+	 * @param relation
+	 * @return snapshot
+	 *
+	 * @requires getState() == State.ACTIVE
+	 */
+	public RelationSnapshot snapshot(Relation relation) {
+		assert this.state == State.ACTIVE;
+
+		this.lockManager.lock(this, relation, LockManager.Mode.S);
+
+		relation.lockWrites();
+		try {
+			return relation.snapshot();
+
+		} finally {
+			relation.unlockWrites();
+		}
+	}
+
+	/**
+	 * Add a new tuple, unless a tuple with the same key values exists.
+	 *
+	 * @param relation
+	 * @param newTuple
+	 * @return tupleId
+	 *   The tuple ID of the new tuple, or -1 if the key values are taken.
+	 *
+	 * @requires getState() == State.ACTIVE
+	 */
+	public int insert(Relation relation, String[] newTuple) {
+		assert this.state == State.ACTIVE;
+
+		this.lockManager.lock(this, relation, LockManager.Mode.IX);
+		this.lockManager.lock(this, tupleResource(relation, newTuple), LockManager.Mode.X);
+
+		int tupleId = relation.insertNewTuple(newTuple, this.id);
+		if(tupleId >= 0) {
+			this.undoLog.add(new UndoRecord(UndoKind.INSERT, relation, tupleId, null));
+		}
+		return tupleId;
+	}
+
+	/**
+	 * Overwrite the tuple with the given key values, unless its new key
+	 * values are taken by another tuple.
+	 *
+	 * @param relation
+	 * @param keyValues
+	 *   The current key attribute values of the tuple.
+	 * @param updateTuple
+	 * @return updated
+	 *   False if there is no such tuple, or the new key values are taken.
+	 *
+	 * @requires getState() == State.ACTIVE
+	 */
+	public boolean update(Relation relation, String[] keyValues, String[] updateTuple) {
+		assert this.state == State.ACTIVE;
+
+		this.lockManager.lock(this, relation, LockManager.Mode.IX);
+		this.lockManager.lock(this, tupleResource(relation, keyValues), LockManager.Mode.X);
+		this.lockManager.lock(this, tupleResource(relation, updateTuple), LockManager.Mode.X);
+
+		int tupleId = relation.findTupleId(keyValues);
+		String[] oldTuple = (tupleId < 0) ? null : currentTuple(relation, tupleId);
+		if(oldTuple == null || !relation.updateExistingTuple(updateTuple, tupleId, this.id)) {
+			return false;
+		}
+		this.undoLog.add(new UndoRecord(UndoKind.UPDATE, relation, tupleId, oldTuple));
+		return true;
+	}
+
+	/**
+	 * Remove the tuple with the given key values.
+	 *
+	 * @param relation
+	 * @param keyValues
+	 * @return deleted
+	 *   False if there is no such tuple.
+	 *
+	 * @requires getState() == State.ACTIVE
+	 */
+	public boolean delete(Relation relation, String[] keyValues) {
+		assert this.state == State.ACTIVE;
+
+		this.lockManager.lock(this, relation, LockManager.Mode.IX);
+		this.lockManager.lock(this, tupleResource(relation, keyValues), LockManager.Mode.X);
+
+		int tupleId = relation.findTupleId(keyValues);
+		String[] oldTuple = (tupleId < 0) ? null : currentTuple(relation, tupleId);
+		if(oldTuple == null || !relation.deleteExistingTuple(tupleId, this.id)) {
+			return false;
+		}
+		this.undoLog.add(new UndoRecord(UndoKind.DELETE, relation, tupleId, oldTuple));
+		return true;
+	}
+
+	/**
+	 * Keep all writes of the transaction and release its locks,
+	 * once its commit record is on disk in each log it wrote to.
+	 *
+	 * @throws java.io.UncheckedIOException
+	 *   If a log could not be written; the locks are still released.
+	 *
+	 * @requires getState() == State.ACTIVE
+	 */
+	public void commit() {
+		assert this.state == State.ACTIVE;
+
+		try {
+			List <WriteAheadLog> logs = this.writtenLogs();
+			long[] commitLSNs = new long[logs.size()];
+			for(int logIdx = 0; logIdx < logs.size(); logIdx++) {
+				commitLSNs[logIdx] = logs.get(logIdx).logCommit(this.id);
+			}
+			for(int logIdx = 0; logIdx < logs.size(); logIdx++) {
+				logs.get(logIdx).awaitDurable(commitLSNs[logIdx]);
+			}
+
+		} finally {
+			this.state = State.COMMITTED;
+			this.undoLog.clear();
+			this.lockManager.releaseAll(this);
+		}
+	}
+
+	/**
+	 * Undo all writes of the transaction, latest first, and release
+	 * its locks. Does nothing if the transaction is no longer active.
+	 */
+	public void abort() {
+		if(this.state != State.ACTIVE) {
+			return;
+		}
+
+		try {
+			for(int recordIdx = this.undoLog.size() - 1; recordIdx >= 0; recordIdx--) {
+				UndoRecord record = this.undoLog.get(recordIdx);
+
+				boolean isUndone;
+				switch(record.kind) {
+				case INSERT:
+					isUndone = record.relation.deleteExistingTuple(record.tupleId, this.id);
+					break;
+				case UPDATE:
+					isUndone = record.relation.updateExistingTuple(record.oldTuple,
+							record.tupleId, this.id);
+					break;
+				default:
+					isUndone = record.relation.undeleteTuple(record.tupleId,
+							record.oldTuple, this.id);
+					break;
+				}
+				assert isUndone : "Undo of a locked tuple failed.";
+			}
+
+			for(WriteAheadLog tmpLog : this.writtenLogs()) {
+				tmpLog.logAbort(this.id);
+			}
+
+		} finally {
+			this.state = State.ABORTED;
+			this.undoLog.clear();
+			this.lockManager.releaseAll(this);
+		}
+	}
+
+	/**
+	 * Helper method to return the logs of the relations written,
+	 * each once.
+	 *
+	 * @return logs
+	 */
+	private List <WriteAheadLog> writtenLogs() {
+
+		List <WriteAheadLog> logs = new ArrayList <> ();
+		for(UndoRecord record : this.undoLog) {
+			WriteAheadLog tmpLog = record.relation.getWriteAheadLog();
+			if(tmpLog != null && !logs.contains(tmpLog)) {
+				logs.add(tmpLog);
+			}
+		}
+		return logs;
+	}
+
+	/**
+	 * Helper method to read a tuple as of the latest write to the relation.
+	 *
+	 * @param relation
+	 * @param tupleId
+	 * @return tuple
+	 *   The tuple, or null if there is no tuple with that ID.
+	 */
+	private static String[] currentTuple(Relation relation, int tupleId) {
+
+		relation.lockWrites();
+		try {
+			return relation.getOneTuple(tupleId);
+
+		} finally {
+			relation.unlockWrites();
+		}
+	}
+
+	/**
+	 * Helper method to return the lock resource of the key values of a tuple.
+	 *
+	 * @param relation
+	 * @param tuple
+	 *   The key attribute values, or a whole tuple.
+	 * @return resource
+	 */
+	private static TupleResource tupleResource(Relation relation, String[] tuple) {
+		return new TupleResource(relation, TupleKey.of(tuple, relation.getPAList().length));
+	}
+}
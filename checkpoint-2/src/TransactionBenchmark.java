@@ -0,0 +1,304 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency benchmark of transactions over ANIME and CREATOR.
+ *
+ * Each anime is made by one studio: its Description says "By <studio>",
+ * and CREATOR has the link (title, studio). Threads keep running:
+ *     move:  give one anime a new studio, in ANIME and in CREATOR;
+ *     swap:  swap the studios of two anime, locked in random order;
+ *     audit: read an anime and its link, and check they agree.
+ * Moves and swaps read the anime first and then write it, upgrading
+ * their locks, so they deadlock now and then, more so with fewer anime.
+ *
+ * Runs each mix with 1, 2, 4, ... threads, up to twice the cores
+ * and at least 4, with many anime (low contention) and few (high),
+ * first in transactions ("2PL"), then writing the relations directly
+ * ("none"), and prints commits/s, deadlocks, lock waits, audits that saw
+ * half a move or swap (torn), and whether every anime still has exactly
+ * its one link at the end. Torn audits and broken links are expected
+ * only without transactions.
+ *
+ * Run with: java -ea TransactionBenchmark [seconds]
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class TransactionBenchmark {
+
+	private static final String[] ANIME_ATTRIBUTES = {
+			"Title", "Description", "Genre", "Price", "Release_year"};
+	private static final String[] CREATOR_ATTRIBUTES = {"Anime_title", "Studio_name"};
+	private static final int[] NUMS_OF_ANIME = {10000, 16};
+	private static final int NUM_OF_STUDIOS = 50;
+	private static final int MAX_ATTEMPTS = 1000;
+
+	public static void main(String[] args) throws InterruptedException {
+
+		int seconds = (args.length > 0) ? Integer.parseInt(args[0]) : 2;
+		int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+		System.out.println("Transaction benchmark: " + String.valueOf(seconds) + " s per run, "
+				+ String.valueOf(Runtime.getRuntime().availableProcessors()) + " cores.");
+		System.out.println();
+		System.out.println("mode\tanime\tthreads\tcommits/s\tdeadlocks\twaits\ttorn\tlinks");
+
+		for(boolean isTransactional : new boolean[] {true, false}) {
+			for(int numOfAnime : NUMS_OF_ANIME) {
+				for(int numOfThreads = 1; numOfThreads <= maxThreads; numOfThreads *= 2) {
+					runOnce(isTransactional, numOfAnime, numOfThreads, seconds);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run numOfThreads threads for a number of seconds over new relations,
+	 * then print their throughput and check the relations.
+	 *
+	 * @param isTransactional
+	 * @param numOfAnime
+	 * @param numOfThreads
+	 * @param seconds
+	 * @throws InterruptedException
+	 */
+	private static void runOnce(final boolean isTransactional, final int numOfAnime,
+			int numOfThreads, int seconds) throws InterruptedException {
+
+		final Relation anime = new Relation("ANIME", ANIME_ATTRIBUTES, 1);
+		final Relation creator = new Relation("CREATOR", CREATOR_ATTRIBUTES, 2);
+		for(int animeIdx = 0; animeIdx < numOfAnime; animeIdx++) {
+			String studio = "Studio " + String.valueOf(animeIdx % NUM_OF_STUDIOS);
+			anime.insertNewTuple(createAnime(animeIdx, studio));
+			creator.insertNewTuple(new String[] {titleOf(animeIdx), studio});
+		}
+
+		final TransactionManager manager = new TransactionManager();
+		final AtomicBoolean isRunning = new AtomicBoolean(true);
+		final AtomicLong commitCount = new AtomicLong();
+		final AtomicLong tornCount = new AtomicLong();
+		final CountDownLatch startLatch = new CountDownLatch(1);
+
+		Thread[] threads = new Thread[numOfThreads];
+		for(int threadIdx = 0; threadIdx < numOfThreads; threadIdx++) {
+			final long seed = 100 + threadIdx;
+			threads[threadIdx] = new Thread(() -> {
+				Random random = new Random(seed);
+				long numOfCommits = 0;
+				long numOfTorn = 0;
+
+				awaitQuietly(startLatch);
+				while(isRunning.get()) {
+					int operation = random.nextInt(10);
+					int animeIdx = random.nextInt(numOfAnime);
+					boolean isTorn;
+
+					if(operation < 3) {
+						String studio = "Studio " + String.valueOf(random.nextInt(NUM_OF_STUDIOS));
+						isTorn = isTransactional
+								? manager.run(transaction -> move(new TransactionalAccess(transaction),
+										anime, creator, animeIdx, studio), MAX_ATTEMPTS)
+								: move(new DirectAccess(), anime, creator, animeIdx, studio);
+					} else if(operation < 5) {
+						int otherIdx = random.nextInt(numOfAnime);
+						isTorn = isTransactional
+								? manager.run(transaction -> swap(new TransactionalAccess(transaction),
+										anime, creator, animeIdx, otherIdx), MAX_ATTEMPTS)
+								: swap(new DirectAccess(), anime, creator, animeIdx, otherIdx);
+					} else {
+						isTorn = isTransactional
+								? manager.run(transaction -> !audit(new TransactionalAccess(transaction),
+										anime, creator, animeIdx), MAX_ATTEMPTS)
+								: !audit(new DirectAccess(), anime, creator, animeIdx);
+					}
+
+					numOfCommits++;
+					numOfTorn += isTorn ? 1 : 0;
+				}
+				commitCount.addAndGet(numOfCommits);
+				tornCount.addAndGet(numOfTorn);
+			});
+		}
+
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		long startNanos = System.nanoTime();
+		startLatch.countDown();
+		Thread.sleep(seconds * 1000L);
+		isRunning.set(false);
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+		//Every anime has the link its Description names, and no other.
+		boolean isLinked = creator.getNumOfTuples() == numOfAnime;
+		for(int animeIdx = 0; animeIdx < numOfAnime && isLinked; animeIdx++) {
+			isLinked = audit(new DirectAccess(), anime, creator, animeIdx);
+		}
+
+		if(isTransactional && (tornCount.get() > 0 || !isLinked)) {
+			System.out.println("Err: Inconsistent relations in transactions, "
+					+ String.valueOf(numOfThreads) + " threads.");
+		}
+		System.out.println((isTransactional ? "2PL" : "none")
+				+ "\t" + String.valueOf(numOfAnime)
+				+ "\t" + String.valueOf(numOfThreads)
+				+ "\t" + String.format("%.0f", commitCount.get() / elapsedSeconds)
+				+ "\t" + String.valueOf(manager.getLockManager().getNumOfDeadlocks())
+				+ "\t" + String.valueOf(manager.getLockManager().getNumOfWaits())
+				+ "\t" + String.valueOf(tornCount.get())
+				+ "\t" + (isLinked ? "ok" : "broken"));
+	}
+
+	/**
+	 * Reads and writes of the operations, in a transaction or not.
+	 */
+	private interface Access {
+		String[] read(Relation relation, String[] keyValues);
+		boolean insert(Relation relation, String[] newTuple);
+		boolean update(Relation relation, String[] keyValues, String[] updateTuple);
+		boolean delete(Relation relation, String[] keyValues);
+	}
+
+	private static final class TransactionalAccess implements Access {
+
+		private final Transaction transaction;
+
+		private TransactionalAccess(Transaction newTransaction) {
+			this.transaction = newTransaction;
+		}
+
+		@Override
+		public String[] read(Relation relation, String[] keyValues) {
+			return this.transaction.read(relation, keyValues);
+		}
+
+		@Override
+		public boolean insert(Relation relation, String[] newTuple) {
+			return this.transaction.insert(relation, newTuple) >= 0;
+		}
+
+		@Override
+		public boolean update(Relation relation, String[] keyValues, String[] updateTuple) {
+			return this.transaction.update(relation, keyValues, updateTuple);
+		}
+
+		@Override
+		public boolean delete(Relation relation, String[] keyValues) {
+			return this.transaction.delete(relation, keyValues);
+		}
+	}
+
+	private static final class DirectAccess implements Access {
+
+		@Override
+		public String[] read(Relation relation, String[] keyValues) {
+			return relation.findTuple(keyValues);
+		}
+
+		@Override
+		public boolean insert(Relation relation, String[] newTuple) {
+			return relation.insertNewTuple(newTuple) >= 0;
+		}
+
+		@Override
+		public boolean update(Relation relation, String[] keyValues, String[] updateTuple) {
+			int tupleId = relation.findTupleId(keyValues);
+			return tupleId >= 0 && relation.updateExistingTuple(updateTuple, tupleId);
+		}
+
+		@Override
+		public boolean delete(Relation relation, String[] keyValues) {
+			int tupleId = relation.findTupleId(keyValues);
+			return tupleId >= 0 && relation.deleteExistingTuple(tupleId);
+		}
+	}
+
+	/**
+	 * Helper method to give an anime a new studio.
+	 *
+	 * @return torn
+	 *   True if the anime and its link did not agree to begin with.
+	 */
+	private static boolean move(Access access, Relation anime, Relation creator,
+			int animeIdx, String newStudio) {
+
+		String title = titleOf(animeIdx);
+		String[] animeTuple = access.read(anime, new String[] {title});
+		String oldStudio = studioOf(animeTuple);
+		if(oldStudio.equals(newStudio)) {
+			return false;
+		}
+
+		access.update(anime, animeTuple, createAnime(animeIdx, newStudio));
+		boolean isLinked = access.delete(creator, new String[] {title, oldStudio});
+		access.insert(creator, new String[] {title, newStudio});
+		return !isLinked;
+	}
+
+	/**
+	 * Helper method to swap the studios of two anime.
+	 *
+	 * @return torn
+	 *   True if an anime and its link did not agree to begin with.
+	 */
+	private static boolean swap(Access access, Relation anime, Relation creator,
+			int animeIdx, int otherIdx) {
+
+		String[] animeTuple = access.read(anime, new String[] {titleOf(animeIdx)});
+		String[] otherTuple = access.read(anime, new String[] {titleOf(otherIdx)});
+		String studio = studioOf(animeTuple);
+		String otherStudio = studioOf(otherTuple);
+		if(studio.equals(otherStudio)) {
+			return false;
+		}
+
+		access.update(anime, animeTuple, createAnime(animeIdx, otherStudio));
+		access.update(anime, otherTuple, createAnime(otherIdx, studio));
+		boolean isLinked = access.delete(creator, new String[] {titleOf(animeIdx), studio});
+		isLinked &= access.delete(creator, new String[] {titleOf(otherIdx), otherStudio});
+		access.insert(creator, new String[] {titleOf(animeIdx), otherStudio});
+		access.insert(creator, new String[] {titleOf(otherIdx), studio});
+		return !isLinked;
+	}
+
+	/**
+	 * Helper method to check an anime has the link its Description names.
+	 *
+	 * @return linked
+	 */
+	private static boolean audit(Access access, Relation anime, Relation creator, int animeIdx) {
+
+		String title = titleOf(animeIdx);
+		String[] animeTuple = access.read(anime, new String[] {title});
+		return animeTuple != null
+				&& access.read(creator, new String[] {title, studioOf(animeTuple)}) != null;
+	}
+
+	private static String titleOf(int animeIdx) {
+		return "Anime " + String.valueOf(animeIdx);
+	}
+
+	private static String studioOf(String[] animeTuple) {
+		return animeTuple[1].substring("By ".length());
+	}
+
+	private static String[] createAnime(int animeIdx, String studio) {
+		return new String[] {titleOf(animeIdx), "By " + studio, "Genre " + String.valueOf(animeIdx % 12),
+				"$9.99", String.valueOf(1960 + animeIdx % 64)};
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException iE) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Starts transactions over Relations, all locking through one LockManager,
+ * e.g. to insert an anime and its CREATOR link together:
+ *
+ *     manager.run(transaction -> {
+ *         transaction.insert(anime, animeTuple);
+ *         return transaction.insert(creator, creatorTuple);
+ *     });
+ *
+ * Relations written in transactions of one manager should only be
+ * written in transactions of that manager, see Transaction.
+ * Transaction IDs are unique across all managers, so transactions
+ * of several managers can share a WriteAheadLog.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public class TransactionManager {
+
+	/*
+	 * The number of the next transaction, of any manager;
+	 * 0 is WriteAheadLog.NO_TRANSACTION.
+	 */
+	private static final AtomicLong nextId = new AtomicLong(1);
+
+	/**
+	 * Private attributes for each instance of the TransactionManager object:
+	 *     lockManager: the locks of all transactions of this manager.
+	 */
+	private final LockManager lockManager = new LockManager();
+
+	/**
+	 * Start a transaction.
+	 *
+	 * @return transaction
+	 */
+	public Transaction begin() {
+		return new Transaction(nextId.getAndIncrement(), this.lockManager);
+	}
+
+	public LockManager getLockManager() {
+		return this.lockManager;
+	}
+
+	/**
+	 * Run work in a transaction and commit it; if it is chosen to break
+	 * a deadlock, abort it and run the work again in a new transaction,
+	 * up to maxAttempts times in all. Any other exception aborts the
+	 * transaction and is thrown on.
+	 *
+	 * @param work
+	 *   Reads and writes through the given transaction,
+	 *   must not commit or abort it.
+	 * @param maxAttempts
+	 * @return result
+	 *   What work returned, in the transaction that committed.
+	 * @throws LockManager.DeadlockException
+	 *   If the last attempt was chosen to break a deadlock too.
+	 *
+	 * @requires maxAttempts > 0
+	 */
+	public <T> T run(Function <Transaction, T> work, int maxAttempts) {
+		assert maxAttempts > 0;
+
+		for(int attempt = 1; ; attempt++) {
+			Transaction transaction = this.begin();
+			try {
+				T result = work.apply(transaction);
+				transaction.commit();
+				return result;
+
+			} catch (LockManager.DeadlockException dE) {
+				transaction.abort();
+				if(attempt >= maxAttempts) {
+					throw dE;
+				}
+				//Let the transactions it deadlocked with go first.
+				Thread.yield();
+
+			} catch (RuntimeException | Error e) {
+				transaction.abort();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Run work in a transaction, retrying deadlock victims up to 10 times.
+	 *
+	 * @param work
+	 * @return result
+	 */
+	public <T> T run(Function <Transaction, T> work) {
+		return this.run(work, 10);
+	}
+}
@@ -0,0 +1,251 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of tuples, shared by the files of MappedTupleStore
+ * and WriteAheadLog, and the heap slabs of SlabTupleStore.
+ *
+ * A tuple is encoded as its attribute values in order, each value
+ * an unsigned LEB128 varint of (UTF-8 length + 1), 0 for null,
+ * followed by its UTF-8 bytes. The number of attributes is not encoded,
+ * the reader knows it from the relation.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+final class TupleCodec {
+
+	private TupleCodec() {
+	}
+
+	/**
+	 * Encode a tuple at the position of a heap buffer,
+	 * growing the buffer if needed.
+	 *
+	 * @param buffer
+	 * @param tuple
+	 * @return buffer
+	 *   The given buffer, or a larger copy of it.
+	 */
+	static ByteBuffer putTuple(ByteBuffer buffer, String[] tuple) {
+
+		for(String value : tuple) {
+			buffer = putString(buffer, value);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Encode one value, or null, at the position of a heap buffer,
+	 * growing the buffer if needed.
+	 *
+	 * @param buffer
+	 * @param value
+	 * @return buffer
+	 *   The given buffer, or a larger copy of it.
+	 */
+	static ByteBuffer putString(ByteBuffer buffer, String value) {
+
+		if(value == null) {
+			return putVarint(buffer, 0);
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		buffer = putVarint(buffer, bytes.length + 1);
+		buffer = ensureRemaining(buffer, bytes.length);
+		buffer.put(bytes);
+		return buffer;
+	}
+
+	/**
+	 * Decode a tuple at the position of a buffer, moving the position past it.
+	 *
+	 * @param buffer
+	 * @param numOfAttributes
+	 * @return tuple
+	 */
+	static String[] getTuple(ByteBuffer buffer, int numOfAttributes) {
+
+		String[] tuple = new String[numOfAttributes];
+		for(int attrIdx = 0; attrIdx < numOfAttributes; attrIdx++) {
+			tuple[attrIdx] = getString(buffer);
+		}
+		return tuple;
+	}
+
+	/**
+	 * Decode one value at the position of a buffer, moving the position past it.
+	 *
+	 * @param buffer
+	 * @return value
+	 */
+	static String getString(ByteBuffer buffer) {
+
+		int pos = buffer.position();
+		int lenPlusOne = readVarint(buffer, pos);
+		pos = skipVarint(buffer, pos);
+		String value = decodeString(buffer, pos, lenPlusOne);
+		buffer.position((lenPlusOne > 0) ? pos + lenPlusOne - 1 : pos);
+		return value;
+	}
+
+	/**
+	 * Decode one attribute value at a position.
+	 *
+	 * @param buffer
+	 * @param pos
+	 *   The position of the first byte after the length varint.
+	 * @param lenPlusOne
+	 * @return value
+	 */
+	static String decodeString(ByteBuffer buffer, int pos, int lenPlusOne) {
+
+		if(lenPlusOne == 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[lenPlusOne - 1];
+		ByteBuffer src = buffer.duplicate();
+		src.position(pos);
+		src.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Read an unsigned LEB128 varint at a position.
+	 *
+	 * @param buffer
+	 * @param pos
+	 * @return value
+	 */
+	static int readVarint(ByteBuffer buffer, int pos) {
+
+		int value = 0;
+		int shift = 0;
+		byte tmpByte;
+		do {
+			tmpByte = buffer.get(pos++);
+			value |= (tmpByte & 0x7F) << shift;
+			shift += 7;
+		} while(tmpByte < 0);
+		return value;
+	}
+
+	/**
+	 * Read an unsigned LEB128 varint at a position of a byte array.
+	 *
+	 * @param bytes
+	 * @param pos
+	 * @return value
+	 */
+	static int readVarint(byte[] bytes, int pos) {
+
+		int value = 0;
+		int shift = 0;
+		byte tmpByte;
+		do {
+			tmpByte = bytes[pos++];
+			value |= (tmpByte & 0x7F) << shift;
+			shift += 7;
+		} while(tmpByte < 0);
+		return value;
+	}
+
+	/**
+	 * Return the position after a varint.
+	 *
+	 * @param buffer
+	 * @param pos
+	 * @return nextPos
+	 */
+	static int skipVarint(ByteBuffer buffer, int pos) {
+		while(buffer.get(pos) < 0) {
+			pos++;
+		}
+		return pos + 1;
+	}
+
+	/**
+	 * Return the position after a varint in a byte array.
+	 *
+	 * @param bytes
+	 * @param pos
+	 * @return nextPos
+	 */
+	static int skipVarint(byte[] bytes, int pos) {
+		while(bytes[pos] < 0) {
+			pos++;
+		}
+		return pos + 1;
+	}
+
+	/**
+	 * Return the number of bytes of a varint.
+	 *
+	 * @param value
+	 * @return size
+	 */
+	static int varintSize(int value) {
+		int size = 1;
+		while((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Write an unsigned LEB128 varint, growing a heap buffer if needed.
+	 *
+	 * @param buffer
+	 * @param value
+	 * @return buffer
+	 *   The given buffer, or a larger copy of it.
+	 */
+	static ByteBuffer putVarint(ByteBuffer buffer, int value) {
+
+		buffer = ensureRemaining(buffer, 5);
+		writeVarint(buffer, value);
+		return buffer;
+	}
+
+	/**
+	 * Write an unsigned LEB128 varint.
+	 *
+	 * @param buffer
+	 * @param value
+	 *
+	 * @requires buffer.remaining() >= varintSize(value)
+	 */
+	static void writeVarint(ByteBuffer buffer, int value) {
+		while((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Grow a heap buffer to fit more bytes.
+	 *
+	 * @param buffer
+	 * @param needed
+	 * @return buffer
+	 *   The given buffer, or a larger copy of it.
+	 */
+	static ByteBuffer ensureRemaining(ByteBuffer buffer, int needed) {
+
+		if(buffer.remaining() >= needed) {
+			return buffer;
+		}
+		if(!buffer.hasArray()) {
+			throw new IllegalStateException("Mapped buffer overflow.");
+		}
+
+		ByteBuffer larger = ByteBuffer.allocate(
+				Math.max(buffer.capacity() * 2, buffer.position() + needed));
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+}
@@ -0,0 +1,147 @@
+import java.util.Arrays;
+
+/**
+ * Primary key of a tuple, used as the key of the primary key hash index.
+ *
+ * Wraps the first numOfPA attribute values of a tuple as they are,
+ * so composite keys are hashed and compared value by value,
+ * never concatenated into one key string.
+ * The hash is computed once, when the key is created.
+ * Keys order by their values, first differing value first, null lowest.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public final class TupleKey implements Comparable <TupleKey> {
+
+	/**
+	 * Private attributes for each instance of the TupleKey object:
+	 *     values:    the attribute values, key values first;
+	 *
+	 *     numOfPA:   the number of leading values that form the key;
+	 *
+	 *     hash:      the hash of the key values, computed once.
+	 */
+	private final String[] values;
+	private final int numOfPA;
+	private final int hash;
+
+	private TupleKey(String[] newValues, int newNumOfPA) {
+
+		this.values = newValues;
+		this.numOfPA = newNumOfPA;
+
+		int tmpHash = 1;
+		for(int tmpIdx = 0; tmpIdx < newNumOfPA; tmpIdx++) {
+			String tmpValue = newValues[tmpIdx];
+			tmpHash = 31 * tmpHash + (tmpValue == null ? 0 : tmpValue.hashCode());
+		}
+		this.hash = tmpHash;
+	}
+
+	/**
+	 * Create the key to store in the index for a tuple.
+	 * Copies the key values, so later changes to the tuple array
+	 * cannot change a key already in the index.
+	 *
+	 * @param tuple
+	 *   The tuple, key attribute values first.
+	 * @param numOfPA
+	 *   The number of key attributes.
+	 * @return key
+	 *
+	 * @requires tuple.length >= numOfPA
+	 */
+	public static TupleKey of(String[] tuple, int numOfPA) {
+		assert tuple.length >= numOfPA;
+		return new TupleKey(Arrays.copyOf(tuple, numOfPA), numOfPA);
+	}
+
+	/**
+	 * Create a key to probe the index with, e.g. from user search input.
+	 * Wraps the given array without copying it, so the key is only valid
+	 * while the array is left unchanged; never store it in the index.
+	 *
+	 * @param keyValues
+	 *   The key attribute values; a whole tuple also works.
+	 * @param numOfPA
+	 *   The number of key attributes.
+	 * @return key
+	 *
+	 * @requires keyValues.length >= numOfPA
+	 */
+	public static TupleKey probe(String[] keyValues, int numOfPA) {
+		assert keyValues.length >= numOfPA;
+		return new TupleKey(keyValues, numOfPA);
+	}
+
+	/**
+	 * Return one key attribute value.
+	 *
+	 * @param paIdx
+	 *   Which key attribute, 0 up to numOfPA - 1.
+	 * @return value
+	 */
+	public String getValue(int paIdx) {
+		assert paIdx >= 0 && paIdx < this.numOfPA;
+		return this.values[paIdx];
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof TupleKey)) {
+			return false;
+		}
+
+		TupleKey other = (TupleKey) obj;
+		if(this.hash != other.hash || this.numOfPA != other.numOfPA) {
+			return false;
+		}
+
+		//Short-circuit on the first differing key value.
+		for(int tmpIdx = 0; tmpIdx < this.numOfPA; tmpIdx++) {
+			String tmpValue = this.values[tmpIdx];
+			String otherValue = other.values[tmpIdx];
+			if(tmpValue == null ? otherValue != null : !tmpValue.equals(otherValue)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int compareTo(TupleKey other) {
+
+		int numOfValues = Math.min(this.numOfPA, other.numOfPA);
+		for(int tmpIdx = 0; tmpIdx < numOfValues; tmpIdx++) {
+			String tmpValue = this.values[tmpIdx];
+			String otherValue = other.values[tmpIdx];
+			if(tmpValue == null || otherValue == null) {
+				if(tmpValue != otherValue) {
+					return (tmpValue == null) ? -1 : 1;
+				}
+				continue;
+			}
+
+			int cmp = tmpValue.compareTo(otherValue);
+			if(cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(this.numOfPA, other.numOfPA);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(Arrays.copyOf(this.values, this.numOfPA));
+	}
+}
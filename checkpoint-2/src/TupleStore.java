@@ -0,0 +1,187 @@
+/**
+ * Storage layout of the tuples of a Relation.
+ *
+ * A Relation keeps its primary key index and enforces key uniqueness;
+ * a TupleStore only keeps the attribute values, by tuple index,
+ * in whatever layout it implements.
+ * Tuple indexes run from 0 up to size() - 1 without gaps,
+ * removing a tuple moves the tuples after it down by one.
+ * Relation never removes tuples from the middle: it clears deleted tuples,
+ * leaving tombstones, and compacts them away by moving later tuples down
+ * and removing tuples from the end.
+ *
+ * A TupleStore is not thread-safe: Relation makes all writes under one lock,
+ * and serves lock-free reads from read-only snapshots.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public interface TupleStore {
+
+	/**
+	 * Return the number of tuples stored.
+	 *
+	 * @return size
+	 */
+	int size();
+
+	/**
+	 * Return the number of attributes of each tuple.
+	 *
+	 * @return numOfAttributes
+	 */
+	int getNumOfAttributes();
+
+	/**
+	 * Return a row view of one tuple, all attribute values in order.
+	 * Layouts that do not store rows build a new array on each call.
+	 *
+	 * @param tupleIdx
+	 * @return tuple
+	 *
+	 * @requires 0 <= tupleIdx < size()
+	 */
+	String[] getTuple(int tupleIdx);
+
+	/**
+	 * Return one attribute value of one tuple.
+	 *
+	 * @param tupleIdx
+	 * @param attrIdx
+	 * @return value
+	 *
+	 * @requires 0 <= tupleIdx < size()
+	 *   and 0 <= attrIdx < getNumOfAttributes()
+	 */
+	String getValue(int tupleIdx, int attrIdx);
+
+	/**
+	 * Add a tuple after all existing tuples.
+	 *
+	 * @param newTuple
+	 *
+	 * @requires newTuple.length == getNumOfAttributes()
+	 */
+	void addTuple(String[] newTuple);
+
+	/**
+	 * Overwrite all attribute values of one tuple.
+	 *
+	 * @param tupleIdx
+	 * @param updateTuple
+	 *
+	 * @requires 0 <= tupleIdx < size()
+	 *   and updateTuple.length == getNumOfAttributes()
+	 */
+	void setTuple(int tupleIdx, String[] updateTuple);
+
+	/**
+	 * Remove one tuple, tuples after it move down by one index.
+	 *
+	 * @param tupleIdx
+	 *
+	 * @requires 0 <= tupleIdx < size()
+	 */
+	void removeTuple(int tupleIdx);
+
+	/**
+	 * Mark a tuple deleted, without moving the tuples after it.
+	 * Stores may drop its values; it is not read again, only overwritten
+	 * by setTuple() or moveTuple(), or removed.
+	 * Stores kept in files must remember it, for isCleared() after reopening.
+	 * By default, the values are simply left in place.
+	 *
+	 * @param tupleIdx
+	 *
+	 * @requires 0 <= tupleIdx < size()
+	 */
+	default void clearTuple(int tupleIdx) {
+	}
+
+	/**
+	 * Return whether a tuple was cleared, for stores kept in files,
+	 * so a reopened store does not bring deleted tuples back.
+	 *
+	 * @param tupleIdx
+	 * @return isCleared
+	 *
+	 * @requires 0 <= tupleIdx < size()
+	 */
+	default boolean isCleared(int tupleIdx) {
+		return false;
+	}
+
+	/**
+	 * Return the index of the first cleared tuple from a given one on,
+	 * so a reopened store is scanned for deleted tuples in one pass.
+	 * By default, isCleared() is asked tuple by tuple.
+	 *
+	 * @param fromIdx
+	 * @return clearedIdx
+	 *   The index of the cleared tuple, or size() if there is none.
+	 *
+	 * @requires 0 <= fromIdx <= size()
+	 */
+	default int findNextCleared(int fromIdx) {
+		int tmpIdx = fromIdx;
+		while(tmpIdx < size() && !isCleared(tmpIdx)) {
+			tmpIdx++;
+		}
+		return tmpIdx;
+	}
+
+	/**
+	 * Overwrite a tuple with a copy of another one, e.g. when compacting.
+	 * Stores may do this without decoding the values.
+	 *
+	 * @param fromIdx
+	 * @param toIdx
+	 *
+	 * @requires 0 <= fromIdx < size() and 0 <= toIdx < size()
+	 */
+	default void moveTuple(int fromIdx, int toIdx) {
+		setTuple(toIdx, getTuple(fromIdx));
+	}
+
+	/**
+	 * Full-column scan for the tuples with a given attribute value.
+	 *
+	 * @param attrIdx
+	 * @param value
+	 *   The value to match, compared with equals; may be null.
+	 * @return tupleIdxs
+	 *   The indexes of all matching tuples, in ascending order;
+	 *   may include cleared tuples, except in stores that dropped their values.
+	 *
+	 * @requires 0 <= attrIdx < getNumOfAttributes()
+	 */
+	int[] findEqual(int attrIdx, String value);
+
+	/**
+	 * Return a read-only copy of the store as it is now,
+	 * which later writes to this store do not change.
+	 * A snapshot may be read from any number of threads without locking,
+	 * while writes to this store go on; only taking it needs the writer's lock.
+	 * Snapshots of a snapshot return the snapshot itself.
+	 *
+	 * @return snapshot
+	 */
+	TupleStore snapshot();
+
+	/**
+	 * Reclaim the space left behind by updates and removes,
+	 * once a compaction pass of the relation has removed its dead tuples.
+	 * Tuple indexes and values stay the same; snapshots taken before
+	 * are not changed. By default, there is nothing to reclaim.
+	 */
+	default void compact() {
+	}
+
+	/**
+	 * Release any files held by the store.
+	 * In-memory layouts hold none, so by default there is nothing to do.
+	 */
+	default void close() {
+	}
+}
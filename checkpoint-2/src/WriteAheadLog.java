@@ -0,0 +1,1155 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log and checkpoints, keeping a set of in-memory relations
+ * durable in a directory without rewriting them on every change.
+ *
+ * Files in the directory:
+ *     wal.<n>:             the log, an append-only sequence of records,
+ *                          one per successful insert, update or delete,
+ *                          and one per begin, commit or abort of a transaction;
+ *     <RELATION>.<n>.snap: all tuples of a relation as of the start of wal.<n>;
+ *     CHECKPOINT:          the number n of the last complete checkpoint.
+ *
+ * Log records are binary and length-prefixed, so replay reads the log
+ * front to back in large blocks:
+ *     [int bodyLength][int CRC32 of body][body]
+ *     body: [byte operation][long transactionId][relation name][varint tupleId][tuple],
+ *     with the relation name and tuple ID for writes only,
+ *     the tuple for inserts and updates only,
+ *     values encoded as by TupleCodec.
+ * Inserts are logged with the tuple ID they were given, and snapshots
+ * keep the tuple ID of each tuple, so tuple IDs survive recovery.
+ *
+ * Writes made in a Transaction carry its ID: the first one is preceded
+ * by a begin record, and the transaction ends with a commit or abort
+ * record, which commit() waits on to reach disk. Writes made outside
+ * transactions carry NO_TRANSACTION and count as committed at once.
+ * Recovery holds back the writes of each transaction until its commit
+ * record, and drops them at an abort record, or if there is none.
+ *
+ * Writers append records to a memory buffer; one flusher thread writes
+ * the buffer out and forces it to disk, then wakes all writers waiting
+ * on it, so writes made while a force is running share the next one
+ * (group commit).
+ *
+ * A background checkpointer starts a new log file once the current one
+ * is large enough, and writes snapshots of all relations as of that point,
+ * after which older log files and snapshots are deleted.
+ * It waits for a point with no transaction open, so snapshots never hold
+ * writes that are yet to be undone, and no transaction spans two log files.
+ * Recovery loads the last checkpoint, then replays the log files after it;
+ * a torn record at the end of the last file, from a crash mid-write,
+ * is cut off.
+ *
+ * @author Keming He
+ * @version 20261017
+ *
+ */
+public final class WriteAheadLog {
+
+	private static final int LOG_MAGIC = 0x5348524C;
+	private static final int SNAP_MAGIC = 0x53485253;
+	private static final int CHECKPOINT_MAGIC = 0x53485243;
+	private static final int FORMAT_VERSION = 3;
+	private static final int FILE_HEADER_SIZE = 8;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int IO_BUFFER_SIZE = 1 << 20;
+
+	private static final byte OP_INSERT = 1;
+	private static final byte OP_UPDATE = 2;
+	private static final byte OP_DELETE = 3;
+	private static final byte OP_BEGIN = 4;
+	private static final byte OP_COMMIT = 5;
+	private static final byte OP_ABORT = 6;
+
+	/**
+	 * Transaction ID of writes made outside transactions.
+	 */
+	static final long NO_TRANSACTION = 0;
+
+	private static final String LOG_PREFIX = "wal.";
+	private static final String SNAP_SUFFIX = ".snap";
+	private static final String CHECKPOINT_FILE = "CHECKPOINT";
+
+	/**
+	 * Private attributes for each instance of the WriteAheadLog object:
+	 *     dir:             directory of the log, snapshot and checkpoint files;
+	 *
+	 *     relations:       the logged relations, by name;
+	 *
+	 *     isSyncCommit:    true if writes wait for their record to reach disk,
+	 *                      false if they may be lost in a crash just after;
+	 *
+	 *     checkpointBytes: log file size from which a checkpoint is taken;
+	 *
+	 *     bufferLock:      guards all attributes below, up to checkpointLock;
+	 *
+	 *     pending,
+	 *     spare:           records not yet handed to the flusher,
+	 *                      and the buffer the flusher writes from;
+	 *
+	 *     channel,
+	 *     logSeq,
+	 *     logSize:         the current log file, its number, and its size
+	 *                      including pending records;
+	 *
+	 *     appendedLSN,
+	 *     durableLSN:      log sequence numbers, counting all bytes ever
+	 *                      appended, of the end of the last record appended
+	 *                      and of the last record forced to disk;
+	 *
+	 *     failure:         the first write error, after which nothing
+	 *                      more is logged;
+	 *
+	 *     openTransactions: IDs of the transactions logged as begun,
+	 *                      not yet as committed or aborted;
+	 *
+	 *     isClosing:       true once the flusher is to stop;
+	 *
+	 *     crc:             checksum of record bodies;
+	 *
+	 *     checkpointLock:  held for each checkpoint;
+	 *
+	 *     flusher,
+	 *     checkpointer:    the background threads.
+	 */
+	private final Path dir;
+	private final Map<String, Relation> relations;
+	private final boolean isSyncCommit;
+	private final long checkpointBytes;
+
+	private final Object bufferLock = new Object();
+	private ByteBuffer pending = ByteBuffer.allocate(IO_BUFFER_SIZE);
+	private ByteBuffer spare = ByteBuffer.allocate(IO_BUFFER_SIZE);
+	private FileChannel channel;
+	private long logSeq;
+	private long logSize;
+	private long appendedLSN = 0;
+	private long durableLSN = 0;
+	private IOException failure = null;
+	private final Set<Long> openTransactions = new HashSet<>();
+	private boolean isClosing = false;
+	private final CRC32 crc = new CRC32();
+
+	private final Object checkpointLock = new Object();
+	private Thread flusher;
+	private ScheduledExecutorService checkpointer;
+
+	/**
+	 * Private constructor, use open().
+	 */
+	private WriteAheadLog(Path newDir, Map<String, Relation> newRelations,
+			boolean newIsSyncCommit, long newCheckpointBytes) {
+
+		this.dir = newDir;
+		this.relations = newRelations;
+		this.isSyncCommit = newIsSyncCommit;
+		this.checkpointBytes = newCheckpointBytes;
+	}
+
+	/**
+	 * Recover relations from a directory, then log all their later writes
+	 * there. Starts the flusher thread, and the checkpointer thread if
+	 * checkpointMillis > 0.
+	 *
+	 * @param dirPath
+	 *   The directory, created if missing.
+	 * @param allRelations
+	 *   The relations, empty; each with its final name, attributes
+	 *   and ordered indexes, which are not kept in the log.
+	 * @param isSyncCommit
+	 *   True for writes to wait until they are on disk.
+	 * @param checkpointMillis
+	 *   How often to check whether a checkpoint is due, or 0 for never.
+	 * @param checkpointBytes
+	 *   Log file size from which a checkpoint is taken.
+	 * @return log
+	 * @throws IOException
+	 *   If the files cannot be read or written, or are corrupt.
+	 *
+	 * @requires relation names are distinct and valid in file names
+	 */
+	public static WriteAheadLog open(Path dirPath, Relation[] allRelations,
+			boolean isSyncCommit, long checkpointMillis, long checkpointBytes)
+			throws IOException {
+
+		Files.createDirectories(dirPath);
+		Map<String, Relation> tmpRelations = new HashMap<>();
+		for(Relation tmpR : allRelations) {
+			if(tmpR != null) {
+				assert tmpR.getNumOfTuples() == 0;
+				tmpRelations.put(tmpR.getName(), tmpR);
+			}
+		}
+
+		WriteAheadLog log = new WriteAheadLog(dirPath, tmpRelations,
+				isSyncCommit, checkpointBytes);
+		log.recover();
+
+		for(Relation tmpR : tmpRelations.values()) {
+			tmpR.setWriteAheadLog(log);
+		}
+
+		log.flusher = new Thread(log::runFlusher, "wal-flusher");
+		log.flusher.setDaemon(true);
+		log.flusher.start();
+
+		if(checkpointMillis > 0) {
+			log.checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "wal-checkpointer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			log.checkpointer.scheduleWithFixedDelay(log::checkpointIfDue,
+					checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+		}
+		return log;
+	}
+
+	/**
+	 * Log an insert. Called by Relation under its write lock.
+	 *
+	 * @param transactionId
+	 *   The transaction of the write, or NO_TRANSACTION.
+	 * @param relationName
+	 * @param tupleId
+	 *   The tuple ID given to the new tuple.
+	 * @param newTuple
+	 * @return lsn
+	 *   The log sequence number to wait on with awaitDurable().
+	 */
+	long logInsert(long transactionId, String relationName, int tupleId, String[] newTuple) {
+		return append(OP_INSERT, transactionId, relationName, tupleId, newTuple);
+	}
+
+	/**
+	 * Log an update. Called by Relation under its write lock.
+	 *
+	 * @param transactionId
+	 * @param relationName
+	 * @param tupleId
+	 * @param updateTuple
+	 * @return lsn
+	 */
+	long logUpdate(long transactionId, String relationName, int tupleId, String[] updateTuple) {
+		return append(OP_UPDATE, transactionId, relationName, tupleId, updateTuple);
+	}
+
+	/**
+	 * Log a delete. Called by Relation under its write lock.
+	 *
+	 * @param transactionId
+	 * @param relationName
+	 * @param tupleId
+	 * @return lsn
+	 */
+	long logDelete(long transactionId, String relationName, int tupleId) {
+		return append(OP_DELETE, transactionId, relationName, tupleId, null);
+	}
+
+	/**
+	 * Log the commit of a transaction, if it wrote to this log.
+	 * Called by Transaction, after all its writes.
+	 *
+	 * @param transactionId
+	 * @return lsn
+	 *   The log sequence number to wait on with awaitDurable(),
+	 *   or 0 if the transaction did not write to this log.
+	 */
+	long logCommit(long transactionId) {
+		return append(OP_COMMIT, transactionId, null, 0, null);
+	}
+
+	/**
+	 * Log the abort of a transaction, if it wrote to this log.
+	 * Called by Transaction, after its writes are undone.
+	 *
+	 * @param transactionId
+	 * @return lsn
+	 */
+	long logAbort(long transactionId) {
+		return append(OP_ABORT, transactionId, null, 0, null);
+	}
+
+	/**
+	 * Wait until the log is on disk up to a log sequence number,
+	 * if writes are synchronous; return at once otherwise.
+	 *
+	 * @param lsn
+	 * @throws UncheckedIOException
+	 *   If the log could not be written.
+	 */
+	public void awaitDurable(long lsn) {
+
+		if(!this.isSyncCommit) {
+			return;
+		}
+
+		boolean isInterrupted = false;
+		synchronized(this.bufferLock) {
+			while(this.durableLSN < lsn && this.failure == null) {
+				try {
+					this.bufferLock.wait();
+				} catch (InterruptedException iE) {
+					isInterrupted = true;
+				}
+			}
+			if(isInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if(this.durableLSN < lsn) {
+				throw new UncheckedIOException(this.failure);
+			}
+		}
+	}
+
+	/**
+	 * Take a checkpoint now: start a new log file, write snapshots of
+	 * all relations as of its start, then delete the older files.
+	 * Writes are only held off while the snapshots are taken in memory,
+	 * at a point with no transaction open, waited for if need be.
+	 * Does nothing if nothing was logged since the last checkpoint.
+	 *
+	 * @throws IOException
+	 */
+	public void checkpoint() throws IOException {
+
+		synchronized(this.checkpointLock) {
+			if(getLogSize() <= FILE_HEADER_SIZE) {
+				return;
+			}
+
+			Relation[] tmpRelations = this.relations.values().toArray(new Relation[0]);
+			RelationSnapshot[] snapshots = new RelationSnapshot[tmpRelations.length];
+			long newSeq = -1;
+
+			//All relations at the same point of the log, with no transaction open.
+			//Transactions begin with a write, so none begins while all are locked.
+			while(newSeq < 0) {
+				awaitNoOpenTransactions();
+				int lockCount = 0;
+				try {
+					for(Relation tmpR : tmpRelations) {
+						tmpR.lockWrites();
+						lockCount++;
+					}
+					if(!hasOpenTransactions()) {
+						newSeq = rotate();
+						for(int tmpIdx = 0; tmpIdx < tmpRelations.length; tmpIdx++) {
+							snapshots[tmpIdx] = tmpRelations[tmpIdx].snapshot();
+						}
+					}
+
+				} finally {
+					for(int tmpIdx = lockCount - 1; tmpIdx >= 0; tmpIdx--) {
+						tmpRelations[tmpIdx].unlockWrites();
+					}
+				}
+			}
+
+			for(int tmpIdx = 0; tmpIdx < tmpRelations.length; tmpIdx++) {
+				writeSnapshot(snapPath(tmpRelations[tmpIdx].getName(), newSeq), snapshots[tmpIdx]);
+			}
+			forceDirectory();
+
+			//The checkpoint counts from here, older files are no longer needed.
+			writeCheckpointFile(newSeq);
+			deleteFilesBefore(newSeq);
+		}
+	}
+
+	/**
+	 * Return the size of the current log file, the log written
+	 * since the last checkpoint.
+	 *
+	 * @return logSize
+	 */
+	public long getLogSize() {
+		synchronized(this.bufferLock) {
+			return this.logSize;
+		}
+	}
+
+	/**
+	 * Stop logging: take a last checkpoint, so the next open has no log
+	 * to replay, then stop the background threads and close the log.
+	 * The relations are no longer logged afterwards.
+	 * Transactions writing to the relations must be ended first.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+
+		if(this.checkpointer != null) {
+			this.checkpointer.shutdown();
+			try {
+				this.checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException iE) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		try {
+			checkpoint();
+
+		} finally {
+			for(Relation tmpR : this.relations.values()) {
+				tmpR.setWriteAheadLog(null);
+			}
+
+			synchronized(this.bufferLock) {
+				this.isClosing = true;
+				this.bufferLock.notifyAll();
+			}
+			try {
+				this.flusher.join();
+			} catch (InterruptedException iE) {
+				Thread.currentThread().interrupt();
+			}
+			this.channel.close();
+		}
+	}
+
+	/**
+	 * Helper method to log a record: a write, preceded by a begin record
+	 * if it is the first of its transaction; or the commit or abort
+	 * of a transaction, if it was begun.
+	 *
+	 * @param operation
+	 * @param transactionId
+	 * @param relationName
+	 * @param tupleId
+	 * @param tuple
+	 * @return lsn
+	 *   The log sequence number of the end of the record,
+	 *   or 0 if nothing was logged.
+	 */
+	private long append(byte operation, long transactionId, String relationName,
+			int tupleId, String[] tuple) {
+
+		synchronized(this.bufferLock) {
+			if(this.failure != null) {
+				throw new UncheckedIOException(this.failure);
+			}
+			assert !this.isClosing;
+
+			if(operation == OP_COMMIT || operation == OP_ABORT) {
+				if(!this.openTransactions.remove(transactionId)) {
+					return 0;
+				}
+			} else if(transactionId != NO_TRANSACTION
+					&& this.openTransactions.add(transactionId)) {
+				encode(OP_BEGIN, transactionId, null, 0, null);
+			}
+			return encode(operation, transactionId, relationName, tupleId, tuple);
+		}
+	}
+
+	/**
+	 * Helper method to encode a record into the pending buffer.
+	 * Called under bufferLock.
+	 *
+	 * @param operation
+	 * @param transactionId
+	 * @param relationName
+	 * @param tupleId
+	 * @param tuple
+	 * @return lsn
+	 *   The log sequence number of the end of the record.
+	 */
+	private long encode(byte operation, long transactionId, String relationName,
+			int tupleId, String[] tuple) {
+
+		ByteBuffer buffer = TupleCodec.ensureRemaining(this.pending, RECORD_HEADER_SIZE + 9);
+		int recordStart = buffer.position();
+		buffer.position(recordStart + RECORD_HEADER_SIZE);
+		buffer.put(operation);
+		buffer.putLong(transactionId);
+		if(isWrite(operation)) {
+			buffer = TupleCodec.putString(buffer, relationName);
+			buffer = TupleCodec.putVarint(buffer, tupleId);
+		}
+		if(operation == OP_INSERT || operation == OP_UPDATE) {
+			buffer = TupleCodec.putTuple(buffer, tuple);
+		}
+		this.pending = buffer;
+
+		int bodyStart = recordStart + RECORD_HEADER_SIZE;
+		int bodyLength = buffer.position() - bodyStart;
+		this.crc.reset();
+		this.crc.update(buffer.array(), buffer.arrayOffset() + bodyStart, bodyLength);
+		buffer.putInt(recordStart, bodyLength);
+		buffer.putInt(recordStart + 4, (int) this.crc.getValue());
+
+		long recordSize = RECORD_HEADER_SIZE + bodyLength;
+		this.appendedLSN += recordSize;
+		this.logSize += recordSize;
+		this.bufferLock.notifyAll();
+		return this.appendedLSN;
+	}
+
+	/**
+	 * Helper method to return whether a record is an insert,
+	 * update or delete, rather than a transaction record.
+	 *
+	 * @param operation
+	 * @return isWrite
+	 */
+	private static boolean isWrite(byte operation) {
+		return operation == OP_INSERT || operation == OP_UPDATE || operation == OP_DELETE;
+	}
+
+	private boolean hasOpenTransactions() {
+		synchronized(this.bufferLock) {
+			return !this.openTransactions.isEmpty();
+		}
+	}
+
+	/**
+	 * Helper method to wait until all transactions that wrote
+	 * to the log are committed or aborted.
+	 *
+	 * @throws IOException
+	 *   If interrupted, or the log could not be written.
+	 */
+	private void awaitNoOpenTransactions() throws IOException {
+
+		synchronized(this.bufferLock) {
+			while(!this.openTransactions.isEmpty() && this.failure == null) {
+				try {
+					this.bufferLock.wait();
+				} catch (InterruptedException iE) {
+					throw new InterruptedIOException("Checkpoint interrupted.");
+				}
+			}
+			if(this.failure != null) {
+				throw this.failure;
+			}
+		}
+	}
+
+	/**
+	 * Helper method run by the flusher thread: write out and force
+	 * all pending records, then wake the writers waiting on them.
+	 */
+	private void runFlusher() {
+
+		while(true) {
+			ByteBuffer toWrite;
+			FileChannel tmpChannel;
+			long targetLSN;
+
+			synchronized(this.bufferLock) {
+				while(this.pending.position() == 0 && !this.isClosing) {
+					try {
+						this.bufferLock.wait();
+					} catch (InterruptedException iE) {
+						//Only close() stops the flusher.
+					}
+				}
+				if(this.pending.position() == 0 || this.failure != null) {
+					return;
+				}
+
+				//Writers fill the other buffer while this one is written.
+				toWrite = this.pending;
+				this.pending = this.spare;
+				this.spare = toWrite;
+				tmpChannel = this.channel;
+				targetLSN = this.appendedLSN;
+			}
+
+			IOException tmpFailure = null;
+			try {
+				toWrite.flip();
+				while(toWrite.hasRemaining()) {
+					tmpChannel.write(toWrite);
+				}
+				tmpChannel.force(false);
+			} catch (IOException iOE) {
+				tmpFailure = iOE;
+			}
+			toWrite.clear();
+
+			synchronized(this.bufferLock) {
+				if(tmpFailure != null) {
+					this.failure = tmpFailure;
+				} else {
+					this.durableLSN = targetLSN;
+				}
+				this.bufferLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Helper method run by the checkpointer thread.
+	 */
+	private void checkpointIfDue() {
+
+		if(getLogSize() < this.checkpointBytes) {
+			return;
+		}
+		try {
+			checkpoint();
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Err: Checkpoint of " + this.dir + " failed, will retry.");
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Helper method to switch to a new log file, once all records
+	 * of the current one are on disk.
+	 *
+	 * @return newSeq
+	 *   The number of the new log file.
+	 * @throws IOException
+	 */
+	private long rotate() throws IOException {
+
+		synchronized(this.bufferLock) {
+			while(this.durableLSN < this.appendedLSN && this.failure == null) {
+				try {
+					this.bufferLock.wait();
+				} catch (InterruptedException iE) {
+					throw new InterruptedIOException("Checkpoint interrupted.");
+				}
+			}
+			if(this.failure != null) {
+				throw this.failure;
+			}
+
+			long newSeq = this.logSeq + 1;
+			FileChannel newChannel = createLogFile(newSeq);
+			this.channel.close();
+			this.channel = newChannel;
+			this.logSeq = newSeq;
+			this.logSize = FILE_HEADER_SIZE;
+			return newSeq;
+		}
+	}
+
+	/**
+	 * Helper method to load the last checkpoint and replay the log after it,
+	 * then open the last log file for appending.
+	 *
+	 * @throws IOException
+	 */
+	private void recover() throws IOException {
+
+		long checkpointSeq = readCheckpointFile();
+		for(Relation tmpR : this.relations.values()) {
+			Path tmpSnapPath = snapPath(tmpR.getName(), checkpointSeq);
+			if(Files.exists(tmpSnapPath)) {
+				readSnapshot(tmpSnapPath, tmpR);
+			}
+		}
+
+		//Writes of each transaction begun and not yet ended, in log order.
+		Map<Long, List<ByteBuffer>> heldWrites = new HashMap<>();
+		long tmpSeq = checkpointSeq;
+		long validEnd = -1;
+		while(Files.exists(logPath(tmpSeq))) {
+			boolean isLast = !Files.exists(logPath(tmpSeq + 1));
+			validEnd = replayLogFile(logPath(tmpSeq), isLast, heldWrites);
+			if(isLast) {
+				break;
+			}
+			tmpSeq++;
+		}
+
+		if(validEnd < 0) {
+			this.channel = createLogFile(tmpSeq);
+			this.logSize = FILE_HEADER_SIZE;
+		} else {
+			//Cut off a torn last record.
+			this.channel = FileChannel.open(logPath(tmpSeq), StandardOpenOption.WRITE);
+			if(this.channel.size() > validEnd) {
+				this.channel.truncate(validEnd);
+				this.channel.force(false);
+			}
+			this.channel.position(validEnd);
+			this.logSize = validEnd;
+		}
+		this.logSeq = tmpSeq;
+	}
+
+	/**
+	 * Helper method to apply all records of a log file to the relations,
+	 * those of transactions once they commit.
+	 *
+	 * @param logFile
+	 * @param isLast
+	 *   True for the last log file, which may end in a torn record.
+	 * @param heldWrites
+	 *   The writes of each open transaction, held back until it commits.
+	 * @return validEnd
+	 *   The file position after the last whole record,
+	 *   or -1 if the file has no header, to be written again.
+	 * @throws IOException
+	 *   If the file is corrupt before its end, or not the last file.
+	 */
+	private long replayLogFile(Path logFile, boolean isLast,
+			Map<Long, List<ByteBuffer>> heldWrites) throws IOException {
+
+		try (FileChannel inChannel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+			BlockReader reader = new BlockReader(inChannel);
+
+			//A crash may leave a new log file without its header.
+			if(!reader.fill(FILE_HEADER_SIZE)) {
+				if(isLast) {
+					return -1;
+				}
+				throw new IOException("Truncated log file: " + logFile);
+			}
+			checkHeader(reader.buffer, LOG_MAGIC, logFile);
+
+			CRC32 tmpCRC = new CRC32();
+			while(true) {
+				long recordStart = reader.getFilePosition();
+				if(!reader.fill(RECORD_HEADER_SIZE)) {
+					if(reader.buffer.hasRemaining() && !isLast) {
+						throw new IOException("Torn log record in " + logFile);
+					}
+					return recordStart;
+				}
+
+				int bodyLength = reader.buffer.getInt();
+				int bodyCRC = reader.buffer.getInt();
+				//A torn header may hold any length, check it against the file first.
+				boolean isWhole = bodyLength > 0
+						&& bodyLength <= inChannel.size() - reader.getFilePosition()
+						&& reader.fill(bodyLength);
+				if(isWhole) {
+					ByteBuffer body = reader.buffer;
+					tmpCRC.reset();
+					tmpCRC.update(body.array(), body.arrayOffset() + body.position(), bodyLength);
+					isWhole = (int) tmpCRC.getValue() == bodyCRC;
+				}
+				if(!isWhole) {
+					if(!isLast) {
+						throw new IOException("Torn log record in " + logFile);
+					}
+					return recordStart;
+				}
+
+				int bodyEnd = reader.buffer.position() + bodyLength;
+				replayRecord(reader.buffer, bodyLength, heldWrites, logFile);
+				reader.buffer.position(bodyEnd);
+			}
+		}
+	}
+
+	/**
+	 * Helper method to replay one log record: apply a write made outside
+	 * transactions, hold back a write of a transaction, or apply or drop
+	 * the held writes of a transaction as it commits or aborts.
+	 * A begin record drops any held writes of an earlier transaction
+	 * with the same ID, left open by a crash.
+	 *
+	 * @param body
+	 *   Positioned at the start of the record body.
+	 * @param bodyLength
+	 * @param heldWrites
+	 * @param logFile
+	 * @throws IOException
+	 *   If the record does not fit the relations.
+	 */
+	private void replayRecord(ByteBuffer body, int bodyLength,
+			Map<Long, List<ByteBuffer>> heldWrites, Path logFile) throws IOException {
+
+		byte operation = body.get(body.position());
+		long transactionId = body.getLong(body.position() + 1);
+
+		if(operation == OP_BEGIN) {
+			heldWrites.put(transactionId, new ArrayList<>());
+		} else if(operation == OP_COMMIT) {
+			List<ByteBuffer> tmpWrites = heldWrites.remove(transactionId);
+			if(tmpWrites != null) {
+				for(ByteBuffer tmpWrite : tmpWrites) {
+					applyRecord(tmpWrite, logFile);
+				}
+			}
+		} else if(operation == OP_ABORT) {
+			heldWrites.remove(transactionId);
+		} else if(transactionId == NO_TRANSACTION) {
+			applyRecord(body, logFile);
+		} else {
+			List<ByteBuffer> tmpWrites = heldWrites.get(transactionId);
+			if(tmpWrites == null) {
+				throw new IOException("Log record of a transaction not begun in " + logFile);
+			}
+			//The read buffer is reused, keep a copy.
+			int bodyStart = body.arrayOffset() + body.position();
+			tmpWrites.add(ByteBuffer.wrap(Arrays.copyOfRange(body.array(),
+					bodyStart, bodyStart + bodyLength)));
+		}
+	}
+
+	/**
+	 * Helper method to apply one write record to its relation.
+	 *
+	 * @param body
+	 *   Positioned at the start of the record body.
+	 * @param logFile
+	 * @throws IOException
+	 *   If the record does not fit the relations.
+	 */
+	private void applyRecord(ByteBuffer body, Path logFile) throws IOException {
+
+		byte operation = body.get();
+		body.getLong();
+		String relationName = TupleCodec.getString(body);
+		Relation tmpR = this.relations.get(relationName);
+		if(tmpR == null) {
+			throw new IOException("Log record of unknown relation "
+					+ relationName + " in " + logFile);
+		}
+
+		int numOfAttributes = tmpR.getAttributeList().length;
+		int tupleId = TupleCodec.readVarint(body, body.position());
+		body.position(TupleCodec.skipVarint(body, body.position()));
+
+		boolean isApplied;
+		if(operation == OP_INSERT) {
+			isApplied = tmpR.restoreTuple(tupleId, TupleCodec.getTuple(body, numOfAttributes));
+		} else if(operation == OP_UPDATE) {
+			isApplied = tmpR.updateExistingTuple(
+					TupleCodec.getTuple(body, numOfAttributes), tupleId);
+		} else if(operation == OP_DELETE) {
+			isApplied = tmpR.deleteExistingTuple(tupleId);
+		} else {
+			isApplied = false;
+		}
+
+		if(!isApplied) {
+			throw new IOException("Log record does not apply to relation "
+					+ relationName + " in " + logFile);
+		}
+	}
+
+	/**
+	 * Helper method to write all tuples of a snapshot to a file,
+	 * forced to disk.
+	 * The header holds the next tuple ID; each tuple is preceded
+	 * by its tuple ID and its encoded length, as varints.
+	 *
+	 * @param snapFile
+	 * @param snapshot
+	 * @throws IOException
+	 */
+	private static void writeSnapshot(Path snapFile, RelationSnapshot snapshot) throws IOException {
+
+		try (FileChannel outChannel = FileChannel.open(snapFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+			TupleStore tmpStore = snapshot.getStore();
+			int numOfAttributes = tmpStore.getNumOfAttributes();
+			int numOfSlots = snapshot.getNumOfSlots();
+			ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+			ByteBuffer tupleBuffer = ByteBuffer.allocate(256);
+			buffer.putInt(SNAP_MAGIC).putInt(FORMAT_VERSION);
+			buffer.putInt(numOfAttributes).putInt(snapshot.size());
+			buffer.putInt(snapshot.getNextTupleId());
+
+			for(int tmpSlot = 0; tmpSlot < numOfSlots; tmpSlot++) {
+				int tupleId = snapshot.getTupleId(tmpSlot);
+				if(tupleId < 0) {
+					continue;
+				}
+				tupleBuffer.clear();
+				tupleBuffer = TupleCodec.putTuple(tupleBuffer, tmpStore.getTuple(tmpSlot));
+				tupleBuffer.flip();
+
+				if(buffer.remaining() < 10 + tupleBuffer.remaining()) {
+					writeFully(outChannel, buffer);
+					buffer = TupleCodec.ensureRemaining(buffer, 10 + tupleBuffer.remaining());
+				}
+				TupleCodec.writeVarint(buffer, tupleId);
+				TupleCodec.writeVarint(buffer, tupleBuffer.remaining());
+				buffer.put(tupleBuffer);
+			}
+			writeFully(outChannel, buffer);
+			outChannel.force(false);
+		}
+	}
+
+	/**
+	 * Helper method to insert all tuples of a snapshot file into a relation,
+	 * with their tuple IDs.
+	 *
+	 * @param snapFile
+	 * @param tmpR
+	 * @throws IOException
+	 */
+	private static void readSnapshot(Path snapFile, Relation tmpR) throws IOException {
+
+		try (FileChannel inChannel = FileChannel.open(snapFile, StandardOpenOption.READ)) {
+			BlockReader reader = new BlockReader(inChannel);
+			if(!reader.fill(FILE_HEADER_SIZE + 12)) {
+				throw new IOException("Truncated snapshot: " + snapFile);
+			}
+			checkHeader(reader.buffer, SNAP_MAGIC, snapFile);
+
+			int numOfAttributes = reader.buffer.getInt();
+			int numOfTuples = reader.buffer.getInt();
+			int nextTupleId = reader.buffer.getInt();
+			if(numOfAttributes != tmpR.getAttributeList().length) {
+				throw new IOException("Snapshot has " + String.valueOf(numOfAttributes)
+						+ " attributes, relation has "
+						+ String.valueOf(tmpR.getAttributeList().length) + ": " + snapFile);
+			}
+
+			for(int tupleIdx = 0; tupleIdx < numOfTuples; tupleIdx++) {
+				if(!reader.fill(10) && !reader.buffer.hasRemaining()) {
+					throw new IOException("Truncated snapshot: " + snapFile);
+				}
+				int tupleId = TupleCodec.readVarint(reader.buffer, reader.buffer.position());
+				reader.buffer.position(TupleCodec.skipVarint(reader.buffer, reader.buffer.position()));
+				int tupleLength = TupleCodec.readVarint(reader.buffer, reader.buffer.position());
+				reader.buffer.position(TupleCodec.skipVarint(reader.buffer, reader.buffer.position()));
+				if(!reader.fill(tupleLength)) {
+					throw new IOException("Truncated snapshot: " + snapFile);
+				}
+				if(!tmpR.restoreTuple(tupleId, TupleCodec.getTuple(reader.buffer, numOfAttributes))) {
+					throw new IOException("Snapshot tuple does not apply: " + snapFile);
+				}
+			}
+			tmpR.restoreNextTupleId(nextTupleId);
+		}
+	}
+
+	/**
+	 * Helper method to return the number of the last checkpoint,
+	 * or 0 if there is none yet.
+	 *
+	 * @return checkpointSeq
+	 * @throws IOException
+	 */
+	private long readCheckpointFile() throws IOException {
+
+		Path checkpointPath = this.dir.resolve(CHECKPOINT_FILE);
+		if(!Files.exists(checkpointPath)) {
+			return 0;
+		}
+
+		ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(checkpointPath));
+		if(contents.remaining() != FILE_HEADER_SIZE + 8) {
+			throw new IOException("Corrupt checkpoint file: " + checkpointPath);
+		}
+		checkHeader(contents, CHECKPOINT_MAGIC, checkpointPath);
+		return contents.getLong();
+	}
+
+	/**
+	 * Helper method to replace the checkpoint file, in one atomic move.
+	 *
+	 * @param checkpointSeq
+	 * @throws IOException
+	 */
+	private void writeCheckpointFile(long checkpointSeq) throws IOException {
+
+		Path tmpPath = this.dir.resolve(CHECKPOINT_FILE + ".tmp");
+		try (FileChannel outChannel = FileChannel.open(tmpPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer contents = ByteBuffer.allocate(FILE_HEADER_SIZE + 8);
+			contents.putInt(CHECKPOINT_MAGIC).putInt(FORMAT_VERSION).putLong(checkpointSeq);
+			writeFully(outChannel, contents);
+			outChannel.force(false);
+		}
+		Files.move(tmpPath, this.dir.resolve(CHECKPOINT_FILE),
+				StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		forceDirectory();
+	}
+
+	/**
+	 * Helper method to delete the log files and snapshots
+	 * older than a checkpoint.
+	 *
+	 * @param checkpointSeq
+	 * @throws IOException
+	 */
+	private void deleteFilesBefore(long checkpointSeq) throws IOException {
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.dir)) {
+			for(Path tmpFile : files) {
+				String fileName = tmpFile.getFileName().toString();
+				long fileSeq = -1;
+				try {
+					if(fileName.startsWith(LOG_PREFIX)) {
+						fileSeq = Long.parseLong(fileName.substring(LOG_PREFIX.length()));
+					} else if(fileName.endsWith(SNAP_SUFFIX)) {
+						String withoutSuffix = fileName.substring(0,
+								fileName.length() - SNAP_SUFFIX.length());
+						fileSeq = Long.parseLong(withoutSuffix.substring(
+								withoutSuffix.lastIndexOf('.') + 1));
+					}
+				} catch (NumberFormatException nFE) {
+					//Not one of ours.
+				}
+				if(fileSeq >= 0 && fileSeq < checkpointSeq) {
+					Files.deleteIfExists(tmpFile);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method to create an empty log file, header forced to disk.
+	 *
+	 * @param seq
+	 * @return channel
+	 *   Open for appending after the header.
+	 * @throws IOException
+	 */
+	private FileChannel createLogFile(long seq) throws IOException {
+
+		FileChannel newChannel = FileChannel.open(logPath(seq), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.putInt(LOG_MAGIC).putInt(FORMAT_VERSION);
+		writeFully(newChannel, header);
+		newChannel.force(false);
+		forceDirectory();
+		return newChannel;
+	}
+
+	/**
+	 * Helper method to force the directory entries of new or moved
+	 * files to disk, where the file system supports it.
+	 */
+	private void forceDirectory() {
+		try (FileChannel dirChannel = FileChannel.open(this.dir, StandardOpenOption.READ)) {
+			dirChannel.force(true);
+		} catch (IOException iOE) {
+			//Not supported on all platforms, e.g. Windows.
+		}
+	}
+
+	private Path logPath(long seq) {
+		return this.dir.resolve(LOG_PREFIX + String.valueOf(seq));
+	}
+
+	private Path snapPath(String relationName, long seq) {
+		return this.dir.resolve(relationName + "." + String.valueOf(seq) + SNAP_SUFFIX);
+	}
+
+	/**
+	 * Helper method to check the magic number and format version of a file.
+	 *
+	 * @param buffer
+	 *   Positioned at the header, moved past it.
+	 * @param magic
+	 * @param file
+	 * @throws IOException
+	 */
+	private static void checkHeader(ByteBuffer buffer, int magic, Path file) throws IOException {
+		if(buffer.getInt() != magic || buffer.getInt() != FORMAT_VERSION) {
+			throw new IOException("Not a supported file: " + file);
+		}
+	}
+
+	/**
+	 * Helper method to write out a buffer from its start,
+	 * then clear it.
+	 *
+	 * @param outChannel
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private static void writeFully(FileChannel outChannel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			outChannel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Sequential reader of a file in large blocks, so records can be
+	 * decoded straight from a heap buffer.
+	 */
+	private static final class BlockReader {
+
+		private final FileChannel inChannel;
+		private ByteBuffer buffer;
+		private long bufferFilePos = 0;
+
+		private BlockReader(FileChannel newInChannel) {
+			this.inChannel = newInChannel;
+			this.buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+			this.buffer.flip();
+		}
+
+		/**
+		 * Make sure at least a number of bytes after the position
+		 * are in the buffer, reading more of the file if needed.
+		 *
+		 * @param needed
+		 * @return isFilled
+		 *   False if the file ends first.
+		 * @throws IOException
+		 */
+		private boolean fill(int needed) throws IOException {
+
+			if(this.buffer.remaining() >= needed) {
+				return true;
+			}
+
+			this.bufferFilePos += this.buffer.position();
+			this.buffer.compact();
+			if(this.buffer.capacity() < needed) {
+				ByteBuffer larger = ByteBuffer.allocate(needed);
+				this.buffer.flip();
+				larger.put(this.buffer);
+				this.buffer = larger;
+			}
+
+			while(this.buffer.position() < needed) {
+				if(this.inChannel.read(this.buffer) < 0) {
+					break;
+				}
+			}
+			//Read ahead as much as fits, for the next records.
+			while(this.buffer.hasRemaining()) {
+				int readCount = this.inChannel.read(this.buffer);
+				if(readCount <= 0) {
+					break;
+				}
+			}
+			this.buffer.flip();
+			return this.buffer.remaining() >= needed;
+		}
+
+		/**
+		 * Return the file position of the buffer position.
+		 *
+		 * @return filePos
+		 */
+		private long getFilePosition() {
+			return this.bufferFilePos + this.buffer.position();
+		}
+	}
+}
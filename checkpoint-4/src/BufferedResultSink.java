@@ -0,0 +1,247 @@
+/**
+ * Base class of the buffered result renderers of
+ * SU23 CSE3241 Team SHRX's database main program.
+ * 
+ * Each row is built in one reusable StringBuilder, then appended to
+ * a large BufferedWriter in a single call; the writer is flushed every
+ * flushEveryRows rows (or only at the end of a result), instead of
+ * issuing several unbuffered console writes per cell.
+ * 
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+public abstract class BufferedResultSink implements ResultSink {
+
+	/*
+	 * Below are constants for:
+	 * the supported output formats;
+	 * the flush policies;
+	 * and the size of the output buffer.
+	 */
+	public static final String FORMAT_TEXT = "text";
+	public static final String FORMAT_CSV = "csv";
+	public static final String FORMAT_JSONL = "jsonl";
+	
+	public static final int FLUSH_AT_END = 0;
+	public static final int DEFAULT_CONSOLE_FLUSH_ROWS = 1000;
+	
+	private static final int OUTPUT_BUFFER_CHARS = 1 << 16;
+
+	/*
+	 * The buffered output, whether closing it is up to this sink,
+	 * and the flush policy.
+	 */
+	private final Writer out;
+	private final boolean ownsOutput;
+	private final int flushEveryRows;
+	
+	/*
+	 * Reused for every row, and the column names of the current result.
+	 */
+	protected final StringBuilder rowBuf = new StringBuilder(256);
+	protected String [] columnNames = new String [0];
+
+	/**
+	 * Constructor of a sink writing to a given writer.
+	 * 
+	 * @param out
+	 * 		The destination; wrapped in a large buffer.
+	 * @param ownsOutput
+	 * 		True if close() should close out; false to only flush it.
+	 * @param flushEveryRows
+	 * 		Flush after this many rows, or FLUSH_AT_END.
+	 * 
+	 * @requires out != null
+	 * @requires flushEveryRows >= 0
+	 */
+	protected BufferedResultSink(Writer out, boolean ownsOutput, int flushEveryRows) {
+		//Check constructor requirements are met.
+		assert out != null && flushEveryRows >= 0;
+		
+		this.out = new BufferedWriter(out, OUTPUT_BUFFER_CHARS);
+		this.ownsOutput = ownsOutput;
+		this.flushEveryRows = flushEveryRows;
+	}
+	
+	/**
+	 * Method to create a sink of a given format writing to the console,
+	 * in the same charset as the rest of the program's console output.
+	 * 
+	 * @param format
+	 * 		One of the FORMAT_* constants.
+	 * @return sink
+	 * 		The new sink, or null if the format is invalid.
+	 */
+	public static BufferedResultSink toConsole(String format) {
+		return create(format, new ConsoleWriter(), false, DEFAULT_CONSOLE_FLUSH_ROWS);
+	}
+	
+	/**
+	 * Method to create a sink of a given format writing to a file,
+	 * replacing any existing content. Only flushed at the end of a result.
+	 * 
+	 * @param format
+	 * 		One of the FORMAT_* constants.
+	 * @param filePath
+	 * 		The path of the file to write.
+	 * @return sink
+	 * 		The new sink, or null if the format is invalid.
+	 * @throws IOException
+	 * 		If the file cannot be opened for writing.
+	 */
+	public static BufferedResultSink toFile(String format, String filePath) throws IOException {
+		Writer fileOut = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8);
+		BufferedResultSink sink = create(format, fileOut, true, FLUSH_AT_END);
+		if (sink == null) fileOut.close();
+		return sink;
+	}
+	
+	/**
+	 * Method to create a sink of a given format writing to any writer.
+	 * 
+	 * @param format
+	 * 		One of the FORMAT_* constants.
+	 * @param out
+	 * 		The destination.
+	 * @param ownsOutput
+	 * 		True if close() should close out; false to only flush it.
+	 * @param flushEveryRows
+	 * 		Flush after this many rows, or FLUSH_AT_END.
+	 * @return sink
+	 * 		The new sink, or null if the format is invalid.
+	 */
+	public static BufferedResultSink create(String format, Writer out, 
+			boolean ownsOutput, int flushEveryRows) {
+		
+		BufferedResultSink sink = null;
+		switch (format) {
+			case FORMAT_TEXT:
+				sink = new TextResultSink(out, ownsOutput, flushEveryRows);
+				break;
+			case FORMAT_CSV:
+				sink = new CsvResultSink(out, ownsOutput, flushEveryRows);
+				break;
+			case FORMAT_JSONL:
+				sink = new JsonLinesResultSink(out, ownsOutput, flushEveryRows);
+				break;
+			default:
+				System.out.println("Err: Invalid result format: " + format + ".");
+				sink = null;
+				break;
+		}
+		return sink;
+	}
+
+	@Override
+	public void beginResult(ResultSetMetaData rSMeta) throws SQLException, IOException {
+		int cCount = rSMeta.getColumnCount();
+		this.columnNames = new String [cCount];
+		for (int cIdx = 0; cIdx < cCount; cIdx++) {
+			this.columnNames[cIdx] = rSMeta.getColumnName(cIdx + 1);
+		}
+		
+		this.rowBuf.setLength(0);
+		appendHeader(this.rowBuf);
+		this.out.append(this.rowBuf);
+	}
+
+	@Override
+	public void writeRow(ResultSet rSet, int rowNum) throws SQLException, IOException {
+		this.rowBuf.setLength(0);
+		appendRow(rSet, rowNum, this.rowBuf);
+		this.out.append(this.rowBuf);
+		
+		if (this.flushEveryRows > 0 && rowNum % this.flushEveryRows == 0) {
+			this.out.flush();
+		}
+	}
+
+	@Override
+	public void endResult(int rowCount) throws IOException {
+		this.rowBuf.setLength(0);
+		appendFooter(rowCount, this.rowBuf);
+		this.out.append(this.rowBuf);
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.ownsOutput) {
+			this.out.close();
+		} else {
+			this.out.flush();
+		}
+	}
+	
+	/**
+	 * Method (procedure, no return values) to append the header
+	 * of a result, using columnNames.
+	 * 
+	 * @param buf
+	 * 		The buffer to append to.
+	 */
+	protected abstract void appendHeader(StringBuilder buf);
+	
+	/**
+	 * Method (procedure, no return values) to append one row.
+	 * 
+	 * @param rSet
+	 * 		The ResultSet, positioned on the row.
+	 * @param rowNum
+	 * 		The 1-based number of the row within the result.
+	 * @param buf
+	 * 		The buffer to append to.
+	 * @throws SQLException
+	 * 		If reading the row fails.
+	 */
+	protected abstract void appendRow(ResultSet rSet, int rowNum, StringBuilder buf) 
+			throws SQLException;
+	
+	/**
+	 * Method (procedure, no return values) to append the footer
+	 * of a result. Appends nothing unless overridden.
+	 * 
+	 * @param rowCount
+	 * 		The number of rows written for the result.
+	 * @param buf
+	 * 		The buffer to append to.
+	 */
+	protected void appendFooter(int rowCount, StringBuilder buf) {
+		//No footer by default.
+	}
+	
+	/**
+	 * Writer handing each buffer of characters to System.out,
+	 * which encodes them in the platform (console) charset.
+	 * Closing it only flushes System.out.
+	 */
+	private static final class ConsoleWriter extends Writer {
+		
+		@Override
+		public void write(char [] cbuf, int off, int len) {
+			System.out.append(CharBuffer.wrap(cbuf, off, len));
+		}
+		
+		@Override
+		public void flush() {
+			System.out.flush();
+		}
+		
+		@Override
+		public void close() {
+			flush();
+		}
+	}
+}
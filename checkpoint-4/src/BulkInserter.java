@@ -0,0 +1,300 @@
+/**
+ * Batched bulk-insert path for
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * Rows for one of the four tables (CUSTOMER, ANIME, STUDIO, or CREATOR)
+ * are added to a JDBC batch using MainAppHelpers.buildSQLStringInsert and
+ * MainAppHelpers.setParamInsert. Every chunkSize rows, the batch is executed
+ * and committed in one explicit transaction, instead of paying one
+ * autocommit (and one fsync) per row.
+ * 
+ * It backs StreamingImporter, which commits each parsed batch together with
+ * its import checkpoint; the insert option of the menu adds one row at a time
+ * through its own PreparedStatement.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+public class BulkInserter {
+
+	/*
+	 * The connection written to, its autocommit mode before the bulk insert,
+	 * the target table, and the insert statement reused for every row.
+	 */
+	private final Connection conn;
+	private final boolean prevAutoCommit;
+	private final String tableName;
+	private final int chunkSize;
+	private final PreparedStatement pStat;
+
+	/*
+	 * Rows added but not yet committed, rows committed,
+	 * chunks committed, and time spent since the first row;
+	 * and whether adding or committing a row has failed,
+	 * so close() rolls back instead of committing.
+	 */
+	private int pendingCount = 0;
+	private long insertedCount = 0;
+	private long chunkCount = 0;
+	private long startNanos = 0;
+	private long elapsedNanos = 0;
+	private boolean failed = false;
+
+	/**
+	 * Constructor of a bulk inserter into a given table.
+	 * Turns autocommit off on the connection until close() is called.
+	 *
+	 * @param conn
+	 * 		The (writer) connection object to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table to insert into.
+	 * @param chunkSize
+	 * 		The number of rows executed and committed together.
+	 * @throws SQLException
+	 * 		If the table name is invalid, or preparing the statement fails.
+	 *
+	 * @requires conn != null
+	 * @requires tableName is one of the four valid tables.
+	 * @requires chunkSize > 0
+	 */
+	public BulkInserter(Connection conn, String tableName, int chunkSize)
+			throws SQLException {
+		//Check constructor requirements are met.
+		assert conn != null && tableName != null && chunkSize > 0;
+
+		String insertSQL = MainAppHelpers.buildSQLStringInsert(tableName);
+		if (insertSQL == null) {
+			throw new SQLException("Invalid table name for bulk insert: " + tableName);
+		}
+
+		this.conn = conn;
+		this.tableName = tableName;
+		this.chunkSize = chunkSize;
+		this.pStat = conn.prepareStatement(insertSQL);
+
+		this.prevAutoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+	}
+
+	/**
+	 * Method (procedure, no return values) to add one row to the batch.
+	 * Executes and commits the batch once it holds chunkSize rows.
+	 *
+	 * @param rowVal
+	 * 		The column values for the new row, in table column order.
+	 * @throws SQLException
+	 * 		If adding to, executing, or committing the batch fails.
+	 * 		A failed chunk is rolled back as a whole.
+	 *
+	 * @requires rowVal contains the valid column values of a new row.
+	 */
+	public void addRow(String [] rowVal) throws SQLException {
+		//Check method requirement that the row is not null.
+		assert rowVal != null;
+
+		if (this.startNanos == 0) this.startNanos = System.nanoTime();
+
+		//Clear the previous row, so an unparsable value
+		//is not silently replaced by the value before it.
+		try {
+			this.pStat.clearParameters();
+			MainAppHelpers.setParamInsert(this.pStat, this.tableName, rowVal);
+			this.pStat.addBatch();
+			this.pendingCount++;
+
+		} catch (SQLException | RuntimeException e) {
+			this.failed = true;
+			throw e;
+		}
+
+		if (this.pendingCount >= this.chunkSize) commitChunk();
+	}
+
+	/**
+	 * Method to insert one row on its own, instead of adding it to the batch,
+	 * so a row the table rejects is rolled back alone; e.g. to find the bad
+	 * rows of a chunk that failed as a whole. The row is committed with the
+	 * next chunk.
+	 *
+	 * @param rowVal
+	 * 		The column values for the new row, in table column order.
+	 * @return rejectReason
+	 * 		null if the row was inserted; otherwise why the table rejected it:
+	 * 		a violated constraint (e.g. a taken primary key) or a datatype mismatch.
+	 * @throws SQLException
+	 * 		If the insert fails for another reason, e.g. the database is locked.
+	 *
+	 * @requires rowVal contains the column values of a new row.
+	 * @requires no rows were added to the batch since the last commit.
+	 */
+	public String insertRowAlone(String [] rowVal) throws SQLException {
+		//Check method requirements are met.
+		assert rowVal != null;
+
+		if (this.startNanos == 0) this.startNanos = System.nanoTime();
+
+		Savepoint savepoint = this.conn.setSavepoint();
+		try {
+			this.pStat.clearParameters();
+			MainAppHelpers.setParamInsert(this.pStat, this.tableName, rowVal);
+			this.pStat.executeUpdate();
+			this.conn.releaseSavepoint(savepoint);
+			this.pendingCount++;
+			return null;
+
+		} catch (SQLiteException sE) {
+			//Only the primary result code tells a bad row from a bad database.
+			int primaryCode = sE.getResultCode().code & 0xff;
+			if (primaryCode != SQLiteErrorCode.SQLITE_CONSTRAINT.code
+					&& primaryCode != SQLiteErrorCode.SQLITE_MISMATCH.code) {
+				this.failed = true;
+				throw sE;
+			}
+			this.conn.rollback(savepoint);
+			this.conn.releaseSavepoint(savepoint);
+			return sE.getMessage();
+
+		} catch (SQLException | RuntimeException e) {
+			this.failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to execute and commit
+	 * all rows added since the last commit.
+	 *
+	 * @throws SQLException
+	 * 		If executing or committing the batch fails.
+	 * 		The chunk is rolled back before the exception is rethrown.
+	 */
+	public void commitChunk() throws SQLException {
+		commitChunk(null);
+	}
+
+	/**
+	 * Method (procedure, no return values) to execute and commit
+	 * all rows added since the last commit, together with one extra
+	 * statement (e.g. a progress record) in the same transaction.
+	 *
+	 * @param sameTxStat
+	 * 		A statement with parameters already set, executed right before
+	 * 		the commit, even if no rows were added; null for none.
+	 * 		It is not closed here.
+	 * @throws SQLException
+	 * 		If executing or committing the batch fails.
+	 * 		The chunk is rolled back before the exception is rethrown.
+	 */
+	public void commitChunk(PreparedStatement sameTxStat) throws SQLException {
+		if (this.pendingCount == 0 && sameTxStat == null) return;
+
+		try {
+			this.pStat.executeBatch();
+			if (sameTxStat != null) sameTxStat.executeUpdate();
+			this.conn.commit();
+
+			this.insertedCount += this.pendingCount;
+			if (this.pendingCount > 0) this.chunkCount++;
+
+		} catch (SQLException sE) {
+			this.failed = true;
+			this.pStat.clearBatch();
+			this.conn.rollback();
+			throw sE;
+
+		} finally {
+			this.pendingCount = 0;
+			this.elapsedNanos = System.nanoTime() - this.startNanos;
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to roll back
+	 * all rows added since the last commit, e.g. after adding
+	 * or committing them failed, and go on inserting.
+	 *
+	 * @throws SQLException
+	 * 		If the rollback fails.
+	 */
+	public void rollbackChunk() throws SQLException {
+		this.pStat.clearBatch();
+		this.conn.rollback();
+		this.pendingCount = 0;
+		this.failed = false;
+	}
+
+	/**
+	 * Method to return the number of rows committed so far.
+	 *
+	 * @return insertedCount
+	 */
+	public long getRowsInserted() {
+		return this.insertedCount;
+	}
+
+	/**
+	 * Method to return the insert throughput, in committed rows per second,
+	 * measured from the first added row to the last commit.
+	 *
+	 * @return rowsPerSec
+	 */
+	public double getRowsPerSecond() {
+		if (this.elapsedNanos <= 0) return 0.0;
+		return this.insertedCount / (this.elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Method (procedure, no return values) to print the number of rows
+	 * and chunks committed, and the throughput in rows per second.
+	 */
+	public void printStatistics() {
+		System.out.println("Bulk insert into table: " + this.tableName + ".");
+		System.out.println("...Rows committed: " + String.valueOf(this.insertedCount)
+				+ " in " + String.valueOf(this.chunkCount) + " chunk(s).");
+		System.out.println("...Elapsed: " + String.format("%.3f", this.elapsedNanos / 1e9)
+				+ " s, throughput: " + String.format("%.1f", getRowsPerSecond())
+				+ " rows/sec.");
+	}
+
+	/**
+	 * Method (procedure, no return values) to commit any remaining rows,
+	 * close the insert statement, and restore the autocommit mode.
+	 * If adding or committing a row has failed, the remaining rows
+	 * are rolled back instead, so no partial chunk is kept.
+	 * Handle and print if an exception is thrown.
+	 */
+	public void close() {
+		try {
+			if (this.failed) {
+				this.pStat.clearBatch();
+				this.conn.rollback();
+				this.pendingCount = 0;
+			} else {
+				commitChunk();
+			}
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "ending the last bulk insert chunk.");
+		}
+
+		try {
+			this.pStat.close();
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "closing the bulk insert PreparedStatement.");
+		}
+
+		try {
+			this.conn.setAutoCommit(this.prevAutoCommit);
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "restoring autocommit after bulk insert.");
+		}
+	}
+}
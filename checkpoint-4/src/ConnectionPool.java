@@ -0,0 +1,559 @@
+/**
+ * Connection pool to the SQLite database for
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * The pool keeps one dedicated writer connection, used by insert, update,
+ * and delete, and a bounded set of read-only reader connections, used by
+ * searches and reports. The database is switched to WAL journal mode, so
+ * readers can run in parallel with each other and with the writer.
+ * Connections are validated on borrow, and idle readers are evicted.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConnectionPool {
+
+	/*
+	 * Below are the default pool sizes and timeouts.
+	 */
+	public static final int DEFAULT_MAX_READERS = 4;
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60000;
+	public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 5000;
+	public static final int DEFAULT_VALIDATION_TIMEOUT_SEC = 2;
+
+	/*
+	 * How long SQLite waits on a locked database before failing.
+	 */
+	private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
+	/*
+	 * Pool configuration.
+	 */
+	private final String dBUrl;
+	private final int maxReaders;
+	private final long idleTimeoutMillis;
+	private final long borrowTimeoutMillis;
+	private final int validationTimeoutSec;
+
+	/*
+	 * Reader connections: permits bound the number of open readers,
+	 * the deque holds the idle ones (most recently returned first).
+	 */
+	private final Semaphore readerPermits;
+	private final LinkedBlockingDeque<IdleConnection> idleReaders =
+			new LinkedBlockingDeque<IdleConnection>();
+
+	/*
+	 * The single writer connection, guarded by a fair lock.
+	 */
+	private final ReentrantLock writerLock = new ReentrantLock(true);
+	private Connection writerConn = null;
+
+	/*
+	 * One PreparedStatement cache per pooled connection.
+	 */
+	private final Map<Connection, StatementCache> stmtCaches =
+			new ConcurrentHashMap<Connection, StatementCache>();
+
+	/*
+	 * The primary key filter of each table that has one (see PrimaryKeyFilter).
+	 */
+	private final Map<String, PrimaryKeyFilter> keyFilters =
+			new ConcurrentHashMap<String, PrimaryKeyFilter>();
+
+	/*
+	 * Background thread evicting idle reader connections.
+	 */
+	private final ScheduledExecutorService evictor;
+	private volatile boolean closed = false;
+
+	/*
+	 * Metrics for borrow latency and connection churn.
+	 */
+	private final AcquireMetrics readerMetrics = new AcquireMetrics();
+	private final AcquireMetrics writerMetrics = new AcquireMetrics();
+	private final AtomicLong openedCount = new AtomicLong();
+	private final AtomicLong evictedCount = new AtomicLong();
+	private final AtomicLong invalidCount = new AtomicLong();
+
+	/*
+	 * Incremented every time the writer is returned, i.e. after every
+	 * (possible) change to the database made through this pool.
+	 */
+	private final AtomicLong writeEpoch = new AtomicLong();
+
+	/**
+	 * Constructor of a connection pool to a SQLite database file.
+	 * Opens the writer connection and switches the database to WAL mode.
+	 *
+	 * @param dBPath
+	 * 		The path to a SQLite database.
+	 * @param maxReaders
+	 * 		The maximum number of reader connections open at once.
+	 * @param idleTimeoutMillis
+	 * 		How long a reader connection may stay idle before it is closed.
+	 * @param borrowTimeoutMillis
+	 * 		How long a borrow waits for a free connection before failing.
+	 * @throws SQLException
+	 * 		If the writer connection cannot be opened.
+	 *
+	 * @requires dBPath is a valid path to a SQLite database.
+	 * @requires maxReaders > 0
+	 * @requires idleTimeoutMillis > 0 and borrowTimeoutMillis > 0
+	 */
+	public ConnectionPool(String dBPath, int maxReaders,
+			long idleTimeoutMillis, long borrowTimeoutMillis) throws SQLException {
+		//Check constructor requirements are met.
+		assert dBPath != null && maxReaders > 0
+				&& idleTimeoutMillis > 0 && borrowTimeoutMillis > 0;
+
+		this.dBUrl = "jdbc:sqlite:" + dBPath;
+		this.maxReaders = maxReaders;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.validationTimeoutSec = DEFAULT_VALIDATION_TIMEOUT_SEC;
+		this.readerPermits = new Semaphore(maxReaders, true);
+
+		this.writerConn = openWriter();
+
+		//Daemon thread, so a forgotten close() does not keep the JVM alive.
+		this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread evictorThread = new Thread(runnable, "ConnectionPool-evictor");
+			evictorThread.setDaemon(true);
+			return evictorThread;
+		});
+		long evictPeriodMillis = Math.max(1, idleTimeoutMillis / 2);
+		this.evictor.scheduleWithFixedDelay(this::evictIdleReaders,
+				evictPeriodMillis, evictPeriodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method to borrow a read-only connection from the pool.
+	 * Must be given back using returnReader().
+	 *
+	 * @return conn
+	 * 		A validated, read-only connection to the database.
+	 * @throws SQLException
+	 * 		If no reader is free before the borrow timeout,
+	 * 		or a new reader connection cannot be opened.
+	 */
+	public Connection borrowReader() throws SQLException {
+		checkNotClosed();
+		long startNanos = System.nanoTime();
+
+		acquire(this.readerPermits, "reader");
+
+		try {
+			Connection conn = null;
+			while (conn == null) {
+				IdleConnection idle = this.idleReaders.pollFirst();
+
+				if (idle == null) {
+					conn = openReader();
+				} else if (isValid(idle.conn)) {
+					conn = idle.conn;
+				} else {
+					this.invalidCount.incrementAndGet();
+					discard(idle.conn);
+				}
+			}
+
+			this.readerMetrics.record(System.nanoTime() - startNanos);
+			return conn;
+
+		} catch (SQLException sE) {
+			this.readerPermits.release();
+			throw sE;
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to give a borrowed
+	 * reader connection back to the pool.
+	 *
+	 * @param conn
+	 * 		A connection previously returned by borrowReader().
+	 *
+	 * @requires conn was borrowed using borrowReader() and not yet returned.
+	 */
+	public void returnReader(Connection conn) {
+		//Check method requirement that connection is not null.
+		assert conn != null;
+
+		if (this.closed) {
+			discard(conn);
+		} else {
+			this.idleReaders.offerFirst(new IdleConnection(conn, System.nanoTime()));
+		}
+		this.readerPermits.release();
+	}
+
+	/**
+	 * Method to borrow the dedicated writer connection.
+	 * Only one thread holds the writer at a time.
+	 * Must be given back using returnWriter() from the same thread.
+	 *
+	 * @return conn
+	 * 		The validated writer connection to the database.
+	 * @throws SQLException
+	 * 		If the writer is not free before the borrow timeout,
+	 * 		or it has to be reopened and that fails.
+	 */
+	public Connection borrowWriter() throws SQLException {
+		checkNotClosed();
+		long startNanos = System.nanoTime();
+
+		try {
+			if (!this.writerLock.tryLock(this.borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new SQLException("Timed out waiting for the writer connection.");
+			}
+		} catch (InterruptedException iE) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for the writer connection.", iE);
+		}
+
+		try {
+			//Reopen the writer if it has gone bad since last use.
+			if (!isValid(this.writerConn)) {
+				this.invalidCount.incrementAndGet();
+				discard(this.writerConn);
+				this.writerConn = openWriter();
+			}
+
+			this.writerMetrics.record(System.nanoTime() - startNanos);
+			return this.writerConn;
+
+		} catch (SQLException sE) {
+			this.writerLock.unlock();
+			throw sE;
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to give the borrowed
+	 * writer connection back to the pool. Any transaction left open
+	 * by the borrower is rolled back.
+	 *
+	 * @param conn
+	 * 		The connection previously returned by borrowWriter().
+	 *
+	 * @requires conn was borrowed using borrowWriter() by the current thread.
+	 */
+	public void returnWriter(Connection conn) {
+		//Check method requirement that the caller holds the writer.
+		assert conn != null && conn == this.writerConn
+				&& this.writerLock.isHeldByCurrentThread();
+
+		try {
+			if (!conn.getAutoCommit()) {
+				conn.rollback();
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "resetting the returned writer connection.");
+		} finally {
+			this.writeEpoch.incrementAndGet();
+			this.writerLock.unlock();
+		}
+	}
+
+	/**
+	 * Method to return the write epoch: a counter that changes after
+	 * every use of the writer connection, so results cached under an
+	 * older epoch may be stale.
+	 *
+	 * @return writeEpoch
+	 */
+	public long getWriteEpoch() {
+		return this.writeEpoch.get();
+	}
+
+	/**
+	 * Method to return the PreparedStatement cache bound to
+	 * a connection borrowed from this pool.
+	 *
+	 * @param conn
+	 * 		A connection currently borrowed from this pool.
+	 * @return stmtCache
+	 * 		The statement cache for that connection.
+	 *
+	 * @requires conn != null
+	 */
+	public StatementCache getStatementCache(Connection conn) {
+		//Check method requirement that connection is not null.
+		assert conn != null;
+
+		return this.stmtCaches.computeIfAbsent(conn,
+				key -> new StatementCache(key, StatementCache.DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * Method to return the primary key filter of a table.
+	 *
+	 * @param tableName
+	 * 		The name of the table.
+	 * @return keyFilter
+	 * 		The filter, or null if the table has none.
+	 */
+	public PrimaryKeyFilter getKeyFilter(String tableName) {
+		return this.keyFilters.get(tableName);
+	}
+
+	/**
+	 * Method (procedure, no return values) to set, replace,
+	 * or drop the primary key filter of a table.
+	 *
+	 * @param tableName
+	 * 		The name of the table.
+	 * @param keyFilter
+	 * 		The filter holding every primary key of the table, or null for none.
+	 *
+	 * @requires tableName != null
+	 */
+	public void setKeyFilter(String tableName, PrimaryKeyFilter keyFilter) {
+		//Check method requirement that the table name is not null.
+		assert tableName != null;
+
+		if (keyFilter == null) {
+			this.keyFilters.remove(tableName);
+		} else {
+			this.keyFilters.put(tableName, keyFilter);
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to print the borrow latency,
+	 * connection churn, and statement cache counters of the pool.
+	 */
+	public void printStatistics() {
+		System.out.println();
+		System.out.println("Connection pool statistics:");
+		System.out.println("...Reader borrows: " + this.readerMetrics.toString()
+				+ ", idle: " + String.valueOf(this.idleReaders.size())
+				+ "/" + String.valueOf(this.maxReaders) + ".");
+		System.out.println("...Writer borrows: " + this.writerMetrics.toString() + ".");
+		System.out.println("...Connections opened: " + String.valueOf(this.openedCount.get())
+				+ ", evicted idle: " + String.valueOf(this.evictedCount.get())
+				+ ", failed validation: " + String.valueOf(this.invalidCount.get()) + ".");
+
+		long hitCount = 0;
+		long missCount = 0;
+		for (StatementCache stmtCache : this.stmtCaches.values()) {
+			hitCount += stmtCache.getHitCount();
+			missCount += stmtCache.getMissCount();
+		}
+		System.out.println("...PreparedStatement cache hits: " + String.valueOf(hitCount)
+				+ ", misses: " + String.valueOf(missCount) + ".");
+	}
+
+	/**
+	 * Method (procedure, no return values) to close the pool:
+	 * the evictor, all idle readers, and the writer.
+	 * Readers still borrowed are closed when they are returned.
+	 */
+	public void close() {
+		this.closed = true;
+		this.evictor.shutdownNow();
+
+		IdleConnection idle = this.idleReaders.pollFirst();
+		while (idle != null) {
+			discard(idle.conn);
+			idle = this.idleReaders.pollFirst();
+		}
+
+		this.writerLock.lock();
+		try {
+			discard(this.writerConn);
+			this.writerConn = null;
+		} finally {
+			this.writerLock.unlock();
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) run by the evictor
+	 * to close reader connections idle for longer than the idle timeout.
+	 * The oldest idle connections are at the tail of the deque.
+	 */
+	private void evictIdleReaders() {
+		long cutoffNanos = System.nanoTime()
+				- TimeUnit.MILLISECONDS.toNanos(this.idleTimeoutMillis);
+
+		Iterator<IdleConnection> it = this.idleReaders.descendingIterator();
+		while (it.hasNext()) {
+			IdleConnection idle = it.next();
+			if (idle.idleSinceNanos - cutoffNanos > 0) break;
+
+			//Only close it if no borrower took it in the meantime.
+			if (this.idleReaders.removeLastOccurrence(idle)) {
+				this.evictedCount.incrementAndGet();
+				discard(idle.conn);
+			}
+		}
+	}
+
+	/**
+	 * Helper method to open the writer connection,
+	 * switching the database to WAL journal mode.
+	 *
+	 * @return conn
+	 * 		The opened writer connection.
+	 * @throws SQLException
+	 * 		If opening or configuring the connection fails.
+	 */
+	private Connection openWriter() throws SQLException {
+		Connection conn = DriverManager.getConnection(this.dBUrl);
+		this.openedCount.incrementAndGet();
+
+		try (Statement stat = conn.createStatement()) {
+			stat.execute("PRAGMA journal_mode = WAL;");
+			stat.execute("PRAGMA synchronous = NORMAL;");
+			stat.execute("PRAGMA busy_timeout = " + String.valueOf(BUSY_TIMEOUT_MILLIS) + ";");
+		} catch (SQLException sE) {
+			discard(conn);
+			throw sE;
+		}
+		return conn;
+	}
+
+	/**
+	 * Helper method to open a new read-only reader connection.
+	 *
+	 * @return conn
+	 * 		The opened reader connection.
+	 * @throws SQLException
+	 * 		If opening or configuring the connection fails.
+	 */
+	private Connection openReader() throws SQLException {
+		Connection conn = DriverManager.getConnection(this.dBUrl);
+		this.openedCount.incrementAndGet();
+
+		try (Statement stat = conn.createStatement()) {
+			stat.execute("PRAGMA query_only = ON;");
+			stat.execute("PRAGMA busy_timeout = " + String.valueOf(BUSY_TIMEOUT_MILLIS) + ";");
+		} catch (SQLException sE) {
+			discard(conn);
+			throw sE;
+		}
+		return conn;
+	}
+
+	/**
+	 * Helper method to check whether a pooled connection is still usable.
+	 *
+	 * @param conn
+	 * 		The connection to validate, may be null.
+	 * @return isValid
+	 * 		True if the connection is open and responds.
+	 */
+	private boolean isValid(Connection conn) {
+		try {
+			return conn != null && conn.isValid(this.validationTimeoutSec);
+		} catch (SQLException sE) {
+			return false;
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to close a connection
+	 * together with its statement cache.
+	 *
+	 * @param conn
+	 * 		The connection to close, may be null.
+	 */
+	private void discard(Connection conn) {
+		if (conn == null) return;
+
+		StatementCache stmtCache = this.stmtCaches.remove(conn);
+		if (stmtCache != null) stmtCache.close();
+
+		MainAppHelpers.closeConnection(conn);
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to wait
+	 * for a permit up to the borrow timeout.
+	 *
+	 * @param permits
+	 * 		The semaphore to acquire one permit from.
+	 * @param kind
+	 * 		A string naming the kind of connection, used in error messages.
+	 * @throws SQLException
+	 * 		If the wait times out or is interrupted.
+	 */
+	private void acquire(Semaphore permits, String kind) throws SQLException {
+		try {
+			if (!permits.tryAcquire(this.borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new SQLException("Timed out waiting for a " + kind + " connection.");
+			}
+		} catch (InterruptedException iE) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a " + kind + " connection.", iE);
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to fail fast
+	 * on borrows after the pool has been closed.
+	 *
+	 * @throws SQLException
+	 * 		If the pool is closed.
+	 */
+	private void checkNotClosed() throws SQLException {
+		if (this.closed) throw new SQLException("The connection pool is closed.");
+	}
+
+	/**
+	 * An idle reader connection and when it was returned.
+	 */
+	private static final class IdleConnection {
+		private final Connection conn;
+		private final long idleSinceNanos;
+
+		private IdleConnection(Connection conn, long idleSinceNanos) {
+			this.conn = conn;
+			this.idleSinceNanos = idleSinceNanos;
+		}
+	}
+
+	/**
+	 * Count, total, and maximum of the time spent acquiring a connection.
+	 */
+	private static final class AcquireMetrics {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		private void record(long waitNanos) {
+			this.count.incrementAndGet();
+			this.totalNanos.addAndGet(waitNanos);
+			this.maxNanos.accumulateAndGet(waitNanos, Math::max);
+		}
+
+		@Override
+		public String toString() {
+			long borrowCount = this.count.get();
+			double avgMillis = (borrowCount == 0) ? 0.0
+					: this.totalNanos.get() / 1e6 / borrowCount;
+			return String.valueOf(borrowCount)
+					+ " (avg wait " + String.format("%.3f", avgMillis) + " ms"
+					+ ", max wait " + String.format("%.3f", this.maxNanos.get() / 1e6) + " ms)";
+		}
+	}
+}
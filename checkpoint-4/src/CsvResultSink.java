@@ -0,0 +1,81 @@
+/**
+ * CSV (RFC 4180) result renderer of
+ * SU23 CSE3241 Team SHRX's database main program:
+ * a header line of column names, then one line per row.
+ * SQL NULL is written as an empty field.
+ * 
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class CsvResultSink extends BufferedResultSink {
+
+	/**
+	 * Constructor of a CSV sink.
+	 * 
+	 * @param out
+	 * 		The destination; wrapped in a large buffer.
+	 * @param ownsOutput
+	 * 		True if close() should close out; false to only flush it.
+	 * @param flushEveryRows
+	 * 		Flush after this many rows, or FLUSH_AT_END.
+	 */
+	public CsvResultSink(Writer out, boolean ownsOutput, int flushEveryRows) {
+		super(out, ownsOutput, flushEveryRows);
+	}
+
+	@Override
+	protected void appendHeader(StringBuilder buf) {
+		for (int cIdx = 0; cIdx < this.columnNames.length; cIdx++) {
+			if (cIdx > 0) buf.append(',');
+			appendField(this.columnNames[cIdx], buf);
+		}
+		buf.append("\r\n");
+	}
+
+	@Override
+	protected void appendRow(ResultSet rSet, int rowNum, StringBuilder buf) 
+			throws SQLException {
+		for (int cIdx = 1; cIdx <= this.columnNames.length; cIdx++) {
+			if (cIdx > 1) buf.append(',');
+			String val = rSet.getString(cIdx);
+			if (val != null) appendField(val, buf);
+		}
+		buf.append("\r\n");
+	}
+	
+	/**
+	 * Helper method (procedure, no return values) to append one field,
+	 * quoted (with quotes doubled) only if it contains a
+	 * comma, quote, or line break.
+	 * 
+	 * @param val
+	 * 		The field value.
+	 * @param buf
+	 * 		The buffer to append to.
+	 */
+	private static void appendField(String val, StringBuilder buf) {
+		boolean needsQuotes = false;
+		for (int idx = 0; idx < val.length() && !needsQuotes; idx++) {
+			char c = val.charAt(idx);
+			needsQuotes = (c == ',' || c == '"' || c == '\n' || c == '\r');
+		}
+		
+		if (!needsQuotes) {
+			buf.append(val);
+			return;
+		}
+		
+		buf.append('"');
+		for (int idx = 0; idx < val.length(); idx++) {
+			char c = val.charAt(idx);
+			if (c == '"') buf.append('"');
+			buf.append(c);
+		}
+		buf.append('"');
+	}
+}
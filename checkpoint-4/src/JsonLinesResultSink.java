@@ -0,0 +1,87 @@
+/**
+ * JSON-lines result renderer of
+ * SU23 CSE3241 Team SHRX's database main program:
+ * one JSON object per row, keyed by column name.
+ * Numbers are written unquoted, SQL NULL as null.
+ * 
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class JsonLinesResultSink extends BufferedResultSink {
+
+	/**
+	 * Constructor of a JSON-lines sink.
+	 * 
+	 * @param out
+	 * 		The destination; wrapped in a large buffer.
+	 * @param ownsOutput
+	 * 		True if close() should close out; false to only flush it.
+	 * @param flushEveryRows
+	 * 		Flush after this many rows, or FLUSH_AT_END.
+	 */
+	public JsonLinesResultSink(Writer out, boolean ownsOutput, int flushEveryRows) {
+		super(out, ownsOutput, flushEveryRows);
+	}
+
+	@Override
+	protected void appendHeader(StringBuilder buf) {
+		//Every line is self-describing, no header needed.
+	}
+
+	@Override
+	protected void appendRow(ResultSet rSet, int rowNum, StringBuilder buf) 
+			throws SQLException {
+		buf.append('{');
+		for (int cIdx = 1; cIdx <= this.columnNames.length; cIdx++) {
+			if (cIdx > 1) buf.append(',');
+			appendString(this.columnNames[cIdx - 1], buf);
+			buf.append(':');
+			
+			Object val = rSet.getObject(cIdx);
+			if (val == null) {
+				buf.append("null");
+			} else if (val instanceof Number) {
+				buf.append(val.toString());
+			} else {
+				appendString(val.toString(), buf);
+			}
+		}
+		buf.append('}').append('\n');
+	}
+	
+	/**
+	 * Helper method (procedure, no return values) to append
+	 * a quoted, escaped JSON string.
+	 * 
+	 * @param val
+	 * 		The string value.
+	 * @param buf
+	 * 		The buffer to append to.
+	 */
+	private static void appendString(String val, StringBuilder buf) {
+		buf.append('"');
+		for (int idx = 0; idx < val.length(); idx++) {
+			char c = val.charAt(idx);
+			switch (c) {
+				case '"':	buf.append("\\\""); break;
+				case '\\':	buf.append("\\\\"); break;
+				case '\n':	buf.append("\\n"); break;
+				case '\r':	buf.append("\\r"); break;
+				case '\t':	buf.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						buf.append(String.format("\\u%04x", (int) c));
+					} else {
+						buf.append(c);
+					}
+					break;
+			}
+		}
+		buf.append('"');
+	}
+}
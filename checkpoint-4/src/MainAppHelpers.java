@@ -10,6 +10,8 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 public class MainAppHelpers {
@@ -52,6 +54,44 @@ public class MainAppHelpers {
 		return conn;
 	}
 	
+	/**
+	 * Method to return a connection pool to a SQLite 
+	 * database from a given path.
+	 * 
+	 * @param dBPath
+	 * 		The path to a SQLite database.
+	 * @param maxReaders
+	 * 		The maximum number of read-only connections open at once.
+	 * @param idleTimeoutMillis
+	 * 		How long an idle read-only connection is kept open.
+	 * @return connPool
+	 * 		The opened (or null) connection pool to the database.
+	 * 
+	 * @requires dBPath is a valid path to a SQLite database.
+	 * @requires maxReaders > 0 and idleTimeoutMillis > 0
+	 */
+	public static ConnectionPool initConnectionPool(String dBPath, 
+			int maxReaders, long idleTimeoutMillis) {
+		//Check method requirements are met.
+		assert dBPath != null && maxReaders > 0 && idleTimeoutMillis > 0;
+		
+		ConnectionPool connPool = null;
+		
+		//Try to open the pool (and its writer connection) through the API.
+		//Handle and print if an exception is thrown.
+		try {
+			connPool = new ConnectionPool(dBPath, maxReaders, 
+					idleTimeoutMillis, ConnectionPool.DEFAULT_BORROW_TIMEOUT_MILLIS);
+			
+			System.out.println();
+			System.out.println("Connection pool to database successfully established.");
+		} catch (SQLException sE) {
+			String exLabel = "opening connection pool.";
+			SQLHelpers.printSQLExceptionData(sE, exLabel);
+		}
+		return connPool;
+	}
+	
 	/**
 	 * Method (procedure, no return values) to close 
 	 * an initially opened database connection object.
@@ -82,6 +122,14 @@ public class MainAppHelpers {
 	public static final String OPT_UPDATE = "2";
 	public static final String OPT_DELETE = "3";
 	public static final String OPT_PRINT_REP = "4";
+	public static final String OPT_IMPORT = "5";
+	public static final String OPT_BROWSE = "6";
+	public static final String OPT_EXPORT = "7";
+	
+	/*
+	 * Choice of getReportName for printing all reports.
+	 */
+	public static final String ALL_REPORTS = "*";
 	
 	public static final String TNAME_CUS = "CUSTOMER";
 	public static final String TNAME_ANI = "ANIME";
@@ -95,7 +143,7 @@ public class MainAppHelpers {
 	
 	/**
 	 * Method (procedure, no return value) to print
-	 * all five main menu options and to prompt
+	 * all main menu options and to prompt
 	 * user selection.
 	 */
 	public static void printMainMenu() {
@@ -113,8 +161,11 @@ public class MainAppHelpers {
 		System.out.println(OPT_UPDATE + ". Update an existing record.");
 		System.out.println(OPT_DELETE + ". Delete an existing record.");
 		System.out.println(OPT_PRINT_REP + ". Print a list of useful reports.");
+		System.out.println(OPT_IMPORT + ". Import records from a CSV/TSV file.");
+		System.out.println(OPT_BROWSE + ". Browse a table page by page.");
+		System.out.println(OPT_EXPORT + ". Export a table to a CSV/JSONL file.");
 		System.out.println();
-		System.out.println("5. Exit.");
+		System.out.println("8. Exit.");
 		System.out.println();
 
 		System.out.print("Enter your selection: ");
@@ -153,7 +204,19 @@ public class MainAppHelpers {
 				break;
 			case OPT_PRINT_REP:
 				System.out.println("[Option " + OPT_PRINT_REP 
-					+ ": Print All Useful Reports]");
+					+ ": Print Useful Reports]");
+				break;
+			case OPT_IMPORT:
+				System.out.println("[Option " + OPT_IMPORT 
+					+ ": Import Records From a File]");
+				break;
+			case OPT_BROWSE:
+				System.out.println("[Option " + OPT_BROWSE 
+					+ ": Browse a Table]");
+				break;
+			case OPT_EXPORT:
+				System.out.println("[Option " + OPT_EXPORT 
+					+ ": Export a Table to a File]");
 				break;
 			default:
 				System.out.println("Err: Invalid menu option.");
@@ -235,6 +298,154 @@ public class MainAppHelpers {
 		return selectedTName;
 	}
 	
+	/**
+	 * Method to prompt and obtain from the user
+	 * the path to a file.
+	 * 
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param purposeStr
+	 * 		String explaining what the file is used for.
+	 * @param noteStr
+	 * 		String noted about the file (or null for none).
+	 * @return filePath
+	 * 		The trimmed file path entered by the user,
+	 * 		or null if nothing was entered.
+	 * 
+	 * @requires consoleIn != null
+	 * @requires purposeStr explains what the file is used for.
+	 */
+	public static String getFilePath(Scanner consoleIn, String purposeStr, String noteStr) {
+		//Check method requirements are met.
+		assert consoleIn != null && purposeStr != null;
+		
+		System.out.println();
+		System.out.println("Please enter the path to the file " + purposeStr);
+		if (noteStr != null) System.out.println("..." + noteStr);
+		System.out.println();
+		System.out.print("File path: ");
+		
+		String filePath = consoleIn.nextLine().trim();
+		System.out.println();
+		
+		return filePath.isEmpty() ? null : filePath;
+	}
+	
+	/**
+	 * Method to prompt user to choose the format of
+	 * an exported file; and to return the format.
+	 * 
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @return format
+	 * 		BufferedResultSink.FORMAT_CSV or FORMAT_JSONL,
+	 * 		or null (exit) if neither was chosen.
+	 * 
+	 * @requires consoleIn != null
+	 */
+	public static String getExportFormat(Scanner consoleIn) {
+		//Check method requirement that input scanner is not null.
+		assert consoleIn != null;
+		
+		System.out.println();
+		System.out.println("Select the file format");
+		System.out.println("by entering the corresponding index below:");
+		System.out.println();
+		
+		System.out.println("0. CSV (comma separated values).");
+		System.out.println("1. JSONL (one JSON object per line).");
+		System.out.println();
+		System.out.println("2. Exit.");
+		System.out.println();
+		
+		System.out.print("Enter your selection: ");
+		
+		switch (consoleIn.nextLine()) {
+			case "0":	return BufferedResultSink.FORMAT_CSV;
+			case "1":	return BufferedResultSink.FORMAT_JSONL;
+			default:	return null;
+		}
+	}
+	
+	/**
+	 * Method to prompt user to choose a report to run with
+	 * their own parameters, or all reports with their defaults;
+	 * and to return the choice.
+	 * 
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param reportRegistry
+	 * 		The registry of the reports to choose from.
+	 * @return reportName
+	 * 		The name of the chosen report, ALL_REPORTS for all reports,
+	 * 		or null (exit) if none was chosen.
+	 * 
+	 * @requires consoleIn != null
+	 * @requires reportRegistry != null
+	 */
+	public static String getReportName(Scanner consoleIn, ReportRegistry reportRegistry) {
+		//Check method requirements are met.
+		assert consoleIn != null && reportRegistry != null;
+		
+		List<String> reportNames = reportRegistry.getReportNames();
+		
+		System.out.println();
+		System.out.println("Select the report to print");
+		System.out.println("by entering the corresponding index below:");
+		System.out.println();
+		
+		System.out.println("0. All reports, with their default parameters.");
+		for (int rIdx = 0; rIdx < reportNames.size(); rIdx++) {
+			String [] defaultParams = reportRegistry.getDefaultParams(reportNames.get(rIdx));
+			System.out.println(String.valueOf(rIdx + 1) + ". " + reportNames.get(rIdx)
+					+ ((defaultParams.length == 0) ? ""
+							: " (defaults: " + String.join(", ", defaultParams) + ")"));
+		}
+		System.out.println();
+		System.out.println(String.valueOf(reportNames.size() + 1) + ". Exit.");
+		System.out.println();
+		
+		System.out.print("Enter your selection: ");
+		
+		String selection = consoleIn.nextLine().trim();
+		if (selection.equals("0")) return ALL_REPORTS;
+		for (int rIdx = 0; rIdx < reportNames.size(); rIdx++) {
+			if (selection.equals(String.valueOf(rIdx + 1))) return reportNames.get(rIdx);
+		}
+		return null;
+	}
+	
+	/**
+	 * Method to prompt and obtain from the user the parameter values
+	 * of a report, each defaulting to its default value.
+	 * 
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param defaultParams
+	 * 		The default parameter values of the report.
+	 * @return params
+	 * 		The parameter values, in order.
+	 * 
+	 * @requires consoleIn != null
+	 * @requires defaultParams != null
+	 */
+	public static String [] getReportParams(Scanner consoleIn, String [] defaultParams) {
+		//Check method requirements are met.
+		assert consoleIn != null && defaultParams != null;
+		
+		String [] params = new String [defaultParams.length];
+		System.out.println();
+		for (int pIdx = 0; pIdx < params.length; pIdx++) {
+			System.out.print("Enter parameter " + String.valueOf(pIdx + 1)
+					+ " (press enter for " + defaultParams[pIdx] + "): ");
+			String param = consoleIn.nextLine().trim();
+			params[pIdx] = param.isEmpty() ? defaultParams[pIdx] : param;
+		}
+		System.out.println();
+		
+		return params;
+	}
+	
 	/*
 	 * The following four string arrays
 	 * contains column names and constraints
@@ -272,6 +483,54 @@ public class MainAppHelpers {
 			"Studio_name (type text, prime, foreign key, not null)"
 	};
 		
+	/**
+	 * Method to return the plain column names (without the type and
+	 * constraint notes of the input prompts) of a given table,
+	 * in table column order.
+	 * 
+	 * @param tableName
+	 * 		The name of the table.
+	 * @return columnNames
+	 * 		A string array of column names.
+	 * 		Null if tableName is invalid.
+	 * 
+	 * @requires tableName is one of the four valid tables.
+	 */
+	public static String [] getColumnNames(String tableName) {
+		//Check method requirement that table name is valid.
+		assert tableName != null;
+		
+		String [] columnPrompts = null;
+		switch(tableName) {
+			case TNAME_CUS:	
+				columnPrompts = COL_CUS; 
+				break;
+			case TNAME_ANI: 		
+				columnPrompts = COL_ANI; 
+				break;
+			case TNAME_STU:  	
+				columnPrompts = COL_STU; 
+				break;
+			case TNAME_CRE: 	
+				columnPrompts = COL_CRE; 
+				break;
+			default: 		
+				columnPrompts = null; 
+				break;
+		}
+		
+		if (columnPrompts == null) return null;
+		
+		//Each prompt starts with the column name, followed by a space.
+		String [] columnNames = new String [columnPrompts.length];
+		for (int idx = 0; idx < columnPrompts.length; idx++) {
+			int nameEnd = columnPrompts[idx].indexOf(' ');
+			columnNames[idx] = (nameEnd < 0) ? columnPrompts[idx]
+					: columnPrompts[idx].substring(0, nameEnd);
+		}
+		return columnNames;
+	}
+	
 	/**
 	 * Method to prompt and obtain from the user 
 	 * all column values of a row
@@ -356,6 +615,43 @@ public class MainAppHelpers {
 	private static final String [] PK_STU = {"Name"};
 	private static final String [] PK_CRE = {"Anime_title", "Studio_name"};
 	
+	/**
+	 * Method to return the primary key column name(s) of a given table,
+	 * in table column order.
+	 * 
+	 * @param tableName
+	 * 		The name of the table.
+	 * @return pKNames
+	 * 		A copy of the string array of primary key column names.
+	 * 		Null if tableName is invalid.
+	 * 
+	 * @requires tableName is one of the four valid tables.
+	 */
+	public static String [] getPrimaryKeyNames(String tableName) {
+		//Check method requirement that table name is valid.
+		assert tableName != null;
+		
+		String [] pKNames = null;
+		switch(tableName) {
+			case TNAME_CUS:		
+				pKNames = PK_CUS; 
+				break;
+			case TNAME_ANI: 	
+				pKNames = PK_ANI; 
+				break;
+			case TNAME_STU:  	
+				pKNames = PK_STU; 
+				break;
+			case TNAME_CRE: 	
+				pKNames = PK_CRE; 
+				break;
+			default: 			
+				pKNames = null; 
+				break;
+		}
+		return (pKNames == null) ? null : pKNames.clone();
+	}
+	
 	/**
 	 * Method to prompt and obtain from the user 
 	 * the primary key values for a row in a given table.
@@ -741,6 +1037,82 @@ public class MainAppHelpers {
 		return deleteSQL;
 	}
 	
+	/**
+	 * Method to build a String object used to later create a
+	 * PreparedStatement to read one page of rows, in primary key order.
+	 * Pages after the first continue after the last key of the previous
+	 * page (keyset pagination), so each page is an index range scan
+	 * instead of skipping over all earlier rows.
+	 * Future parameter positions are marked using a questions mark.
+	 * 
+	 * @param tableName
+	 * 		The name of the table the user wishes to browse.
+	 * @param isFirstPage
+	 * 		True to build the query for the first page;
+	 * 		false for the query continuing after a given key.
+	 * @return browseSQL
+	 * 		The plain SQL select query string with parameters marked:
+	 * 		the last key values (not on the first page), then the page size.
+	 * 
+	 * @requires tableName is one of the four valid tables.
+	 */
+	public static String buildSQLStringBrowsePage(String tableName, boolean isFirstPage) {
+		//Check method requirement that table name is valid.
+		assert tableName != null;
+		
+		String [] pKNames = getPrimaryKeyNames(tableName);
+		if (pKNames == null) return null;
+		
+		String keyList = String.join(", ", pKNames);
+		
+		String browseSQL = "SELECT * FROM " + tableName;
+		if (!isFirstPage) {
+			//Row value comparison, e.g. (Anime_title, Studio_name) > (?, ?).
+			String [] marks = new String [pKNames.length];
+			Arrays.fill(marks, "?");
+			browseSQL += " WHERE (" + keyList + ") > (" + String.join(", ", marks) + ")";
+		}
+		browseSQL += " ORDER BY " + keyList + " LIMIT ?;";
+		
+		return browseSQL;
+	}
+	
+	/**
+	 * Method to set the parameters of the PreparedStatement
+	 * object used for reading one page of rows from a given table.
+	 * 
+	 * @param pStat
+	 * 		The PreparedStatement object to set parameters of.
+	 * @param afterPK
+	 * 		The primary key values of the last row of the previous page;
+	 * 		null for the first page.
+	 * @param pageSize
+	 * 		The maximum number of rows in the page.
+	 * 
+	 * @requires pStat was built by buildSQLStringBrowsePage
+	 * 		(first page if and only if afterPK == null).
+	 * @requires pageSize > 0
+	 */
+	public static void setParamBrowsePage (PreparedStatement pStat, 
+			String [] afterPK, int pageSize) {
+		//Check method requirements are met.
+		assert pStat != null && pageSize > 0;
+		
+		try {
+			int paramIdx = 1;
+			if (afterPK != null) {
+				for (int i = 0; i < afterPK.length; i++) {
+					pStat.setString(paramIdx++, afterPK[i]);
+				}
+			}
+			pStat.setInt(paramIdx, pageSize);
+			
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, 
+					"setting parameters for browse page PreparedStatment.");
+		}
+	}
+	
 	/**
 	 * Method to set the parameters of the PreparedStatement
 	 * object used for inserting a new row to a given table.
@@ -1045,82 +1417,110 @@ public class MainAppHelpers {
 	/**
 	 * Method (procedure, no return values) to notify
 	 * the user that the new row has been successfully inserted. 
-	 * Also print the corresponding table content as confirmation.
+	 * Also print only the inserted row, located by its primary key,
+	 * as confirmation.
 	 * 
-	 * @param conn
-	 * 		The Connection object to the SQLite database.
+	 * @param stmtCache
+	 * 		The PreparedStatement cache of the connection written to.
 	 * @param tableName
 	 * 		The name of the table to print confirmation of.
+	 * @param pKVal
+	 * 		The primary key values of the inserted row.
 	 * 
-	 * @requires conn != null
+	 * @requires stmtCache != null
 	 * @requires tableName is one of the four valid tables.
+	 * @requires pKVal contains the primary key values of the inserted row.
 	 */
-	public static void printSuccessInsert(Connection conn, String tableName) {
-		//Check method requirements that Connection is not null,
-		//and that tableName is valid.
-		assert conn != null && tableName != null;
+	public static void printSuccessInsert(StatementCache stmtCache, 
+			String tableName, String [] pKVal) {
+		//Check method requirements that the cache is not null,
+		//and that tableName and the key values are valid.
+		assert stmtCache != null && tableName != null && pKVal != null;
 		
 		System.out.println("New data successfully inserted into table: " 
 				+ tableName + ".");
-		System.out.println("...Printing updated table content as confirmation.");
+		System.out.println("...Printing the inserted row as confirmation.");
 		System.out.println();
 		
-		SQLHelpers.printTable(conn, tableName);
+		SQLHelpers.printRowByKey(stmtCache, tableName, pKVal);
 	}
 	
 	/**
 	 * Method (procedure, no return values) to notify
 	 * the user that the chosen, valid row has been
-	 * successfully updated. Also print the corresponding
-	 * table content as confirmation.
+	 * successfully updated. Also print only the updated row,
+	 * located by its (new) primary key, as confirmation.
 	 * 
-	 * @param conn
-	 * 		The Connection object to the SQLite database.
+	 * @param stmtCache
+	 * 		The PreparedStatement cache of the connection written to.
 	 * @param tableName
 	 * 		The name of the table to print confirmation of.
+	 * @param pKVal
+	 * 		The primary key values of the row after the update.
 	 * 
-	 * @requires conn != null
+	 * @requires stmtCache != null
 	 * @requires tableName is one of the four valid tables.
+	 * @requires pKVal contains the primary key values of the updated row.
 	 */
-	public static void printSuccessUpdate(Connection conn, String tableName) {
-		//Check method requirements that Connection is not null,
-		//and that tableName is valid.
-		assert conn != null && tableName != null;
+	public static void printSuccessUpdate(StatementCache stmtCache, 
+			String tableName, String [] pKVal) {
+		//Check method requirements that the cache is not null,
+		//and that tableName and the key values are valid.
+		assert stmtCache != null && tableName != null && pKVal != null;
 		
 		System.out.println("Record successfully updated in table: " 
 				+ tableName + ".");
-		System.out.println("...Printing updated table content "
+		System.out.println("...Printing the updated row "
 				+ "as confirmation.");
 		System.out.println();
 		
-		SQLHelpers.printTable(conn, tableName);
+		SQLHelpers.printRowByKey(stmtCache, tableName, pKVal);
 	}
 	
 	/**
 	 * Method (procedure, no return values) to notify
 	 * the user that the chosen, valid row has been
-	 * successfully deleted. Also print the corresponding
-	 * table content as confirmation.
+	 * successfully deleted. Also check, by its primary key,
+	 * that the row is gone as confirmation.
 	 * 
-	 * @param conn
-	 * 		The Connection object to the SQLite database.
+	 * @param stmtCache
+	 * 		The PreparedStatement cache of the connection written to.
 	 * @param tableName
 	 * 		The name of the table to print confirmation of.
+	 * @param pKVal
+	 * 		The primary key values of the deleted row.
 	 * 
-	 * @requires conn != null
+	 * @requires stmtCache != null
 	 * @requires tableName is one of the four valid tables.
+	 * @requires pKVal contains the primary key values of the deleted row.
 	 */
-	public static void printSuccessDelete(Connection conn, String tableName) {
-		//Check method requirements that Connection is not null,
-		//and that tableName is valid.
-		assert conn != null && tableName != null;
+	public static void printSuccessDelete(StatementCache stmtCache, 
+			String tableName, String [] pKVal) {
+		//Check method requirements that the cache is not null,
+		//and that tableName and the key values are valid.
+		assert stmtCache != null && tableName != null && pKVal != null;
 		
 		System.out.println("Record successfully deleted from table: " 
 				+ tableName + ".");
-		System.out.println("...Printing updated table content "
-				+ "as confirmation.");
-		System.out.println();
 		
-		SQLHelpers.printTable(conn, tableName);
+		try {
+			PreparedStatement pCheck = stmtCache.getStatement(tableName, 
+					StatementCache.OP_SEARCH_SPECIFIC);
+			
+			if (pCheck != null) {
+				setParamSearchSpecific(pCheck, tableName, pKVal);
+				
+				if (SQLHelpers.checkAndPrintResultSet(pCheck, false)) {
+					System.out.println("Err: A row with the given primary key still exists.");
+				} else {
+					System.out.println("...Confirmed that no row with the given "
+							+ "primary key remains.");
+				}
+			}
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, 
+					"confirming the delete via PreparedStatement.");
+		}
+		System.out.println();
 	}
 }
@@ -16,13 +16,32 @@ public class MainApplication {
 	 * File path of Team SHRX's SQLite database.
 	 */
 	private static final String DBPATH = "TeamSHRX_Database_Binary.db";
+	
+	/*
+	 * Connection pool sizes: the maximum number of read-only connections,
+	 * and how long (in milliseconds) an idle one is kept open.
+	 */
+	private static final int POOL_MAX_READERS = ConnectionPool.DEFAULT_MAX_READERS;
+	private static final long POOL_IDLE_TIMEOUT_MILLIS = ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS;
+	
+	/*
+	 * The number of rows printed per page when browsing a table.
+	 */
+	private static final int BROWSE_PAGE_SIZE = 20;
+	
+	/*
+	 * How long (in milliseconds) a single report may run before it is cancelled.
+	 * Reports run concurrently, one per reader connection.
+	 */
+	private static final long REPORT_TIMEOUT_MILLIS = ReportEngine.DEFAULT_TIMEOUT_MILLIS;
 
 	/**
 	 * Main method of Team SHRX's Java program.
 	 * No return values.
 	 * 
 	 * @param args
-	 * 		Command line passing argument array. Unused.
+	 * 		Command line passing argument array: TABLE=memory keeps
+	 * 		that table in memory (see loadMemoryTables); none needed.
 	 */
 	public static void main(String[] args) {
 
@@ -30,9 +49,46 @@ public class MainApplication {
 		//Remember to close input stream at the very end.
 		Scanner consoleIn = new Scanner(System.in);
 		
-		//Initialize connection to the database.
-		//Remember to close connection at the very end.
-		Connection conn = MainAppHelpers.initConnection(DBPATH);
+		//Initialize the connection pool to the database.
+		//Remember to close the pool at the very end.
+		ConnectionPool connPool = MainAppHelpers.initConnectionPool(DBPATH, 
+				POOL_MAX_READERS, POOL_IDLE_TIMEOUT_MILLIS);
+		
+		//Nothing can be done without the database, exit right away.
+		if (connPool == null) {
+			MainAppHelpers.printExitMessage();
+			consoleIn.close();
+			return;
+		}
+		
+		//Create (once) the trigram index used by the general search.
+		//Searches fall back to LIKE-only if it cannot be created.
+		SearchIndex.ensureIndex(connPool);
+		
+		//Create (once) the summary tables the reports read from.
+		//Reports are computed from the base tables if they cannot be created.
+		ReportSummaries.ensureSummaries(connPool);
+		
+		//Build the primary key filters, so update and delete skip the check
+		//query for keys that are definitely not in the table.
+		//Keys are always checked in the database if they cannot be built.
+		PrimaryKeyFilter.ensureFilters(connPool);
+		
+		//Initialize the report engine running reports on reader connections.
+		//Remember to close the engine at the very end.
+		ReportEngine reportEngine = new ReportEngine(connPool, 
+				POOL_MAX_READERS, REPORT_TIMEOUT_MILLIS);
+		
+		//Load the report definitions; reports are unavailable if this fails.
+		ReportRegistry reportRegistry = ReportRegistry.load(ReportRegistry.DEFAULT_RESOURCE);
+		if (reportRegistry == null) {
+			System.out.println("Err: Reports will be unavailable; copy src/reports.properties "
+					+ "next to the compiled classes, or run from the project folder.");
+			System.out.println();
+		}
+		
+		//Load the tables asked to be kept in memory; the others stay in the database.
+		Map<String, TableStorage> memTables = loadMemoryTables(args, connPool);
 		
 		while (true) {
 			//Start at the main menu.
@@ -53,8 +109,10 @@ public class MainApplication {
 				
 				String insertTName = MainAppHelpers.getTableName(consoleIn, "insert into");
 				
-				if (insertTName != null) {
-					insertNewRecord(consoleIn, conn, insertTName);
+				if (insertTName != null && memTables.containsKey(insertTName)) {
+					StorageCommands.insertNewRecord(consoleIn, memTables.get(insertTName));
+				} else if (insertTName != null) {
+					insertNewRecord(consoleIn, connPool, insertTName);
 				} 
 				
 				MainAppHelpers.printReturnToMain();
@@ -72,8 +130,10 @@ public class MainApplication {
 				
 				String searchTName = MainAppHelpers.getTableName(consoleIn, "search from");
 				
-				if (searchTName != null) {
-					searchExistingRecord(consoleIn, conn, searchTName);
+				if (searchTName != null && memTables.containsKey(searchTName)) {
+					StorageCommands.searchExistingRecord(consoleIn, memTables.get(searchTName));
+				} else if (searchTName != null) {
+					searchExistingRecord(consoleIn, connPool, searchTName);
 				}
 				
 				MainAppHelpers.printReturnToMain();
@@ -93,8 +153,10 @@ public class MainApplication {
 				
 				String updateTName = MainAppHelpers.getTableName(consoleIn, "update to");
 				
-				if (updateTName != null) {
-					updateExistingRecord(consoleIn, conn, updateTName);
+				if (updateTName != null && memTables.containsKey(updateTName)) {
+					StorageCommands.updateExistingRecord(consoleIn, memTables.get(updateTName));
+				} else if (updateTName != null) {
+					updateExistingRecord(consoleIn, connPool, updateTName);
 				}
 				
 				MainAppHelpers.printReturnToMain();
@@ -113,8 +175,10 @@ public class MainApplication {
 				
 				String deleteTName = MainAppHelpers.getTableName(consoleIn, "delete from");
 				
-				if (deleteTName != null) {
-					deleteExistingRecord(consoleIn, conn, deleteTName);					
+				if (deleteTName != null && memTables.containsKey(deleteTName)) {
+					StorageCommands.deleteExistingRecord(consoleIn, memTables.get(deleteTName));
+				} else if (deleteTName != null) {
+					deleteExistingRecord(consoleIn, connPool, deleteTName);					
 				}
 				
 				MainAppHelpers.printReturnToMain();
@@ -122,73 +186,257 @@ public class MainApplication {
 			} else if (user_selection.equals(MainAppHelpers.OPT_PRINT_REP)) {
 				/*
 				 * Option 4: print a list of useful reports.
+				 * 
+				 * First,	select all reports, or one report;
+				 * Second,	for one report, obtain its parameter values;
+				 * Third,	run and print the report(s);
+				 * Finally,	return to main menu.
 				 */
 				MainAppHelpers.printOptionHeader(MainAppHelpers.OPT_PRINT_REP);
 				
-				printAllUsefulReports(conn);
+				//Reports are read-only, so run them concurrently on reader connections.
+				if (reportRegistry == null) {
+					System.out.println("Err: Reports are unavailable, "
+							+ "their definitions could not be loaded at start.");
+					System.out.println();
+				} else {
+					String reportName = MainAppHelpers.getReportName(consoleIn, reportRegistry);
+					
+					if (MainAppHelpers.ALL_REPORTS.equals(reportName)) {
+						printAllUsefulReports(reportEngine, reportRegistry);
+					} else if (reportName != null) {
+						printOneUsefulReport(consoleIn, reportEngine, reportRegistry, reportName);
+					}
+				}
+				
+				MainAppHelpers.printReturnToMain();
+				
+			} else if (user_selection.equals(MainAppHelpers.OPT_IMPORT)) {
+				/*
+				 * Option 5: import rows from a CSV/TSV file.
+				 * 
+				 * First,	select the table to import into;
+				 * Second,	obtain the path to the file;
+				 * Third,	stream the file into the table in committed batches;
+				 * Finally,	return to main menu.
+				 */
+				MainAppHelpers.printOptionHeader(MainAppHelpers.OPT_IMPORT);
+				
+				String importTName = MainAppHelpers.getTableName(consoleIn, "import into");
+				
+				if (importTName != null) {
+					String importPath = MainAppHelpers.getFilePath(consoleIn, "to import from.",
+							"The first line must name the table columns.");
+					if (importPath != null) {
+						StreamingImporter.importFile(connPool, importTName, importPath);
+						
+						//The import wrote to the database only, copy the table into memory again.
+						if (memTables.containsKey(importTName)) {
+							reloadMemoryTable((RelationTableStorage) memTables.get(importTName));
+						}
+					}
+				}
+				
+				MainAppHelpers.printReturnToMain();
+				
+			} else if (user_selection.equals(MainAppHelpers.OPT_BROWSE)) {
+				/*
+				 * Option 6: browse a table page by page.
+				 * 
+				 * First,	select the table to browse;
+				 * Second,	print one page of rows at a time, in primary key order;
+				 * Finally,	return to main menu at the end of the table or on request.
+				 */
+				MainAppHelpers.printOptionHeader(MainAppHelpers.OPT_BROWSE);
+				
+				String browseTName = MainAppHelpers.getTableName(consoleIn, "browse");
+				
+				if (browseTName != null && memTables.containsKey(browseTName)) {
+					StorageCommands.browseTable(consoleIn, memTables.get(browseTName), BROWSE_PAGE_SIZE);
+				} else if (browseTName != null) {
+					browseTable(consoleIn, connPool, browseTName);
+				}
+				
+				MainAppHelpers.printReturnToMain();
+				
+			} else if (user_selection.equals(MainAppHelpers.OPT_EXPORT)) {
+				/*
+				 * Option 7: export a table to a CSV/JSONL file.
+				 * 
+				 * First,	select the table to export;
+				 * Second,	select the file format and obtain the path to the file;
+				 * Third,	write all rows of the table to the file, in primary key order;
+				 * Finally,	return to main menu.
+				 */
+				MainAppHelpers.printOptionHeader(MainAppHelpers.OPT_EXPORT);
+				
+				String exportTName = MainAppHelpers.getTableName(consoleIn, "export");
+				
+				if (exportTName != null) {
+					exportTable(consoleIn, connPool, exportTName);
+				}
 				
 				MainAppHelpers.printReturnToMain();
 				
 			} else {
 				/*
-				 * Option 5 (or default): to exit the main program (loop).
+				 * Option 8 (or default): to exit the main program (loop).
 				 */
 				break;
 			}
 		}
 		
 		/*
-		 * Main loop exited, print exit message;
-		 * close connection, and close scanner.
+		 * Main loop exited, print connection pool statistics and exit message;
+		 * close connection pool, and close scanner.
 		 */
+		connPool.printStatistics();
+		PrimaryKeyFilter.printStatistics(connPool);
 		MainAppHelpers.printExitMessage();
-		MainAppHelpers.closeConnection(conn);
+		reportEngine.close();
+		connPool.close();
 		consoleIn.close();				
 	}
 	
+	/**
+	 * Method to load into memory each table named by a TABLE=memory
+	 * command line argument (e.g. ANIME=memory), so the insert, search,
+	 * update, delete and browse options run on the in-memory copy
+	 * (see RelationTableStorage) instead of the database.
+	 * Reads are served from memory; writes are written through to the
+	 * database, with its constraints, so reports and exports, which
+	 * still run on the database, see them.
+	 * StorageBenchmark suggests which tables run faster in memory.
+	 * 
+	 * @param args
+	 * 		Command line passing argument array.
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @return memTables
+	 * 		The in-memory storage of each loaded table, by table name;
+	 * 		empty if no table is to be kept in memory.
+	 * 
+	 * @requires args != null
+	 * @requires connPool != null
+	 */
+	private static Map<String, TableStorage> loadMemoryTables(String [] args, ConnectionPool connPool) {
+		//Check method requirements are met.
+		assert args != null && connPool != null;
+		
+		Map<String, TableStorage> memTables = new HashMap<>();
+		List<String> validTables = Arrays.asList(MainAppHelpers.TNAME_CUS, MainAppHelpers.TNAME_ANI,
+				MainAppHelpers.TNAME_STU, MainAppHelpers.TNAME_CRE);
+		
+		for (String arg : args) {
+			String [] argParts = arg.split("=", 2);
+			String tableName = argParts[0].trim().toUpperCase(Locale.ROOT);
+			
+			//Handle case where the argument is not a TABLE=memory pair.
+			if (argParts.length != 2 || !argParts[1].trim().equalsIgnoreCase("memory")
+					|| !validTables.contains(tableName)) {
+				System.out.println("Err: Ignoring argument: " + arg + ".");
+				System.out.println("...Arguments must be TABLE=memory, where TABLE is either "
+						+ "CUSTOMER, ANIME, STUDIO, or CREATOR.");
+				System.out.println();
+				continue;
+			}
+			
+			try {
+				RelationTableStorage memTable = RelationTableStorage.load(
+						new SQLiteTableStorage(connPool, tableName));
+				memTables.put(tableName, memTable);
+				
+				System.out.println("Table " + tableName + " loaded into memory: "
+						+ String.valueOf(memTable.size()) + " rows.");
+				System.out.println("...Changes to it are written through to the database.");
+				System.out.println();
+				
+			} catch (SQLException sE) {
+				SQLHelpers.printSQLExceptionData(sE, 
+						"loading table " + tableName + " into memory.");
+			}
+		}
+		
+		return memTables;
+	}
+	
+	/**
+	 * Method (procedure, no return values) to copy a table kept in memory
+	 * from the database again, after it was written to directly.
+	 * 
+	 * @param memTable
+	 * 		The in-memory storage of the table.
+	 * 
+	 * @requires memTable != null
+	 */
+	private static void reloadMemoryTable(RelationTableStorage memTable) {
+		//Check method requirements are met.
+		assert memTable != null;
+		
+		try {
+			memTable.reload();
+			System.out.println("Table " + memTable.getTableName() + " reloaded into memory: "
+					+ String.valueOf(memTable.size()) + " rows.");
+			System.out.println();
+			
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, 
+					"reloading table " + memTable.getTableName() + " into memory.");
+		}
+	}
+	
 	/**
 	 * Method (procedure, no return values) to insert a new record
 	 * into a given table in the given SQLite database.
 	 * 
 	 * @param consoleIn
 	 * 		The user input stream.
-	 * @param conn
-	 * 		The connection object to the SQLite database.
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
 	 * @param tableName
 	 * 		The name of the table to make a insertion.
 	 * 
 	 * @requires consoleIn != null
-	 * @requires conn != null
+	 * @requires connPool != null
 	 * @requires tableName is one of the four tables.
 	 */
-	private static void insertNewRecord(Scanner consoleIn, Connection conn, String tableName) {
+	private static void insertNewRecord(Scanner consoleIn, ConnectionPool connPool, String tableName) {
 		//Check method requirements are met.
-		assert consoleIn != null && conn != null && tableName != null;
+		assert consoleIn != null && connPool != null && tableName != null;
+		
+		//Obtain all column values before borrowing the writer connection,
+		//so the writer is not held while waiting on user input.
+		String [] newRow = MainAppHelpers.getRowColumnValues(consoleIn, tableName);
+		if (newRow == null) return;
 		
 		try {
-			PreparedStatement pStat= null;
-			
-			//Initialize PreparedStatement according to given table.
-			String newInsertSQL = MainAppHelpers.buildSQLStringInsert(tableName);
-			pStat = conn.prepareStatement(newInsertSQL);
+			Connection conn = connPool.borrowWriter();
 			
-			//Set user parameters for the PreparedStatement according to given table.
-			String [] newRow = MainAppHelpers.getRowColumnValues(consoleIn, tableName);
-			MainAppHelpers.setParamInsert(pStat, tableName, newRow);
-			
-			//If PreparedStatement is valid, execute update and print confirmation.
-			if (pStat != null) {
-				pStat.executeUpdate();
-				MainAppHelpers.printSuccessInsert(conn, tableName);
-			}
-			
-			//Close PreparedStatement object when done with insert (update).
-			//Handle and print if an exception is thrown.
 			try {
-				if(pStat != null) pStat.close();
-			} catch (SQLException sE) {
-				SQLHelpers.printSQLExceptionData(sE, 
-						"closing the insert PreparedStatement.");
+				StatementCache stmtCache = connPool.getStatementCache(conn);
+				
+				//Obtain the cached PreparedStatement according to given table.
+				//Cached statements are reused, so they are not closed here.
+				PreparedStatement pStat = stmtCache.getStatement(tableName, 
+						StatementCache.OP_INSERT);
+				
+				//If PreparedStatement is valid, set user parameters,
+				//execute update and print the new row (its key comes first).
+				if (pStat != null) {
+					MainAppHelpers.setParamInsert(pStat, tableName, newRow);
+					
+					int pKNum = MainAppHelpers.getPrimaryKeyNames(tableName).length;
+					String [] newPK = Arrays.copyOf(newRow, pKNum);
+					
+					//Set the key of the new row in the primary key filter.
+					if (pStat.executeUpdate() > 0) {
+						PrimaryKeyFilter.addKey(connPool, conn, tableName, newPK);
+					}
+					MainAppHelpers.printSuccessInsert(stmtCache, tableName, newPK);
+				}
+				
+			} finally {
+				connPool.returnWriter(conn);
 			}
 			
 			//Handle and print if an exception is thrown
@@ -206,45 +454,43 @@ public class MainApplication {
 	 * 
 	 * @param consoleIn
 	 * 		The user input stream.
-	 * @param conn
-	 * 		The connection object to the SQLite database.
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
 	 * @param tableName
 	 * 		The name of the table to generally search from.
 	 * 
 	 * @requires consoleIn != null
-	 * @requires conn != null
+	 * @requires connPool != null
 	 * @requires tableName is one of the four tables.
 	 */
-	private static void searchExistingRecord(Scanner consoleIn, Connection conn, String tableName) {
+	private static void searchExistingRecord(Scanner consoleIn, ConnectionPool connPool, String tableName) {
 		//Check method requirements are met.
-		assert consoleIn != null && conn != null && tableName != null;
+		assert consoleIn != null && connPool != null && tableName != null;
+		
+		//Obtain the (partial) key values before borrowing a reader connection.
+		String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
+		if (userPK == null) return;
 		
 		try {
-			PreparedStatement pStat= null;
-			
-			//Initialize PreparedStatement according to given table.
-			String newSearchSQL = MainAppHelpers.buildSQLStringSearchGeneral(tableName);
-			pStat = conn.prepareStatement(newSearchSQL);
-			
-			if (pStat != null) {
-				//Set user parameters for the PreparedStatement according to given table.
-				String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
-				MainAppHelpers.setParamSearchGeneral(pStat, tableName, userPK);
-				
-				SQLHelpers.checkAndPrintResultSet(pStat, true);
-			}
+			Connection conn = connPool.borrowReader();
 			
-			//Close PreparedStatement object when done with search.
-			//Handle and print if an exception is thrown.
 			try {
-				if(pStat != null) pStat.close();
-			} catch (SQLException sE) {
-				SQLHelpers.printSQLExceptionData(sE, 
-						"closing the search PreparedStatement.");
+				//Obtain the cached (indexed, or LIKE-only) search statement
+				//with the user parameters set, according to given table.
+				//Cached statements are reused, so they are not closed here.
+				PreparedStatement pStat = SearchIndex.prepareSearch(
+						connPool.getStatementCache(conn), tableName, userPK);
+				
+				if (pStat != null) {
+					SQLHelpers.checkAndPrintResultSet(pStat, true);
+				}
+				
+			} finally {
+				connPool.returnReader(conn);
 			}
 			
 			//Handle and print if an exception is thrown
-			//during executeUpdate().
+			//during executeQuery().
 		} catch (SQLException sE) {
 			SQLHelpers.printSQLExceptionData(sE, 
 					"searching via PreparedStatement.");
@@ -252,70 +498,107 @@ public class MainApplication {
 	}
 	
 	/**
+	 * Method (procedure, no return values) to update an existing record
+	 * in a given table in the given SQLite database.
+	 * The record is located via the primary key value(s)
+	 * obtained from the user.
 	 * 
 	 * @param consoleIn
-	 * @param conn
+	 * 		The user input stream.
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
 	 * @param tableName
+	 * 		The name of the table to make an update.
+	 * 
+	 * @requires consoleIn != null
+	 * @requires connPool != null
+	 * @requires tableName is one of the four tables.
 	 */
-	private static void updateExistingRecord(Scanner consoleIn, Connection conn, String tableName) {
+	private static void updateExistingRecord(Scanner consoleIn, ConnectionPool connPool, String tableName) {
+		//Check method requirements are met.
+		assert consoleIn != null && connPool != null && tableName != null;
+		
+		//Obtain the primary key values before borrowing the writer connection.
+		String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
+		if (userPK == null) return;
+		
+		//Handle case where the primary key filter shows the given primary key
+		//does not match any record, without running the check query.
+		if (PrimaryKeyFilter.isDefiniteMiss(connPool, tableName, userPK)) {
+			System.out.println("Sorry. The given primary key does not match any row in the table.");
+			System.out.println("...Thus, no update operation has been performed.");
+			System.out.println();
+			return;
+		}
 		
 		try {
-			PreparedStatement pStat= null;
-			PreparedStatement pCheck = null;
+			//Check the row exists on a reader connection first,
+			//so the user only enters new values for an existing row.
+			boolean isExisting;
+			Connection readConn = connPool.borrowReader();
+			try {
+				isExisting = checkRowExists(connPool.getStatementCache(readConn), tableName, userPK);
+			} finally {
+				connPool.returnReader(readConn);
+			}
 			
-			String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
+			if (!isExisting) {
+				//Handle case where the given primary key does not match any record.
+				PrimaryKeyFilter.recordFalsePositive(connPool, tableName);
+				System.out.println("Sorry. The given primary key does not match any row in the table.");
+				System.out.println("...Thus, no update operation has been performed.");
+				System.out.println();
+				return;
+			}
 			
-			String searchSQL = MainAppHelpers.buildSQLStringSearchSpecific(tableName);
-			pCheck = conn.prepareStatement(searchSQL);
+			//Obtain the new values before borrowing the writer connection,
+			//so the writer is not held while waiting on user input.
+			String [] userRow = MainAppHelpers.getUpdateRowValues(consoleIn, tableName);
+			if (userRow == null) return;
 			
-			if(pCheck != null) {
-				
-				MainAppHelpers.setParamSearchSpecific(pCheck, tableName, userPK);
+			//The re-check and the update run on the writer connection,
+			//so no other write can slip in between them.
+			Connection conn = connPool.borrowWriter();
+			
+			try {
+				StatementCache stmtCache = connPool.getStatementCache(conn);
 				
-				if (SQLHelpers.checkAndPrintResultSet(pCheck, false)) {
+				//The row may have been deleted while the user was typing.
+				if (checkRowExists(stmtCache, tableName, userPK)) {
 					
-					String updateSQL = MainAppHelpers.buildSQLStringUpdate(tableName);
-					pStat = conn.prepareStatement(updateSQL);
+					//Cached statements are reused, so they are not closed here.
+					PreparedStatement pStat = stmtCache.getStatement(tableName, 
+							StatementCache.OP_UPDATE);
 					
 					if (pStat != null) {
-						String [] userRow = MainAppHelpers.getUpdateRowValues(consoleIn, tableName);
 						MainAppHelpers.setParamUpdate(pStat, tableName, userPK, userRow);
-						pStat.executeUpdate();
-						MainAppHelpers.printSuccessUpdate(conn, tableName);
 						
+						//CREATOR rows are all key, so the update gives them a new key.
+						String [] newPK = tableName.equals(MainAppHelpers.TNAME_CRE) 
+								? userRow : userPK;
+						
+						//Move a changed key in the primary key filter,
+						//unsetting the old key first (it was set).
+						if (pStat.executeUpdate() > 0 && newPK != userPK) {
+							PrimaryKeyFilter.removeKey(connPool, tableName, userPK);
+							PrimaryKeyFilter.addKey(connPool, conn, tableName, newPK);
+						}
+						MainAppHelpers.printSuccessUpdate(stmtCache, tableName, newPK);
+
 					} else {
 						//Handle case where pStat is null without exceptions thrown.
 						System.out.println("Err: The update PreparedStatment is null.");
 					}
 					
-					//Close PreparedStatement object when done with update.
-					//Handle and print if an exception is thrown.
-					try {
-						if(pStat != null) pStat.close();
-					} catch (SQLException sE) {
-						SQLHelpers.printSQLExceptionData(sE, 
-								"closing the update PreparedStatement.");
-					}
-					
 				} else {
-					//Handle case where the given primary key does not match any record.
-					System.out.println("Sorry. The given primary key does not match any row in the table.");
+					//Handle case where the row was deleted in the meantime.
+					System.out.println("Sorry. The given primary key no longer matches any row in the table.");
 					System.out.println("...Thus, no update operation has been performed.");
 					System.out.println();
 				}
 				
-			} else {
-				//Handle case where pCheck is null without exceptions thrown.
-				System.out.println("Err: The check PreparedStatment is null.");
-			}
-			
-			//Close PreparedStatement object when done with update.
-			//Handle and print if an exception is thrown.
-			try {
-				if(pCheck != null) pCheck.close();
-			} catch (SQLException sE) {
-				SQLHelpers.printSQLExceptionData(sE, 
-						"closing the pre-update check PreparedStatement.");
+			} finally {
+				connPool.returnWriter(conn);
 			}
 			
 		//Handle and print if an exception is thrown
@@ -326,6 +609,39 @@ public class MainApplication {
 		}
 	}
 	
+	/**
+	 * Helper method to check whether a given table has a row
+	 * with the given primary key values, using the cached
+	 * specific search statement of a connection.
+	 * 
+	 * @param stmtCache
+	 * 		The PreparedStatement cache of a borrowed connection.
+	 * @param tableName
+	 * 		The name of the table to check.
+	 * @param pKVal
+	 * 		The primary key values of the row.
+	 * @return isExisting
+	 * 		True if the row exists; false if not, or the check cannot run.
+	 * @throws SQLException
+	 * 		If preparing the check statement fails.
+	 */
+	private static boolean checkRowExists(StatementCache stmtCache, 
+			String tableName, String [] pKVal) throws SQLException {
+		
+		//Cached statements are reused, so they are not closed here.
+		PreparedStatement pCheck = stmtCache.getStatement(tableName, 
+				StatementCache.OP_SEARCH_SPECIFIC);
+		
+		if (pCheck == null) {
+			//Handle case where pCheck is null without exceptions thrown.
+			System.out.println("Err: The check PreparedStatment is null.");
+			return false;
+		}
+		
+		MainAppHelpers.setParamSearchSpecific(pCheck, tableName, pKVal);
+		return SQLHelpers.checkAndPrintResultSet(pCheck, false);
+	}
+	
 	/**
 	 * Method (procedure, no return values) to delete an existing record
 	 * from a given table in the given SQLite database.
@@ -334,75 +650,82 @@ public class MainApplication {
 	 * 
 	 * @param consoleIn
 	 * 		The user input stream.
-	 * @param conn
-	 * 		The connection object to the SQLite database.
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
 	 * @param tableName
 	 * 		The name of the table to make a deletion.
 	 * 
 	 * @requires consoleIn != null
-	 * @requires conn != null
+	 * @requires connPool != null
 	 * @requires tableName is one of the four tables.
 	 */
-	private static void deleteExistingRecord(Scanner consoleIn, Connection conn, String tableName) {
+	private static void deleteExistingRecord(Scanner consoleIn, ConnectionPool connPool, String tableName) {
 		//Check method requirements are met.
-		assert consoleIn != null && conn != null && tableName != null;
+		assert consoleIn != null && connPool != null && tableName != null;
+		
+		//Obtain the primary key values before borrowing the writer connection.
+		String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
+		if (userPK == null) return;
+		
+		//Handle case where the primary key filter shows the given primary key
+		//does not match any record, without running the check query.
+		if (PrimaryKeyFilter.isDefiniteMiss(connPool, tableName, userPK)) {
+			System.out.println("Sorry. The given primary key does not match any row in the table.");
+			System.out.println("...Thus, no delete (update) operation has been performed.");
+			System.out.println();
+			return;
+		}
 		
 		try {
-			PreparedStatement pStat= null;
-			PreparedStatement pCheck = null;
-			
-			String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
-			
-			String searchSQL = MainAppHelpers.buildSQLStringSearchSpecific(tableName);
-			pCheck = conn.prepareStatement(searchSQL);
+			//The check and the delete run on the writer connection,
+			//so no other write can slip in between them.
+			Connection conn = connPool.borrowWriter();
 			
-			if(pCheck != null) {
+			try {
+				StatementCache stmtCache = connPool.getStatementCache(conn);
 				
-				MainAppHelpers.setParamSearchSpecific(pCheck, tableName, userPK);
+				//Cached statements are reused, so they are not closed here.
+				PreparedStatement pCheck = stmtCache.getStatement(tableName, 
+						StatementCache.OP_SEARCH_SPECIFIC);
 				
-				if (SQLHelpers.checkAndPrintResultSet(pCheck, false)) {
+				if(pCheck != null) {
 					
-					String deleteSQL = MainAppHelpers.buildSQLStringDelete(tableName);
-					pStat = conn.prepareStatement(deleteSQL);
+					MainAppHelpers.setParamSearchSpecific(pCheck, tableName, userPK);
 					
-					if (pStat != null) {
-						MainAppHelpers.setParamDelete(pStat, tableName, userPK);
-						pStat.executeUpdate();
-						MainAppHelpers.printSuccessDelete(conn, tableName);
+					if (SQLHelpers.checkAndPrintResultSet(pCheck, false)) {
+						
+						PreparedStatement pStat = stmtCache.getStatement(tableName, 
+								StatementCache.OP_DELETE);
+						
+						if (pStat != null) {
+							MainAppHelpers.setParamDelete(pStat, tableName, userPK);
+							
+							//Unset the key of the deleted row in the primary key filter.
+							if (pStat.executeUpdate() > 0) {
+								PrimaryKeyFilter.removeKey(connPool, tableName, userPK);
+							}
+							MainAppHelpers.printSuccessDelete(stmtCache, tableName, userPK);
+
+						} else {
+							//Handle case where pStat is null without exceptions thrown.
+							System.out.println("Err: The delete PreparedStatment is null.");
+						}
 						
 					} else {
-						//Handle case where pStat is null without exceptions thrown.
-						System.out.println("Err: The delete PreparedStatment is null.");
-					}
-					
-					//Close PreparedStatement object when done with delete.
-					//Handle and print if an exception is thrown.
-					try {
-						if(pStat != null) pStat.close();
-					} catch (SQLException sE) {
-						SQLHelpers.printSQLExceptionData(sE, 
-								"closing the delete PreparedStatement.");
+						//Handle case where the given primary key does not match any record.
+						PrimaryKeyFilter.recordFalsePositive(connPool, tableName);
+						System.out.println("Sorry. The given primary key does not match any row in the table.");
+						System.out.println("...Thus, no delete (update) operation has been performed.");
+						System.out.println();
 					}
 					
 				} else {
-					//Handle case where the given primary key does not match any record.
-					System.out.println("Sorry. The given primary key does not match any row in the table.");
-					System.out.println("...Thus, no delete (update) operation has been performed.");
-					System.out.println();
+					//Handle case where pCheck is null without exceptions thrown.
+					System.out.println("Err: The check PreparedStatment is null.");
 				}
 				
-			} else {
-				//Handle case where pCheck is null without exceptions thrown.
-				System.out.println("Err: The check PreparedStatment is null.");
-			}
-			
-			//Close PreparedStatement object when done with delete.
-			//Handle and print if an exception is thrown.
-			try {
-				if(pCheck != null) pCheck.close();
-			} catch (SQLException sE) {
-				SQLHelpers.printSQLExceptionData(sE, 
-						"closing the pre-delete check PreparedStatement.");
+			} finally {
+				connPool.returnWriter(conn);
 			}
 			
 		//Handle and print if an exception is thrown
@@ -414,130 +737,200 @@ public class MainApplication {
 	}
 	
 	/**
-	 * Method (procedure, no return value) to print 
-	 * all six (currently) "Useful Report" queries.
+	 * Method (procedure, no return values) to print a given table
+	 * one page of BROWSE_PAGE_SIZE rows at a time, in primary key order.
+	 * Each page continues after the key of the last printed row,
+	 * so no more than one page is ever read or printed at once.
+	 * 
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table to browse.
 	 * 
-	 * @param conn 
-	 * 		The Connection object to the SQLite database.
-	 * @requires conn != null
+	 * @requires consoleIn != null
+	 * @requires connPool != null
+	 * @requires tableName is one of the four tables.
 	 */
-	private static void printAllUsefulReports(Connection conn) {
-		//Check method requirement that Connection cannot be null.
-		assert conn != null;
-		
-		//Initialize all English queries and code,
-		//store in two separate arrays for iterative access.
-		String report1English = "Find the total number of anime "
-				+ "purchased by customer 'plapwood3'.";
-		String report1SQL = "SELECT COUNT(Anime_title) "
-				+ "AS Total_purchased "
-				+ "FROM PURCHASES "
-				+ "WHERE Customer = 'plapwood3';";
-		
-		String report2English = "Find the most popular anime "
-				+ "in the database (use the number of times "
-				+ "the item has been purchased to calculate).";
-		String report2SQL = "SELECT a.Title, COUNT(p.Anime_title) "
-				+ "as Total_Purchased "
-				+ "FROM ANIME a "
-				+ "LEFT JOIN PURCHASES p "
-				+ "ON a.Title = p.Anime_title "
-				+ "GROUP BY a.Title "
-				+ "ORDER BY Total_Purchased DESC "
-				+ "LIMIT 1;";
-		
-		String report3English = "Find the most popular studio "
-				+ "in the database (i.e. the one "
-				+ "who has had the most purchased anime).";
-		String report3SQL = "SELECT Studio_name, COUNT(*) "
-				+ "AS num_purchases "
-				+ "FROM PURCHASES p "
-				+ "JOIN CREATOR c "
-				+ "ON p.Anime_title = c.Anime_title "
-				+ "GROUP BY Studio_name "
-				+ "ORDER BY num_purchases DESC "
-				+ "LIMIT 1;";
-		
-		String report4English = "Find the most watched anime "
-				+ "in the database.";
-		String report4SQL = "SELECT ANIME.Title, COUNT(*) "
-				+ "AS WatchCount "
-				+ "FROM ANIME "
-				+ "JOIN CUSTOMER_WATCHES "
-				+ "ON ANIME.Title = CUSTOMER_WATCHES.Anime "
-				+ "GROUP BY ANIME.Title "
-				+ "HAVING COUNT(*) = ( "
-				+ "SELECT MAX(WatchCount) "
-				+ "FROM ( "
-				+ "SELECT COUNT(*) AS WatchCount "
-				+ "FROM ANIME "
-				+ "JOIN CUSTOMER_WATCHES "
-				+ "ON ANIME.Title = CUSTOMER_WATCHES.Anime "
-				+ "GROUP BY ANIME.Title));";
-		
-		String report5English = "Find the customer "
-				+ "who has purchased the most anime "
-				+ "and the total number of anime "
-				+ "they have purchased.";
-		String report5SQL = "SELECT Customer, "
-				+ "COUNT(Customer) AS Total "
-				+ "FROM PURCHASES "
-				+ "GROUP BY CUSTOMER "
-				+ "ORDER BY COUNT(CUSTOMER) DESC "
-				+ "LIMIT 1;";
-		
-		String report6English = "Find all anime "
-				+ "released before 2023.";
-		String report6SQL = "SELECT Title, Genre, "
-				+ "Release_year "
-				+ "FROM ANIME "
-				+ "WHERE Release_year < 2023 "
-				+ "ORDER BY Genre;";
-		
-		String [] allReportEnglish = {
-				report1English,
-				report2English,
-				report3English,
-				report4English,
-				report5English,
-				report6English		
-		};
-		
-		String [] allReportSQL = {
-				report1SQL,
-				report2SQL,
-				report3SQL,
-				report4SQL,
-				report5SQL,
-				report6SQL
-		};
-		
-		//Iterate through the array of queries, 
-		//print both the English query,
-		//and the query result.
-		for (int idx = 0; idx < allReportEnglish.length; idx++) {
+	private static void browseTable(Scanner consoleIn, ConnectionPool connPool, String tableName) {
+		//Check method requirements are met.
+		assert consoleIn != null && connPool != null && tableName != null;
+		
+		String [] pKNames = MainAppHelpers.getPrimaryKeyNames(tableName);
+		String [] lastPK = null;
+		int nextRowNum = 1;
+		
+		System.out.println();
+		
+		while (true) {
+			String [] pageLastPK = new String [pKNames.length];
+			int rowCount = 0;
 			
-			System.out.println();
-			System.out.println("---- Report " 
-					+ String.valueOf(idx+1) 
-					+ ". ----");
-			System.out.println(allReportEnglish[idx]);
-			System.out.println();
+			//Borrow a reader for one page only, not while waiting on the user.
+			try {
+				Connection conn = connPool.borrowReader();
+				
+				try {
+					String browseOp = (lastPK == null) 
+							? StatementCache.OP_BROWSE_FIRST : StatementCache.OP_BROWSE_NEXT;
+					PreparedStatement pStat = connPool.getStatementCache(conn)
+							.getStatement(tableName, browseOp);
+					
+					if (pStat != null) {
+						MainAppHelpers.setParamBrowsePage(pStat, lastPK, BROWSE_PAGE_SIZE);
+						rowCount = SQLHelpers.printResultPage(pStat, pKNames, 
+								nextRowNum, pageLastPK);
+					}
+					
+				} finally {
+					connPool.returnReader(conn);
+				}
+				
+			} catch (SQLException sE) {
+				SQLHelpers.printSQLExceptionData(sE, 
+						"browsing via PreparedStatement.");
+				break;
+			}
+			
+			if (rowCount == 0 && lastPK == null) {
+				System.out.println("The table has no rows.");
+			}
 			
-			String exLabel = "executing SQL query for Report "
-					+ String.valueOf(idx+1)
-					+ ".";
-			SQLHelpers.simpleQueryAndPrint(conn, allReportSQL[idx], exLabel);
+			//A short page means the end of the table has been reached.
+			if (rowCount < BROWSE_PAGE_SIZE) {
+				System.out.println("...End of table: " + tableName + ".");
+				System.out.println();
+				break;
+			}
 			
-			System.out.println("---- End of Report " 
-					+ String.valueOf(idx+1) 
-					+ ". ----");
+			System.out.print("Press enter for the next page, or enter q to stop: ");
+			if (consoleIn.nextLine().trim().equalsIgnoreCase("q")) {
+				System.out.println();
+				break;
+			}
 			System.out.println();
+			
+			lastPK = pageLastPK;
+			nextRowNum += rowCount;
+		}
+	}
+	
+	/**
+	 * Method (procedure, no return values) to write all rows
+	 * of a given table to a CSV or JSONL file, in primary key order.
+	 * The rows are read from the database, so a table kept in memory
+	 * is exported as it is in the database.
+	 * 
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table to export.
+	 * 
+	 * @requires consoleIn != null
+	 * @requires connPool != null
+	 * @requires tableName is one of the four tables.
+	 */
+	private static void exportTable(Scanner consoleIn, ConnectionPool connPool, String tableName) {
+		//Check method requirements are met.
+		assert consoleIn != null && connPool != null && tableName != null;
+		
+		String format = MainAppHelpers.getExportFormat(consoleIn);
+		if (format == null) return;
+		
+		String exportPath = MainAppHelpers.getFilePath(consoleIn, "to export to.",
+				"Any existing content of the file is replaced.");
+		if (exportPath == null) return;
+		
+		String sQLCode = "SELECT * FROM " + tableName + " ORDER BY " 
+				+ String.join(", ", MainAppHelpers.getPrimaryKeyNames(tableName)) + ";";
+		
+		try {
+			Connection conn = connPool.borrowReader();
+			
+			try {
+				SQLHelpers.simpleQueryToFile(conn, sQLCode, format, exportPath, 
+						"exporting table " + tableName + ".");
+				
+			} finally {
+				connPool.returnReader(conn);
+			}
+			
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, 
+					"borrowing a reader connection for export.");
+			return;
 		}
 		
+		System.out.println("...Export of table " + tableName + " to file: " 
+				+ exportPath + " finished.");
+		System.out.println();
+	}
+	
+	/**
+	 * Method (procedure, no return value) to print 
+	 * one "Useful Report" query of the report registry,
+	 * with parameter values obtained from the user.
+	 * Its result may come from the report cache.
+	 * 
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param reportEngine 
+	 * 		The engine running the reports on reader connections.
+	 * @param reportRegistry 
+	 * 		The registry of report definitions.
+	 * @param reportName
+	 * 		The name of the report.
+	 * @requires consoleIn != null
+	 * @requires reportEngine != null
+	 * @requires reportRegistry != null
+	 * @requires reportName is a report of reportRegistry.
+	 */
+	private static void printOneUsefulReport(Scanner consoleIn, ReportEngine reportEngine,
+			ReportRegistry reportRegistry, String reportName) {
+		//Check method requirements are met.
+		assert consoleIn != null && reportEngine != null 
+				&& reportRegistry != null && reportName != null;
+		
+		String [] params = MainAppHelpers.getReportParams(consoleIn, 
+				reportRegistry.getDefaultParams(reportName));
+		ReportEngine.Report report = reportRegistry.bind(reportName, params);
+		if (report == null) return;
+		
+		reportEngine.runAndPrint(Collections.singletonList(report));
+	}
+	
+	/**
+	 * Method (procedure, no return value) to print 
+	 * all "Useful Report" queries of the report registry,
+	 * with their default parameters.
+	 * 
+	 * @param reportEngine 
+	 * 		The engine running the reports on reader connections.
+	 * @param reportRegistry 
+	 * 		The registry of report definitions.
+	 * @requires reportEngine != null
+	 * @requires reportRegistry != null
+	 */
+	private static void printAllUsefulReports(ReportEngine reportEngine, 
+			ReportRegistry reportRegistry) {
+		//Check method requirement that the engine and registry cannot be null.
+		assert reportEngine != null && reportRegistry != null;
+		
+		//Bind every report to its default parameters; the summary table
+		//version of a report is used when the summaries are kept up to date.
+		List<ReportEngine.Report> allReports = reportRegistry.bindAll();
+		
+		//Run all queries at once, then print both the English query
+		//and the query result of each, in the original order.
+		reportEngine.runAndPrint(allReports);
+		
 		System.out.println("All " 
-				+ String.valueOf(allReportEnglish.length)
+				+ String.valueOf(allReports.size())
 				+ " reports have been successfully printed.");
 		System.out.println();
 	}
+
 }
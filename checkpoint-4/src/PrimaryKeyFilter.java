@@ -0,0 +1,495 @@
+/**
+ * Primary key filters of SU23 CSE3241 Team SHRX's database main program:
+ * one counting Bloom filter per table, held by the connection pool,
+ * answering "is there a row with this primary key?" in memory with
+ * either "definitely not" or "maybe".
+ *
+ * Update and delete look the key up in the filter first, and skip the
+ * check query (and the writer connection) on a definite miss; a "maybe"
+ * still runs the check query as before. The filters are built from the
+ * tables at start (ensureFilters), kept current by the program's own
+ * inserts, deletes and key changing updates, and rebuilt after imports
+ * and whenever they fill up. A filter never answers "definitely not"
+ * for a key written through the program, so no row is ever missed;
+ * rows written to the database file by another program are only seen
+ * after the next start.
+ *
+ * Each key sets NUM_OF_HASHES of the filter's counters; with
+ * COUNTERS_PER_KEY counters per key, about 1% of missing keys
+ * get a "maybe". Deleting a key decrements its counters, so keys
+ * deleted no longer answer "maybe"; a counter that reached MAX_COUNT
+ * stays there, so it is never decremented below a key still set.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class PrimaryKeyFilter {
+
+	/*
+	 * Counters per key, and counters set per key: about 1% false "maybe".
+	 */
+	private static final int COUNTERS_PER_KEY = 10;
+	private static final int NUM_OF_HASHES = 7;
+
+	/*
+	 * Filters are sized for GROWTH_FACTOR times the keys they are built
+	 * with (at least MIN_COUNTERS counters), and rebuilt past that.
+	 */
+	private static final int GROWTH_FACTOR = 2;
+	private static final int MIN_COUNTERS = 1 << 10;
+	private static final int MAX_COUNTERS = 1 << 30;
+
+	/*
+	 * Value of a counter that is no longer counted (unsigned byte).
+	 */
+	private static final int MAX_COUNT = 0xFF;
+
+	/*
+	 * 64-bit FNV-1a hash constants, hashing the key values.
+	 */
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/*
+	 * The four tables filtered.
+	 */
+	private static final String [] TABLE_NAMES = {MainAppHelpers.TNAME_CUS,
+			MainAppHelpers.TNAME_ANI, MainAppHelpers.TNAME_STU, MainAppHelpers.TNAME_CRE};
+
+	/*
+	 * The counters, and the mask of a counter index (their number is a power of two).
+	 */
+	private final byte [] counters;
+	private final int counterMask;
+
+	/*
+	 * The number of keys the filter is sized for, and the number of keys set.
+	 */
+	private final long capacity;
+	private long numOfKeys = 0;
+
+	/*
+	 * Lookups, definite misses among them, and "maybe" answers
+	 * the check query then found no row for.
+	 */
+	private long probeCount = 0;
+	private long missCount = 0;
+	private long falsePositiveCount = 0;
+
+	/**
+	 * Constructor of an empty filter, sized for a given number of keys.
+	 *
+	 * @param expectedKeys
+	 * 		The number of keys expected, before growth.
+	 *
+	 * @requires expectedKeys >= 0
+	 */
+	public PrimaryKeyFilter(long expectedKeys) {
+		//Check constructor requirement that the number of keys is valid.
+		assert expectedKeys >= 0;
+
+		long wantedCounters = expectedKeys * GROWTH_FACTOR * COUNTERS_PER_KEY;
+		int numOfCounters = MIN_COUNTERS;
+		while (numOfCounters < wantedCounters && numOfCounters < MAX_COUNTERS) {
+			numOfCounters <<= 1;
+		}
+
+		this.counters = new byte [numOfCounters];
+		this.counterMask = numOfCounters - 1;
+		this.capacity = numOfCounters / COUNTERS_PER_KEY;
+	}
+
+	/**
+	 * Method (procedure, no return values) to set a key in the filter.
+	 *
+	 * @param pKVal
+	 * 		The primary key values of a row in the table.
+	 */
+	public synchronized void add(String [] pKVal) {
+		long hash = hashKey(pKVal);
+		for (int hIdx = 0; hIdx < NUM_OF_HASHES; hIdx++) {
+			int cIdx = counterIndex(hash, hIdx);
+			if ((this.counters[cIdx] & MAX_COUNT) != MAX_COUNT) this.counters[cIdx]++;
+		}
+		this.numOfKeys++;
+	}
+
+	/**
+	 * Method (procedure, no return values) to unset a key of
+	 * a deleted row. Only keys that were set may be removed,
+	 * or other keys may be missed.
+	 *
+	 * @param pKVal
+	 * 		The primary key values of a row deleted from the table.
+	 */
+	public synchronized void remove(String [] pKVal) {
+		long hash = hashKey(pKVal);
+		for (int hIdx = 0; hIdx < NUM_OF_HASHES; hIdx++) {
+			int cIdx = counterIndex(hash, hIdx);
+			int count = this.counters[cIdx] & MAX_COUNT;
+			if (count != 0 && count != MAX_COUNT) this.counters[cIdx]--;
+		}
+		if (this.numOfKeys > 0) this.numOfKeys--;
+	}
+
+	/**
+	 * Method to check whether the table may have a row with a key.
+	 *
+	 * @param pKVal
+	 * 		The primary key values looked up.
+	 * @return isMaybe
+	 * 		False if there is definitely no such row; true if there may be.
+	 */
+	public synchronized boolean mightContain(String [] pKVal) {
+		this.probeCount++;
+
+		long hash = hashKey(pKVal);
+		for (int hIdx = 0; hIdx < NUM_OF_HASHES; hIdx++) {
+			if (this.counters[counterIndex(hash, hIdx)] == 0) {
+				this.missCount++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method (procedure, no return values) to count a "maybe"
+	 * the check query then found no row for.
+	 */
+	public synchronized void recordFalsePositive() {
+		this.falsePositiveCount++;
+	}
+
+	/**
+	 * Method to check whether the filter holds more keys than it is sized for,
+	 * so its false "maybe" answers become more frequent.
+	 *
+	 * @return isFull
+	 */
+	public synchronized boolean isFull() {
+		return this.numOfKeys > this.capacity;
+	}
+
+	/**
+	 * Method to build the filter of a table from all of its rows.
+	 *
+	 * @param conn
+	 * 		The connection object to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table.
+	 * @return keyFilter
+	 * 		The new filter, holding every primary key of the table.
+	 * @throws SQLException
+	 * 		If reading the table fails.
+	 *
+	 * @requires conn != null
+	 * @requires tableName is one of the four valid tables.
+	 */
+	public static PrimaryKeyFilter build(Connection conn, String tableName) throws SQLException {
+		//Check method requirements are met.
+		assert conn != null && tableName != null;
+
+		String [] pKNames = MainAppHelpers.getPrimaryKeyNames(tableName);
+
+		try (Statement stat = conn.createStatement()) {
+			long rowCount = 0;
+			try (ResultSet rSet = stat.executeQuery("SELECT COUNT(*) FROM " + tableName + ";")) {
+				if (rSet.next()) rowCount = rSet.getLong(1);
+			}
+
+			PrimaryKeyFilter keyFilter = new PrimaryKeyFilter(rowCount);
+			try (ResultSet rSet = stat.executeQuery("SELECT " + String.join(", ", pKNames)
+					+ " FROM " + tableName + ";")) {
+				String [] pKVal = new String [pKNames.length];
+				while (rSet.next()) {
+					for (int kIdx = 0; kIdx < pKVal.length; kIdx++) {
+						pKVal[kIdx] = rSet.getString(kIdx + 1);
+					}
+					keyFilter.add(pKVal);
+				}
+			}
+			return keyFilter;
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to build the filters of
+	 * all four tables on the pool's writer connection, so no write
+	 * is made while they are built, and hand them to the pool.
+	 * Handle and print if an exception is thrown; tables whose filter
+	 * cannot be built are always checked in the database.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 *
+	 * @requires connPool != null
+	 */
+	public static void ensureFilters(ConnectionPool connPool) {
+		//Check method requirement that the pool is not null.
+		assert connPool != null;
+
+		long startNanos = System.nanoTime();
+		try {
+			Connection conn = connPool.borrowWriter();
+			try {
+				for (String tableName : TABLE_NAMES) {
+					connPool.setKeyFilter(tableName, build(conn, tableName));
+				}
+			} finally {
+				connPool.returnWriter(conn);
+			}
+
+			System.out.println();
+			System.out.println("Primary key filters built in "
+					+ String.format("%.3f", (System.nanoTime() - startNanos) / 1e9) + " s.");
+
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "building the primary key filters.");
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to rebuild the filter of
+	 * a table from its rows, e.g. after an import, keeping its counts.
+	 * Does nothing if the table has no filter.
+	 * Handle and print if an exception is thrown; the table is then
+	 * always checked in the database.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table.
+	 *
+	 * @requires connPool != null
+	 * @requires tableName is one of the four valid tables.
+	 */
+	public static void rebuild(ConnectionPool connPool, String tableName) {
+		//Check method requirements are met.
+		assert connPool != null && tableName != null;
+
+		if (connPool.getKeyFilter(tableName) == null) return;
+
+		try {
+			Connection conn = connPool.borrowWriter();
+			try {
+				rebuild(connPool, conn, tableName);
+			} finally {
+				connPool.returnWriter(conn);
+			}
+
+		} catch (SQLException sE) {
+			connPool.setKeyFilter(tableName, null);
+			SQLHelpers.printSQLExceptionData(sE, "rebuilding the primary key filter.");
+		}
+	}
+
+	/**
+	 * Method to check, before a check query, whether a table
+	 * definitely has no row with a key.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table.
+	 * @param pKVal
+	 * 		The primary key values looked up.
+	 * @return isDefiniteMiss
+	 * 		True if there is definitely no such row; false if there may be,
+	 * 		or the table has no filter.
+	 *
+	 * @requires connPool != null
+	 * @requires tableName is one of the four valid tables.
+	 */
+	public static boolean isDefiniteMiss(ConnectionPool connPool, String tableName, String [] pKVal) {
+		//Check method requirements are met.
+		assert connPool != null && tableName != null && pKVal != null;
+
+		PrimaryKeyFilter keyFilter = connPool.getKeyFilter(tableName);
+		return keyFilter != null && !keyFilter.mightContain(pKVal);
+	}
+
+	/**
+	 * Method (procedure, no return values) to count a "maybe" answer
+	 * for a table that its check query then found no row for.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table.
+	 *
+	 * @requires connPool != null
+	 */
+	public static void recordFalsePositive(ConnectionPool connPool, String tableName) {
+		PrimaryKeyFilter keyFilter = connPool.getKeyFilter(tableName);
+		if (keyFilter != null) keyFilter.recordFalsePositive();
+	}
+
+	/**
+	 * Method (procedure, no return values) to set the key of a row
+	 * just written (inserted, or given a new key) in the table's filter,
+	 * rebuilding the filter from the table instead if it is full.
+	 * Call it while still holding the writer connection that wrote the row.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param conn
+	 * 		The writer connection borrowed from the pool.
+	 * @param tableName
+	 * 		The name of the table.
+	 * @param pKVal
+	 * 		The primary key values of the row written.
+	 * @throws SQLException
+	 * 		If rebuilding the filter fails; the table is then
+	 * 		always checked in the database.
+	 *
+	 * @requires connPool != null
+	 * @requires conn is the writer connection of the pool.
+	 */
+	public static void addKey(ConnectionPool connPool, Connection conn,
+			String tableName, String [] pKVal) throws SQLException {
+		PrimaryKeyFilter keyFilter = connPool.getKeyFilter(tableName);
+		if (keyFilter == null) return;
+
+		if (keyFilter.isFull()) {
+			rebuild(connPool, conn, tableName);
+		} else {
+			keyFilter.add(pKVal);
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to unset the key of
+	 * a row just deleted (or given a new key) in the table's filter.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table.
+	 * @param pKVal
+	 * 		The primary key values the row had.
+	 *
+	 * @requires connPool != null
+	 */
+	public static void removeKey(ConnectionPool connPool, String tableName, String [] pKVal) {
+		PrimaryKeyFilter keyFilter = connPool.getKeyFilter(tableName);
+		if (keyFilter != null) keyFilter.remove(pKVal);
+	}
+
+	/**
+	 * Method (procedure, no return values) to print the lookups
+	 * and definite misses of the filter of each table.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 *
+	 * @requires connPool != null
+	 */
+	public static void printStatistics(ConnectionPool connPool) {
+		//Check method requirement that the pool is not null.
+		assert connPool != null;
+
+		System.out.println();
+		System.out.println("Primary key filter statistics:");
+		for (String tableName : TABLE_NAMES) {
+			PrimaryKeyFilter keyFilter = connPool.getKeyFilter(tableName);
+			if (keyFilter == null) {
+				System.out.println("..." + tableName + ": no filter, keys checked in the database.");
+				continue;
+			}
+
+			synchronized (keyFilter) {
+				System.out.println("..." + tableName + ": "
+						+ String.valueOf(keyFilter.numOfKeys) + " keys, "
+						+ String.valueOf(keyFilter.probeCount) + " lookups, "
+						+ String.valueOf(keyFilter.missCount) + " skipped (definite misses), "
+						+ String.valueOf(keyFilter.falsePositiveCount) + " false positives.");
+			}
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to rebuild the filter
+	 * of a table on a borrowed writer connection, keeping the counts
+	 * of the filter it replaces.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param conn
+	 * 		The writer connection borrowed from the pool.
+	 * @param tableName
+	 * 		The name of the table.
+	 * @throws SQLException
+	 * 		If reading the table fails; the table's filter is dropped.
+	 */
+	private static void rebuild(ConnectionPool connPool, Connection conn,
+			String tableName) throws SQLException {
+		PrimaryKeyFilter oldFilter = connPool.getKeyFilter(tableName);
+
+		PrimaryKeyFilter newFilter;
+		try {
+			newFilter = build(conn, tableName);
+		} catch (SQLException sE) {
+			connPool.setKeyFilter(tableName, null);
+			throw sE;
+		}
+
+		if (oldFilter != null) {
+			synchronized (oldFilter) {
+				newFilter.probeCount = oldFilter.probeCount;
+				newFilter.missCount = oldFilter.missCount;
+				newFilter.falsePositiveCount = oldFilter.falsePositiveCount;
+			}
+		}
+		connPool.setKeyFilter(tableName, newFilter);
+	}
+
+	/**
+	 * Helper method to hash the primary key values of a row.
+	 *
+	 * @param pKVal
+	 * 		The primary key values.
+	 * @return hash
+	 */
+	private static long hashKey(String [] pKVal) {
+		long hash = FNV_OFFSET;
+		for (String val : pKVal) {
+			int valLength = (val == null) ? -1 : val.length();
+			for (int chIdx = 0; chIdx < valLength; chIdx++) {
+				hash = (hash ^ val.charAt(chIdx)) * FNV_PRIME;
+			}
+			//Mark the end of each value, so ("ab", "c") and ("a", "bc") differ.
+			hash = (hash ^ valLength) * FNV_PRIME;
+		}
+
+		//Mix the bits (MurmurHash3 finalizer), so both halves are usable.
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Helper method to return the index of one of the counters of a key:
+	 * its hIdx-th hash, combined from the two halves of the key's hash.
+	 *
+	 * @param hash
+	 * 		The hash of the key, from hashKey.
+	 * @param hIdx
+	 * 		Which of the NUM_OF_HASHES counters.
+	 * @return cIdx
+	 */
+	private int counterIndex(long hash, int hIdx) {
+		int hashA = (int) hash;
+		int hashB = (int) (hash >>> 32) | 1;
+		return (hashA + hIdx * hashB) & this.counterMask;
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * Table storage in memory, in a Relation of the Checkpoint 2 engine,
+ * for SU23 CSE3241 Team SHRX's database main program.
+ *
+ * The memory copy caches another storage of the table, its database:
+ * load() copies all rows from it (e.g. the SQLite table) at start.
+ * Lookups by primary key go through the primary key index of the
+ * relation, prefix searches through an ordered index on the first
+ * key column, and reads send nothing to the database. Writes are
+ * written through: each is made in the database first, with all its
+ * constraints, and only made in memory once the database took it,
+ * so both copies always hold the same rows. Writes made to the
+ * database some other way (e.g. an import) need a reload().
+ *
+ * Compile with the Checkpoint 2 sources on the source path, e.g.
+ * javac -sourcepath src:../checkpoint-2/src src/*.java
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class RelationTableStorage implements TableStorage {
+
+	/*
+	 * The table stored, its number of primary key columns,
+	 * the storage written through to, and the relation holding
+	 * the copy of its rows (replaced by reload()).
+	 */
+	private final String tableName;
+	private final int pKNum;
+	private final TableStorage database;
+	private volatile Relation relation;
+
+	/**
+	 * Private constructor, use load().
+	 *
+	 * @param database
+	 * 		The storage to cache and write through to.
+	 */
+	private RelationTableStorage(TableStorage database) {
+		this.tableName = database.getTableName();
+		this.pKNum = MainAppHelpers.getPrimaryKeyNames(this.tableName).length;
+		this.database = database;
+	}
+
+	/**
+	 * Method to create an in-memory storage of a table holding
+	 * a copy of all rows of another storage of it, which all writes
+	 * are written through to.
+	 *
+	 * @param database
+	 * 		The storage to copy from, e.g. a SQLiteTableStorage.
+	 * @return memStorage
+	 * 		The new in-memory storage.
+	 * @throws SQLException
+	 * 		If reading the database fails.
+	 *
+	 * @requires database != null
+	 */
+	public static RelationTableStorage load(TableStorage database) throws SQLException {
+		//Check method requirement that the database is not null.
+		assert database != null;
+
+		RelationTableStorage memStorage = new RelationTableStorage(database);
+		memStorage.reload();
+		return memStorage;
+	}
+
+	/**
+	 * Method (procedure, no return values) to copy all rows
+	 * of the database into memory again, replacing the copy,
+	 * after writes made to the database some other way.
+	 *
+	 * @throws SQLException
+	 * 		If reading the database fails; the old copy is kept.
+	 */
+	public void reload() throws SQLException {
+		Relation newRelation = new Relation(this.tableName,
+				MainAppHelpers.getColumnNames(this.tableName), this.pKNum);
+		newRelation.createOrderedIndex(0, OrderedIndex.ValueType.TEXT);
+		this.database.scan(row -> newRelation.insertNewTuple(row));
+		this.relation = newRelation;
+	}
+
+	@Override
+	public String getTableName() {
+		return this.tableName;
+	}
+
+	/**
+	 * Method to return the number of rows stored.
+	 *
+	 * @return rowCount
+	 */
+	public int size() {
+		return this.relation.getNumOfTuples();
+	}
+
+	@Override
+	public boolean insert(String [] row) throws SQLException {
+		//Check method requirement that the row has every column.
+		assert row != null && row.length == this.relation.getAttributeList().length;
+
+		//Primary key columns are not null, as in the database.
+		for (int kIdx = 0; kIdx < this.pKNum; kIdx++) {
+			if (row[kIdx] == null) return false;
+		}
+
+		//Write under the write lock, so both copies change together.
+		Relation tmpRelation = this.relation;
+		tmpRelation.lockWrites();
+		try {
+			if (tmpRelation.findTupleId(Arrays.copyOf(row, this.pKNum)) >= 0) return false;
+			if (!this.database.insert(row)) return false;
+			return tmpRelation.insertNewTuple(row.clone()) >= 0;
+
+		} finally {
+			tmpRelation.unlockWrites();
+		}
+	}
+
+	@Override
+	public String [] find(String [] pKVal) {
+		//Check method requirement that all key values are given.
+		assert pKVal != null && pKVal.length == this.pKNum;
+
+		String [] row = this.relation.findTuple(pKVal);
+		return (row == null) ? null : row.clone();
+	}
+
+	@Override
+	public List<String []> searchPrefix(String [] pKPrefixes) {
+		//Check method requirement that a prefix is given for each key column.
+		assert pKPrefixes != null && pKPrefixes.length == this.pKNum;
+
+		List<String []> rows = new ArrayList<>();
+
+		if (pKPrefixes[0].isEmpty()) {
+			//No range of the first key column, check every row.
+			for (String [] row : this.relation.getAllTuples()) {
+				if (TableStorage.matchesPrefixes(row, pKPrefixes)) rows.add(row.clone());
+			}
+
+		} else {
+			//The range includes its upper bound, which never has the prefix.
+			String prefix = pKPrefixes[0];
+			int [] tupleIds = this.relation.findTupleIdsInRange(0, prefix,
+					TableStorage.getPrefixUpperBound(prefix));
+			for (int tupleId : tupleIds) {
+				String [] row = this.relation.getOneTuple(tupleId);
+				if (row != null && TableStorage.matchesPrefixes(row, pKPrefixes)) rows.add(row.clone());
+			}
+		}
+
+		rows.sort(TableStorage.getPrimaryKeyOrder(this.pKNum));
+		return rows;
+	}
+
+	@Override
+	public boolean update(String [] pKVal, String [] newVal) throws SQLException {
+		//Check method requirements that the key and new values are given.
+		assert pKVal != null && pKVal.length == this.pKNum && newVal != null;
+
+		//The new values are the non-key columns, except for CREATOR,
+		//whose new values are the whole row, its new primary key.
+		String [] newRow;
+		if (this.tableName.equals(MainAppHelpers.TNAME_CRE)) {
+			newRow = newVal.clone();
+		} else {
+			newRow = Arrays.copyOf(pKVal, this.pKNum + newVal.length);
+			System.arraycopy(newVal, 0, newRow, this.pKNum, newVal.length);
+		}
+		for (int kIdx = 0; kIdx < this.pKNum; kIdx++) {
+			if (newRow[kIdx] == null) return false;
+		}
+
+		//Find and write under the write lock, so the row stays the same.
+		Relation tmpRelation = this.relation;
+		tmpRelation.lockWrites();
+		try {
+			int tupleId = tmpRelation.findTupleId(pKVal);
+			if (tupleId < 0 || !this.database.update(pKVal, newVal)) return false;
+			return tmpRelation.updateExistingTuple(newRow, tupleId);
+
+		} finally {
+			tmpRelation.unlockWrites();
+		}
+	}
+
+	@Override
+	public boolean delete(String [] pKVal) throws SQLException {
+		//Check method requirement that all key values are given.
+		assert pKVal != null && pKVal.length == this.pKNum;
+
+		Relation tmpRelation = this.relation;
+		tmpRelation.lockWrites();
+		try {
+			int tupleId = tmpRelation.findTupleId(pKVal);
+			if (tupleId < 0 || !this.database.delete(pKVal)) return false;
+			return tmpRelation.deleteExistingTuple(tupleId);
+
+		} finally {
+			tmpRelation.unlockWrites();
+		}
+	}
+
+	@Override
+	public int scan(Consumer<String []> rowHandler) {
+		//Check method requirement that the handler is not null.
+		assert rowHandler != null;
+
+		List<String []> allRows = this.relation.getAllTuples();
+		for (String [] row : allRows) {
+			rowHandler.accept(row.clone());
+		}
+		return allRows.size();
+	}
+}
@@ -0,0 +1,442 @@
+/**
+ * Parallel report executor for
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * The reports are independent read-only queries, so each one runs on its
+ * own reader connection borrowed from the ConnectionPool, on a fixed set
+ * of worker threads. Each report renders into its own text buffer; the
+ * buffers are printed in the original report order once every report is
+ * done, followed by the wall time of each report.
+ * A report still running after the timeout is cancelled (sqlite3_interrupt
+ * through Statement.cancel()) and printed as timed out.
+ * Report statements are prepared once per reader connection (through its
+ * StatementCache), and a report allowing it reuses its last rendered result
+ * for the same parameters until it expires or the writer is used.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReportEngine {
+
+	/*
+	 * The default time a single report may run before it is cancelled.
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+	/*
+	 * The pool the reader connections are borrowed from,
+	 * the workers running the reports, the watchdog cancelling
+	 * reports that run too long, and the timeout.
+	 */
+	private final ConnectionPool connPool;
+	private final ExecutorService workers;
+	private final ScheduledExecutorService watchdog;
+	private final long timeoutMillis;
+
+	/*
+	 * The last rendered result of each cacheable report, 
+	 * keyed by report name and parameter values.
+	 */
+	private final Map<String, CachedResult> resultCache = new ConcurrentHashMap<>();
+
+	/**
+	 * One report bound to its parameters: the name, the English description,
+	 * the SQL query code, the parameter values, and how long its result
+	 * may be reused.
+	 */
+	public static class Report {
+
+		private final String name;
+		private final String english;
+		private final String sQLCode;
+		private final String [] params;
+		private final long cacheMillis;
+
+		/**
+		 * Constructor of a report.
+		 *
+		 * @param name
+		 * 		The name of the report, unique per SQL query code.
+		 * @param english
+		 * 		The English description printed above the result.
+		 * @param sQLCode
+		 * 		The read-only SQL query code, one ? per parameter.
+		 * @param params
+		 * 		The parameter values, in order.
+		 * @param cacheMillis
+		 * 		How long the result may be reused for the same parameters;
+		 * 		0 to always run the query.
+		 *
+		 * @requires name, english, sQLCode, params != null
+		 * @requires cacheMillis >= 0
+		 */
+		public Report(String name, String english, String sQLCode, 
+				String [] params, long cacheMillis) {
+			//Check constructor requirements are met.
+			assert name != null && english != null && sQLCode != null 
+					&& params != null && cacheMillis >= 0;
+
+			this.name = name;
+			this.english = english;
+			this.sQLCode = sQLCode;
+			this.params = params.clone();
+			this.cacheMillis = cacheMillis;
+		}
+
+		/**
+		 * Method to return the name of the report.
+		 *
+		 * @return name
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Method to return the English description of the report.
+		 *
+		 * @return english
+		 */
+		public String getEnglish() {
+			return this.english;
+		}
+
+		/**
+		 * Method to return the SQL query code of the report.
+		 *
+		 * @return sQLCode
+		 */
+		public String getSQLCode() {
+			return this.sQLCode;
+		}
+
+		/**
+		 * Method to return the key of the report's cached result:
+		 * its name and parameter values.
+		 *
+		 * @return cacheKey
+		 */
+		private String getCacheKey() {
+			return this.name + "\0" + String.join("\0", this.params);
+		}
+	}
+
+	/**
+	 * A rendered report result kept for reuse, with the write epoch
+	 * of the pool and the time it was rendered at.
+	 */
+	private static class CachedResult {
+
+		private final String output;
+		private final int rowCount;
+		private final long writeEpoch;
+		private final long expiresNanos;
+
+		private CachedResult(String output, int rowCount, long writeEpoch, long expiresNanos) {
+			this.output = output;
+			this.rowCount = rowCount;
+			this.writeEpoch = writeEpoch;
+			this.expiresNanos = expiresNanos;
+		}
+	}
+
+	/**
+	 * The outcome of running one report: the rendered rows,
+	 * or the exception thrown, and the wall time.
+	 */
+	private static class ReportResult {
+
+		private String output = "";
+		private SQLException exception = null;
+		private boolean timedOut = false;
+		private boolean fromCache = false;
+		private int rowCount = 0;
+		private long wallNanos = 0;
+	}
+
+	/**
+	 * Constructor of a report engine.
+	 *
+	 * @param connPool
+	 * 		The connection pool to borrow reader connections from.
+	 * @param threadCount
+	 * 		The number of reports run at the same time;
+	 * 		at most the maximum number of readers of the pool is useful.
+	 * @param timeoutMillis
+	 * 		The time a single report may run before it is cancelled.
+	 *
+	 * @requires connPool != null
+	 * @requires threadCount > 0
+	 * @requires timeoutMillis > 0
+	 */
+	public ReportEngine(ConnectionPool connPool, int threadCount, long timeoutMillis) {
+		//Check constructor requirements are met.
+		assert connPool != null && threadCount > 0 && timeoutMillis > 0;
+
+		this.connPool = connPool;
+		this.timeoutMillis = timeoutMillis;
+
+		AtomicInteger threadNum = new AtomicInteger(1);
+		this.workers = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread workerThread = new Thread(runnable,
+					"ReportEngine-worker-" + String.valueOf(threadNum.getAndIncrement()));
+			workerThread.setDaemon(true);
+			return workerThread;
+		});
+		this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread watchdogThread = new Thread(runnable, "ReportEngine-watchdog");
+			watchdogThread.setDaemon(true);
+			return watchdogThread;
+		});
+	}
+
+	/**
+	 * Method (procedure, no return values) to run all given reports
+	 * concurrently, then print each one in the given order,
+	 * with its wall time, and the slowest report.
+	 *
+	 * @param reports
+	 * 		The reports to run and print.
+	 *
+	 * @requires reports != null
+	 */
+	public void runAndPrint(List<Report> reports) {
+		//Check method requirement that the report list is not null.
+		assert reports != null;
+
+		long startNanos = System.nanoTime();
+
+		//Submit every report, without waiting on any of them.
+		List<CompletableFuture<ReportResult>> futures = new ArrayList<>(reports.size());
+		for (Report report : reports) {
+			futures.add(CompletableFuture.supplyAsync(() -> runReport(report), this.workers));
+		}
+
+		//Print in the original order, waiting for each result as needed.
+		ReportResult [] results = new ReportResult [reports.size()];
+		for (int idx = 0; idx < reports.size(); idx++) {
+			results[idx] = futures.get(idx).join();
+			printReport(idx + 1, reports.get(idx), results[idx]);
+		}
+
+		printTimings(results, System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Method (procedure, no return values) to stop the worker
+	 * and watchdog threads. Reports still running are cancelled.
+	 */
+	public void close() {
+		this.workers.shutdownNow();
+		this.watchdog.shutdownNow();
+		this.resultCache.clear();
+	}
+
+	/**
+	 * Helper method to run one report on a borrowed reader connection,
+	 * rendering its rows into a text buffer. Runs on a worker thread,
+	 * so nothing is printed here.
+	 *
+	 * @param report
+	 * 		The report to run.
+	 * @return result
+	 * 		The rendered rows or the exception thrown, and the wall time.
+	 */
+	private ReportResult runReport(Report report) {
+		ReportResult result = new ReportResult();
+		long startNanos = System.nanoTime();
+
+		//Reuse the last result if nothing was written since, and it has not expired.
+		//The epoch is read before running, so a concurrent write is never hidden.
+		long writeEpoch = this.connPool.getWriteEpoch();
+		if (report.cacheMillis > 0) {
+			CachedResult cached = this.resultCache.get(report.getCacheKey());
+			if (cached != null && cached.writeEpoch == writeEpoch 
+					&& startNanos - cached.expiresNanos < 0) {
+				result.output = cached.output;
+				result.rowCount = cached.rowCount;
+				result.fromCache = true;
+				result.wallNanos = System.nanoTime() - startNanos;
+				return result;
+			}
+		}
+
+		try {
+			Connection conn = this.connPool.borrowReader();
+			try {
+				//Prepared once per reader connection, owned by its cache, not closed here.
+				PreparedStatement pStat = this.connPool.getStatementCache(conn)
+						.getStatement("REPORT", report.getName(), report.getSQLCode());
+				for (int pIdx = 0; pIdx < report.params.length; pIdx++) {
+					pStat.setString(pIdx + 1, report.params[pIdx]);
+				}
+
+				//Interrupt the query if it runs past the timeout. The watchdog
+				//cancels under the guard, and only while the query is not done,
+				//so once it is marked done no cancel is running or to come, and
+				//a late interrupt never hits the next query on the connection.
+				Object cancelGuard = new Object();
+				AtomicBoolean isDone = new AtomicBoolean(false);
+				AtomicBoolean hasFired = new AtomicBoolean(false);
+				ScheduledFuture<?> timer = this.watchdog.schedule(() -> {
+					synchronized (cancelGuard) {
+						if (isDone.get()) return;
+						hasFired.set(true);
+						try {
+							pStat.cancel();
+						} catch (SQLException sE) {
+							//Statement already done or closed, nothing to cancel.
+						}
+					}
+				}, this.timeoutMillis, TimeUnit.MILLISECONDS);
+
+				StringWriter textOut = new StringWriter();
+				BufferedResultSink sink = BufferedResultSink.create(BufferedResultSink.FORMAT_TEXT,
+						textOut, true, BufferedResultSink.FLUSH_AT_END);
+
+				try (ResultSet rSet = pStat.executeQuery()) {
+					result.rowCount = SQLHelpers.writeResultSet(rSet, sink, 1);
+				} catch (SQLException sE) {
+					result.timedOut = hasFired.get();
+					if (!result.timedOut) throw sE;
+				} finally {
+					synchronized (cancelGuard) {
+						isDone.set(true);
+					}
+					timer.cancel(false);
+				}
+
+				//A late cancel may also end the result early.
+				result.timedOut = result.timedOut || hasFired.get();
+
+				//An interrupted statement is left unusable, have the cache prepare it again.
+				if (hasFired.get()) {
+					try {
+						pStat.close();
+					} catch (SQLException sE) {
+						//Closed or not, it is prepared again on next use.
+					}
+				}
+				closeSink(sink);
+				result.output = textOut.toString();
+
+				if (report.cacheMillis > 0 && !result.timedOut) {
+					this.resultCache.put(report.getCacheKey(), new CachedResult(result.output, 
+							result.rowCount, writeEpoch, 
+							startNanos + TimeUnit.MILLISECONDS.toNanos(report.cacheMillis)));
+				}
+
+			} finally {
+				this.connPool.returnReader(conn);
+			}
+
+		} catch (SQLException sE) {
+			result.exception = sE;
+		}
+
+		result.wallNanos = System.nanoTime() - startNanos;
+		return result;
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to print one report:
+	 * its number, English description, and rendered rows.
+	 *
+	 * @param reportNum
+	 * 		The 1-based number of the report.
+	 * @param report
+	 * 		The report.
+	 * @param result
+	 * 		The outcome of running the report.
+	 */
+	private void printReport(int reportNum, Report report, ReportResult result) {
+		System.out.println();
+		System.out.println("---- Report " + String.valueOf(reportNum) + ". ----");
+		System.out.println(report.getEnglish());
+		System.out.println();
+
+		if (result.exception != null) {
+			SQLHelpers.printSQLExceptionData(result.exception, "executing SQL query for Report "
+					+ String.valueOf(reportNum) + ".");
+		} else {
+			System.out.print(result.output);
+			if (result.timedOut) {
+				System.out.println("Err: Report timed out after "
+						+ String.valueOf(this.timeoutMillis) + " ms, result is incomplete.");
+			}
+		}
+
+		System.out.println("---- End of Report " + String.valueOf(reportNum) + ". ----");
+		System.out.println();
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to print the wall time
+	 * of each report, the slowest report, and the total wall time.
+	 *
+	 * @param results
+	 * 		The outcomes of running the reports, in report order.
+	 * @param totalNanos
+	 * 		The wall time from submitting the first report to the last result.
+	 */
+	private void printTimings(ReportResult [] results, long totalNanos) {
+		int slowestIdx = 0;
+		long sumNanos = 0;
+
+		System.out.println("Report timings:");
+		for (int idx = 0; idx < results.length; idx++) {
+			String status = (results[idx].exception != null) ? "failed"
+					: (results[idx].timedOut ? "timed out"
+					: String.valueOf(results[idx].rowCount) + " row(s)"
+					+ (results[idx].fromCache ? ", cached" : ""));
+
+			System.out.println("...Report " + String.valueOf(idx + 1) + ": "
+					+ String.format("%.3f", results[idx].wallNanos / 1e6) + " ms, " + status + ".");
+
+			sumNanos += results[idx].wallNanos;
+			if (results[idx].wallNanos > results[slowestIdx].wallNanos) slowestIdx = idx;
+		}
+
+		if (results.length > 0) {
+			System.out.println("...Slowest: Report " + String.valueOf(slowestIdx + 1) + ".");
+		}
+		System.out.println("...Total: " + String.format("%.3f", totalNanos / 1e6)
+				+ " ms wall time, " + String.format("%.3f", sumNanos / 1e6) + " ms summed.");
+		System.out.println();
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to close a report's sink.
+	 * It only writes to memory, so closing cannot really fail.
+	 *
+	 * @param sink
+	 * 		The sink to close, may be null.
+	 */
+	private static void closeSink(ResultSink sink) {
+		try {
+			if (sink != null) sink.close();
+		} catch (IOException iOE) {
+			//Writing to a StringWriter does not throw.
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * Registry of the named, parameterized "Useful Reports" of
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * Report definitions (English description, SQL with ? parameters,
+ * optional summary table SQL, default parameters and result cache time)
+ * are loaded from a properties resource, reports.properties by default,
+ * instead of being hard-coded with their literals. Builds that do not copy
+ * the resource next to the classes (plain javac) read it from the source
+ * folder, src/reports.properties, instead. Since parameter values
+ * are bound rather than pasted into the SQL, each report has one SQL text,
+ * prepared once per reader connection by the ReportEngine.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class ReportRegistry {
+
+	/*
+	 * The default resource the report definitions are loaded from.
+	 */
+	public static final String DEFAULT_RESOURCE = "/reports.properties";
+
+	/*
+	 * The source folder a resource is read from when it is not
+	 * on the class path, relative to the working directory.
+	 */
+	private static final String SOURCE_DIR = "src";
+
+	/*
+	 * The report definitions, by name, in the order they are printed.
+	 */
+	private final Map<String, Definition> definitions = new LinkedHashMap<>();
+
+	/**
+	 * One report definition, as loaded from the resource.
+	 */
+	private static class Definition {
+
+		private String english;
+		private String sQLCode;
+		private String summarySQLCode;
+		private String [] defaultParams;
+		private long cacheMillis;
+	}
+
+	/**
+	 * Private constructor, use load() to create a registry.
+	 */
+	private ReportRegistry() {
+	}
+
+	/**
+	 * Method to load the report definitions from a properties resource,
+	 * on the class path or else in the source folder.
+	 * Handle and print if the resource is missing or invalid.
+	 *
+	 * @param resourceName
+	 * 		The name of the resource, e.g. DEFAULT_RESOURCE.
+	 * @return registry
+	 * 		The loaded registry, or null if the resource cannot be loaded.
+	 *
+	 * @requires resourceName != null
+	 */
+	public static ReportRegistry load(String resourceName) {
+		//Check method requirement that the resource name is not null.
+		assert resourceName != null;
+
+		Properties props = new Properties();
+		Path sourcePath = Paths.get(SOURCE_DIR, resourceName.replaceFirst("^/", ""));
+		try (InputStream in = openResource(resourceName, sourcePath)) {
+			if (in == null) {
+				System.out.println("Err: Report definitions not found: " + resourceName
+						+ " on the class path, nor " + sourcePath.toAbsolutePath() + ".");
+				return null;
+			}
+			props.load(in);
+
+		} catch (IOException iOE) {
+			System.out.println("Err: Exception thrown when loading report definitions: "
+					+ resourceName + ".");
+			System.out.println(iOE.getMessage());
+			return null;
+		}
+
+		ReportRegistry registry = new ReportRegistry();
+		for (String name : splitList(props.getProperty("reports", ""))) {
+
+			Definition def = new Definition();
+			def.english = props.getProperty(name + ".english");
+			def.sQLCode = props.getProperty(name + ".sql");
+			def.summarySQLCode = props.getProperty(name + ".summarySql");
+			def.defaultParams = splitList(props.getProperty(name + ".params", ""));
+
+			if (def.english == null || def.sQLCode == null) {
+				System.out.println("Err: Report " + name + " needs both english and sql.");
+				return null;
+			}
+
+			try {
+				def.cacheMillis = Long.parseLong(props.getProperty(name + ".cacheMillis", "0").trim());
+			} catch (NumberFormatException nFE) {
+				System.out.println("Err: Invalid cacheMillis for report " + name + ".");
+				return null;
+			}
+
+			registry.definitions.put(name, def);
+		}
+		return registry;
+	}
+
+	/**
+	 * Method to return the names of all reports, in the order they are printed.
+	 *
+	 * @return reportNames
+	 */
+	public List<String> getReportNames() {
+		return new ArrayList<>(this.definitions.keySet());
+	}
+
+	/**
+	 * Method to return the default parameter values of a report.
+	 *
+	 * @param name
+	 * 		The name of the report.
+	 * @return defaultParams
+	 * 		The default values, in order; or null if no report has that name.
+	 */
+	public String [] getDefaultParams(String name) {
+		Definition def = this.definitions.get(name);
+		return (def == null) ? null : def.defaultParams.clone();
+	}
+
+	/**
+	 * Method to return a report bound to given parameter values.
+	 * Uses the summary table SQL when those tables are kept up to date.
+	 *
+	 * @param name
+	 * 		The name of the report.
+	 * @param params
+	 * 		The parameter values, in order; none for the defaults.
+	 * @return report
+	 * 		The bound report, or null if no report has that name,
+	 * 		or the number of parameters does not match.
+	 *
+	 * @requires name != null
+	 */
+	public ReportEngine.Report bind(String name, String... params) {
+		//Check method requirement that the name is not null.
+		assert name != null;
+
+		Definition def = this.definitions.get(name);
+		if (def == null) {
+			System.out.println("Err: Invalid report name: " + name + ".");
+			return null;
+		}
+
+		String [] boundParams = (params.length == 0) ? def.defaultParams : params;
+		if (boundParams.length != def.defaultParams.length) {
+			System.out.println("Err: Report " + name + " takes "
+					+ String.valueOf(def.defaultParams.length) + " parameter(s).");
+			return null;
+		}
+
+		//Fill the {0}, {1}, ... placeholders of the English description.
+		String english = def.english;
+		for (int pIdx = 0; pIdx < boundParams.length; pIdx++) {
+			english = english.replace("{" + String.valueOf(pIdx) + "}", boundParams[pIdx]);
+		}
+
+		boolean useSummary = def.summarySQLCode != null && ReportSummaries.isReady();
+		String sQLCode = useSummary ? def.summarySQLCode : def.sQLCode;
+		String reportName = useSummary ? name + "#summary" : name;
+
+		return new ReportEngine.Report(reportName, english, sQLCode,
+				boundParams, def.cacheMillis);
+	}
+
+	/**
+	 * Method to return all reports bound to their default parameters,
+	 * in the order they are printed.
+	 *
+	 * @return reports
+	 */
+	public List<ReportEngine.Report> bindAll() {
+		List<ReportEngine.Report> reports = new ArrayList<>(this.definitions.size());
+		for (String name : this.definitions.keySet()) {
+			reports.add(bind(name));
+		}
+		return reports;
+	}
+
+	/**
+	 * Helper method to open a resource from the class path,
+	 * or else from a file.
+	 *
+	 * @param resourceName
+	 * 		The name of the resource on the class path.
+	 * @param sourcePath
+	 * 		The file to read if it is not on the class path.
+	 * @return in
+	 * 		The open stream, or null if neither exists.
+	 * @throws IOException
+	 * 		If opening the file fails.
+	 */
+	private static InputStream openResource(String resourceName, Path sourcePath) throws IOException {
+		InputStream in = ReportRegistry.class.getResourceAsStream(resourceName);
+		if (in == null && Files.isRegularFile(sourcePath)) {
+			in = Files.newInputStream(sourcePath);
+		}
+		return in;
+	}
+
+	/**
+	 * Helper method to split a comma separated list, trimming each value.
+	 *
+	 * @param listStr
+	 * 		The comma separated list; may be empty.
+	 * @return values
+	 */
+	private static String [] splitList(String listStr) {
+		if (listStr.trim().isEmpty()) return new String [0];
+
+		String [] values = listStr.split(",");
+		for (int idx = 0; idx < values.length; idx++) {
+			values[idx] = values[idx].trim();
+		}
+		return values;
+	}
+}
@@ -0,0 +1,317 @@
+/**
+ * Materialized summary tables behind the "Useful Reports" of
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * Four summary tables hold the aggregates the reports used to recompute
+ * from scratch on every call:
+ * REPORT_ANIME_PURCHASES	(purchases per anime title),
+ * REPORT_STUDIO_PURCHASES	(purchases per studio, through CREATOR),
+ * REPORT_ANIME_WATCHES		(watched episodes per anime),
+ * REPORT_CUSTOMER_PURCHASES	(purchases per customer).
+ * They are filled once from the base tables, then kept up to date by
+ * triggers on PURCHASES, CUSTOMER_WATCHES, CREATOR and ANIME, adding or
+ * subtracting one row's contribution at a time. Each report then reads
+ * one key, or the top of a count index, instead of a group-by over
+ * the whole base table; the report queries reading these tables are the
+ * summarySql entries of reports.properties.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class ReportSummaries {
+
+	/*
+	 * Below are constants for the names of the summary tables.
+	 */
+	public static final String TNAME_ANI_PUR = "REPORT_ANIME_PURCHASES";
+	public static final String TNAME_STU_PUR = "REPORT_STUDIO_PURCHASES";
+	public static final String TNAME_ANI_WAT = "REPORT_ANIME_WATCHES";
+	public static final String TNAME_CUS_PUR = "REPORT_CUSTOMER_PURCHASES";
+
+	/*
+	 * The summary table definitions, each with a count index
+	 * so the top row is read without sorting.
+	 */
+	private static final String [] CREATE_SQL = {
+			"CREATE TABLE " + TNAME_ANI_PUR + " (Anime_title text not null, "
+					+ "Purchase_count integer not null, primary key (Anime_title));",
+			"CREATE INDEX " + TNAME_ANI_PUR + "_COUNT ON " + TNAME_ANI_PUR
+					+ " (Purchase_count DESC, Anime_title);",
+			"CREATE TABLE " + TNAME_STU_PUR + " (Studio_name text not null, "
+					+ "Purchase_count integer not null, primary key (Studio_name));",
+			"CREATE INDEX " + TNAME_STU_PUR + "_COUNT ON " + TNAME_STU_PUR
+					+ " (Purchase_count DESC, Studio_name);",
+			"CREATE TABLE " + TNAME_ANI_WAT + " (Anime text not null, "
+					+ "Watch_count integer not null, primary key (Anime));",
+			"CREATE INDEX " + TNAME_ANI_WAT + "_COUNT ON " + TNAME_ANI_WAT
+					+ " (Watch_count DESC, Anime);",
+			"CREATE TABLE " + TNAME_CUS_PUR + " (Customer text not null, "
+					+ "Purchase_count integer not null, primary key (Customer));",
+			"CREATE INDEX " + TNAME_CUS_PUR + "_COUNT ON " + TNAME_CUS_PUR
+					+ " (Purchase_count DESC, Customer);"
+	};
+
+	/*
+	 * The statements filling the summary tables from the base tables.
+	 * Every anime (and every studio of CREATOR) gets a row, even with
+	 * no purchases, as the original most-purchased anime query did.
+	 */
+	private static final String [] FILL_SQL = {
+			"INSERT INTO " + TNAME_ANI_PUR + " (Anime_title, Purchase_count) "
+					+ "SELECT Anime_title, COUNT(*) FROM PURCHASES GROUP BY Anime_title;",
+			"INSERT INTO " + TNAME_ANI_PUR + " (Anime_title, Purchase_count) "
+					+ "SELECT Title, 0 FROM ANIME WHERE Title NOT IN "
+					+ "(SELECT Anime_title FROM " + TNAME_ANI_PUR + ");",
+			"INSERT INTO " + TNAME_STU_PUR + " (Studio_name, Purchase_count) "
+					+ "SELECT c.Studio_name, COUNT(*) FROM PURCHASES p "
+					+ "JOIN CREATOR c ON p.Anime_title = c.Anime_title "
+					+ "GROUP BY c.Studio_name;",
+			"INSERT INTO " + TNAME_STU_PUR + " (Studio_name, Purchase_count) "
+					+ "SELECT DISTINCT Studio_name, 0 FROM CREATOR WHERE Studio_name NOT IN "
+					+ "(SELECT Studio_name FROM " + TNAME_STU_PUR + ");",
+			"INSERT INTO " + TNAME_ANI_WAT + " (Anime, Watch_count) "
+					+ "SELECT Anime, COUNT(*) FROM CUSTOMER_WATCHES GROUP BY Anime;",
+			"INSERT INTO " + TNAME_CUS_PUR + " (Customer, Purchase_count) "
+					+ "SELECT Customer, COUNT(*) FROM PURCHASES GROUP BY Customer;"
+	};
+
+	/*
+	 * Whether the summary tables exist and their triggers are in place;
+	 * until then the reports are computed from the base tables.
+	 */
+	private static volatile boolean isReady = false;
+
+	/**
+	 * Private constructor, all methods are static.
+	 */
+	private ReportSummaries() {
+	}
+
+	/**
+	 * Method to return whether the reports can read the summary tables.
+	 *
+	 * @return isReady
+	 */
+	public static boolean isReady() {
+		return isReady;
+	}
+
+	/**
+	 * Method to create and fill the summary tables and their triggers
+	 * if they do not exist. Handle and print if an exception is thrown.
+	 *
+	 * @param connPool
+	 * 		The connection pool to borrow the writer connection from.
+	 * @return isReady
+	 * 		True if the summary tables exist and are kept up to date;
+	 * 		false if the reports have to be computed from the base tables.
+	 *
+	 * @requires connPool != null
+	 */
+	public static boolean ensureSummaries(ConnectionPool connPool) {
+		//Check method requirement that the pool is not null.
+		assert connPool != null;
+
+		try {
+			Connection conn = connPool.borrowWriter();
+			try {
+				ensureSummaries(conn);
+			} finally {
+				connPool.returnWriter(conn);
+			}
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "creating the report summary tables.");
+		}
+		return isReady;
+	}
+
+	/**
+	 * Method (procedure, no return values) to create and fill the summary
+	 * tables if they do not exist, and create any missing trigger,
+	 * in one transaction.
+	 *
+	 * @param conn
+	 * 		The (writer) connection object to the SQLite database.
+	 * @throws SQLException
+	 * 		If creating or filling the summaries fails; nothing is kept.
+	 *
+	 * @requires conn != null
+	 */
+	public static void ensureSummaries(Connection conn) throws SQLException {
+		//Check method requirement that the connection is not null.
+		assert conn != null;
+
+		boolean prevAutoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+
+		try (Statement stat = conn.createStatement()) {
+
+			boolean isNew = true;
+			try (ResultSet rSet = stat.executeQuery("SELECT 1 FROM sqlite_master "
+					+ "WHERE type = 'table' AND name = '" + TNAME_ANI_PUR + "';")) {
+				isNew = !rSet.next();
+			}
+
+			if (isNew) {
+				long startNanos = System.nanoTime();
+
+				for (String createSQL : CREATE_SQL) stat.executeUpdate(createSQL);
+				for (String fillSQL : FILL_SQL) stat.executeUpdate(fillSQL);
+
+				System.out.println();
+				System.out.println("Report summary tables built in "
+						+ String.format("%.3f", (System.nanoTime() - startNanos) / 1e9)
+						+ " s.");
+			}
+
+			createTriggers(stat);
+
+			conn.commit();
+			isReady = true;
+
+		} catch (SQLException sE) {
+			conn.rollback();
+			throw sE;
+
+		} finally {
+			conn.setAutoCommit(prevAutoCommit);
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to create the triggers
+	 * keeping the summary tables up to date, if they do not exist.
+	 *
+	 * @param stat
+	 * 		A statement on the (writer) connection.
+	 * @throws SQLException
+	 * 		If creating a trigger fails.
+	 */
+	private static void createTriggers(Statement stat) throws SQLException {
+
+		//A purchase counts for its anime, its customer,
+		//and every studio that created the anime.
+		String addPurchase = addCount(TNAME_ANI_PUR, "Anime_title", "Purchase_count",
+						"NEW.Anime_title", "1")
+				+ addCount(TNAME_CUS_PUR, "Customer", "Purchase_count",
+						"NEW.Customer", "1")
+				+ addStudioCount("(SELECT Studio_name FROM CREATOR "
+						+ "WHERE Anime_title = NEW.Anime_title)", "1");
+		String removePurchase = addCount(TNAME_ANI_PUR, "Anime_title", "Purchase_count",
+						"OLD.Anime_title", "-1")
+				+ addCount(TNAME_CUS_PUR, "Customer", "Purchase_count",
+						"OLD.Customer", "-1")
+				+ addStudioCount("(SELECT Studio_name FROM CREATOR "
+						+ "WHERE Anime_title = OLD.Anime_title)", "-1");
+
+		createTrigger(stat, "PURCHASES", "INSERT", addPurchase);
+		createTrigger(stat, "PURCHASES", "DELETE", removePurchase);
+		createTrigger(stat, "PURCHASES", "UPDATE OF Customer, Anime_title",
+				removePurchase + addPurchase);
+
+		//A watched episode counts for its anime.
+		String addWatch = addCount(TNAME_ANI_WAT, "Anime", "Watch_count", "NEW.Anime", "1");
+		String removeWatch = addCount(TNAME_ANI_WAT, "Anime", "Watch_count", "OLD.Anime", "-1");
+
+		createTrigger(stat, "CUSTOMER_WATCHES", "INSERT", addWatch);
+		createTrigger(stat, "CUSTOMER_WATCHES", "DELETE", removeWatch);
+		createTrigger(stat, "CUSTOMER_WATCHES", "UPDATE OF Anime", removeWatch + addWatch);
+
+		//A studio gains (or loses) all purchases of an anime it creates.
+		String animePurchases = "COALESCE((SELECT Purchase_count FROM " + TNAME_ANI_PUR
+				+ " WHERE Anime_title = %s.Anime_title), 0)";
+		String addCreator = addCount(TNAME_STU_PUR, "Studio_name", "Purchase_count",
+				"NEW.Studio_name", String.format(animePurchases, "NEW"));
+		String removeCreator = addCount(TNAME_STU_PUR, "Studio_name", "Purchase_count",
+				"OLD.Studio_name", "-" + String.format(animePurchases, "OLD"));
+
+		createTrigger(stat, "CREATOR", "INSERT", addCreator);
+		createTrigger(stat, "CREATOR", "DELETE", removeCreator);
+		createTrigger(stat, "CREATOR", "UPDATE OF Anime_title, Studio_name",
+				removeCreator + addCreator);
+
+		//Every anime is listed, even before its first purchase.
+		String addAnime = addCount(TNAME_ANI_PUR, "Anime_title", "Purchase_count",
+				"NEW.Title", "0");
+
+		createTrigger(stat, "ANIME", "INSERT", addAnime);
+		createTrigger(stat, "ANIME", "UPDATE OF Title", addAnime);
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to create one trigger,
+	 * named after its table and event, if it does not exist.
+	 *
+	 * @param stat
+	 * 		A statement on the (writer) connection.
+	 * @param tableName
+	 * 		The name of the base table.
+	 * @param event
+	 * 		The trigger event, e.g. INSERT or UPDATE OF col.
+	 * @param body
+	 * 		The statements run for each changed row.
+	 * @throws SQLException
+	 * 		If creating the trigger fails.
+	 */
+	private static void createTrigger(Statement stat, String tableName,
+			String event, String body) throws SQLException {
+
+		String trgName = "TRG_REPORT_" + tableName + "_" + event.split(" ")[0];
+		stat.executeUpdate("CREATE TRIGGER IF NOT EXISTS " + trgName
+				+ " AFTER " + event + " ON " + tableName
+				+ " BEGIN " + body + "END;");
+	}
+
+	/**
+	 * Helper method to build the trigger statements adding a delta
+	 * to the count of one key, creating the row (at 0) if missing.
+	 * Uses NOT EXISTS instead of INSERT OR IGNORE: inside a trigger fired
+	 * by a foreign key cascade, SQLite aborts on conflicts regardless.
+	 *
+	 * @param summaryName
+	 * 		The name of the summary table.
+	 * @param keyCol
+	 * 		The key column of the summary table.
+	 * @param countCol
+	 * 		The count column of the summary table.
+	 * @param keyExpr
+	 * 		The SQL expression of the key, e.g. NEW.Anime_title.
+	 * @param deltaExpr
+	 * 		The SQL expression of the delta, e.g. 1 or -1.
+	 * @return bodySQL
+	 */
+	private static String addCount(String summaryName, String keyCol,
+			String countCol, String keyExpr, String deltaExpr) {
+
+		return "INSERT INTO " + summaryName + " (" + keyCol + ", " + countCol + ") "
+				+ "SELECT " + keyExpr + ", 0 WHERE NOT EXISTS (SELECT 1 FROM " + summaryName
+				+ " WHERE " + keyCol + " = " + keyExpr + "); "
+				+ "UPDATE " + summaryName + " SET " + countCol + " = " + countCol
+				+ " + (" + deltaExpr + ") WHERE " + keyCol + " = " + keyExpr + "; ";
+	}
+
+	/**
+	 * Helper method to build the trigger statements adding a delta to the
+	 * purchase count of every studio returned by a subquery.
+	 *
+	 * @param studiosSQL
+	 * 		A parenthesized subquery returning studio names.
+	 * @param deltaExpr
+	 * 		The SQL expression of the delta, e.g. 1 or -1.
+	 * @return bodySQL
+	 */
+	private static String addStudioCount(String studiosSQL, String deltaExpr) {
+
+		return "INSERT INTO " + TNAME_STU_PUR + " (Studio_name, Purchase_count) "
+				+ "SELECT s.Studio_name, 0 FROM " + studiosSQL + " s WHERE NOT EXISTS "
+				+ "(SELECT 1 FROM " + TNAME_STU_PUR + " r WHERE r.Studio_name = s.Studio_name); "
+				+ "UPDATE " + TNAME_STU_PUR + " SET Purchase_count = Purchase_count + ("
+				+ deltaExpr + ") WHERE Studio_name IN " + studiosSQL + "; ";
+	}
+}
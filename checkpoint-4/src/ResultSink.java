@@ -0,0 +1,71 @@
+/**
+ * Destination for rendering query results of
+ * SU23 CSE3241 Team SHRX's database main program,
+ * such as the console, a CSV file, or a JSON-lines file.
+ * 
+ * A sink receives one result at a time: beginResult() once,
+ * writeRow() for each row (cursor already on the row), then endResult().
+ * 
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+public interface ResultSink {
+
+	/**
+	 * Method (procedure, no return values) to start a new result,
+	 * e.g. by writing the column names.
+	 * 
+	 * @param rSMeta
+	 * 		The meta data of the result to be written.
+	 * @throws SQLException
+	 * 		If reading the meta data fails.
+	 * @throws IOException
+	 * 		If writing to the sink fails.
+	 * 
+	 * @requires rSMeta != null
+	 */
+	void beginResult(ResultSetMetaData rSMeta) throws SQLException, IOException;
+	
+	/**
+	 * Method (procedure, no return values) to write the row
+	 * the ResultSet cursor is currently on.
+	 * 
+	 * @param rSet
+	 * 		The ResultSet, positioned on a row.
+	 * @param rowNum
+	 * 		The 1-based number of the row within the result.
+	 * @throws SQLException
+	 * 		If reading the row fails.
+	 * @throws IOException
+	 * 		If writing to the sink fails.
+	 * 
+	 * @requires beginResult() has been called for this result.
+	 */
+	void writeRow(ResultSet rSet, int rowNum) throws SQLException, IOException;
+	
+	/**
+	 * Method (procedure, no return values) to finish the current result
+	 * and flush everything written so far.
+	 * 
+	 * @param rowCount
+	 * 		The number of rows written for the result.
+	 * @throws IOException
+	 * 		If writing to the sink fails.
+	 */
+	void endResult(int rowCount) throws IOException;
+	
+	/**
+	 * Method (procedure, no return values) to flush and release the sink.
+	 * Sinks writing to the console flush but stay open.
+	 * 
+	 * @throws IOException
+	 * 		If flushing or closing fails.
+	 */
+	void close() throws IOException;
+}
@@ -7,14 +7,21 @@
  * @version 20230719
  */
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 
 public class SQLHelpers {
 
+	/*
+	 * The plain text sink all console results are rendered through,
+	 * so its output buffer and row buffer are allocated once.
+	 */
+	private static final BufferedResultSink CONSOLE_SINK = 
+			BufferedResultSink.toConsole(BufferedResultSink.FORMAT_TEXT);
+
 	/**
 	 * Method (procedure, no return values) to print 
 	 * where the SQLException happened,
@@ -95,35 +102,8 @@ public class SQLHelpers {
 					hasResults = true;
 					
 					if (printResult) {
-						//Obtain column names from ResultSet's meta data.
-						ResultSetMetaData rSMeta = rSet.getMetaData();
-						
-						//Print the column names of the query result.
-						System.out.print("Columns: ");
-						int cCount = rSMeta.getColumnCount();
-						for (int cIdx = 1; cIdx <= cCount; cIdx++) {
-							System.out.print(rSMeta.getColumnName(cIdx));
-							if (cIdx < cCount) System.out.print(", ");
-						}
-						
-						System.out.println();
-						System.out.println();
-						
-						//Print each row of the query result.
-						int tmpRowNum = 1;
-						while (rSet.next()) {	
-							
-							System.out.print("Row " + String.valueOf(tmpRowNum) + ": ");
-							
-							for (int rIdx = 1; rIdx <= cCount; rIdx++) {
-								System.out.print(rSet.getString(rIdx));
-								if (rIdx < cCount) System.out.print(", ");
-							}
-							System.out.println();
-							System.out.println();
-							
-							tmpRowNum++;
-						}
+						//Print the column names and each row of the query result.
+						writeResultSet(rSet, CONSOLE_SINK, 1);
 						
 					} //Else don't print result.
 					
@@ -175,41 +155,78 @@ public class SQLHelpers {
 		//and query code and exception label is valid.
 		assert conn != null && sQLCode != null && sELabel != null;
 		
+		simpleQueryToSink(conn, sQLCode, CONSOLE_SINK, sELabel);
+	}
+	
+	/**
+	 * Method (procedure, no return values) to write the result of
+	 * an SQL query with no parameters to a file, in a given format.
+	 * 
+	 * @param conn
+	 * 		The Connection object to the SQLite database.
+	 * @param sQLCode
+	 * 		The SQL query code to be run on the database, no parameters.
+	 * @param format
+	 * 		One of the BufferedResultSink.FORMAT_* constants.
+	 * @param filePath
+	 * 		The path of the file to write, replacing any existing content.
+	 * @param sELabel
+	 * 		The description for if running query code throws an exception.
+	 * 
+	 * @requires conn != null
+	 * @requires sQLCode is valid.
+	 * @requires sELabel is valid and descriptive.
+	 */
+	public static void simpleQueryToFile(Connection conn, String sQLCode, 
+			String format, String filePath, String sELabel) {
+		//Check method requirements are met.
+		assert conn != null && sQLCode != null && format != null 
+				&& filePath != null && sELabel != null;
+		
+		BufferedResultSink fileSink = null;
 		try {
-			//Obtain ResultSet and meta data using PreparedStatement
-			//for better security.
-			PreparedStatement pStat = conn.prepareStatement(sQLCode);
-			ResultSet rSet = pStat.executeQuery();
-			ResultSetMetaData rSMeta = rSet.getMetaData();
-			
-			//Print the column names of the query result.
-			System.out.print("Columns: ");
-			
-			int cCount = rSMeta.getColumnCount();
-			for (int cIdx = 1; cIdx <= cCount; cIdx++) {
-				System.out.print(rSMeta.getColumnName(cIdx));
-				if (cIdx < cCount) System.out.print(", ");
-			}
+			fileSink = BufferedResultSink.toFile(format, filePath);
+			if (fileSink != null) simpleQueryToSink(conn, sQLCode, fileSink, sELabel);
 			
-			System.out.println();
-			System.out.println();
+		} catch (IOException iOE) {
+			System.out.println("Err: Exception thrown when opening file: " 
+					+ filePath + ".");
+			System.out.println(iOE.getMessage());
 			
-			//Print each row of the query result.
-			int tmpRowNum = 1;
-			while (rSet.next()) {	
-				
-				System.out.print("Row " + String.valueOf(tmpRowNum) + ": ");
-				
-				for (int rIdx = 1; rIdx <= cCount; rIdx++) {
-					System.out.print(rSet.getString(rIdx));
-					if (rIdx < cCount) System.out.print(", ");
-				}
-				System.out.println();
-				System.out.println();
-				
-				tmpRowNum++;
-			}
+		} finally {
+			closeSink(fileSink);
+		}
+	}
+	
+	/**
+	 * Helper method (procedure, no return values) to render the result of
+	 * an SQL query with no parameters through a given sink.
+	 * 
+	 * @param conn
+	 * 		The Connection object to the SQLite database.
+	 * @param sQLCode
+	 * 		The SQL query code to be run on the database, no parameters.
+	 * @param sink
+	 * 		The sink the result is rendered through.
+	 * @param sELabel
+	 * 		The description for if running query code throws an exception.
+	 * 
+	 * @requires conn != null
+	 * @requires sQLCode is valid.
+	 * @requires sink != null
+	 */
+	public static void simpleQueryToSink(Connection conn, String sQLCode, 
+			ResultSink sink, String sELabel) {
+		//Check method requirements are met.
+		assert conn != null && sQLCode != null && sink != null && sELabel != null;
+		
+		try {
+			//Obtain ResultSet using PreparedStatement for better security.
+			PreparedStatement pStat = conn.prepareStatement(sQLCode);
+			ResultSet rSet = pStat.executeQuery();
 			
+			//Write the column names and each row of the query result.
+			writeResultSet(rSet, sink, 1);
 			
 			//Close ResultSet and PreparedStatement when done.
 			try {
@@ -231,6 +248,158 @@ public class SQLHelpers {
 		}
 	}
 	
+	/**
+	 * Method to write the column names and all remaining rows of
+	 * a ResultSet through a given sink, numbering rows from firstRowNum.
+	 * Handle and print if writing to the sink fails.
+	 * 
+	 * @param rSet
+	 * 		The ResultSet, cursor before the first row to write.
+	 * @param sink
+	 * 		The sink the result is rendered through.
+	 * @param firstRowNum
+	 * 		The number given to the first row written.
+	 * @return rowCount
+	 * 		The number of rows written.
+	 * @throws SQLException
+	 * 		If reading the ResultSet fails.
+	 * 
+	 * @requires rSet != null
+	 * @requires sink != null
+	 */
+	public static int writeResultSet(ResultSet rSet, ResultSink sink, int firstRowNum) 
+			throws SQLException {
+		//Check method requirements are met.
+		assert rSet != null && sink != null;
+		
+		int rowCount = 0;
+		
+		//The console sink is shared, keep results from interleaving.
+		synchronized (sink) {
+			try {
+				sink.beginResult(rSet.getMetaData());
+				while (rSet.next()) {
+					sink.writeRow(rSet, firstRowNum + rowCount);
+					rowCount++;
+				}
+				sink.endResult(rowCount);
+				
+			} catch (IOException iOE) {
+				System.out.println("Err: Exception thrown when writing query result.");
+				System.out.println(iOE.getMessage());
+			}
+		}
+		return rowCount;
+	}
+	
+	/**
+	 * Helper method (procedure, no return values) to close a sink,
+	 * printing (not throwing) any exception.
+	 * 
+	 * @param sink
+	 * 		The sink to close, may be null.
+	 */
+	private static void closeSink(ResultSink sink) {
+		try {
+			if (sink != null) sink.close();
+		} catch (IOException iOE) {
+			System.out.println("Err: Exception thrown when closing result sink.");
+			System.out.println(iOE.getMessage());
+		}
+	}
+	
+	/**
+	 * Method (procedure, no return value) to print the one row
+	 * of a given table that has the given primary key values,
+	 * using the cached specific search statement.
+	 * 
+	 * @param stmtCache
+	 * 		The PreparedStatement cache of the connection to read from.
+	 * @param tableName
+	 * 		The name of the table to read from.
+	 * @param pKVal
+	 * 		The primary key values of the row.
+	 * 
+	 * @requires stmtCache != null
+	 * @requires tableName is one of the four valid tables.
+	 * @requires pKVal contains primary key values of the table.
+	 */
+	public static void printRowByKey(StatementCache stmtCache, 
+			String tableName, String [] pKVal) {
+		//Check method requirements are met.
+		assert stmtCache != null && tableName != null && pKVal != null;
+		
+		try {
+			PreparedStatement pStat = stmtCache.getStatement(tableName, 
+					StatementCache.OP_SEARCH_SPECIFIC);
+			
+			if (pStat != null) {
+				MainAppHelpers.setParamSearchSpecific(pStat, tableName, pKVal);
+				checkAndPrintResultSet(pStat, true);
+			}
+		} catch (SQLException sE) {
+			printSQLExceptionData(sE, "printing row by primary key.");
+		}
+	}
+	
+	/**
+	 * Method to print one page of rows from executing the given
+	 * query type PreparedStatement, numbering rows from firstRowNum,
+	 * and to report the key values of the last printed row.
+	 * 
+	 * @param pStat
+	 * 		A valid query type PreparedStatement with all parameters set.
+	 * @param keyColumns
+	 * 		The names of the key columns to report for the last row.
+	 * @param firstRowNum
+	 * 		The number printed for the first row of the page.
+	 * @param lastKeyOut
+	 * 		An array of keyColumns.length, filled with the key values
+	 * 		of the last printed row.
+	 * @return rowCount
+	 * 		The number of rows printed; 0 if the query returned no rows.
+	 * 
+	 * @requires pStat != null
+	 * @requires keyColumns are columns of the query result.
+	 * @requires lastKeyOut.length == keyColumns.length
+	 */
+	public static int printResultPage(PreparedStatement pStat, 
+			String [] keyColumns, int firstRowNum, String [] lastKeyOut) {
+		//Check method requirements are met.
+		assert pStat != null && keyColumns != null 
+				&& lastKeyOut != null && lastKeyOut.length == keyColumns.length;
+		
+		int rowCount = 0;
+		
+		try (ResultSet rSet = pStat.executeQuery()) {
+			synchronized (CONSOLE_SINK) {
+				while (rSet.next()) {
+					
+					//Print the column names once, above the first row.
+					if (rowCount == 0) CONSOLE_SINK.beginResult(rSet.getMetaData());
+					
+					CONSOLE_SINK.writeRow(rSet, firstRowNum + rowCount);
+					
+					//Remember the key of the row, to continue after it.
+					for (int kIdx = 0; kIdx < keyColumns.length; kIdx++) {
+						lastKeyOut[kIdx] = rSet.getString(keyColumns[kIdx]);
+					}
+					rowCount++;
+				}
+				if (rowCount > 0) CONSOLE_SINK.endResult(rowCount);
+			}
+			
+		} catch (SQLException sE) {
+			printSQLExceptionData(sE, "printing a page of the query result.");
+			
+		} catch (IOException iOE) {
+			System.out.println("Err: Exception thrown when writing query result.");
+			System.out.println(iOE.getMessage());
+		}
+		
+		return rowCount;
+	}
+	
 	/**
 	 * Method (procedure, no return value) to print a given, existing, full
 	 * table from the connected SQLite database.
@@ -0,0 +1,284 @@
+/**
+ * Table storage in the SQLite database of
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * Writes run on the writer connection of the connection pool, reads on
+ * reader connections, all through their cached PreparedStatements
+ * (see StatementCache), so they are the same statements the main menu
+ * options run. Inserts, updates and deletes run without a check query
+ * first: a taken primary key fails the statement with a primary key
+ * (or unique) constraint error, and a missing row updates or deletes
+ * no rows. Other constraint errors, e.g. a CHECK, are thrown. Lookups, updates
+ * and deletes of keys the table's PrimaryKeyFilter shows are missing
+ * return at once, and writes keep the filter current.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+public class SQLiteTableStorage implements TableStorage {
+
+	/*
+	 * Statement cache operations of the statements built here.
+	 */
+	private static final String OP_SEARCH_PREFIX = "SEARCH_PREFIX";
+	private static final String OP_SCAN = "SCAN";
+
+	/*
+	 * The connection pool to the database, the table stored,
+	 * and its column and primary key names.
+	 */
+	private final ConnectionPool connPool;
+	private final String tableName;
+	private final String [] columnNames;
+	private final String [] pKNames;
+
+	/**
+	 * Constructor of the storage of a given table in the database.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table.
+	 *
+	 * @requires connPool != null
+	 * @requires tableName is one of the four valid tables.
+	 */
+	public SQLiteTableStorage(ConnectionPool connPool, String tableName) {
+		//Check method requirements are met.
+		assert connPool != null && tableName != null;
+
+		this.connPool = connPool;
+		this.tableName = tableName;
+		this.columnNames = MainAppHelpers.getColumnNames(tableName);
+		this.pKNames = MainAppHelpers.getPrimaryKeyNames(tableName);
+	}
+
+	@Override
+	public String getTableName() {
+		return this.tableName;
+	}
+
+	@Override
+	public boolean insert(String [] row) throws SQLException {
+		//Check method requirement that the row has every column.
+		assert row != null && row.length == this.columnNames.length;
+
+		Connection conn = this.connPool.borrowWriter();
+		try {
+			PreparedStatement pStat = this.connPool.getStatementCache(conn)
+					.getStatement(this.tableName, StatementCache.OP_INSERT);
+			MainAppHelpers.setParamInsert(pStat, this.tableName, row);
+			if (!executeWrite(pStat)) return false;
+
+			PrimaryKeyFilter.addKey(this.connPool, conn, this.tableName,
+					Arrays.copyOf(row, this.pKNames.length));
+			return true;
+
+		} finally {
+			this.connPool.returnWriter(conn);
+		}
+	}
+
+	@Override
+	public String [] find(String [] pKVal) throws SQLException {
+		//Check method requirement that all key values are given.
+		assert pKVal != null && pKVal.length == this.pKNames.length;
+
+		if (PrimaryKeyFilter.isDefiniteMiss(this.connPool, this.tableName, pKVal)) return null;
+
+		Connection conn = this.connPool.borrowReader();
+		try {
+			PreparedStatement pStat = this.connPool.getStatementCache(conn)
+					.getStatement(this.tableName, StatementCache.OP_SEARCH_SPECIFIC);
+			MainAppHelpers.setParamSearchSpecific(pStat, this.tableName, pKVal);
+
+			try (ResultSet rSet = pStat.executeQuery()) {
+				return rSet.next() ? readRow(rSet) : null;
+			}
+
+		} finally {
+			this.connPool.returnReader(conn);
+		}
+	}
+
+	@Override
+	public List<String []> searchPrefix(String [] pKPrefixes) throws SQLException {
+		//Check method requirement that a prefix is given for each key column.
+		assert pKPrefixes != null && pKPrefixes.length == this.pKNames.length;
+
+		//Each non-empty prefix is a range of its column, e.g.
+		//Title >= 'Nar' AND Title < 'Nas', which the primary key index serves.
+		StringBuilder sQLCode = new StringBuilder("SELECT * FROM " + this.tableName + " WHERE 1");
+		StringBuilder opName = new StringBuilder(OP_SEARCH_PREFIX);
+		List<String> params = new ArrayList<>();
+		for (int kIdx = 0; kIdx < this.pKNames.length; kIdx++) {
+			String prefix = pKPrefixes[kIdx];
+			if (prefix.isEmpty()) {
+				opName.append("_");
+				continue;
+			}
+			sQLCode.append(" AND ").append(this.pKNames[kIdx]).append(" >= ?");
+			params.add(prefix);
+
+			String upperBound = TableStorage.getPrefixUpperBound(prefix);
+			if (upperBound != null) {
+				sQLCode.append(" AND ").append(this.pKNames[kIdx]).append(" < ?");
+				params.add(upperBound);
+				opName.append("R");
+			} else {
+				opName.append("L");
+			}
+		}
+		sQLCode.append(" ORDER BY ").append(String.join(", ", this.pKNames)).append(";");
+
+		Connection conn = this.connPool.borrowReader();
+		try {
+			PreparedStatement pStat = this.connPool.getStatementCache(conn)
+					.getStatement(this.tableName, opName.toString(), sQLCode.toString());
+			for (int pIdx = 0; pIdx < params.size(); pIdx++) {
+				pStat.setString(pIdx + 1, params.get(pIdx));
+			}
+
+			//Ranges without an upper bound also hold rows past the prefix.
+			List<String []> rows = new ArrayList<>();
+			try (ResultSet rSet = pStat.executeQuery()) {
+				while (rSet.next()) {
+					String [] row = readRow(rSet);
+					if (TableStorage.matchesPrefixes(row, pKPrefixes)) rows.add(row);
+				}
+			}
+			return rows;
+
+		} finally {
+			this.connPool.returnReader(conn);
+		}
+	}
+
+	@Override
+	public boolean update(String [] pKVal, String [] newVal) throws SQLException {
+		//Check method requirements that the key and new values are given.
+		assert pKVal != null && pKVal.length == this.pKNames.length && newVal != null;
+
+		if (PrimaryKeyFilter.isDefiniteMiss(this.connPool, this.tableName, pKVal)) return false;
+
+		Connection conn = this.connPool.borrowWriter();
+		try {
+			PreparedStatement pStat = this.connPool.getStatementCache(conn)
+					.getStatement(this.tableName, StatementCache.OP_UPDATE);
+			MainAppHelpers.setParamUpdate(pStat, this.tableName, pKVal, newVal);
+			if (!executeWrite(pStat)) return false;
+
+			//CREATOR rows are all key, so the update gives them a new key.
+			if (this.tableName.equals(MainAppHelpers.TNAME_CRE)) {
+				PrimaryKeyFilter.removeKey(this.connPool, this.tableName, pKVal);
+				PrimaryKeyFilter.addKey(this.connPool, conn, this.tableName, newVal);
+			}
+			return true;
+
+		} finally {
+			this.connPool.returnWriter(conn);
+		}
+	}
+
+	@Override
+	public boolean delete(String [] pKVal) throws SQLException {
+		//Check method requirement that all key values are given.
+		assert pKVal != null && pKVal.length == this.pKNames.length;
+
+		if (PrimaryKeyFilter.isDefiniteMiss(this.connPool, this.tableName, pKVal)) return false;
+
+		Connection conn = this.connPool.borrowWriter();
+		try {
+			PreparedStatement pStat = this.connPool.getStatementCache(conn)
+					.getStatement(this.tableName, StatementCache.OP_DELETE);
+			MainAppHelpers.setParamDelete(pStat, this.tableName, pKVal);
+			if (!executeWrite(pStat)) return false;
+
+			PrimaryKeyFilter.removeKey(this.connPool, this.tableName, pKVal);
+			return true;
+
+		} finally {
+			this.connPool.returnWriter(conn);
+		}
+	}
+
+	@Override
+	public int scan(Consumer<String []> rowHandler) throws SQLException {
+		//Check method requirement that the handler is not null.
+		assert rowHandler != null;
+
+		Connection conn = this.connPool.borrowReader();
+		try {
+			PreparedStatement pStat = this.connPool.getStatementCache(conn)
+					.getStatement(this.tableName, OP_SCAN, "SELECT * FROM " + this.tableName + ";");
+
+			int rowCount = 0;
+			try (ResultSet rSet = pStat.executeQuery()) {
+				while (rSet.next()) {
+					rowHandler.accept(readRow(rSet));
+					rowCount++;
+				}
+			}
+			return rowCount;
+
+		} finally {
+			this.connPool.returnReader(conn);
+		}
+	}
+
+	/**
+	 * Helper method to execute an insert, update or delete statement.
+	 *
+	 * @param pStat
+	 * 		The statement, parameters set.
+	 * @return isWritten
+	 * 		True if a row was written; false if none matched,
+	 * 		or the primary key (or a unique column) is taken.
+	 * @throws SQLException
+	 * 		If the statement fails for another reason,
+	 * 		e.g. a CHECK or NOT NULL constraint is violated.
+	 */
+	private static boolean executeWrite(PreparedStatement pStat) throws SQLException {
+		try {
+			return pStat.executeUpdate() > 0;
+
+		} catch (SQLiteException sE) {
+			//The extended result code tells a taken key from other constraints.
+			SQLiteErrorCode resultCode = sE.getResultCode();
+			if (resultCode == SQLiteErrorCode.SQLITE_CONSTRAINT_PRIMARYKEY
+					|| resultCode == SQLiteErrorCode.SQLITE_CONSTRAINT_UNIQUE) return false;
+			throw sE;
+		}
+	}
+
+	/**
+	 * Helper method to read the row the cursor is on.
+	 *
+	 * @param rSet
+	 * 		The ResultSet of a SELECT * query, positioned on a row.
+	 * @return row
+	 * 		All column values of the row.
+	 * @throws SQLException
+	 * 		If reading the row fails.
+	 */
+	private String [] readRow(ResultSet rSet) throws SQLException {
+		String [] row = new String [this.columnNames.length];
+		for (int cIdx = 0; cIdx < row.length; cIdx++) {
+			row[cIdx] = rSet.getString(cIdx + 1);
+		}
+		return row;
+	}
+}
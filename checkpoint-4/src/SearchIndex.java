@@ -0,0 +1,568 @@
+/**
+ * Trigram search index for the general (partial key) search of
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * Every key column searched with LIKE '%term%' (CUSTOMER.Username,
+ * ANIME.Title, STUDIO.Name, CREATOR.Anime_title and CREATOR.Studio_name)
+ * has each of its 3-character substrings (lower case) stored in the
+ * SEARCH_TRIGRAM table, kept in sync by triggers on the four tables.
+ * A search term of 3+ characters then only looks at the key values
+ * containing its first, middle and last trigram, instead of scanning the
+ * whole table; the original LIKE condition still filters the candidates,
+ * so results are exactly those of the LIKE-only search.
+ *
+ * The FTS5 trigram tokenizer needs SQLite 3.34+, newer than the driver
+ * bundled with this program, hence the plain table.
+ * Triggers cannot split strings by themselves, so they join against
+ * TRIGRAM_POS, a table of character positions 1 to MAX_INDEXED_LENGTH.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class SearchIndex {
+
+	/*
+	 * Below are constants for:
+	 * the names of the index table and the position table;
+	 * the key length fully covered by trigrams;
+	 * the gram marking key values longer than that;
+	 * and the statement cache operation of the indexed search.
+	 */
+	public static final String TNAME_INDEX = "SEARCH_TRIGRAM";
+	public static final String TNAME_POS = "TRIGRAM_POS";
+
+	public static final int GRAM_LENGTH = 3;
+	public static final int MAX_INDEXED_LENGTH = 1024;
+	private static final String LONG_KEY_GRAM = "";
+
+	private static final String OP_SEARCH_INDEXED = "SEARCH_INDEXED";
+
+	/*
+	 * The (table name, key column name) pairs covered by the index.
+	 */
+	private static final String [][] INDEXED_COLUMNS = {
+			{MainAppHelpers.TNAME_CUS, "Username"},
+			{MainAppHelpers.TNAME_ANI, "Title"},
+			{MainAppHelpers.TNAME_STU, "Name"},
+			{MainAppHelpers.TNAME_CRE, "Anime_title"},
+			{MainAppHelpers.TNAME_CRE, "Studio_name"}
+	};
+
+	/*
+	 * Whether the index has been created (or found) and its triggers exist;
+	 * until then every search uses the LIKE-only path.
+	 */
+	private static volatile boolean isReady = false;
+
+	/**
+	 * Private constructor, all methods are static.
+	 */
+	private SearchIndex() {
+	}
+
+	/**
+	 * Method to create the index tables and triggers if they do not exist,
+	 * and fill the index from the existing rows when it is first created.
+	 * Handle and print if an exception is thrown.
+	 *
+	 * @param connPool
+	 * 		The connection pool to borrow the writer connection from.
+	 * @return isReady
+	 * 		True if the index exists and is kept in sync;
+	 * 		false if searches have to use the LIKE-only path.
+	 *
+	 * @requires connPool != null
+	 */
+	public static boolean ensureIndex(ConnectionPool connPool) {
+		//Check method requirement that the pool is not null.
+		assert connPool != null;
+
+		try {
+			Connection conn = connPool.borrowWriter();
+			try {
+				ensureIndex(conn);
+			} finally {
+				connPool.returnWriter(conn);
+			}
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "creating the trigram search index.");
+		}
+		return isReady;
+	}
+
+	/**
+	 * Method (procedure, no return values) to create the index tables and
+	 * triggers if they do not exist, in one transaction, and fill the index
+	 * from the existing rows when it is first created.
+	 *
+	 * @param conn
+	 * 		The (writer) connection object to the SQLite database.
+	 * @throws SQLException
+	 * 		If creating or filling the index fails; nothing is kept.
+	 *
+	 * @requires conn != null
+	 */
+	public static void ensureIndex(Connection conn) throws SQLException {
+		//Check method requirement that the connection is not null.
+		assert conn != null;
+
+		boolean prevAutoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+
+		try (Statement stat = conn.createStatement()) {
+
+			boolean isNew = true;
+			try (ResultSet rSet = stat.executeQuery("SELECT 1 FROM sqlite_master "
+					+ "WHERE type = 'table' AND name = '" + TNAME_INDEX + "';")) {
+				isNew = !rSet.next();
+			}
+
+			if (isNew) {
+				long startNanos = System.nanoTime();
+
+				stat.executeUpdate("CREATE TABLE IF NOT EXISTS " + TNAME_POS
+						+ " (Pos integer primary key);");
+				stat.executeUpdate("CREATE TABLE " + TNAME_INDEX + " ("
+						+ "Col_name text not null, Gram text not null, Key_val text not null, "
+						+ "primary key (Col_name, Gram, Key_val)) WITHOUT ROWID;");
+				stat.executeUpdate("CREATE INDEX " + TNAME_INDEX + "_KEY ON "
+						+ TNAME_INDEX + " (Col_name, Key_val);");
+
+				fillPositions(conn);
+
+				for (String [] tableCol : INDEXED_COLUMNS) {
+					String tableName = tableCol[0];
+					String colName = tableCol[1];
+
+					//Fill the index from the rows already in the table.
+					stat.executeUpdate(buildSQLStringAddGrams(tableName, colName,
+							"T." + colName, " FROM " + tableName + " T"));
+					stat.executeUpdate(buildSQLStringAddLongKey(tableName, colName,
+							"T." + colName, " FROM " + tableName + " T"));
+				}
+
+				System.out.println();
+				System.out.println("Trigram search index built in "
+						+ String.format("%.3f", (System.nanoTime() - startNanos) / 1e9)
+						+ " s.");
+			}
+
+			//Triggers are (re)created if missing, e.g. after a table was replaced.
+			for (String [] tableCol : INDEXED_COLUMNS) {
+				createTriggers(stat, tableCol[0], tableCol[1]);
+			}
+
+			conn.commit();
+			isReady = true;
+
+		} catch (SQLException sE) {
+			conn.rollback();
+			throw sE;
+
+		} finally {
+			conn.setAutoCommit(prevAutoCommit);
+		}
+	}
+
+	/**
+	 * Method to return the PreparedStatement for the general search of
+	 * a given table with all parameters set, matching exactly the rows the
+	 * MainAppHelpers.buildSQLStringSearchGeneral statement would.
+	 * Uses the trigram index for every term it can, the LIKE-only
+	 * statement otherwise. The statement is owned by the cache, do not close it.
+	 *
+	 * @param stmtCache
+	 * 		The PreparedStatement cache of the connection to search on.
+	 * @param tableName
+	 * 		The name of the table to search.
+	 * @param terms
+	 * 		The (partial) key values, in primary key column order.
+	 * @return pStat
+	 * 		The statement ready to execute, or null if the table is invalid.
+	 * @throws SQLException
+	 * 		If preparing the statement or setting its parameters fails.
+	 *
+	 * @requires stmtCache != null
+	 * @requires tableName is one of the four valid tables.
+	 * @requires terms.length == number of primary key columns of the table.
+	 */
+	public static PreparedStatement prepareSearch(StatementCache stmtCache,
+			String tableName, String [] terms) throws SQLException {
+		//Check method requirements are met.
+		assert stmtCache != null && tableName != null && terms != null;
+
+		String [] keyNames = MainAppHelpers.getPrimaryKeyNames(tableName);
+		if (keyNames == null || keyNames.length != terms.length) return null;
+
+		//One bit per key column that can use the index.
+		int indexedMask = 0;
+		for (int kIdx = 0; kIdx < terms.length; kIdx++) {
+			if (isIndexable(terms[kIdx])) indexedMask |= (1 << kIdx);
+		}
+
+		PreparedStatement pStat = null;
+		if (indexedMask == 0 || !isReady) {
+			//Fallback: the original LIKE-only search.
+			pStat = stmtCache.getStatement(tableName, StatementCache.OP_SEARCH_GENERAL);
+			if (pStat != null) MainAppHelpers.setParamSearchGeneral(pStat, tableName, terms);
+
+		} else {
+			pStat = stmtCache.getStatement(tableName,
+					OP_SEARCH_INDEXED + "_" + String.valueOf(indexedMask),
+					buildSQLStringSearchIndexed(tableName, keyNames, indexedMask));
+			setParamSearchIndexed(pStat, tableName, keyNames, terms, indexedMask);
+		}
+		return pStat;
+	}
+
+	/**
+	 * Method to check whether a search term can use the trigram index:
+	 * at least GRAM_LENGTH characters, no LIKE wildcards typed by the user,
+	 * and no characters outside the Basic Multilingual Plane (which SQLite
+	 * counts differently from Java).
+	 *
+	 * @param term
+	 * 		The search term as typed by the user.
+	 * @return isIndexable
+	 */
+	public static boolean isIndexable(String term) {
+		if (term == null || term.length() < GRAM_LENGTH) return false;
+
+		for (int idx = 0; idx < term.length(); idx++) {
+			char c = term.charAt(idx);
+			if (c == '%' || c == '_' || Character.isSurrogate(c)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Method (procedure, no return values) to time the LIKE-only and the
+	 * indexed general search for the same table and terms, and print
+	 * the average time per search and the number of rows found by each.
+	 *
+	 * @param stmtCache
+	 * 		The PreparedStatement cache of the connection to search on.
+	 * @param tableName
+	 * 		The name of the table to search.
+	 * @param terms
+	 * 		The (partial) key values, in primary key column order.
+	 * @param iterations
+	 * 		The number of times each search is run.
+	 * @throws SQLException
+	 * 		If running either search fails.
+	 *
+	 * @requires stmtCache != null
+	 * @requires tableName is one of the four valid tables.
+	 * @requires iterations > 0
+	 */
+	public static void benchmark(StatementCache stmtCache, String tableName,
+			String [] terms, int iterations) throws SQLException {
+		//Check method requirements are met.
+		assert stmtCache != null && tableName != null && terms != null && iterations > 0;
+
+		long likeNanos = 0;
+		long indexedNanos = 0;
+		int likeRows = 0;
+		int indexedRows = 0;
+
+		for (int iter = 0; iter < iterations; iter++) {
+			long startNanos = System.nanoTime();
+			PreparedStatement likeStat = stmtCache.getStatement(tableName,
+					StatementCache.OP_SEARCH_GENERAL);
+			MainAppHelpers.setParamSearchGeneral(likeStat, tableName, terms);
+			likeRows = countRows(likeStat);
+			likeNanos += System.nanoTime() - startNanos;
+
+			startNanos = System.nanoTime();
+			indexedRows = countRows(prepareSearch(stmtCache, tableName, terms));
+			indexedNanos += System.nanoTime() - startNanos;
+		}
+
+		System.out.println("General search benchmark on table: " + tableName + ".");
+		System.out.println("...LIKE-only: " + String.format("%.3f", likeNanos / 1e6 / iterations)
+				+ " ms/search, " + String.valueOf(likeRows) + " row(s).");
+		System.out.println("...Indexed:   " + String.format("%.3f", indexedNanos / 1e6 / iterations)
+				+ " ms/search, " + String.valueOf(indexedRows) + " row(s).");
+		if (likeRows != indexedRows) {
+			System.out.println("Err: Indexed search returned a different number of rows.");
+		}
+	}
+
+	/**
+	 * Entry point of the search benchmark, run against a database file
+	 * (e.g. a copy filled using the import option):
+	 * java SearchIndex dbPath tableName term [term2] [iterations].
+	 *
+	 * @param args
+	 * 		The database path, table name, search term(s) and iterations.
+	 */
+	public static void main(String [] args) {
+		if (args.length < 3) {
+			System.out.println("Usage: java SearchIndex dbPath tableName term [term2] [iterations]");
+			return;
+		}
+
+		String tableName = args[1].toUpperCase();
+		String [] keyNames = MainAppHelpers.getPrimaryKeyNames(tableName);
+		if (keyNames == null || args.length < 2 + keyNames.length) {
+			System.out.println("Err: Invalid table name, or missing search terms.");
+			return;
+		}
+
+		String [] terms = new String [keyNames.length];
+		System.arraycopy(args, 2, terms, 0, keyNames.length);
+		int iterations = (args.length > 2 + keyNames.length)
+				? Integer.parseInt(args[2 + keyNames.length]) : 1000;
+
+		try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + args[0])) {
+			ensureIndex(conn);
+
+			StatementCache stmtCache = new StatementCache(conn, StatementCache.DEFAULT_CAPACITY);
+			try {
+				benchmark(stmtCache, tableName, terms, iterations);
+			} finally {
+				stmtCache.close();
+			}
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "running the search benchmark.");
+		}
+	}
+
+	/**
+	 * Helper method to build the indexed general search SQL string.
+	 * Each indexed key column is limited to the key values holding the
+	 * first, middle and last trigram of its term (plus all key values too
+	 * long to be fully indexed), then filtered by the original LIKE.
+	 *
+	 * @param tableName
+	 * 		The name of the table to search.
+	 * @param keyNames
+	 * 		The primary key column names of the table.
+	 * @param indexedMask
+	 * 		One bit per key column that uses the index.
+	 * @return searchSQL
+	 * 		The plain SQL query string with parameters marked.
+	 */
+	private static String buildSQLStringSearchIndexed(String tableName,
+			String [] keyNames, int indexedMask) {
+
+		String candidateSQL = "SELECT Key_val FROM " + TNAME_INDEX
+				+ " WHERE Col_name = ? AND Gram = ?";
+
+		StringBuilder searchSQL = new StringBuilder("SELECT * FROM " + tableName + " WHERE ");
+		for (int kIdx = 0; kIdx < keyNames.length; kIdx++) {
+			if (kIdx > 0) searchSQL.append(" AND ");
+
+			if ((indexedMask & (1 << kIdx)) != 0) {
+				searchSQL.append(keyNames[kIdx]).append(" IN (")
+						.append(candidateSQL).append(" INTERSECT ")
+						.append(candidateSQL).append(" INTERSECT ")
+						.append(candidateSQL).append(" UNION ")
+						.append(candidateSQL).append(") AND ");
+			}
+			searchSQL.append(keyNames[kIdx]).append(" LIKE ?");
+		}
+		return searchSQL.append(";").toString();
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to set the parameters
+	 * of the indexed general search statement.
+	 *
+	 * @param pStat
+	 * 		The statement built by buildSQLStringSearchIndexed.
+	 * @param tableName
+	 * 		The name of the table to search.
+	 * @param keyNames
+	 * 		The primary key column names of the table.
+	 * @param terms
+	 * 		The (partial) key values, in primary key column order.
+	 * @param indexedMask
+	 * 		One bit per key column that uses the index.
+	 * @throws SQLException
+	 * 		If setting a parameter fails.
+	 */
+	private static void setParamSearchIndexed(PreparedStatement pStat, String tableName,
+			String [] keyNames, String [] terms, int indexedMask) throws SQLException {
+
+		int pIdx = 1;
+		for (int kIdx = 0; kIdx < keyNames.length; kIdx++) {
+
+			if ((indexedMask & (1 << kIdx)) != 0) {
+				String colKey = tableName + "." + keyNames[kIdx];
+				String lowerTerm = toLowerAscii(terms[kIdx]);
+				int lastPos = lowerTerm.length() - GRAM_LENGTH;
+
+				int [] gramPositions = {0, lastPos / 2, lastPos};
+				for (int gramPos : gramPositions) {
+					pStat.setString(pIdx++, colKey);
+					pStat.setString(pIdx++, lowerTerm.substring(gramPos, gramPos + GRAM_LENGTH));
+				}
+				pStat.setString(pIdx++, colKey);
+				pStat.setString(pIdx++, LONG_KEY_GRAM);
+			}
+
+			//Same wild-card pattern as setParamSearchGeneral.
+			pStat.setString(pIdx++, "%" + terms[kIdx] + "%");
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to create the insert,
+	 * delete and update triggers keeping one key column indexed.
+	 * A key value shared by several rows (CREATOR) is only removed from
+	 * the index once no row holds it anymore.
+	 *
+	 * @param stat
+	 * 		A statement on the (writer) connection.
+	 * @param tableName
+	 * 		The name of the table.
+	 * @param colName
+	 * 		The name of the key column.
+	 * @throws SQLException
+	 * 		If creating a trigger fails.
+	 */
+	private static void createTriggers(Statement stat, String tableName, String colName)
+			throws SQLException {
+
+		String trgPrefix = "TRG_" + TNAME_INDEX + "_" + tableName + "_" + colName;
+
+		String addNew = buildSQLStringAddGrams(tableName, colName, "NEW." + colName, "") + " "
+				+ buildSQLStringAddLongKey(tableName, colName, "NEW." + colName, "") + " ";
+		String removeOld = "DELETE FROM " + TNAME_INDEX
+				+ " WHERE Col_name = '" + tableName + "." + colName + "'"
+				+ " AND Key_val = OLD." + colName
+				+ " AND NOT EXISTS (SELECT 1 FROM " + tableName
+				+ " WHERE " + colName + " = OLD." + colName + "); ";
+
+		stat.executeUpdate("CREATE TRIGGER IF NOT EXISTS " + trgPrefix + "_INS"
+				+ " AFTER INSERT ON " + tableName + " BEGIN " + addNew + "END;");
+		stat.executeUpdate("CREATE TRIGGER IF NOT EXISTS " + trgPrefix + "_DEL"
+				+ " AFTER DELETE ON " + tableName + " BEGIN " + removeOld + "END;");
+		stat.executeUpdate("CREATE TRIGGER IF NOT EXISTS " + trgPrefix + "_UPD"
+				+ " AFTER UPDATE OF " + colName + " ON " + tableName
+				+ " WHEN OLD." + colName + " IS NOT NEW." + colName
+				+ " BEGIN " + removeOld + addNew + "END;");
+	}
+
+	/**
+	 * Helper method to build the statement adding the trigrams of
+	 * a key value expression, one per position in TRIGRAM_POS.
+	 *
+	 * @param tableName
+	 * 		The name of the table.
+	 * @param colName
+	 * 		The name of the key column.
+	 * @param valExpr
+	 * 		The SQL expression of the key value, e.g. NEW.Title.
+	 * @param fromClause
+	 * 		Extra FROM source providing valExpr, or an empty string.
+	 * @return addSQL
+	 */
+	private static String buildSQLStringAddGrams(String tableName, String colName,
+			String valExpr, String fromClause) {
+
+		String joinClause = fromClause.isEmpty()
+				? " FROM " + TNAME_POS + " P WHERE"
+				: fromClause + " JOIN " + TNAME_POS + " P ON";
+		String gramExpr = "substr(lower(" + valExpr + "), P.Pos, " 
+				+ String.valueOf(GRAM_LENGTH) + ")";
+
+		//NOT EXISTS instead of INSERT OR IGNORE: inside a trigger fired by
+		//a foreign key cascade, SQLite aborts on conflicts regardless.
+		return "INSERT INTO " + TNAME_INDEX + " (Col_name, Gram, Key_val)"
+				+ " SELECT DISTINCT '" + tableName + "." + colName + "', " + gramExpr + ", " + valExpr
+				+ joinClause + " P.Pos <= length(" + valExpr + ") - "
+				+ String.valueOf(GRAM_LENGTH - 1)
+				+ " AND NOT EXISTS (SELECT 1 FROM " + TNAME_INDEX + " I"
+				+ " WHERE I.Col_name = '" + tableName + "." + colName + "'"
+				+ " AND I.Gram = " + gramExpr + " AND I.Key_val = " + valExpr + ");";
+	}
+
+	/**
+	 * Helper method to build the statement marking a key value expression
+	 * as too long to be fully indexed, so it is always a candidate.
+	 *
+	 * @param tableName
+	 * 		The name of the table.
+	 * @param colName
+	 * 		The name of the key column.
+	 * @param valExpr
+	 * 		The SQL expression of the key value, e.g. NEW.Title.
+	 * @param fromClause
+	 * 		Extra FROM source providing valExpr, or an empty string.
+	 * @return addSQL
+	 */
+	private static String buildSQLStringAddLongKey(String tableName, String colName,
+			String valExpr, String fromClause) {
+
+		return "INSERT INTO " + TNAME_INDEX + " (Col_name, Gram, Key_val)"
+				+ " SELECT DISTINCT '" + tableName + "." + colName + "', '" + LONG_KEY_GRAM + "', " + valExpr
+				+ fromClause + " WHERE length(" + valExpr + ") - " + String.valueOf(GRAM_LENGTH - 1)
+				+ " > (SELECT max(Pos) FROM " + TNAME_POS + ")"
+				+ " AND NOT EXISTS (SELECT 1 FROM " + TNAME_INDEX + " I"
+				+ " WHERE I.Col_name = '" + tableName + "." + colName + "'"
+				+ " AND I.Gram = '" + LONG_KEY_GRAM + "' AND I.Key_val = " + valExpr + ");";
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to fill TRIGRAM_POS
+	 * with the positions 1 to MAX_INDEXED_LENGTH.
+	 *
+	 * @param conn
+	 * 		The (writer) connection object to the SQLite database.
+	 * @throws SQLException
+	 * 		If inserting fails.
+	 */
+	private static void fillPositions(Connection conn) throws SQLException {
+		try (PreparedStatement pStat = conn.prepareStatement(
+				"INSERT OR IGNORE INTO " + TNAME_POS + " (Pos) VALUES (?);")) {
+			for (int pos = 1; pos <= MAX_INDEXED_LENGTH; pos++) {
+				pStat.setInt(1, pos);
+				pStat.addBatch();
+			}
+			pStat.executeBatch();
+		}
+	}
+
+	/**
+	 * Helper method to lower-case the ASCII letters of a string only,
+	 * the same way SQLite's lower() and LIKE do.
+	 *
+	 * @param str
+	 * 		The string to lower-case.
+	 * @return lowerStr
+	 */
+	static String toLowerAscii(String str) {
+		char [] chars = str.toCharArray();
+		for (int idx = 0; idx < chars.length; idx++) {
+			if (chars[idx] >= 'A' && chars[idx] <= 'Z') chars[idx] += ('a' - 'A');
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Helper method to execute a query and count the rows of its result.
+	 *
+	 * @param pStat
+	 * 		A query type PreparedStatement with all parameters set.
+	 * @return rowCount
+	 * @throws SQLException
+	 * 		If executing the query fails.
+	 */
+	private static int countRows(PreparedStatement pStat) throws SQLException {
+		int rowCount = 0;
+		try (ResultSet rSet = pStat.executeQuery()) {
+			while (rSet.next()) rowCount++;
+		}
+		return rowCount;
+	}
+}
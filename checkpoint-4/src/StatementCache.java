@@ -0,0 +1,291 @@
+/**
+ * Bounded, per-connection cache of reusable PreparedStatement objects for
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * Statements are keyed by (table name, operation), built once using the
+ * MainAppHelpers.buildSQLString* methods, and kept open for reuse.
+ * When the cache is full, the least recently used statement is closed
+ * and evicted.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class StatementCache {
+
+	/*
+	 * Below are constants for:
+	 * the operations a cached statement can be built for;
+	 * and the default number of statements kept open per connection.
+	 */
+	public static final String OP_INSERT = "INSERT";
+	public static final String OP_SEARCH_SPECIFIC = "SEARCH_SPECIFIC";
+	public static final String OP_SEARCH_GENERAL = "SEARCH_GENERAL";
+	public static final String OP_UPDATE = "UPDATE";
+	public static final String OP_DELETE = "DELETE";
+	public static final String OP_BROWSE_FIRST = "BROWSE_FIRST";
+	public static final String OP_BROWSE_NEXT = "BROWSE_NEXT";
+
+	public static final int DEFAULT_CAPACITY = 32;
+
+	/*
+	 * The connection all cached statements are prepared on,
+	 * the maximum number of open statements,
+	 * and the access-ordered (LRU) map of open statements.
+	 */
+	private final Connection conn;
+	private final int capacity;
+	private final LinkedHashMap<String, PreparedStatement> statements;
+
+	/*
+	 * Counters used to confirm statements are actually reused.
+	 */
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	/**
+	 * Constructor of a statement cache bound to one connection.
+	 *
+	 * @param conn
+	 * 		The connection object to the SQLite database.
+	 * @param capacity
+	 * 		The maximum number of statements kept open at once.
+	 *
+	 * @requires conn != null
+	 * @requires capacity > 0
+	 */
+	public StatementCache(Connection conn, int capacity) {
+		//Check constructor requirements are met.
+		assert conn != null && capacity > 0;
+
+		this.conn = conn;
+		this.capacity = capacity;
+
+		//Access-ordered map, so the eldest entry is the least recently used.
+		this.statements = new LinkedHashMap<String, PreparedStatement>(
+				capacity, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, PreparedStatement> eldest) {
+
+				boolean isFull = this.size() > StatementCache.this.capacity;
+				if (isFull) {
+					closeQuietly(eldest.getValue(), "evicting a cached PreparedStatement.");
+					StatementCache.this.evictionCount++;
+				}
+				return isFull;
+			}
+		};
+	}
+
+	/**
+	 * Method to return the connection this cache prepares statements on.
+	 *
+	 * @return conn
+	 * 		The connection object to the SQLite database.
+	 */
+	public Connection getConnection() {
+		return this.conn;
+	}
+
+	/**
+	 * Method to return a reusable PreparedStatement for a given table
+	 * and operation, with all previous parameters cleared.
+	 * The SQL string is built using the MainAppHelpers.buildSQLString* methods.
+	 * The returned statement is owned by the cache, do not close it.
+	 *
+	 * @param tableName
+	 * 		The name of the table the statement operates on.
+	 * @param operation
+	 * 		One of the OP_* operation constants.
+	 * @return pStat
+	 * 		The cached (or newly prepared) statement, or null if
+	 * 		the table and operation do not build a valid SQL string.
+	 * @throws SQLException
+	 * 		If preparing or clearing the statement fails.
+	 *
+	 * @requires tableName is one of the four valid tables.
+	 * @requires operation is one of the OP_* constants.
+	 */
+	public PreparedStatement getStatement(String tableName, String operation)
+			throws SQLException {
+		//Check method requirements are met.
+		assert tableName != null && operation != null;
+
+		return getStatement(tableName, operation, buildSQLString(tableName, operation));
+	}
+
+	/**
+	 * Method to return a reusable PreparedStatement for a given key pair
+	 * and a caller-provided SQL string, with all previous parameters cleared.
+	 * The returned statement is owned by the cache, do not close it.
+	 *
+	 * @param tableName
+	 * 		The name of the table (or other group) the statement belongs to.
+	 * @param operation
+	 * 		The name of the operation the statement performs.
+	 * @param sQLCode
+	 * 		The SQL string to prepare on a cache miss.
+	 * @return pStat
+	 * 		The cached (or newly prepared) statement, or null if sQLCode is null.
+	 * @throws SQLException
+	 * 		If preparing or clearing the statement fails.
+	 *
+	 * @requires tableName != null
+	 * @requires operation != null
+	 * @requires (tableName, operation) always maps to the same sQLCode.
+	 */
+	public synchronized PreparedStatement getStatement(String tableName,
+			String operation, String sQLCode) throws SQLException {
+		//Check method requirements are met.
+		assert tableName != null && operation != null;
+
+		if (sQLCode == null) return null;
+
+		String cacheKey = tableName + "/" + operation;
+		PreparedStatement pStat = this.statements.get(cacheKey);
+
+		if (pStat != null && !pStat.isClosed()) {
+			//Cache hit: reuse the parsed statement, drop old parameters.
+			this.hitCount++;
+			pStat.clearParameters();
+
+		} else {
+			//Cache miss: prepare once, keep open for next time.
+			this.missCount++;
+			pStat = this.conn.prepareStatement(sQLCode);
+			this.statements.put(cacheKey, pStat);
+		}
+
+		return pStat;
+	}
+
+	/**
+	 * Method to return the number of statement requests served from the cache.
+	 *
+	 * @return hitCount
+	 */
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * Method to return the number of statement requests that had to be prepared.
+	 *
+	 * @return missCount
+	 */
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * Method to return the number of statements closed to make room.
+	 *
+	 * @return evictionCount
+	 */
+	public synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * Method (procedure, no return values) to print
+	 * the hit, miss, and eviction counters of the cache.
+	 */
+	public synchronized void printStatistics() {
+		long totalCount = this.hitCount + this.missCount;
+		double hitRate = (totalCount == 0) ? 0.0 : (100.0 * this.hitCount / totalCount);
+
+		System.out.println();
+		System.out.println("PreparedStatement cache statistics:");
+		System.out.println("...Hits: " + String.valueOf(this.hitCount)
+				+ ", misses: " + String.valueOf(this.missCount)
+				+ ", evictions: " + String.valueOf(this.evictionCount)
+				+ ", open: " + String.valueOf(this.statements.size())
+				+ "/" + String.valueOf(this.capacity) + ".");
+		System.out.println("...Hit rate: " + String.format("%.1f", hitRate) + "%.");
+	}
+
+	/**
+	 * Method (procedure, no return values) to close all cached statements.
+	 * The connection itself is not closed.
+	 */
+	public synchronized void close() {
+		Iterator<PreparedStatement> it = this.statements.values().iterator();
+		while (it.hasNext()) {
+			closeQuietly(it.next(), "closing a cached PreparedStatement.");
+			it.remove();
+		}
+	}
+
+	/**
+	 * Helper method to map an operation constant to
+	 * the corresponding MainAppHelpers.buildSQLString* method.
+	 *
+	 * @param tableName
+	 * 		The name of the table the statement operates on.
+	 * @param operation
+	 * 		One of the OP_* operation constants.
+	 * @return sQLCode
+	 * 		The plain SQL string with parameters marked, or null if invalid.
+	 */
+	private static String buildSQLString(String tableName, String operation) {
+
+		String sQLCode = null;
+		switch (operation) {
+			case OP_INSERT:
+				sQLCode = MainAppHelpers.buildSQLStringInsert(tableName);
+				break;
+			case OP_SEARCH_SPECIFIC:
+				sQLCode = MainAppHelpers.buildSQLStringSearchSpecific(tableName);
+				break;
+			case OP_SEARCH_GENERAL:
+				sQLCode = MainAppHelpers.buildSQLStringSearchGeneral(tableName);
+				break;
+			case OP_UPDATE:
+				sQLCode = MainAppHelpers.buildSQLStringUpdate(tableName);
+				break;
+			case OP_DELETE:
+				sQLCode = MainAppHelpers.buildSQLStringDelete(tableName);
+				break;
+			case OP_BROWSE_FIRST:
+				sQLCode = MainAppHelpers.buildSQLStringBrowsePage(tableName, true);
+				break;
+			case OP_BROWSE_NEXT:
+				sQLCode = MainAppHelpers.buildSQLStringBrowsePage(tableName, false);
+				break;
+			default:
+				System.out.println("Err: Invalid statement cache operation.");
+				sQLCode = null;
+				break;
+		}
+		return sQLCode;
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to close a statement,
+	 * printing (not throwing) any exception.
+	 *
+	 * @param pStat
+	 * 		The statement to close, may be null.
+	 * @param exLabel
+	 * 		A string describing where the exception is thrown.
+	 */
+	private static void closeQuietly(PreparedStatement pStat, String exLabel) {
+		try {
+			if (pStat != null) pStat.close();
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, exLabel);
+		}
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * Workload benchmark of the table storages of
+ * SU23 CSE3241 Team SHRX's database main program,
+ * to pick for each table whether it runs faster in the SQLite database
+ * (SQLiteTableStorage) or in memory (RelationTableStorage).
+ *
+ * Each table runs a weighted mix of operations for a number of seconds
+ * on each storage, after a short warm-up:
+ *     find:   look up a row by its primary key;
+ *     prefix: search by the first three characters of a key;
+ *     update: rewrite a row with its current values;
+ *     insert: add a new row, with a new "bench-" key;
+ *     delete: remove a row added by insert (or a missing key if none);
+ *     scan:   read every row.
+ * The memory storage reads from memory and writes through to the
+ * database, as in the program. The benchmark runs on a temporary
+ * copy of the database file, so the database itself is never changed.
+ *
+ * Run with: java StorageBenchmark [dbPath] [seconds] [TABLE=op:weight,...]
+ * e.g. java StorageBenchmark TeamSHRX_Database_Binary.db 2 ANIME=find:90,update:10
+ * Tables not given a workload run their default one (see DEFAULT_WORKLOADS).
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+public class StorageBenchmark {
+
+	/*
+	 * Defaults: the database to copy, and the seconds per run.
+	 */
+	private static final String DEFAULT_DBPATH = "TeamSHRX_Database_Binary.db";
+	private static final int DEFAULT_SECONDS = 2;
+
+	/*
+	 * How long (in milliseconds) each storage runs before it is timed.
+	 */
+	private static final long WARMUP_MILLIS = 500;
+
+	/*
+	 * The operations of a workload, by name, in weight order.
+	 */
+	private static final List<String> OPERATIONS = Arrays.asList(
+			"find", "prefix", "update", "insert", "delete", "scan");
+
+	/*
+	 * Default workload of each table: a point-lookup heavy table of logins,
+	 * a searched catalog, a read-mostly table, and a churning link table.
+	 */
+	private static final Map<String, String> DEFAULT_WORKLOADS = new LinkedHashMap<>();
+	static {
+		DEFAULT_WORKLOADS.put(MainAppHelpers.TNAME_CUS, "find:70,update:20,insert:5,delete:5");
+		DEFAULT_WORKLOADS.put(MainAppHelpers.TNAME_ANI, "find:50,prefix:40,update:10");
+		DEFAULT_WORKLOADS.put(MainAppHelpers.TNAME_STU, "find:80,prefix:10,scan:10");
+		DEFAULT_WORKLOADS.put(MainAppHelpers.TNAME_CRE, "insert:40,delete:30,find:20,scan:10");
+	}
+
+	/**
+	 * Entry point of the storage benchmark.
+	 *
+	 * @param args
+	 * 		The database path, seconds per run, and TABLE=op:weight,... workloads.
+	 */
+	public static void main(String [] args) {
+		String dBPath = DEFAULT_DBPATH;
+		int seconds = DEFAULT_SECONDS;
+		Map<String, String> workloads = new LinkedHashMap<>(DEFAULT_WORKLOADS);
+
+		for (int aIdx = 0; aIdx < args.length; aIdx++) {
+			String [] argParts = args[aIdx].split("=", 2);
+			if (argParts.length == 2) {
+				String tableName = argParts[0].toUpperCase(Locale.ROOT);
+				if (!DEFAULT_WORKLOADS.containsKey(tableName) || parseWeights(argParts[1]) == null) {
+					System.out.println("Err: Invalid workload: " + args[aIdx] + ".");
+					System.out.println("Usage: java StorageBenchmark [dbPath] [seconds] [TABLE=op:weight,...]");
+					return;
+				}
+				workloads.put(tableName, argParts[1]);
+			} else if (aIdx == 1 || (aIdx == 0 && args[0].matches("\\d+"))) {
+				seconds = Integer.parseInt(args[aIdx]);
+			} else {
+				dBPath = args[aIdx];
+			}
+		}
+
+		//Run on a copy, so the writes of the workloads never reach the database.
+		Path benchPath;
+		try {
+			benchPath = Files.createTempFile("storage-bench", ".db");
+			Files.copy(Paths.get(dBPath), benchPath, StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (IOException iOE) {
+			System.out.println("Err: Exception thrown when copying database: " + dBPath + ".");
+			System.out.println(iOE.getMessage());
+			return;
+		}
+
+		ConnectionPool connPool = MainAppHelpers.initConnectionPool(benchPath.toString(),
+				ConnectionPool.DEFAULT_MAX_READERS, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS);
+		try {
+			if (connPool != null) {
+				//The database storage runs as in the program, with its key filters.
+				PrimaryKeyFilter.ensureFilters(connPool);
+				runAll(connPool, workloads, seconds);
+			}
+
+		} finally {
+			if (connPool != null) connPool.close();
+			for (String suffix : new String [] {"", "-wal", "-shm", "-journal"}) {
+				new File(benchPath.toString() + suffix).delete();
+			}
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to run each workload
+	 * on both storages of its table, print their throughput,
+	 * and suggest which tables to keep in memory.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the copy of the database.
+	 * @param workloads
+	 * 		The workload of each table.
+	 * @param seconds
+	 * 		How long each storage runs each workload.
+	 */
+	private static void runAll(ConnectionPool connPool, Map<String, String> workloads, int seconds) {
+		System.out.println();
+		System.out.println("Storage benchmark: " + String.valueOf(seconds) + " s per run.");
+		System.out.println();
+		System.out.println("table\trows\tsqlite ops/s\tmemory ops/s\tfaster\tworkload");
+
+		List<String> memoryTables = new ArrayList<>();
+		for (Map.Entry<String, String> workload : workloads.entrySet()) {
+			String tableName = workload.getKey();
+			int [] weights = parseWeights(workload.getValue());
+
+			try {
+				//Load the memory copy first, so both storages start with the same rows.
+				SQLiteTableStorage sQLiteStorage = new SQLiteTableStorage(connPool, tableName);
+				RelationTableStorage memStorage = RelationTableStorage.load(sQLiteStorage);
+				int numOfRows = memStorage.size();
+
+				double memOpsPerSec = run(memStorage, weights, seconds);
+				double sQLiteOpsPerSec = run(sQLiteStorage, weights, seconds);
+
+				boolean isMemFaster = memOpsPerSec > sQLiteOpsPerSec;
+				if (isMemFaster) memoryTables.add(tableName);
+
+				System.out.println(tableName
+						+ "\t" + String.valueOf(numOfRows)
+						+ "\t" + String.format("%.0f", sQLiteOpsPerSec)
+						+ "\t" + String.format("%.0f", memOpsPerSec)
+						+ "\t" + (isMemFaster ? "memory" : "sqlite")
+						+ "\t" + workload.getValue());
+
+			} catch (SQLException sE) {
+				SQLHelpers.printSQLExceptionData(sE,
+						"running the workload of table " + tableName + ".");
+			}
+		}
+
+		System.out.println();
+		if (memoryTables.isEmpty()) {
+			System.out.println("Suggested: keep all tables in the database.");
+		} else {
+			System.out.println("Suggested: java MainApplication "
+					+ String.join("=memory ", memoryTables) + "=memory");
+			System.out.println("...Writes to in-memory tables are still written through to the database.");
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Helper method to run a workload on a storage, after a warm-up.
+	 *
+	 * @param storage
+	 * 		The storage to run on.
+	 * @param weights
+	 * 		The weight of each of OPERATIONS.
+	 * @param seconds
+	 * 		How long to run, warm-up excluded.
+	 * @return opsPerSec
+	 * 		The operations run per second.
+	 * @throws SQLException
+	 * 		If the storage fails.
+	 */
+	private static double run(TableStorage storage, int [] weights, int seconds) throws SQLException {
+		int weightSum = 0;
+		for (int weight : weights) weightSum += weight;
+
+		//Keys of the rows at the start; the rows added by insert are deleted first.
+		String tableName = storage.getTableName();
+		int pKNum = MainAppHelpers.getPrimaryKeyNames(tableName).length;
+		List<String []> rows = new ArrayList<>();
+		storage.scan(rows::add);
+		if (rows.isEmpty()) return 0;
+		ArrayDeque<String []> insertedKeys = new ArrayDeque<>();
+
+		//The same seed on each storage, so both run the same operations.
+		Random random = new Random(3241);
+		int [] nextBenchId = {0};
+
+		long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+		while (System.nanoTime() < warmupEnd) {
+			runOne(storage, weights, weightSum, random, rows, pKNum, insertedKeys, nextBenchId);
+		}
+
+		long numOfOps = 0;
+		long startNanos = System.nanoTime();
+		long endNanos = startNanos + seconds * 1000000000L;
+		long nowNanos;
+		while ((nowNanos = System.nanoTime()) < endNanos) {
+			runOne(storage, weights, weightSum, random, rows, pKNum, insertedKeys, nextBenchId);
+			numOfOps++;
+		}
+
+		//Remove the rows added, so the next storage starts with the same rows.
+		for (String [] insertedKey : insertedKeys) {
+			storage.delete(insertedKey);
+		}
+		return numOfOps / ((nowNanos - startNanos) / 1e9);
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to run one operation,
+	 * picked at random by weight.
+	 */
+	private static void runOne(TableStorage storage, int [] weights, int weightSum,
+			Random random, List<String []> rows, int pKNum,
+			ArrayDeque<String []> insertedKeys, int [] nextBenchId) throws SQLException {
+
+		int pick = random.nextInt(weightSum);
+		int opIdx = 0;
+		while (pick >= weights[opIdx]) {
+			pick -= weights[opIdx];
+			opIdx++;
+		}
+		String [] row = rows.get(random.nextInt(rows.size()));
+
+		switch (OPERATIONS.get(opIdx)) {
+			case "find":
+				storage.find(Arrays.copyOf(row, pKNum));
+				break;
+
+			case "prefix":
+				String [] prefixes = new String [pKNum];
+				Arrays.fill(prefixes, "");
+				prefixes[0] = row[0].substring(0, Math.min(3, row[0].length()));
+				storage.searchPrefix(prefixes);
+				break;
+
+			case "update":
+				//CREATOR rows are all key, so their new values are their key.
+				String [] newVal = (pKNum == row.length)
+						? row.clone() : Arrays.copyOfRange(row, pKNum, row.length);
+				storage.update(Arrays.copyOf(row, pKNum), newVal);
+				break;
+
+			case "insert":
+				String [] newRow = row.clone();
+				newRow[0] = "bench-" + String.valueOf(nextBenchId[0]++);
+				if (storage.insert(newRow)) insertedKeys.add(Arrays.copyOf(newRow, pKNum));
+				break;
+
+			case "delete":
+				String [] oldKey = insertedKeys.poll();
+				if (oldKey == null) {
+					oldKey = Arrays.copyOf(row, pKNum);
+					oldKey[0] = "bench-missing";
+				}
+				storage.delete(oldKey);
+				break;
+
+			default:
+				storage.scan(scannedRow -> { });
+				break;
+		}
+	}
+
+	/**
+	 * Helper method to parse a workload: op:weight pairs, comma separated.
+	 *
+	 * @param workload
+	 * 		The workload, e.g. "find:90,update:10".
+	 * @return weights
+	 * 		The weight of each of OPERATIONS, or null if the workload is invalid.
+	 */
+	private static int [] parseWeights(String workload) {
+		int [] weights = new int [OPERATIONS.size()];
+		int weightSum = 0;
+
+		for (String pair : workload.split(",")) {
+			String [] pairParts = pair.trim().split(":");
+			int opIdx = OPERATIONS.indexOf(pairParts[0].toLowerCase(Locale.ROOT));
+			if (pairParts.length != 2 || opIdx < 0) return null;
+
+			try {
+				weights[opIdx] = Integer.parseInt(pairParts[1].trim());
+			} catch (NumberFormatException numE) {
+				return null;
+			}
+			if (weights[opIdx] < 0) return null;
+			weightSum += weights[opIdx];
+		}
+		return (weightSum > 0) ? weights : null;
+	}
+}
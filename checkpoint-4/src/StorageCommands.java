@@ -0,0 +1,326 @@
+/**
+ * Main menu options of SU23 CSE3241 Team SHRX's database main program
+ * over a table kept in a TableStorage (e.g. in memory) rather than
+ * in the database: insert, search, update, delete and browse,
+ * with the same prompts and the same console output as the
+ * options that run SQL on the database.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+public class StorageCommands {
+
+	/**
+	 * Method (procedure, no return values) to insert a new record
+	 * into the table of a given storage.
+	 *
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param storage
+	 * 		The storage of the table to make an insertion.
+	 *
+	 * @requires consoleIn != null
+	 * @requires storage != null
+	 */
+	public static void insertNewRecord(Scanner consoleIn, TableStorage storage) {
+		//Check method requirements are met.
+		assert consoleIn != null && storage != null;
+
+		String tableName = storage.getTableName();
+		String [] newRow = MainAppHelpers.getRowColumnValues(consoleIn, tableName);
+		if (newRow == null) return;
+
+		try {
+			if (storage.insert(newRow)) {
+				int pKNum = MainAppHelpers.getPrimaryKeyNames(tableName).length;
+
+				System.out.println("New data successfully inserted into table: "
+						+ tableName + ".");
+				System.out.println("...Printing the inserted row as confirmation.");
+				System.out.println();
+				printRowByKey(storage, Arrays.copyOf(newRow, pKNum));
+
+			} else {
+				System.out.println("Sorry. A row with the given primary key already exists.");
+				System.out.println("...Thus, no insert operation has been performed.");
+				System.out.println();
+			}
+
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE,
+					"inserting into the table storage.");
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to search (generally/substring)
+	 * the table of a given storage for rows whose primary key values
+	 * each contain the values given by the user, ignoring the case
+	 * of ASCII letters as LIKE does in the database.
+	 *
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param storage
+	 * 		The storage of the table to generally search from.
+	 *
+	 * @requires consoleIn != null
+	 * @requires storage != null
+	 */
+	public static void searchExistingRecord(Scanner consoleIn, TableStorage storage) {
+		//Check method requirements are met.
+		assert consoleIn != null && storage != null;
+
+		String tableName = storage.getTableName();
+		String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
+		if (userPK == null) return;
+
+		String [] lowerPK = new String [userPK.length];
+		for (int kIdx = 0; kIdx < userPK.length; kIdx++) {
+			lowerPK[kIdx] = SearchIndex.toLowerAscii(userPK[kIdx]);
+		}
+
+		try {
+			List<String []> rows = new ArrayList<>();
+			storage.scan(row -> {
+				for (int kIdx = 0; kIdx < lowerPK.length; kIdx++) {
+					if (row[kIdx] == null || !SearchIndex.toLowerAscii(row[kIdx]).contains(lowerPK[kIdx])) return;
+				}
+				rows.add(row);
+			});
+
+			if (rows.isEmpty()) {
+				System.out.println("Your query returned no rows.");
+			} else {
+				rows.sort(TableStorage.getPrimaryKeyOrder(userPK.length));
+				printRows(tableName, rows, 1);
+			}
+
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE,
+					"searching the table storage.");
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to update an existing record
+	 * in the table of a given storage. The record is located via
+	 * the primary key value(s) obtained from the user.
+	 *
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param storage
+	 * 		The storage of the table to make an update.
+	 *
+	 * @requires consoleIn != null
+	 * @requires storage != null
+	 */
+	public static void updateExistingRecord(Scanner consoleIn, TableStorage storage) {
+		//Check method requirements are met.
+		assert consoleIn != null && storage != null;
+
+		String tableName = storage.getTableName();
+		String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
+		if (userPK == null) return;
+
+		try {
+			if (storage.find(userPK) != null) {
+				String [] userRow = MainAppHelpers.getUpdateRowValues(consoleIn, tableName);
+
+				if (userRow != null && storage.update(userPK, userRow)) {
+					//CREATOR rows are all key, so the update gives them a new key.
+					String [] newPK = tableName.equals(MainAppHelpers.TNAME_CRE)
+							? userRow : userPK;
+
+					System.out.println("Record successfully updated in table: "
+							+ tableName + ".");
+					System.out.println("...Printing the updated row "
+							+ "as confirmation.");
+					System.out.println();
+					printRowByKey(storage, newPK);
+
+				} else {
+					//Handle case where the row is gone, or its new key is taken.
+					System.out.println("Sorry. The row could not be updated with the given values.");
+					System.out.println("...Thus, no update operation has been performed.");
+					System.out.println();
+				}
+
+			} else {
+				//Handle case where the given primary key does not match any record.
+				System.out.println("Sorry. The given primary key does not match any row in the table.");
+				System.out.println("...Thus, no update operation has been performed.");
+				System.out.println();
+			}
+
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE,
+					"updating the table storage.");
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to delete an existing record
+	 * from the table of a given storage. The record is located via
+	 * the primary key value(s) obtained from the user.
+	 *
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param storage
+	 * 		The storage of the table to make a deletion.
+	 *
+	 * @requires consoleIn != null
+	 * @requires storage != null
+	 */
+	public static void deleteExistingRecord(Scanner consoleIn, TableStorage storage) {
+		//Check method requirements are met.
+		assert consoleIn != null && storage != null;
+
+		String tableName = storage.getTableName();
+		String [] userPK = MainAppHelpers.getPrimaryKeyValues(consoleIn, tableName);
+		if (userPK == null) return;
+
+		try {
+			if (storage.delete(userPK)) {
+				System.out.println("Record successfully deleted from table: "
+						+ tableName + ".");
+
+				if (storage.find(userPK) != null) {
+					System.out.println("Err: A row with the given primary key still exists.");
+				} else {
+					System.out.println("...Confirmed that no row with the given "
+							+ "primary key remains.");
+				}
+				System.out.println();
+
+			} else {
+				//Handle case where the given primary key does not match any record.
+				System.out.println("Sorry. The given primary key does not match any row in the table.");
+				System.out.println("...Thus, no delete (update) operation has been performed.");
+				System.out.println();
+			}
+
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE,
+					"deleting from the table storage.");
+		}
+	}
+
+	/**
+	 * Method (procedure, no return values) to print the table of
+	 * a given storage one page of rows at a time, in primary key order.
+	 *
+	 * @param consoleIn
+	 * 		The user input stream.
+	 * @param storage
+	 * 		The storage of the table to browse.
+	 * @param pageSize
+	 * 		The number of rows printed per page.
+	 *
+	 * @requires consoleIn != null
+	 * @requires storage != null
+	 * @requires pageSize > 0
+	 */
+	public static void browseTable(Scanner consoleIn, TableStorage storage, int pageSize) {
+		//Check method requirements are met.
+		assert consoleIn != null && storage != null && pageSize > 0;
+
+		String tableName = storage.getTableName();
+		List<String []> rows;
+
+		//An empty prefix for each key column matches all rows, in key order.
+		String [] allPrefixes = new String [MainAppHelpers.getPrimaryKeyNames(tableName).length];
+		Arrays.fill(allPrefixes, "");
+		try {
+			rows = storage.searchPrefix(allPrefixes);
+
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE,
+					"browsing the table storage.");
+			return;
+		}
+
+		System.out.println();
+
+		if (rows.isEmpty()) {
+			System.out.println("The table has no rows.");
+		}
+
+		for (int firstIdx = 0; ; firstIdx += pageSize) {
+			int endIdx = Math.min(firstIdx + pageSize, rows.size());
+			if (endIdx > firstIdx) printRows(tableName, rows.subList(firstIdx, endIdx), firstIdx + 1);
+
+			//A short page means the end of the table has been reached.
+			if (endIdx - firstIdx < pageSize) {
+				System.out.println("...End of table: " + tableName + ".");
+				System.out.println();
+				break;
+			}
+
+			System.out.print("Press enter for the next page, or enter q to stop: ");
+			if (consoleIn.nextLine().trim().equalsIgnoreCase("q")) {
+				System.out.println();
+				break;
+			}
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to print the one row
+	 * of a storage with the given primary key values.
+	 *
+	 * @param storage
+	 * 		The storage of the table to read from.
+	 * @param pKVal
+	 * 		The primary key values of the row.
+	 * @throws SQLException
+	 * 		If reading the storage fails.
+	 */
+	private static void printRowByKey(TableStorage storage, String [] pKVal) throws SQLException {
+		String [] row = storage.find(pKVal);
+		if (row == null) {
+			System.out.println("Your query returned no rows.");
+		} else {
+			printRows(storage.getTableName(), Arrays.asList(new String [][] {row}), 1);
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to print rows
+	 * in the program's console format, as TextResultSink:
+	 * "Columns: ..." followed by one "Row N: ..." line per row.
+	 *
+	 * @param tableName
+	 * 		The name of the table of the rows.
+	 * @param rows
+	 * 		The rows to print, not empty.
+	 * @param firstRowNum
+	 * 		The number printed for the first row.
+	 */
+	private static void printRows(String tableName, List<String []> rows, int firstRowNum) {
+		String lineSep = System.lineSeparator();
+		StringBuilder buf = new StringBuilder();
+
+		buf.append("Columns: ")
+				.append(String.join(", ", MainAppHelpers.getColumnNames(tableName)))
+				.append(lineSep).append(lineSep);
+
+		int rowNum = firstRowNum;
+		for (String [] row : rows) {
+			buf.append("Row ").append(rowNum++).append(": ");
+			for (int cIdx = 0; cIdx < row.length; cIdx++) {
+				if (cIdx > 0) buf.append(", ");
+				buf.append(row[cIdx]);
+			}
+			buf.append(lineSep).append(lineSep);
+		}
+		System.out.print(buf);
+	}
+}
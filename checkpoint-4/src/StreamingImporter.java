@@ -0,0 +1,657 @@
+/**
+ * Streaming CSV/TSV file importer for
+ * SU23 CSE3241 Team SHRX's database main program.
+ *
+ * A reader thread streams the file through a buffered NIO channel and
+ * parses rows byte by byte, decoding only the columns that are imported.
+ * The first line is a header; its column names are mapped onto the
+ * table's columns (see MainAppHelpers.getColumnNames). Parsed rows are
+ * handed over in batches through a bounded queue, so the reader blocks
+ * (backpressure) whenever the database falls behind. Each batch is
+ * written through a BulkInserter and committed together with the byte
+ * offset reached, so an interrupted import resumes right after the last
+ * committed batch. If the table rejects a row of a batch (e.g. a taken
+ * primary key), the batch is inserted again row by row, skipping and
+ * reporting the rejected rows, so the offset still moves past them.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class StreamingImporter {
+
+	/*
+	 * Below are constants for:
+	 * the default rows per committed batch;
+	 * the number of parsed batches allowed to wait for the database;
+	 * the number of rejected rows reported one by one;
+	 * and the size of the direct read buffer.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 5000;
+	private static final int QUEUE_CAPACITY = 4;
+	private static final int MAX_REPORTED_ROWS = 10;
+	private static final int READ_BUFFER_BYTES = 1 << 18;
+
+	/*
+	 * SQL for the table recording how far each file has been committed.
+	 */
+	private static final String CKPT_CREATE_SQL = "CREATE TABLE IF NOT EXISTS "
+			+ "IMPORT_CHECKPOINT ("
+			+ "File_path text not null, "
+			+ "Table_name text not null, "
+			+ "Byte_offset integer not null, "
+			+ "primary key (File_path, Table_name));";
+	private static final String CKPT_SELECT_SQL = "SELECT Byte_offset "
+			+ "FROM IMPORT_CHECKPOINT WHERE File_path = ? AND Table_name = ?;";
+	private static final String CKPT_UPSERT_SQL = "INSERT OR REPLACE "
+			+ "INTO IMPORT_CHECKPOINT VALUES(?, ?, ?);";
+	private static final String CKPT_DELETE_SQL = "DELETE "
+			+ "FROM IMPORT_CHECKPOINT WHERE File_path = ? AND Table_name = ?;";
+
+	/*
+	 * Marker batch put on the queue once the reader thread is done.
+	 */
+	private static final RowBatch END_OF_FILE = new RowBatch(new String [0][], 0, -1);
+
+	/*
+	 * Import configuration.
+	 */
+	private final Path filePath;
+	private final String tableName;
+	private final byte delimiter;
+	private final int batchSize;
+	private final String [] columnNames;
+
+	/*
+	 * Hand-over between the reader thread and the writing thread.
+	 */
+	private final BlockingQueue<RowBatch> queue =
+			new ArrayBlockingQueue<RowBatch>(QUEUE_CAPACITY);
+	private volatile IOException readerError = null;
+	private volatile boolean cancelled = false;
+
+	/*
+	 * Rows skipped because they did not have a value for every column,
+	 * and rows skipped because the table rejected them.
+	 */
+	private volatile long malformedCount = 0;
+	private long rejectedCount = 0;
+
+	/**
+	 * Constructor of an importer of one file into one table.
+	 *
+	 * @param filePath
+	 * 		The path to the CSV or TSV file, with a header line.
+	 * @param tableName
+	 * 		The name of the table to import into.
+	 * @param delimiter
+	 * 		The field delimiter, ',' for CSV or '\t' for TSV.
+	 * @param batchSize
+	 * 		The number of rows committed together.
+	 *
+	 * @requires filePath != null
+	 * @requires tableName is one of the four valid tables.
+	 * @requires batchSize > 0
+	 */
+	public StreamingImporter(Path filePath, String tableName, char delimiter, int batchSize) {
+		//Check constructor requirements are met.
+		assert filePath != null && tableName != null && batchSize > 0;
+
+		this.filePath = filePath.toAbsolutePath().normalize();
+		this.tableName = tableName;
+		this.delimiter = (byte) delimiter;
+		this.batchSize = batchSize;
+		this.columnNames = MainAppHelpers.getColumnNames(tableName);
+	}
+
+	/**
+	 * Method to import the file, resuming from the last committed offset
+	 * if an earlier import of the same file into the same table
+	 * did not finish.
+	 *
+	 * @param conn
+	 * 		The (writer) connection object to the SQLite database.
+	 * @return insertedCount
+	 * 		The number of rows committed by this run.
+	 * @throws SQLException
+	 * 		If writing to the database fails. Batches committed
+	 * 		before the failure stay committed, and are skipped on resume.
+	 * @throws IOException
+	 * 		If reading or parsing the file fails.
+	 *
+	 * @requires conn != null
+	 */
+	public long run(Connection conn) throws SQLException, IOException {
+		//Check method requirement that connection is not null.
+		assert conn != null;
+
+		if (this.columnNames == null) {
+			throw new SQLException("Invalid table name for import: " + this.tableName);
+		}
+
+		String ckptFile = this.filePath.toString();
+		long resumeOffset = readCheckpoint(conn, ckptFile);
+		if (resumeOffset > 0) {
+			System.out.println("...Resuming import after byte offset "
+					+ String.valueOf(resumeOffset) + ".");
+		}
+
+		//Rows are committed explicitly per batch, never by chunk size.
+		BulkInserter inserter = new BulkInserter(conn, this.tableName, Integer.MAX_VALUE);
+		PreparedStatement ckptStat = null;
+		boolean finished = false;
+
+		Thread readerThread = new Thread(() -> readFile(resumeOffset),
+				"StreamingImporter-reader");
+		readerThread.setDaemon(true);
+
+		try {
+			ckptStat = conn.prepareStatement(CKPT_UPSERT_SQL);
+			readerThread.start();
+
+			RowBatch batch = takeBatch();
+			while (batch != END_OF_FILE) {
+				//Commit the rows and the offset reached in one transaction.
+				ckptStat.setString(1, ckptFile);
+				ckptStat.setString(2, this.tableName);
+				ckptStat.setLong(3, batch.endOffset);
+
+				try {
+					for (int idx = 0; idx < batch.rowCount; idx++) {
+						inserter.addRow(batch.rows[idx]);
+					}
+					inserter.commitChunk(ckptStat);
+
+				} catch (SQLException sE) {
+					//Find the rows the table rejects, and commit the others.
+					inserter.rollbackChunk();
+					insertRowByRow(inserter, batch);
+					inserter.commitChunk(ckptStat);
+				}
+
+				batch = takeBatch();
+			}
+
+			if (this.readerError != null) throw this.readerError;
+			finished = true;
+
+		} finally {
+			//Stop the reader thread if the import failed part way.
+			this.cancelled = true;
+			readerThread.interrupt();
+
+			inserter.close();
+			try {
+				if (ckptStat != null) ckptStat.close();
+			} catch (SQLException sE) {
+				SQLHelpers.printSQLExceptionData(sE, "closing the import checkpoint PreparedStatement.");
+			}
+		}
+
+		if (finished) deleteCheckpoint(conn, ckptFile);
+
+		inserter.printStatistics();
+		if (this.malformedCount > 0) {
+			System.out.println("...Skipped " + String.valueOf(this.malformedCount)
+					+ " row(s) without a value for every column.");
+		}
+		if (this.rejectedCount > 0) {
+			System.out.println("...Skipped " + String.valueOf(this.rejectedCount)
+					+ " row(s) rejected by table " + this.tableName + ".");
+		}
+		return inserter.getRowsInserted();
+	}
+
+	/**
+	 * Method to import a CSV (or, by file extension, TSV) file into
+	 * a given table using the pool's writer connection.
+	 * Handle and print if an exception is thrown.
+	 *
+	 * @param connPool
+	 * 		The connection pool to the SQLite database.
+	 * @param tableName
+	 * 		The name of the table to import into.
+	 * @param filePathStr
+	 * 		The path to the file, with a header line.
+	 * @return insertedCount
+	 * 		The number of rows committed.
+	 *
+	 * @requires connPool != null
+	 * @requires tableName is one of the four valid tables.
+	 * @requires filePathStr != null
+	 */
+	public static long importFile(ConnectionPool connPool, String tableName, String filePathStr) {
+		//Check method requirements are met.
+		assert connPool != null && tableName != null && filePathStr != null;
+
+		Path filePath = Paths.get(filePathStr);
+		char delimiter = filePathStr.toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+		StreamingImporter importer = new StreamingImporter(filePath, tableName,
+				delimiter, DEFAULT_BATCH_SIZE);
+
+		long insertedCount = 0;
+		try {
+			Connection conn = connPool.borrowWriter();
+			try {
+				insertedCount = importer.run(conn);
+			} finally {
+				connPool.returnWriter(conn);
+			}
+
+		} catch (SQLException sE) {
+			SQLHelpers.printSQLExceptionData(sE, "importing file: " + filePathStr + ".");
+
+		} catch (IOException iOE) {
+			System.out.println();
+			System.out.println("Err: Exception thrown when reading file: " + filePathStr + ".");
+			System.out.println(iOE.getMessage());
+		}
+
+		//Batches committed before any failure are kept, so rebuild the
+		//primary key filter of the table from its rows either way.
+		PrimaryKeyFilter.rebuild(connPool, tableName);
+		return insertedCount;
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to insert the rows of
+	 * a batch one by one, after the batch failed as a whole: each row
+	 * the table rejects is rolled back alone, counted, and (up to
+	 * MAX_REPORTED_ROWS of them) reported with its first column and why.
+	 *
+	 * @param inserter
+	 * 		The bulk inserter, with no rows added since its last commit.
+	 * @param batch
+	 * 		The batch to insert.
+	 * @throws SQLException
+	 * 		If an insert fails for another reason than a rejected row.
+	 */
+	private void insertRowByRow(BulkInserter inserter, RowBatch batch) throws SQLException {
+		for (int idx = 0; idx < batch.rowCount; idx++) {
+			String rejectReason = inserter.insertRowAlone(batch.rows[idx]);
+			if (rejectReason == null) continue;
+
+			this.rejectedCount++;
+			if (this.rejectedCount <= MAX_REPORTED_ROWS) {
+				System.out.println("Err: Skipped row " + this.columnNames[0] + " = "
+						+ batch.rows[idx][0] + ": " + rejectReason);
+			} else if (this.rejectedCount == MAX_REPORTED_ROWS + 1) {
+				System.out.println("Err: Further rejected rows are only counted.");
+			}
+		}
+	}
+
+	/**
+	 * Helper method to wait for the next parsed batch.
+	 *
+	 * @return batch
+	 * 		The next batch, or END_OF_FILE.
+	 * @throws IOException
+	 * 		If the wait is interrupted.
+	 */
+	private RowBatch takeBatch() throws IOException {
+		try {
+			return this.queue.take();
+		} catch (InterruptedException iE) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted waiting for parsed rows.", iE);
+		}
+	}
+
+	/**
+	 * Helper method (procedure, no return values) run by the reader thread:
+	 * parse the header, skip to the resume offset, then parse and queue
+	 * all remaining rows. Always ends by queueing END_OF_FILE.
+	 *
+	 * @param resumeOffset
+	 * 		The byte offset to continue from, 0 to start after the header.
+	 */
+	private void readFile(long resumeOffset) {
+		RowParser parser = new RowParser();
+
+		try (FileChannel channel = FileChannel.open(this.filePath, StandardOpenOption.READ)) {
+			ByteBuffer readBuf = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+			long offset = 0;
+
+			while (!this.cancelled && channel.read(readBuf) >= 0) {
+				readBuf.flip();
+				while (readBuf.hasRemaining()) {
+					offset = parser.parse(readBuf, offset);
+
+					//Once the header is known, jump straight to the resume offset,
+					//dropping the rest of the buffer.
+					if (parser.columnMap != null && resumeOffset > offset) {
+						channel.position(resumeOffset);
+						offset = resumeOffset;
+						parser.resetRow();
+						resumeOffset = 0;
+						readBuf.position(readBuf.limit());
+					}
+				}
+				readBuf.clear();
+			}
+
+			if (!this.cancelled) parser.finish(offset);
+
+		} catch (IOException iOE) {
+			this.readerError = iOE;
+
+		} catch (InterruptedException iE) {
+			//Cancelled by the writing thread, nothing left to hand over.
+			return;
+
+		} catch (RuntimeException | Error e) {
+			//Hand any other failure (e.g. a malformed row) to the writing thread
+			//as well, so it never waits for a batch that will not come.
+			this.readerError = new IOException("Parsing the file failed: " + e, e);
+		}
+
+		try {
+			this.queue.put(END_OF_FILE);
+		} catch (InterruptedException iE) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Helper method to read the committed byte offset of an earlier,
+	 * unfinished import of the same file into the same table.
+	 *
+	 * @param conn
+	 * 		The connection object to the SQLite database.
+	 * @param ckptFile
+	 * 		The absolute path of the file.
+	 * @return resumeOffset
+	 * 		The byte offset to resume from, or 0 if none.
+	 * @throws SQLException
+	 * 		If reading the checkpoint table fails.
+	 */
+	private long readCheckpoint(Connection conn, String ckptFile) throws SQLException {
+		try (Statement stat = conn.createStatement()) {
+			stat.execute(CKPT_CREATE_SQL);
+		}
+
+		long resumeOffset = 0;
+		try (PreparedStatement pStat = conn.prepareStatement(CKPT_SELECT_SQL)) {
+			pStat.setString(1, ckptFile);
+			pStat.setString(2, this.tableName);
+			try (ResultSet rSet = pStat.executeQuery()) {
+				if (rSet.next()) resumeOffset = rSet.getLong(1);
+			}
+		}
+		return resumeOffset;
+	}
+
+	/**
+	 * Helper method (procedure, no return values) to forget the checkpoint
+	 * of a finished import.
+	 *
+	 * @param conn
+	 * 		The connection object to the SQLite database.
+	 * @param ckptFile
+	 * 		The absolute path of the file.
+	 * @throws SQLException
+	 * 		If deleting the checkpoint fails.
+	 */
+	private void deleteCheckpoint(Connection conn, String ckptFile) throws SQLException {
+		try (PreparedStatement pStat = conn.prepareStatement(CKPT_DELETE_SQL)) {
+			pStat.setString(1, ckptFile);
+			pStat.setString(2, this.tableName);
+			pStat.executeUpdate();
+		}
+		if (!conn.getAutoCommit()) conn.commit();
+	}
+
+	/**
+	 * A batch of parsed rows, in table column order,
+	 * and the byte offset right after its last row.
+	 */
+	private static final class RowBatch {
+		private final String [][] rows;
+		private final int rowCount;
+		private final long endOffset;
+
+		private RowBatch(String [][] rows, int rowCount, long endOffset) {
+			this.rows = rows;
+			this.rowCount = rowCount;
+			this.endOffset = endOffset;
+		}
+	}
+
+	/**
+	 * Byte-level CSV/TSV parser, keeping its state across read buffers.
+	 * Supports double-quoted fields with "" escapes, and LF or CRLF lines.
+	 * Field bytes are collected in one reusable array, and only decoded
+	 * into a String when the field maps to a table column.
+	 */
+	private final class RowParser {
+
+		/*
+		 * The current field's bytes and quoting state.
+		 */
+		private byte [] fieldBuf = new byte [256];
+		private int fieldLen = 0;
+		private boolean inQuotes = false;
+		private boolean afterQuote = false;
+
+		/*
+		 * The current row: the file column being read, whether the line
+		 * had any content, and the values placed in table column order.
+		 */
+		private int fieldIdx = 0;
+		private boolean rowHasData = false;
+		private String [] row = null;
+		private int rowFilled = 0;
+
+		/*
+		 * Header fields while reading the first line, then the mapping from
+		 * file column index to table column index (-1 if not imported).
+		 */
+		private ArrayList<String> headerFields = new ArrayList<String>();
+		private int [] columnMap = null;
+		private boolean headerDone = false;
+
+		/*
+		 * The batch being filled.
+		 */
+		private String [][] batchRows = new String [StreamingImporter.this.batchSize][];
+		private int batchCount = 0;
+
+		/**
+		 * Parse all bytes remaining in the buffer.
+		 *
+		 * @return offset
+		 * 		The absolute file offset after the parsed bytes.
+		 */
+		private long parse(ByteBuffer readBuf, long offset) throws IOException, InterruptedException {
+			while (readBuf.hasRemaining()) {
+				byte c = readBuf.get();
+				offset++;
+
+				if (this.inQuotes) {
+					if (c == '"') {
+						this.inQuotes = false;
+						this.afterQuote = true;
+					} else {
+						append(c);
+					}
+					continue;
+				}
+
+				if (this.afterQuote) {
+					this.afterQuote = false;
+					//A doubled quote inside a quoted field is one literal quote.
+					if (c == '"') {
+						append(c);
+						this.inQuotes = true;
+						continue;
+					}
+				}
+
+				if (c == '"' && this.fieldLen == 0) {
+					this.inQuotes = true;
+					this.rowHasData = true;
+				} else if (c == StreamingImporter.this.delimiter) {
+					this.rowHasData = true;
+					endField();
+				} else if (c == '\n') {
+					endField();
+					endRow(offset);
+
+					//Return as soon as the header is known,
+					//so the caller can jump to the resume offset.
+					if (this.headerDone) {
+						this.headerDone = false;
+						return offset;
+					}
+				} else if (c != '\r') {
+					append(c);
+				}
+			}
+			return offset;
+		}
+
+		/**
+		 * Handle a last line without a trailing newline, and
+		 * queue the final partial batch.
+		 */
+		private void finish(long offset) throws IOException, InterruptedException {
+			if (this.rowHasData || this.fieldLen > 0) {
+				endField();
+				endRow(offset);
+			}
+			if (this.columnMap == null) {
+				throw new IOException("The file has no header line.");
+			}
+			flushBatch(offset);
+		}
+
+		/**
+		 * Drop any partially parsed row, used after seeking.
+		 */
+		private void resetRow() {
+			this.fieldLen = 0;
+			this.inQuotes = false;
+			this.afterQuote = false;
+			this.fieldIdx = 0;
+			this.rowHasData = false;
+			this.rowFilled = 0;
+			Arrays.fill(this.row, null);
+		}
+
+		private void append(byte c) {
+			if (this.fieldLen == this.fieldBuf.length) {
+				this.fieldBuf = Arrays.copyOf(this.fieldBuf, this.fieldLen * 2);
+			}
+			this.fieldBuf[this.fieldLen++] = c;
+			this.rowHasData = true;
+		}
+
+		private void endField() {
+			if (this.columnMap == null) {
+				this.headerFields.add(decodeField());
+
+			} else if (this.fieldIdx < this.columnMap.length) {
+				int target = this.columnMap[this.fieldIdx];
+				if (target >= 0 && this.row[target] == null) {
+					this.row[target] = decodeField();
+					this.rowFilled++;
+				}
+			}
+
+			this.fieldIdx++;
+			this.fieldLen = 0;
+		}
+
+		private void endRow(long offset) throws IOException, InterruptedException {
+			boolean hasData = this.rowHasData;
+			this.fieldIdx = 0;
+			this.rowHasData = false;
+
+			//Skip blank lines.
+			if (!hasData) {
+				if (this.columnMap == null) this.headerFields.clear();
+				return;
+			}
+
+			if (this.columnMap == null) {
+				buildColumnMap();
+				return;
+			}
+
+			if (this.rowFilled == this.row.length) {
+				this.batchRows[this.batchCount++] = this.row;
+				this.row = new String [this.row.length];
+			} else {
+				StreamingImporter.this.malformedCount++;
+				Arrays.fill(this.row, null);
+			}
+			this.rowFilled = 0;
+
+			if (this.batchCount == this.batchRows.length) flushBatch(offset);
+		}
+
+		private void flushBatch(long offset) throws InterruptedException {
+			if (this.batchCount == 0) return;
+
+			//Blocks while the queue is full: backpressure from the database.
+			StreamingImporter.this.queue.put(
+					new RowBatch(this.batchRows, this.batchCount, offset));
+			this.batchRows = new String [StreamingImporter.this.batchSize][];
+			this.batchCount = 0;
+		}
+
+		private void buildColumnMap() throws IOException {
+			String [] tableColumns = StreamingImporter.this.columnNames;
+			this.columnMap = new int [this.headerFields.size()];
+
+			boolean [] found = new boolean [tableColumns.length];
+			for (int fIdx = 0; fIdx < this.columnMap.length; fIdx++) {
+				//Strip a UTF-8 byte order mark from the first header field.
+				String header = this.headerFields.get(fIdx).replace("\uFEFF", "").trim();
+
+				this.columnMap[fIdx] = -1;
+				for (int cIdx = 0; cIdx < tableColumns.length; cIdx++) {
+					if (!found[cIdx] && tableColumns[cIdx].equalsIgnoreCase(header)) {
+						this.columnMap[fIdx] = cIdx;
+						found[cIdx] = true;
+						break;
+					}
+				}
+			}
+
+			for (int cIdx = 0; cIdx < tableColumns.length; cIdx++) {
+				if (!found[cIdx]) {
+					throw new IOException("The header line has no column "
+							+ tableColumns[cIdx] + " for table "
+							+ StreamingImporter.this.tableName + ".");
+				}
+			}
+			this.headerFields = null;
+			this.row = new String [tableColumns.length];
+			this.headerDone = true;
+		}
+
+		private String decodeField() {
+			return new String(this.fieldBuf, 0, this.fieldLen, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Storage of the rows of one table of
+ * SU23 CSE3241 Team SHRX's database main program,
+ * so the program can keep each table wherever it runs fastest:
+ * in the SQLite database (SQLiteTableStorage), or in memory,
+ * in the Relation engine of Checkpoint 2 (RelationTableStorage).
+ * StorageBenchmark times both on a workload, table by table.
+ *
+ * Rows are string arrays in table column order (see
+ * MainAppHelpers.getColumnNames), primary key columns first;
+ * primary key values are in MainAppHelpers.getPrimaryKeyNames order.
+ *
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface TableStorage {
+
+	/**
+	 * Method to return the name of the table stored.
+	 *
+	 * @return tableName
+	 * 		One of the four valid tables.
+	 */
+	String getTableName();
+
+	/**
+	 * Method to insert a new row, unless its primary key is taken.
+	 *
+	 * @param row
+	 * 		All column values of the new row.
+	 * @return isInserted
+	 * 		False if a row with the same primary key exists.
+	 * @throws SQLException
+	 * 		If the storage fails, or a value breaks another
+	 * 		constraint of the table (e.g. a CHECK or NOT NULL).
+	 *
+	 * @requires row.length is the number of columns of the table.
+	 */
+	boolean insert(String [] row) throws SQLException;
+
+	/**
+	 * Method to look up the one row with the given primary key values.
+	 *
+	 * @param pKVal
+	 * 		The primary key values of the row.
+	 * @return row
+	 * 		All column values of the row, or null if there is none.
+	 * @throws SQLException
+	 * 		If the storage fails.
+	 */
+	String [] find(String [] pKVal) throws SQLException;
+
+	/**
+	 * Method to return all rows whose primary key values each start with
+	 * the given prefix, in primary key order; an empty prefix matches all.
+	 *
+	 * @param pKPrefixes
+	 * 		A prefix for each primary key column.
+	 * @return rows
+	 * 		The matching rows, possibly none.
+	 * @throws SQLException
+	 * 		If the storage fails.
+	 */
+	List<String []> searchPrefix(String [] pKPrefixes) throws SQLException;
+
+	/**
+	 * Method to update the row with the given primary key values,
+	 * in the same way as the update option of the main menu:
+	 * the new values are those of the non-key columns,
+	 * or for CREATOR (all key columns) the new primary key values.
+	 *
+	 * @param pKVal
+	 * 		The primary key values of the row.
+	 * @param newVal
+	 * 		The new column values, as MainAppHelpers.getUpdateRowValues.
+	 * @return isUpdated
+	 * 		False if there is no such row, or a new primary key is taken.
+	 * @throws SQLException
+	 * 		If the storage fails, or a value breaks another
+	 * 		constraint of the table (e.g. a CHECK or NOT NULL).
+	 */
+	boolean update(String [] pKVal, String [] newVal) throws SQLException;
+
+	/**
+	 * Method to delete the row with the given primary key values.
+	 *
+	 * @param pKVal
+	 * 		The primary key values of the row.
+	 * @return isDeleted
+	 * 		False if there is no such row.
+	 * @throws SQLException
+	 * 		If the storage fails.
+	 */
+	boolean delete(String [] pKVal) throws SQLException;
+
+	/**
+	 * Method to pass every row to a handler, in no particular order.
+	 *
+	 * @param rowHandler
+	 * 		Called once per row.
+	 * @return rowCount
+	 * 		The number of rows passed.
+	 * @throws SQLException
+	 * 		If the storage fails.
+	 */
+	int scan(Consumer<String []> rowHandler) throws SQLException;
+
+	/**
+	 * Method to return the exclusive upper bound of the strings
+	 * starting with a prefix, for range scans of prefix searches:
+	 * the prefix with its last character incremented.
+	 *
+	 * @param prefix
+	 * 		The prefix, not empty.
+	 * @return upperBound
+	 * 		The bound, or null if there is no simple one
+	 * 		(the prefix ends in a surrogate or in U+FFFF).
+	 */
+	static String getPrefixUpperBound(String prefix) {
+		//Check method requirement that the prefix is not empty.
+		assert prefix != null && !prefix.isEmpty();
+
+		char lastChar = prefix.charAt(prefix.length() - 1);
+		if (Character.isSurrogate(lastChar) || lastChar == Character.MAX_VALUE) return null;
+
+		return prefix.substring(0, prefix.length() - 1) + (char) (lastChar + 1);
+	}
+
+	/**
+	 * Method to check whether each primary key value of a row
+	 * starts with its prefix.
+	 *
+	 * @param row
+	 * 		The row, primary key columns first.
+	 * @param pKPrefixes
+	 * 		A prefix for each primary key column.
+	 * @return isMatch
+	 */
+	static boolean matchesPrefixes(String [] row, String [] pKPrefixes) {
+		for (int kIdx = 0; kIdx < pKPrefixes.length; kIdx++) {
+			if (row[kIdx] == null || !row[kIdx].startsWith(pKPrefixes[kIdx])) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Method to return the order of rows by their primary key values,
+	 * column by column, as ORDER BY the primary key columns in the database.
+	 *
+	 * @param pKNum
+	 * 		The number of primary key columns.
+	 * @return pKOrder
+	 */
+	static Comparator<String []> getPrimaryKeyOrder(int pKNum) {
+		return (rowA, rowB) -> {
+			for (int kIdx = 0; kIdx < pKNum; kIdx++) {
+				int cmp = rowA[kIdx].compareTo(rowB[kIdx]);
+				if (cmp != 0) return cmp;
+			}
+			return 0;
+		};
+	}
+}
@@ -0,0 +1,51 @@
+/**
+ * Plain text result renderer of
+ * SU23 CSE3241 Team SHRX's database main program,
+ * in the program's console format:
+ * "Columns: ..." followed by one "Row N: ..." line per row.
+ * 
+ * @author Keming (he.1537)
+ * @version 20261017
+ */
+
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class TextResultSink extends BufferedResultSink {
+
+	/**
+	 * Constructor of a plain text sink.
+	 * 
+	 * @param out
+	 * 		The destination; wrapped in a large buffer.
+	 * @param ownsOutput
+	 * 		True if close() should close out; false to only flush it.
+	 * @param flushEveryRows
+	 * 		Flush after this many rows, or FLUSH_AT_END.
+	 */
+	public TextResultSink(Writer out, boolean ownsOutput, int flushEveryRows) {
+		super(out, ownsOutput, flushEveryRows);
+	}
+
+	@Override
+	protected void appendHeader(StringBuilder buf) {
+		buf.append("Columns: ");
+		for (int cIdx = 0; cIdx < this.columnNames.length; cIdx++) {
+			if (cIdx > 0) buf.append(", ");
+			buf.append(this.columnNames[cIdx]);
+		}
+		buf.append(System.lineSeparator()).append(System.lineSeparator());
+	}
+
+	@Override
+	protected void appendRow(ResultSet rSet, int rowNum, StringBuilder buf) 
+			throws SQLException {
+		buf.append("Row ").append(rowNum).append(": ");
+		for (int cIdx = 1; cIdx <= this.columnNames.length; cIdx++) {
+			if (cIdx > 1) buf.append(", ");
+			buf.append(rSet.getString(cIdx));
+		}
+		buf.append(System.lineSeparator()).append(System.lineSeparator());
+	}
+}